@@ -27,6 +27,7 @@ dependencies {
 
     testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
     testImplementation("org.mockito:mockito-core:5.11.0")
+    testImplementation("org.xerial:sqlite-jdbc:3.45.1.0")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
@@ -0,0 +1,141 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs NPC AI requests on their own threads instead of the common ForkJoinPool.
+ * - A request can block for a long time (provider admission queue, the HTTP call itself), so
+ *   it must not tie up threads that the rest of the server shares
+ * - The pool is fixed at ai.request-threads; requests beyond that wait here, queued per player
+ *   and taken round-robin, so one player's burst can't push everyone else to the back before
+ *   the admission queue ever sees them
+ */
+public class AiRequestExecutor {
+
+    private static final Object SHARED_QUEUE = new Object();
+
+    private final ThreadPoolExecutor pool;
+    // Per-key FIFO queues in round-robin order; guarded by this
+    private final LinkedHashMap<Object, ArrayDeque<Runnable>> queues = new LinkedHashMap<>();
+    private int queued;
+
+    public AiRequestExecutor(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        int size = Math.max(1, threads);
+        this.pool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "Chatr-AI-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Change the number of threads; running requests finish first
+     */
+    public void setThreads(int threads) {
+        int size = Math.max(1, threads);
+        if (size > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(size);
+            pool.setCorePoolSize(size);
+        } else {
+            pool.setCorePoolSize(size);
+            pool.setMaximumPoolSize(size);
+        }
+    }
+
+    /**
+     * Run a request on the pool, after the requests already waiting for other players
+     * @param queueKey Whose request this is (e.g. the player's UUID); null shares one queue
+     */
+    public <T> CompletableFuture<T> submit(Object queueKey, Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable run = () -> {
+            try {
+                future.complete(task.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        };
+        synchronized (this) {
+            queues.computeIfAbsent(queueKey != null ? queueKey : SHARED_QUEUE, k -> new ArrayDeque<>()).addLast(run);
+            queued++;
+        }
+        try {
+            // Each submit schedules one pick, so every queued request runs exactly once
+            pool.execute(this::runNext);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                removeTask(queueKey != null ? queueKey : SHARED_QUEUE, run);
+            }
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void runNext() {
+        Runnable next;
+        synchronized (this) {
+            Iterator<Map.Entry<Object, ArrayDeque<Runnable>>> it = queues.entrySet().iterator();
+            if (!it.hasNext()) return;
+            Map.Entry<Object, ArrayDeque<Runnable>> entry = it.next();
+            next = entry.getValue().pollFirst();
+            queued--;
+            // Move this key to the back of the rotation
+            it.remove();
+            if (!entry.getValue().isEmpty()) {
+                queues.put(entry.getKey(), entry.getValue());
+            }
+        }
+        next.run();
+    }
+
+    private void removeTask(Object queueKey, Runnable task) {
+        ArrayDeque<Runnable> queue = queues.get(queueKey);
+        if (queue != null && queue.remove(task)) {
+            queued--;
+            if (queue.isEmpty()) {
+                queues.remove(queueKey);
+            }
+        }
+    }
+
+    /**
+     * Requests waiting for a thread
+     */
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    /**
+     * Requests currently running
+     */
+    public int getActive() {
+        return pool.getActiveCount();
+    }
+
+    /**
+     * Stop the threads; requests still waiting are not run
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("threads", pool.getMaximumPoolSize());
+        stats.put("active", getActive());
+        stats.put("queued", getQueued());
+        return stats;
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Embeddings from an OpenAI-compatible /v1/embeddings endpoint. Better recall on meaning
+ * than HashingEmbedder, at the cost of one HTTP call per message.
+ */
+public class ApiEmbedder implements Embedder {
+
+    private final HttpClient client;
+    private final String url;
+    private final String model;
+    private final String apiKey;
+    private final Duration timeout;
+
+    /**
+     * @param baseUrl Server root, e.g. http://localhost:1234 (/v1/embeddings is appended)
+     */
+    public ApiEmbedder(String baseUrl, String model, String apiKey, int timeoutMs) {
+        String root = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.url = root.endsWith("/v1") ? root + "/embeddings" : root + "/v1/embeddings";
+        this.model = model;
+        this.apiKey = apiKey;
+        this.timeout = Duration.ofMillis(Math.max(100, timeoutMs));
+        this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @Override
+    public float[] embed(String text) throws IOException {
+        JsonObject body = new JsonObject();
+        body.addProperty("model", model);
+        body.addProperty("input", text);
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()));
+        if (apiKey != null && !apiKey.isEmpty()) {
+            request.header("Authorization", "Bearer " + apiKey);
+        }
+
+        HttpResponse<String> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for embedding", e);
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("Embedding endpoint returned HTTP " + response.statusCode());
+        }
+        try {
+            JsonArray data = JsonParser.parseString(response.body()).getAsJsonObject().getAsJsonArray("data");
+            JsonArray values = data.get(0).getAsJsonObject().getAsJsonArray("embedding");
+            float[] vector = new float[values.size()];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = values.get(i).getAsFloat();
+            }
+            return Embedder.normalize(vector);
+        } catch (RuntimeException e) {
+            throw new IOException("Unexpected embedding response: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String id() {
+        return "api-" + model;
+    }
+}
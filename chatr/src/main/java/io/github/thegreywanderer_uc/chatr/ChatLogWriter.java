@@ -0,0 +1,316 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes chat logs (NPC logs per player, the ServerAI log) off the calling thread.
+ * - log() only offers a line to a bounded queue and never blocks; when the queue is full the
+ *   line is dropped and counted, so a slow disk can't stall the tick or a reply
+ * - One background thread drains the queue in batches, formats the lines and writes them to
+ *   buffered streams kept open in an LRU (max-open-files), flushed every flush-interval-ms
+ * - A file is rotated when it would exceed max-file-size-kb or a line from a new day arrives:
+ *   it is renamed to name-yyyy-MM-dd.N.log and, if enabled, gzipped
+ */
+public class ChatLogWriter {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int BATCH_SIZE = 256;
+    // Queued by close() to wake the writer. Not an interrupt: that would close the file channels
+    // under a write or flush in progress and lose every buffered line
+    private static final Line STOP = new Line(null, 0, null, null, null);
+
+    private final BlockingQueue<Line> queue;
+    private final Logger logger;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private volatile int maxOpenFiles = 64;
+    private volatile long maxFileBytes = 1024 * 1024;
+    private volatile boolean rotateDaily = true;
+    private volatile boolean compress = true;
+    private volatile long flushIntervalMs = 1000;
+
+    // Only touched by the writer thread; least recently written first
+    private final LinkedHashMap<Path, OpenFile> open = new LinkedHashMap<>(16, 0.75f, true);
+    private long lastSecond = -1;
+    private String lastTimestamp;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rotated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * @param queueSize Most lines waiting to be written
+     */
+    public ChatLogWriter(int queueSize, Logger logger) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(16, queueSize));
+        this.logger = logger;
+        this.writer = new Thread(this::runWriter, "Chatr-ChatLog");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Apply settings; takes effect for the next lines written
+     * @param maxFileBytes Rotate before a file grows past this (0 = never)
+     */
+    public void configure(int maxOpenFiles, long maxFileBytes, boolean rotateDaily, boolean compress, long flushIntervalMs) {
+        this.maxOpenFiles = Math.max(1, maxOpenFiles);
+        this.maxFileBytes = Math.max(0, maxFileBytes);
+        this.rotateDaily = rotateDaily;
+        this.compress = compress;
+        this.flushIntervalMs = Math.max(50, flushIntervalMs);
+    }
+
+    /**
+     * Queue "[time] sender: message"
+     * @return false if the line was dropped (queue full or closed)
+     */
+    public boolean log(Path file, String sender, String message) {
+        return log(file, System.currentTimeMillis(), null, sender, message);
+    }
+
+    /**
+     * Queue "[time] [TAG] sender: message"
+     * @return false if the line was dropped (queue full or closed)
+     */
+    public boolean log(Path file, String tag, String sender, String message) {
+        return log(file, System.currentTimeMillis(), tag, sender, message);
+    }
+
+    boolean log(Path file, long timestamp, String tag, String sender, String message) {
+        if (!running || !queue.offer(new Line(file, timestamp, tag, sender, message))) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private void runWriter() {
+        List<Line> batch = new ArrayList<>(BATCH_SIZE);
+        long lastFlush = System.currentTimeMillis();
+        while (running || !queue.isEmpty()) {
+            try {
+                Line first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                }
+            } catch (InterruptedException e) {
+                // Not expected (close() queues STOP instead); keep draining
+            }
+            queue.drainTo(batch, BATCH_SIZE - batch.size());
+            for (Line line : batch) {
+                if (line != STOP) {
+                    write(line);
+                }
+            }
+            batch.clear();
+
+            long now = System.currentTimeMillis();
+            if (now - lastFlush >= flushIntervalMs) {
+                flushAll();
+                lastFlush = now;
+            }
+        }
+        for (OpenFile file : open.values()) {
+            file.close();
+        }
+        open.clear();
+    }
+
+    private void write(Line line) {
+        byte[] bytes = format(line).getBytes(StandardCharsets.UTF_8);
+        try {
+            OpenFile file = open.get(line.file);
+            LocalDate day = rotateDaily ? dayOf(line.timestamp) : null;
+            if (file != null && file.size > 0 && ((maxFileBytes > 0 && file.size + bytes.length > maxFileBytes)
+                    || (day != null && !day.equals(file.day)))) {
+                open.remove(line.file);
+                file.close();
+                rotate(line.file, file.day);
+                file = null;
+            }
+            if (file == null) {
+                file = openFile(line.file, day != null ? day : dayOf(line.timestamp));
+            }
+            file.out.write(bytes);
+            file.size += bytes.length;
+            file.dirty = true;
+            written.incrementAndGet();
+        } catch (IOException e) {
+            failed.incrementAndGet();
+            OpenFile broken = open.remove(line.file);
+            if (broken != null) broken.close();
+            logger.warning("[ChatLog] Could not write " + line.file.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    private OpenFile openFile(Path path, LocalDate today) throws IOException {
+        Files.createDirectories(path.getParent());
+        long size = Files.exists(path) ? Files.size(path) : 0;
+        // An existing file belongs to the day it was last written
+        LocalDate day = size > 0 ? dayOf(Files.getLastModifiedTime(path).toMillis()) : today;
+        if (size > 0 && ((rotateDaily && !day.equals(today)) || (maxFileBytes > 0 && size >= maxFileBytes))) {
+            rotate(path, day);
+            size = 0;
+            day = today;
+        }
+        OutputStream out = new BufferedOutputStream(
+                Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND), 8192);
+        OpenFile file = new OpenFile(out, size, day);
+        open.put(path, file);
+        while (open.size() > maxOpenFiles) {
+            Iterator<OpenFile> eldest = open.values().iterator();
+            eldest.next().close();
+            eldest.remove();
+        }
+        return file;
+    }
+
+    /**
+     * Move a full or past-day file aside (name-yyyy-MM-dd.N.log[.gz]) so a new one starts
+     */
+    private void rotate(Path path, LocalDate day) throws IOException {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        Path target;
+        int n = 1;
+        do {
+            target = path.resolveSibling(base + "-" + day + "." + n++ + extension);
+        } while (Files.exists(target) || Files.exists(target.resolveSibling(target.getFileName() + ".gz")));
+        Files.move(path, target);
+        rotated.incrementAndGet();
+
+        if (compress) {
+            Path gzip = target.resolveSibling(target.getFileName() + ".gz");
+            try (InputStream in = Files.newInputStream(target);
+                 OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(gzip)))) {
+                in.transferTo(out);
+            } catch (IOException e) {
+                Files.deleteIfExists(gzip);
+                logger.warning("[ChatLog] Could not compress " + target.getFileName() + ", kept it uncompressed: " + e.getMessage());
+                return;
+            }
+            Files.delete(target);
+        }
+    }
+
+    private void flushAll() {
+        for (Map.Entry<Path, OpenFile> entry : open.entrySet()) {
+            OpenFile file = entry.getValue();
+            if (!file.dirty) continue;
+            try {
+                file.out.flush();
+                file.dirty = false;
+            } catch (IOException e) {
+                failed.incrementAndGet();
+                logger.warning("[ChatLog] Could not flush " + entry.getKey().getFileName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private String format(Line line) {
+        // Lines arrive in bursts within the same second, so the timestamp is formatted once per second
+        long second = line.timestamp / 1000;
+        if (second != lastSecond) {
+            lastSecond = second;
+            lastTimestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(line.timestamp), ZoneId.systemDefault()).format(TIMESTAMP);
+        }
+        StringBuilder text = new StringBuilder(128);
+        text.append('[').append(lastTimestamp).append("] ");
+        if (line.tag != null) {
+            text.append('[').append(line.tag).append("] ");
+        }
+        return text.append(line.sender).append(": ").append(line.message).append(System.lineSeparator()).toString();
+    }
+
+    private static LocalDate dayOf(long timestamp) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+    }
+
+    /**
+     * Write everything queued, then close the files
+     */
+    public void close() {
+        running = false;
+        // A full queue keeps the writer busy anyway, so STOP is only needed to end a wait
+        queue.offer(STOP);
+        try {
+            writer.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Left over if the writer had already finished
+        queue.remove(STOP);
+        if (!queue.isEmpty()) {
+            logger.warning("[ChatLog] " + queue.size() + " queued lines were not written");
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("written", written.get());
+        stats.put("dropped", dropped.get());
+        stats.put("rotated", rotated.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    private static final class Line {
+        final Path file;
+        final long timestamp;
+        final String tag;
+        final String sender;
+        final String message;
+
+        Line(Path file, long timestamp, String tag, String sender, String message) {
+            this.file = file;
+            this.timestamp = timestamp;
+            this.tag = tag;
+            this.sender = sender;
+            this.message = message;
+        }
+    }
+
+    private final class OpenFile {
+        final OutputStream out;
+        long size;
+        final LocalDate day;
+        boolean dirty;
+
+        OpenFile(OutputStream out, long size, LocalDate day) {
+            this.out = out;
+            this.size = size;
+            this.day = day;
+        }
+
+        void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                failed.incrementAndGet();
+                logger.warning("[ChatLog] Could not close a chat log: " + e.getMessage());
+            }
+        }
+    }
+}
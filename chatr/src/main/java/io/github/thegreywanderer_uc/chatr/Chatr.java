@@ -5,7 +5,8 @@ import com.google.gson.JsonObject;
 import io.github.thegreywanderer_uc.chatr.ai.AIProvider;
 import io.github.thegreywanderer_uc.chatr.ai.AIProviderException;
 import io.github.thegreywanderer_uc.chatr.ai.AIProviderFactory;
-import io.github.thegreywanderer_uc.chatr.ai.OpenAIProvider;
+import io.github.thegreywanderer_uc.chatr.ai.ChatResult;
+import io.github.thegreywanderer_uc.chatr.ai.ChatTurn;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
@@ -27,11 +28,13 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.SkullMeta;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.BufferedWriter;
 import java.io.File;
+import java.sql.SQLException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.net.http.HttpClient;
@@ -42,12 +45,14 @@ import java.time.LocalDateTime;
 import java.util.regex.Pattern;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 // Use ProtocolLib-based NPC instead of NMS ServerPlayer
 // import net.minecraft.server.level.ServerPlayer;
@@ -56,10 +61,10 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
     private FileConfiguration config; // To store config values
     private final Map<Integer, DirectNpc> npcs = new HashMap<>(); // Store NPC entities by ID
     private final Map<Integer, String> npcSkins = new HashMap<>(); // Store skin player names by NPC ID
-    private final Map<String, FileConfiguration> npcAiConfigs = new HashMap<>(); // Store NPC AI configs
+    private final Map<String, FileConfiguration> npcAiConfigs = new ConcurrentHashMap<>(); // Store NPC AI configs
     private final Map<String, File> npcFolders = new HashMap<>(); // Store NPC folder paths
-    private final Map<String, Integer> npcNamesToIds = new HashMap<>(); // Map NPC names to IDs for quick lookup
-    private final Map<UUID, String> lastNpcChat = new HashMap<>(); // Track last NPC each player chatted with
+    private final Map<String, Integer> npcNamesToIds = new ConcurrentHashMap<>(); // Map NPC names to IDs for quick lookup (also read by the config watcher thread)
+    private final Map<UUID, String> lastNpcChat = new ConcurrentHashMap<>(); // Track last NPC each player chatted with (written from async callbacks)
     private int nextNpcId = 0; // Next available NPC ID
     private ServerAI serverAI; // Server-wide AI assistant
     private boolean debugMode; // Debug mode flag
@@ -68,12 +73,26 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
     private final Gson gson = new Gson(); // For JSON parsing
     
     // New feature managers
+    private ChatrDatabase database;
     private ConversationManager conversationManager;
+    private ConversationSummarizer conversationSummarizer;
+    private EpisodicMemory episodicMemory;
     private RateLimiter rateLimiter;
+    private ProviderAdmissionController providerAdmission;
+    private LoadShedder loadShedder;
+    private ProviderHealthMonitor healthMonitor;
+    private ProviderRouter providerRouter;
+    private AiRequestExecutor aiExecutor;
     private AIProviderFactory providerFactory;
+    private NpcProfileRegistry npcProfiles;
+    private NpcConfigWatcher npcConfigWatcher;
     private ResponseCache responseCache;
     private MetricsManager metricsManager;
+    private MetricsExporter metricsExporter;
+    private final java.util.concurrent.atomic.AtomicInteger inFlightAiCalls = new java.util.concurrent.atomic.AtomicInteger();
     private ClickToChatHandler clickToChatHandler;
+    private PlayerSessionService playerSessions;
+    private ChatLogWriter chatLogWriter;
 
     /**
      * Get the map of NPC entities
@@ -112,6 +131,10 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
         
         // Initialize and start Server AI
         serverAI = new ServerAI(this);
+        serverAI.setMetricsManager(metricsManager);
+        serverAI.setConversationManager(conversationManager);
+        serverAI.setChatLogWriter(chatLogWriter);
+        serverAI.setRequestExecutor(aiExecutor);
         serverAI.start();
 
         // Log enable message with version and NPC count
@@ -322,6 +345,42 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
             if (providerFactory != null) {
                 providerFactory.reload();
             }
+            // Re-read NPC configs; profiles are rebuilt on next use with the new providers
+            loadNpcAiConfigs();
+            if (npcProfiles != null) {
+                npcProfiles.invalidateAll();
+            }
+            updateNpcConfigWatcher();
+            if (providerAdmission != null) {
+                providerAdmission.reload();
+            }
+            if (aiExecutor != null) {
+                aiExecutor.setThreads(config.getInt("ai.request-threads", 16));
+            }
+            if (rateLimiter != null) {
+                rateLimiter.reload();
+            }
+            if (loadShedder != null) {
+                loadShedder.reload();
+            }
+            if (healthMonitor != null) {
+                healthMonitor.reload();
+            }
+            if (metricsManager != null) {
+                metricsManager.reload();
+            }
+            if (conversationSummarizer != null) {
+                conversationSummarizer.reload();
+            }
+            if (episodicMemory != null) {
+                episodicMemory.reload();
+            }
+            if (playerSessions != null) {
+                playerSessions.reload();
+            }
+            if (chatLogWriter != null) {
+                configureChatLog();
+            }
             
             // Reload and restart Server AI
             if (serverAI != null) {
@@ -523,7 +582,7 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
             }
 
             // Check if NPC has a system prompt
-            String systemPrompt = getNpcSystemPrompt(npcName);
+            String systemPrompt = npcProfiles.get(npcName).getSystemPrompt();
             if (systemPrompt == null || systemPrompt.isEmpty()) {
                 sender.sendMessage(coloredPrefix + "This NPC is not configured for AI chat.");
                 return true;
@@ -579,7 +638,7 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
             return true;
         }
         
-        // Handle stats/metrics command: /chatr stats [summary|npcs|players|npc <name>]
+        // Handle stats/metrics command: /chatr stats [summary|npcs|players|latency|load|tokens [providers|models|npcs|players]|window <1h|1d|1w>|npc <name>]
         if (args[0].equalsIgnoreCase("stats") || args[0].equalsIgnoreCase("metrics")) {
             if (!sender.hasPermission("chatr.admin")) {
                 sender.sendMessage(coloredPrefix + "You don't have permission to view stats.");
@@ -601,13 +660,17 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
                     sender.sendMessage(coloredPrefix + "Total Requests: " + summary.get("totalRequests"));
                     sender.sendMessage(coloredPrefix + "Cache Hit Rate: " + summary.get("cacheHitRate"));
                     sender.sendMessage(coloredPrefix + "Avg Response Time: " + summary.get("avgResponseTimeMs") + "ms");
+                    sender.sendMessage(coloredPrefix + "Latency (last " + summary.get("latencyWindowSeconds") + "s): p50 " + summary.get("p50ResponseTimeMs")
+                            + "ms | p90 " + summary.get("p90ResponseTimeMs") + "ms | p99 " + summary.get("p99ResponseTimeMs")
+                            + "ms | max " + summary.get("maxResponseTimeMs") + "ms");
                     sender.sendMessage(coloredPrefix + "Errors: " + summary.get("totalErrors"));
+                    sender.sendMessage(coloredPrefix + "Tokens: " + summary.get("totalTokens") + " (est. $" + summary.get("estimatedCostUsd") + ")");
                     sender.sendMessage(coloredPrefix + "Active NPCs: " + summary.get("activeNpcs") + " | Unique Players: " + summary.get("uniquePlayers"));
                     break;
                 case "npcs":
-                    List<Map.Entry<String, Integer>> topNpcs = metricsManager.getTopNpcs(20);
+                    List<Map.Entry<String, Long>> topNpcs = metricsManager.getTopNpcs(20);
                     sender.sendMessage(coloredPrefix + "=== Top NPCs by Request Count ===");
-                    for (Map.Entry<String, Integer> entry : topNpcs) {
+                    for (Map.Entry<String, Long> entry : topNpcs) {
                         sender.sendMessage(coloredPrefix + entry.getKey() + ": " + entry.getValue());
                     }
                     if (topNpcs.isEmpty()) {
@@ -615,15 +678,111 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
                     }
                     break;
                 case "players":
-                    List<Map.Entry<String, Integer>> topPlayers = metricsManager.getTopPlayers(20);
+                    List<Map.Entry<String, Long>> topPlayers = metricsManager.getTopPlayers(20);
                     sender.sendMessage(coloredPrefix + "=== Top Players by Request Count ===");
-                    for (Map.Entry<String, Integer> entry : topPlayers) {
+                    for (Map.Entry<String, Long> entry : topPlayers) {
                         sender.sendMessage(coloredPrefix + entry.getKey() + ": " + entry.getValue());
                     }
                     if (topPlayers.isEmpty()) {
                         sender.sendMessage(coloredPrefix + "(No player data yet)");
                     }
                     break;
+                case "latency":
+                    sender.sendMessage(coloredPrefix + "=== Latency (last " + metricsManager.getLatencyWindowSeconds() + "s) ===");
+                    for (Map.Entry<String, Map<String, Object>> entry : metricsManager.getLatencyStats().entrySet()) {
+                        Map<String, Object> l = entry.getValue();
+                        sender.sendMessage(coloredPrefix + entry.getKey() + ": n=" + l.get("count")
+                                + " p50 " + l.get("p50Ms") + "ms p90 " + l.get("p90Ms") + "ms p99 " + l.get("p99Ms")
+                                + "ms max " + l.get("maxMs") + "ms");
+                    }
+                    break;
+                case "tokens":
+                    String groupBy = args.length > 2 ? args[2].toLowerCase() : "providers";
+                    if (!Arrays.asList("providers", "models", "npcs", "players").contains(groupBy)) {
+                        sender.sendMessage(coloredPrefix + "Usage: /chatr stats tokens [providers|models|npcs|players]");
+                        return true;
+                    }
+                    Map<String, Object> tokenTotals = metricsManager.getTokenTotals();
+                    sender.sendMessage(coloredPrefix + "=== Token Usage by " + groupBy + " ===");
+                    sender.sendMessage(coloredPrefix + "Total: " + tokenTotals.get("totalTokens") + " tokens (est. $" + tokenTotals.get("estimatedCostUsd") + ")");
+                    Map<String, Map<String, Object>> usage = metricsManager.getTokenUsage(groupBy, 15);
+                    for (Map.Entry<String, Map<String, Object>> entry : usage.entrySet()) {
+                        Map<String, Object> u = entry.getValue();
+                        sender.sendMessage(coloredPrefix + entry.getKey() + ": " + u.get("promptTokens") + " in / "
+                                + u.get("completionTokens") + " out, avg prompt " + u.get("avgPromptTokens")
+                                + ", $" + u.get("estimatedCostUsd"));
+                    }
+                    if (usage.isEmpty()) {
+                        sender.sendMessage(coloredPrefix + "(No token usage reported yet)");
+                    }
+                    break;
+                case "load":
+                    if (loadShedder == null) {
+                        sender.sendMessage(coloredPrefix + "Load shedding is not initialized.");
+                        return true;
+                    }
+                    sender.sendMessage(coloredPrefix + "=== Load ===");
+                    for (Map.Entry<String, Object> entry : loadShedder.getStats().entrySet()) {
+                        sender.sendMessage(coloredPrefix + entry.getKey() + ": " + entry.getValue());
+                    }
+                    for (Map.Entry<String, Integer> entry : providerAdmission.getQueueDepths().entrySet()) {
+                        sender.sendMessage(coloredPrefix + "Provider " + entry.getKey() + ": " + providerAdmission.getInFlight().get(entry.getKey())
+                                + " in flight, " + entry.getValue() + " queued");
+                    }
+                    if (aiExecutor != null) {
+                        sender.sendMessage(coloredPrefix + "AI threads: " + aiExecutor.getActive() + " busy, "
+                                + aiExecutor.getQueued() + " requests waiting for one");
+                    }
+                    if (healthMonitor != null) {
+                        for (Map.Entry<String, String> entry : healthMonitor.getSummary().entrySet()) {
+                            sender.sendMessage(coloredPrefix + "Circuit " + entry.getKey() + ": " + entry.getValue());
+                        }
+                    }
+                    if (providerRouter != null) {
+                        sender.sendMessage(coloredPrefix + "Failovers: " + providerRouter.getFailovers() + ", hedged requests: "
+                                + providerRouter.getHedges() + " (" + providerRouter.getHedgeWins() + " won by the backup)");
+                    }
+                    if (episodicMemory != null) {
+                        Map<String, Object> memory = episodicMemory.getStats();
+                        sender.sendMessage(coloredPrefix + "Episodic memory: " + memory.get("loadedIndexes") + " indexes ("
+                                + memory.get("loadedEpisodes") + " exchanges, " + memory.get("loadedKb") + " KB) loaded, "
+                                + memory.get("recalls") + " recalls averaging " + memory.get("avgRecallMs") + " ms");
+                    }
+                    if (conversationSummarizer != null) {
+                        Map<String, Object> summaries = conversationSummarizer.getStats();
+                        sender.sendMessage(coloredPrefix + "Conversation summaries: " + summaries.get("summarized") + " written, "
+                                + summaries.get("failed") + " failed, " + summaries.get("skippedBusy") + " runs skipped while busy");
+                    }
+                    if (chatLogWriter != null) {
+                        Map<String, Object> chatLog = chatLogWriter.getStats();
+                        sender.sendMessage(coloredPrefix + "Chat log: " + chatLog.get("written") + " lines written, "
+                                + chatLog.get("queued") + " queued, " + chatLog.get("dropped") + " dropped, "
+                                + chatLog.get("rotated") + " files rotated");
+                    }
+                    if (playerSessions != null) {
+                        Map<String, Object> sessions = playerSessions.getStats();
+                        sender.sendMessage(coloredPrefix + "Player sessions: " + sessions.get("offlineTracked") + " departed players pending, "
+                                + sessions.get("evictedPlayers") + " evicted, " + sessions.get("retained") + " kept by a limit or top list");
+                    }
+                    break;
+                case "window":
+                    String window = args.length > 2 ? args[2] : "1h";
+                    long windowMinutes = MetricsTimeSeries.parseWindowMinutes(window);
+                    if (windowMinutes <= 0) {
+                        sender.sendMessage(coloredPrefix + "Usage: /chatr stats window <30m|1h|1d|1w>");
+                        return true;
+                    }
+                    Map<String, Object> windowStats = metricsManager.getWindowStats(windowMinutes);
+                    sender.sendMessage(coloredPrefix + "=== Last " + window + " ===");
+                    sender.sendMessage(coloredPrefix + "Requests: " + windowStats.get("requests") + " (" + windowStats.get("requestsPerMinute") + "/min)");
+                    sender.sendMessage(coloredPrefix + "Cache Hit Rate: " + windowStats.get("cacheHitRate"));
+                    sender.sendMessage(coloredPrefix + "Avg Response Time: " + windowStats.get("avgResponseTimeMs") + "ms | Max: " + windowStats.get("maxResponseTimeMs") + "ms");
+                    sender.sendMessage(coloredPrefix + "Errors: " + windowStats.get("errors"));
+                    sender.sendMessage(coloredPrefix + "Tokens: " + windowStats.get("promptTokens") + " in / " + windowStats.get("completionTokens") + " out (est. $" + windowStats.get("estimatedCostUsd") + ")");
+                    if (windowStats.containsKey("historySince")) {
+                        sender.sendMessage(coloredPrefix + "History available since " + windowStats.get("historySince"));
+                    }
+                    break;
                 case "npc":
                     if (args.length < 3) {
                         sender.sendMessage(coloredPrefix + "Usage: /chatr stats npc <name>");
@@ -641,7 +800,7 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
                     }
                     break;
                 default:
-                    sender.sendMessage(coloredPrefix + "Usage: /chatr stats [summary|npcs|players|npc <name>]");
+                    sender.sendMessage(coloredPrefix + "Usage: /chatr stats [summary|npcs|players|latency|load|tokens [providers|models|npcs|players]|window <1h|1d|1w>|npc <name>]");
             }
             return true;
         }
@@ -715,6 +874,9 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
             }
             
             conversationManager.clearHistory(player.getUniqueId(), npcToClear);
+            if (episodicMemory != null) {
+                episodicMemory.clear(player.getUniqueId(), npcToClear);
+            }
             sender.sendMessage(coloredPrefix + "Cleared your conversation history with " + npcToClear + ".");
             return true;
         }
@@ -825,6 +987,9 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
         }
         if (npcId != null) {
             npcNamesToIds.remove(npcName);
+            if (npcProfiles != null) {
+                npcProfiles.invalidate(npcName);
+            }
         }
 
         // Remove the entity
@@ -988,89 +1153,99 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
 
         FileConfiguration npcAiConfig = YamlConfiguration.loadConfiguration(configFile);
         npcAiConfigs.put(npcName, npcAiConfig);
-    }
-
-    /**
-     * Get AI setting for an NPC (with fallback to global config)
-     */
-    private String getNpcAiSetting(String npcName, String setting) {
-        FileConfiguration npcAiConfig = npcAiConfigs.get(npcName);
-        if (npcAiConfig != null) {
-            // Check ai.setting first (new format)
-            if (npcAiConfig.contains("ai." + setting)) {
-                return npcAiConfig.getString("ai." + setting);
-            }
-            // Check root level for backward compatibility
-            if (npcAiConfig.contains(setting)) {
-                return npcAiConfig.getString(setting);
-            }
+        if (npcProfiles != null) {
+            npcProfiles.invalidate(npcName);
         }
-        // Fallback to global config
-        return config.getString("ai." + setting);
     }
 
     /**
-     * Get AI numeric setting for an NPC (with fallback to global config)
+     * Start or stop the NPC config watcher to match npc-live-reload.enabled
      */
-    private double getNpcAiNumericSetting(String npcName, String setting) {
-        FileConfiguration npcAiConfig = npcAiConfigs.get(npcName);
-        if (npcAiConfig != null) {
-            // Check ai.setting first (new format)
-            if (npcAiConfig.contains("ai." + setting)) {
-                return npcAiConfig.getDouble("ai." + setting);
-            }
-            // Check root level for backward compatibility
-            if (npcAiConfig.contains(setting)) {
-                return npcAiConfig.getDouble(setting);
-            }
+    private void updateNpcConfigWatcher() {
+        if (npcConfigWatcher != null) {
+            npcConfigWatcher.stop();
+            npcConfigWatcher = null;
+        }
+        if (!config.getBoolean("npc-live-reload.enabled", true)) {
+            return;
+        }
+        npcConfigWatcher = new NpcConfigWatcher(new File(getDataFolder(), "npcs").toPath(),
+                config.getLong("npc-live-reload.debounce-ms", 500), this::onNpcConfigChanged, getLogger());
+        try {
+            npcConfigWatcher.start();
+        } catch (IOException e) {
+            getLogger().warning("[NpcConfig] Live reload disabled, could not watch NPC folders: " + e.getMessage());
+            npcConfigWatcher = null;
         }
-        // Fallback to global config
-        return config.getDouble("ai." + setting);
     }
 
     /**
-     * Get system prompt for an NPC
+     * An NPC's config.yml changed on disk (called on the watcher thread).
+     * Only that NPC is re-parsed, its profile swapped and its cached replies dropped.
      */
-    private String getNpcSystemPrompt(String npcName) {
-        FileConfiguration npcAiConfig = npcAiConfigs.get(npcName);
-        if (npcAiConfig != null) {
-            return npcAiConfig.getString("system-prompt", "").trim();
+    private void onNpcConfigChanged(String npcName) {
+        if (!npcNamesToIds.containsKey(npcName)) {
+            return;
+        }
+        File configFile = new File(new File(getDataFolder(), "npcs/" + npcName), "config.yml");
+        if (!configFile.exists()) {
+            return;
+        }
+        // Unlike loadConfiguration, load() fails on broken YAML so a bad save keeps the old config
+        YamlConfiguration npcAiConfig = new YamlConfiguration();
+        try {
+            npcAiConfig.load(configFile);
+        } catch (IOException | InvalidConfigurationException e) {
+            getLogger().warning("[NpcConfig] Ignoring invalid config for NPC '" + npcName + "': " + e.getMessage());
+            return;
         }
-        return "";
+        FileConfiguration previous = npcAiConfigs.get(npcName);
+        if (previous != null && previous.saveToString().equals(npcAiConfig.saveToString())) {
+            return; // Touched or re-saved without changes
+        }
+        npcAiConfigs.put(npcName, npcAiConfig);
+        if (npcProfiles != null) {
+            npcProfiles.refresh(npcName);
+        }
+        if (responseCache != null) {
+            responseCache.clearForNpc(npcName);
+        }
+        getLogger().info("[NpcConfig] Reloaded config for NPC '" + npcName + "'");
     }
 
     /**
      * Log chat interaction for an NPC - logs to per-player files
      */
     private void logNpcChat(String npcName, String playerName, String userMessage, String aiResponse) {
-        FileConfiguration npcAiConfig = npcAiConfigs.get(npcName);
-        if (npcAiConfig == null || !npcAiConfig.getBoolean("enable-chat-logging", true)) {
+        if (!npcProfiles.get(npcName).isChatLogging()) {
             return;
         }
 
         File npcFolder = npcFolders.get(npcName);
-        if (npcFolder == null) return;
+        if (npcFolder == null || chatLogWriter == null) return;
 
-        // Create logs subfolder and per-player log file
-        File logsFolder = new File(npcFolder, "logs");
-        if (!logsFolder.exists()) {
-            logsFolder.mkdirs();
+        // Per-player log file in the NPC's logs subfolder, written in the background
+        java.nio.file.Path logFile = npcFolder.toPath().resolve("logs").resolve(playerName + ".log");
+        if (userMessage != null && !userMessage.isEmpty()) {
+            chatLogWriter.log(logFile, playerName, userMessage);
         }
-        
-        File logFile = new File(logsFolder, playerName + ".log");
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(logFile, true))) {
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-            if (userMessage != null && !userMessage.isEmpty()) {
-                writer.write(String.format("[%s] %s: %s%n", timestamp, playerName, userMessage));
-            }
-            if (aiResponse != null && !aiResponse.isEmpty()) {
-                writer.write(String.format("[%s] %s: %s%n", timestamp, npcName, aiResponse));
-            }
-        } catch (IOException e) {
-            getLogger().warning("Could not log chat for NPC '" + npcName + "': " + e.getMessage());
+        if (aiResponse != null && !aiResponse.isEmpty()) {
+            chatLogWriter.log(logFile, npcName, aiResponse);
         }
     }
     
+    /**
+     * Apply chat-logging settings to the chat log writer
+     */
+    private void configureChatLog() {
+        chatLogWriter.configure(
+                config.getInt("chat-logging.max-open-files", 64),
+                config.getLong("chat-logging.max-file-size-kb", 1024) * 1024L,
+                config.getBoolean("chat-logging.rotate-daily", true),
+                config.getBoolean("chat-logging.compress-rotated", true),
+                config.getLong("chat-logging.flush-interval-ms", 1000));
+    }
+    
     /**
      * Format AI response with colors:
      * - Base text in aqua (&b)
@@ -1363,19 +1538,25 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
      * Make an AI API call for chat completion with player context
      */
     private CompletableFuture<String> makeAiApiCall(String npcName, String userMessage, Player player, NpcContext npcCtx, PlayerContext playerCtx) {
-        return CompletableFuture.supplyAsync(() -> {
+        // Counted from submission, so requests still waiting for a thread show up as load
+        inFlightAiCalls.incrementAndGet();
+        // Our own threads: admission and the call itself block, which the common pool must not do
+        CompletableFuture<String> request = aiExecutor.submit(player != null ? player.getUniqueId() : null, () -> {
             long startTime = System.currentTimeMillis();
             boolean cacheHit = false;
+            String providerName = null;
             
             try {
-                // Get AI provider for this NPC
-                AIProvider provider = providerFactory.getProviderForNpc(npcName);
-                if (provider == null) {
+                // Get AI providers for this NPC (its own endpoint first, then fallbacks)
+                NpcProfile profile = npcProfiles.get(npcName);
+                List<AIProviderFactory.Route> routes = profile.getRoutes();
+                if (routes.isEmpty()) {
                     throw new RuntimeException("No AI provider configured for NPC '" + npcName + "'");
                 }
+                AIProvider provider = profile.getProvider();
                 
-                String model = getNpcAiSetting(npcName, "model");
-                String rawSystemPrompt = getNpcSystemPrompt(npcName);
+                String model = profile.getModel();
+                String rawSystemPrompt = profile.getSystemPrompt();
                 
                 // Build contextual system prompt with variable substitution
                 String systemPrompt = buildContextualSystemPrompt(rawSystemPrompt, npcCtx, playerCtx);
@@ -1396,16 +1577,25 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
                 
                 // Rate limiting check
                 if (rateLimiter != null && player != null) {
-                    RateLimiter.RateLimitResult result = rateLimiter.canMakeRequest(player, provider.getName());
+                    long stageStart = System.nanoTime();
+                    RateLimiter.RateLimitResult result = rateLimiter.tryAcquire(player, provider.getBaseUrl());
+                    recordStage(MetricsManager.STAGE_RATE_LIMIT, stageStart);
                     if (!result.allowed) {
                         throw new RuntimeException("Rate limited. Please wait " + result.waitSeconds + " seconds.");
                     }
-                    rateLimiter.recordRequest(player);
                 }
                 
-                // Check response cache first
+                // Load level decides how this request degrades under pressure
+                LoadShedder.Level load = loadShedder != null ? loadShedder.getLevel() : LoadShedder.Level.NORMAL;
+                
+                // Check response cache first (expired entries are good enough under load)
                 if (responseCache != null) {
+                    long stageStart = System.nanoTime();
                     String cachedResponse = responseCache.get(npcName, userMessage);
+                    if (cachedResponse == null && loadShedder != null && loadShedder.shouldServeStale(load)) {
+                        cachedResponse = responseCache.getStale(npcName, userMessage);
+                    }
+                    recordStage(MetricsManager.STAGE_CACHE, stageStart);
                     if (cachedResponse != null) {
                         if (debugMode) getLogger().info("[AI DEBUG] Cache hit for message: " + userMessage.substring(0, Math.min(30, userMessage.length())) + "...");
                         cacheHit = true;
@@ -1414,39 +1604,73 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
                     }
                 }
                 
-                // Build conversation history for provider (excluding system prompt and current message)
-                List<Map<String, String>> history = new ArrayList<>();
+                // Build conversation history for provider (excluding system prompt and current message);
+                // turns already folded into the summary are sent as the summary instead
+                List<ConversationManager.ChatMessage> history = List.of();
+                String summary = null;
                 if (conversationManager != null && player != null) {
-                    history = conversationManager.getHistoryForApi(player.getUniqueId(), npcName);
+                    history = conversationManager.getPromptHistory(player.getUniqueId(), npcName);
+                    summary = conversationManager.getSummary(player.getUniqueId(), npcName);
                     if (debugMode && !history.isEmpty()) {
-                        getLogger().info("[AI DEBUG] Added " + history.size() + " conversation history messages");
+                        getLogger().info("[AI DEBUG] Added " + history.size() + " conversation history messages"
+                                + (summary != null ? " and a summary of earlier ones" : ""));
                     }
                 }
-
-                if (debugMode) {
-                    String providerDisplayName = provider.getName();
-                    // If it's an OpenAI provider with a local URL, show it as local-openai-compatible
-                    if (provider instanceof OpenAIProvider && 
-                        (((OpenAIProvider) provider).getBaseUrl() != null && 
-                         (((OpenAIProvider) provider).getBaseUrl().contains("localhost") || 
-                          ((OpenAIProvider) provider).getBaseUrl().contains("127.0.0.1")))) {
-                        providerDisplayName = "local-openai-compatible";
+                // Older exchanges relevant to this message, from long-term memory
+                List<String> remembered = List.of();
+                if (episodicMemory != null && player != null) {
+                    long stageStart = System.nanoTime();
+                    long before = history.isEmpty() ? Long.MAX_VALUE : history.get(0).timestamp;
+                    remembered = episodicMemory.recall(player.getUniqueId(), npcName, userMessage, before);
+                    recordStage(MetricsManager.STAGE_MEMORY, stageStart);
+                    if (debugMode && !remembered.isEmpty()) {
+                        getLogger().info("[AI DEBUG] Recalled " + remembered.size() + " past exchanges");
                     }
-                    getLogger().info("[AI DEBUG] Calling provider: " + providerDisplayName + " with model: " + model);
                 }
-                
+                String requestSystemPrompt = withMemory(systemPrompt, player, summary, remembered);
+
                 // Make the AI call using the provider
-                double temperature = getNpcAiNumericSetting(npcName, "temperature");
+                double temperature = profile.getTemperature();
                 int maxTokens = (int) config.getDouble("ai.max-tokens", 500);
                 
-                String content = provider.chatCompletion(
-                    model,
-                    systemPrompt,
-                    userMessage,
-                    history,
-                    temperature,
-                    maxTokens
-                );
+                providerName = provider.getId();
+                
+                // Under load: shorter answers, a cheaper model, and let the player know we're on it
+                if (loadShedder != null && load != LoadShedder.Level.NORMAL) {
+                    maxTokens = loadShedder.adjustMaxTokens(load, maxTokens);
+                    String thinking = loadShedder.getThinkingMessage(load, npcName);
+                    if (thinking != null && player != null) {
+                        Bukkit.getScheduler().runTask(this, () -> player.sendMessage(ChatColor.translateAlternateColorCodes('&', thinking)));
+                    }
+                    if (debugMode) getLogger().info("[AI DEBUG] Load " + load + ": max tokens " + maxTokens);
+                }
+                
+                int promptChars = requestSystemPrompt.length() + userMessage.length();
+                for (ChatTurn message : history) {
+                    String text = message.getContent();
+                    promptChars += text != null ? text.length() : 0;
+                }
+                
+                // Try the NPC's endpoints in order; hedge a slow one when enabled (never under load)
+                long hedgeDelayMs = load == LoadShedder.Level.NORMAL ? getHedgeDelayMs(profile) : 0;
+                String npcModel = model;
+                int requestMaxTokens = maxTokens;
+                int requestPromptChars = promptChars;
+                List<? extends ChatTurn> requestHistory = history;
+                ProviderRouter.Answer<AIProviderFactory.Route, ChatResult> answer = providerRouter.execute(routes, hedgeDelayMs,
+                        route -> callProvider(route.provider, route.model != null ? route.model : npcModel, npcName, player,
+                                requestSystemPrompt, userMessage, requestHistory, temperature, requestMaxTokens, load, requestPromptChars));
+                ChatResult result = answer.value;
+                providerName = answer.route.provider.getId();
+                if (debugMode && answer.fromBackup) {
+                    getLogger().info("[AI DEBUG] Answered by fallback provider " + providerName);
+                }
+                
+                // Headers arrive once the model starts answering, so this is our best TTFT for non-streaming calls
+                long timeToFirstTokenMs = result.getTimeToFirstByteMs();
+                
+                // The provider returns null when the model produced nothing but thinking
+                String content = result.getContent() != null ? result.getContent() : "";
                 
                 // Strip thinking tags from "thinking" models (e.g., Qwen3)
                 // Case 1: Complete <think>...</think> blocks
@@ -1472,6 +1696,9 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
                     conversationManager.addMessage(player, npcName, "user", userMessage);
                     conversationManager.addMessage(player, npcName, "assistant", content);
                 }
+                if (episodicMemory != null && player != null) {
+                    episodicMemory.record(player.getUniqueId(), player.getName(), npcName, userMessage, content);
+                }
                 
                 // Store in cache
                 if (responseCache != null) {
@@ -1479,7 +1706,10 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
                 }
                 
                 // Record metrics
-                recordMetrics(npcName, player, System.currentTimeMillis() - startTime, false);
+                if (metricsManager != null && player != null) {
+                    metricsManager.recordRequest(npcName, providerName, player.getUniqueId(), player.getName(),
+                            System.currentTimeMillis() - startTime, timeToFirstTokenMs, false);
+                }
                 
                 return content;
 
@@ -1490,9 +1720,31 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
                     getLogger().severe("[AI DEBUG] Exception message: " + e.getMessage());
                     e.printStackTrace();
                 }
+                String errorType = MetricsManager.classifyError(e);
+                if (metricsManager != null) {
+                    metricsManager.recordError(npcName, providerName, player != null ? player.getUniqueId() : null, errorType);
+                }
+                
+                // Under load, answer with something rather than an error (not for the player's own rate limit)
+                if (loadShedder != null && !"rate_limited".equals(errorType)) {
+                    LoadShedder.Level load = loadShedder.getLevel();
+                    // A stale answer beats an error while the provider is known to be down
+                    boolean serveStale = loadShedder.shouldServeStale(load) || "circuit_open".equals(errorType);
+                    String fallback = responseCache != null && serveStale
+                            ? responseCache.getStale(npcName, userMessage) : null;
+                    if (fallback == null) {
+                        fallback = loadShedder.getBusyReply(load);
+                    }
+                    if (fallback != null) {
+                        if (debugMode) getLogger().info("[AI DEBUG] Load " + load + ": degraded reply after " + errorType);
+                        return fallback;
+                    }
+                }
                 throw new RuntimeException("AI call failed", e);
             }
         });
+        request.whenComplete((reply, error) -> inFlightAiCalls.decrementAndGet());
+        return request;
     }
     
     /**
@@ -1503,6 +1755,156 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
             metricsManager.recordRequest(npcName, player.getUniqueId(), player.getName(), responseTimeMs, cacheHit);
         }
     }
+    
+    /**
+     * The NPC's system prompt plus what it remembers of this player: the rolling summary
+     * and relevant past exchanges
+     */
+    private static String withMemory(String systemPrompt, Player player, String summary, List<String> remembered) {
+        if (summary == null && remembered.isEmpty()) {
+            return systemPrompt;
+        }
+        StringBuilder prompt = new StringBuilder(systemPrompt);
+        if (summary != null) {
+            prompt.append("\n\nWhat you remember from earlier conversations with ").append(player.getName())
+                    .append(": ").append(summary);
+        }
+        if (!remembered.isEmpty()) {
+            prompt.append("\n\nPast exchanges with ").append(player.getName()).append(" that may be relevant:");
+            for (String exchange : remembered) {
+                prompt.append("\n- ").append(exchange.replace("\n", " / "));
+            }
+        }
+        return prompt.toString();
+    }
+    
+    /**
+     * Summarization call for ConversationSummarizer: the NPC's own endpoint unless
+     * conversation.summary.provider/model name a cheaper one
+     */
+    private ChatResult summarizeConversation(String npcName, String systemPrompt, String transcript, int maxTokens) throws Exception {
+        String providerName = config.getString("conversation.summary.provider", "");
+        String model = config.getString("conversation.summary.model", "");
+        if (ServerAI.CONVERSATION_KEY.equals(npcName)) {
+            // ServerAI memory has no NPC profile: its own endpoint unless a summary provider and model are set
+            if (providerName.isEmpty() || model.isEmpty()) {
+                String summary = serverAI != null ? serverAI.summarize(systemPrompt, transcript, maxTokens) : null;
+                if (summary == null) {
+                    throw new RuntimeException("ServerAI did not answer");
+                }
+                return new ChatResult(summary, null, -1, -1, -1);
+            }
+            transcript = transcript.replace(ServerAI.CONVERSATION_KEY, serverAI != null ? serverAI.getName() : "ServerAI");
+        }
+        NpcProfile profile = ServerAI.CONVERSATION_KEY.equals(npcName) ? null : npcProfiles.get(npcName);
+        AIProvider provider = providerName.isEmpty() ? profile.getProvider() : providerFactory.getProvider(providerName);
+        if (provider == null) {
+            throw new RuntimeException("No AI provider for summaries of NPC '" + npcName + "'");
+        }
+        if (model.isEmpty()) {
+            model = profile.getModel();
+        }
+        return callProvider(provider, model, npcName, null, systemPrompt, transcript, List.of(), 0.3, maxTokens,
+                LoadShedder.Level.NORMAL, systemPrompt.length() + transcript.length());
+    }
+    
+    /**
+     * One call to one provider: admission, circuit check, the request itself and its bookkeeping
+     */
+    private ChatResult callProvider(AIProvider provider, String model, String npcName, Player player,
+                                    String systemPrompt, String userMessage, List<? extends ChatTurn> history,
+                                    double temperature, int maxTokens, LoadShedder.Level load, int promptChars) throws Exception {
+        String providerName = provider.getId();
+        if (loadShedder != null && load != LoadShedder.Level.NORMAL) {
+            model = loadShedder.adjustModel(load, providerName, model);
+        }
+        if (debugMode) getLogger().info("[AI DEBUG] Calling provider " + providerName + " with model: " + model);
+        
+        // Provider-level admission (concurrency and quota shared by all players)
+        ProviderAdmissionController.Permit permit = ProviderAdmissionController.Permit.NONE;
+        if (providerAdmission != null) {
+            long stageStart = System.nanoTime();
+            try {
+                permit = providerAdmission.acquire(providerName, player != null ? player.getUniqueId() : null,
+                        ProviderAdmissionController.estimateTokens(promptChars, maxTokens));
+            } catch (RuntimeException e) {
+                if (loadShedder != null) loadShedder.recordOutcome(false);
+                throw e;
+            }
+            recordStage(MetricsManager.STAGE_ADMISSION, stageStart);
+            if (loadShedder != null) {
+                loadShedder.recordQueueWait((System.nanoTime() - stageStart) / 1_000_000L);
+            }
+        }
+        
+        // Fail fast while the provider's circuit is open
+        if (healthMonitor != null && !healthMonitor.allowRequest(provider)) {
+            permit.release(0);
+            if (loadShedder != null) loadShedder.recordOutcome(false);
+            throw new RuntimeException("Circuit open for provider '" + providerName + "', retrying in "
+                    + healthMonitor.getRetryInSeconds(provider) + "s");
+        }
+        
+        long providerStart = System.nanoTime();
+        ChatResult result;
+        try {
+            result = provider.chatCompletion(
+                model,
+                systemPrompt,
+                userMessage,
+                history,
+                temperature,
+                maxTokens
+            );
+        } catch (Exception e) {
+            permit.release(-1);
+            if (healthMonitor != null) healthMonitor.recordFailure(provider, e);
+            if (loadShedder != null) loadShedder.recordOutcome(false);
+            if (debugMode) getLogger().warning("[AI DEBUG] Provider " + providerName + " failed: " + e.getMessage());
+            throw e;
+        }
+        permit.release(result.getTotalTokens());
+        if (healthMonitor != null) healthMonitor.recordSuccess(provider);
+        if (loadShedder != null) loadShedder.recordOutcome(true);
+        recordStage(MetricsManager.STAGE_PROVIDER, providerStart);
+        
+        // A losing hedge still spent tokens, so usage is recorded per call
+        if (metricsManager != null && result.hasUsage()) {
+            metricsManager.recordTokens(npcName, providerName, result.getModel(),
+                    player != null ? player.getUniqueId() : null, player != null ? player.getName() : null,
+                    result.getPromptTokens(), result.getCompletionTokens());
+        }
+        if (debugMode && result.hasUsage()) {
+            getLogger().info("[AI DEBUG] Tokens: " + result.getPromptTokens() + " prompt + " + result.getCompletionTokens() + " completion");
+        }
+        return result;
+    }
+    
+    /**
+     * How long to wait for an NPC's first endpoint before also asking the next one (0 = don't hedge).
+     * Uses the provider's recent p95 so only the slowest requests get a second call.
+     */
+    private long getHedgeDelayMs(NpcProfile profile) {
+        boolean hedge = profile.getHedge() != null ? profile.getHedge() : config.getBoolean("ai.hedging.enabled", false);
+        if (!hedge) return 0;
+        long delayMs = metricsManager != null
+                ? metricsManager.getProviderLatencyPercentileMs(profile.getProvider().getId(),
+                        config.getDouble("ai.hedging.percentile", 95), config.getLong("ai.hedging.min-samples", 20))
+                : -1;
+        if (delayMs < 0) {
+            delayMs = config.getLong("ai.hedging.default-delay-ms", 3000);
+        }
+        return Math.max(config.getLong("ai.hedging.min-delay-ms", 250), delayMs);
+    }
+    
+    /**
+     * Record the duration of a request pipeline stage
+     */
+    private void recordStage(String stage, long startNanos) {
+        if (metricsManager != null) {
+            metricsManager.recordStage(stage, System.nanoTime() - startNanos);
+        }
+    }
 
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
@@ -1668,15 +2070,33 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
      * Initialize all new feature managers
      */
     private void initializeManagers() {
+        // Embedded database, only opened when a store is set to sqlite
+        if ("sqlite".equalsIgnoreCase(config.getString("conversation.store.type", "json"))
+                || "sqlite".equalsIgnoreCase(config.getString("metrics.store.type", "file"))) {
+            File databaseFile = new File(getDataFolder(), config.getString("database.file", "chatr.db"));
+            try {
+                database = ChatrDatabase.open(databaseFile, config.getInt("database.batch-size", 500), getLogger());
+                getLogger().info("[Database] Opened " + databaseFile.getName());
+            } catch (SQLException e) {
+                getLogger().severe("[Database] Could not open " + databaseFile.getName() + ", falling back to files: " + e.getMessage());
+            }
+        }
+        
+        // Background writer for NPC and ServerAI chat logs
+        chatLogWriter = new ChatLogWriter(config.getInt("chat-logging.queue-size", 10000), getLogger());
+        configureChatLog();
+        
         // Conversation manager for per-player-per-NPC memory
         if (config.getBoolean("conversation.enabled", true)) {
-            conversationManager = new ConversationManager(this);
+            conversationManager = new ConversationManager(this, database);
+            getServer().getPluginManager().registerEvents(conversationManager, this);
             if (debugMode) getLogger().info("[DEBUG] ConversationManager initialized");
         }
         
         // Rate limiter
         if (config.getBoolean("rate-limit.enabled", true)) {
             rateLimiter = new RateLimiter(this);
+            getServer().getPluginManager().registerEvents(rateLimiter, this);
             if (debugMode) getLogger().info("[DEBUG] RateLimiter initialized");
         }
         
@@ -1684,6 +2104,30 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
         providerFactory = new AIProviderFactory(this);
         if (debugMode) getLogger().info("[DEBUG] AIProviderFactory initialized");
         
+        // Resolved NPC profiles (provider, model, prompt) so requests don't touch disk
+        npcProfiles = new NpcProfileRegistry(this, providerFactory, npcAiConfigs::get);
+        
+        // Live reload of edited NPC configs
+        updateNpcConfigWatcher();
+        
+        // Provider admission control (per-provider concurrency and quotas)
+        providerAdmission = new ProviderAdmissionController(this);
+        if (debugMode) getLogger().info("[DEBUG] ProviderAdmissionController initialized");
+        
+        // Threads for AI requests, shared fairly between players
+        aiExecutor = new AiRequestExecutor(config.getInt("ai.request-threads", 16));
+        
+        // Load shedding (graceful degradation when providers are saturated)
+        loadShedder = new LoadShedder(this, inFlightAiCalls::get);
+        if (debugMode) getLogger().info("[DEBUG] LoadShedder initialized");
+        
+        // Circuit breakers and health probes per provider
+        healthMonitor = new ProviderHealthMonitor(this);
+        if (debugMode) getLogger().info("[DEBUG] ProviderHealthMonitor initialized");
+        
+        // Failover and hedging across an NPC's endpoints
+        providerRouter = new ProviderRouter();
+        
         // Response cache
         if (config.getBoolean("cache.enabled", true)) {
             responseCache = new ResponseCache(this);
@@ -1692,10 +2136,22 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
         
         // Metrics manager
         if (config.getBoolean("metrics.enabled", true)) {
-            metricsManager = new MetricsManager(this);
+            metricsManager = new MetricsManager(this, database);
             if (debugMode) getLogger().info("[DEBUG] MetricsManager initialized");
         }
         
+        // Long-term memory of past exchanges, retrieved by similarity
+        if (config.getBoolean("conversation.episodic-memory.enabled", false)) {
+            episodicMemory = new EpisodicMemory(this);
+            if (debugMode) getLogger().info("[DEBUG] EpisodicMemory initialized");
+        }
+        
+        // Background summaries of older conversation turns
+        if (conversationManager != null) {
+            conversationSummarizer = new ConversationSummarizer(this, conversationManager, loadShedder,
+                    inFlightAiCalls::get, this::summarizeConversation);
+        }
+        
         // Click-to-chat handler
         if (config.getBoolean("click-to-chat.enabled", true)) {
             clickToChatHandler = new ClickToChatHandler(this, npcs);
@@ -1731,22 +2187,103 @@ public final class Chatr extends JavaPlugin implements CommandExecutor, Listener
             getServer().getPluginManager().registerEvents(clickToChatHandler, this);
             if (debugMode) getLogger().info("[DEBUG] ClickToChatHandler initialized and registered");
         }
+        
+        // Drops per-player state some time after a player leaves
+        playerSessions = new PlayerSessionService(this);
+        getServer().getPluginManager().registerEvents(playerSessions, this);
+        playerSessions.register("last-npc", uuid -> {
+            lastNpcChat.remove(uuid);
+            return true;
+        });
+        if (rateLimiter != null) {
+            playerSessions.register("rate-limit", rateLimiter::evictPlayer);
+        }
+        if (metricsManager != null) {
+            playerSessions.register("metrics", metricsManager::evictPlayer);
+        }
+        if (clickToChatHandler != null) {
+            playerSessions.register("click-to-chat", clickToChatHandler::evictPlayer);
+        }
+        if (episodicMemory != null) {
+            playerSessions.register("episodic-memory", episodicMemory::evictPlayer);
+        }
+        
+        // Gauges and optional OpenMetrics endpoint
+        if (metricsManager != null) {
+            metricsManager.registerGauge("chatr_requests_in_flight", "AI requests currently being processed", inFlightAiCalls::get);
+            metricsManager.registerGauge("chatr_provider_queue_depth", "Requests waiting for provider admission",
+                    "provider", providerAdmission::getQueueDepths);
+            metricsManager.registerGauge("chatr_provider_in_flight", "Requests admitted and running per provider",
+                    "provider", providerAdmission::getInFlight);
+            metricsManager.registerGauge("chatr_load_level", "Load shedding level (0 normal, 1 elevated, 2 critical)",
+                    () -> loadShedder.getLevel().ordinal());
+            metricsManager.registerGauge("chatr_circuit_state", "Provider circuit state (0 closed, 1 half-open, 2 open)",
+                    "provider", healthMonitor::getStateLevels);
+            if (responseCache != null) {
+                metricsManager.registerGauge("chatr_cache_entries", "Responses currently cached", responseCache::size);
+            }
+            if (clickToChatHandler != null) {
+                metricsManager.registerGauge("chatr_click_to_chat_pending", "Players in click-to-chat mode waiting to type", clickToChatHandler::getPendingChatCount);
+            }
+            metricsExporter = new MetricsExporter(this, metricsManager);
+            metricsExporter.start();
+        }
     }
     
     /**
      * Shutdown all managers and save data
      */
     private void shutdownManagers() {
+        if (metricsExporter != null) {
+            metricsExporter.stop();
+        }
+        
+        if (healthMonitor != null) {
+            healthMonitor.stop();
+        }
+        if (npcConfigWatcher != null) {
+            npcConfigWatcher.stop();
+        }
+        if (providerRouter != null) {
+            providerRouter.shutdown();
+        }
+        if (aiExecutor != null) {
+            aiExecutor.shutdown();
+        }
+        
+        if (playerSessions != null) {
+            playerSessions.stop();
+        }
+        if (conversationSummarizer != null) {
+            conversationSummarizer.stop();
+        }
+        if (episodicMemory != null) {
+            episodicMemory.shutdown();
+        }
         if (conversationManager != null) {
-            conversationManager.saveAllConversations();
+            conversationManager.shutdown();
             if (debugMode) getLogger().info("[DEBUG] ConversationManager saved and shutdown");
         }
         
+        if (rateLimiter != null) {
+            rateLimiter.shutdown();
+        }
+        
         if (metricsManager != null) {
-            metricsManager.saveMetrics();
+            metricsManager.shutdown();
             if (debugMode) getLogger().info("[DEBUG] MetricsManager saved and shutdown");
         }
         
+        if (chatLogWriter != null) {
+            chatLogWriter.close();
+        }
+        
+        // After the managers, which queue their last writes on shutdown
+        if (database != null) {
+            database.close();
+            database = null;
+        }
+        
         if (responseCache != null && debugMode) {
             Map<String, Object> cacheStats = responseCache.getStats();
             getLogger().info("[DEBUG] ResponseCache final stats: " + cacheStats);
@@ -0,0 +1,286 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Embedded SQLite database (plugins/Chatr/chatr.db) shared by the conversation and metrics stores.
+ * - WAL journal, so reads never wait for the writer
+ * - Writes are queued and run by one background thread, up to batch-size writes per transaction
+ * - Reads use a second connection
+ * The SQLite JDBC driver ships with Paper/Spigot, so no extra jar is needed.
+ */
+public class ChatrDatabase {
+
+    /**
+     * A write run on the writer thread, inside a transaction
+     */
+    public interface Write {
+        void run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * A read run on the read connection
+     */
+    public interface Read<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS chatr_meta (key TEXT PRIMARY KEY, value TEXT NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS conversation_messages ("
+                    + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "player_uuid TEXT NOT NULL, player_name TEXT NOT NULL, "
+                    + "npc TEXT NOT NULL, npc_name TEXT NOT NULL, "
+                    + "role TEXT NOT NULL, content TEXT NOT NULL, created_at INTEGER NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS conversation_messages_player ON conversation_messages (player_uuid, npc, id)",
+            "CREATE TABLE IF NOT EXISTS conversation_summaries ("
+                    + "player_uuid TEXT NOT NULL, npc TEXT NOT NULL, summary TEXT NOT NULL, "
+                    + "summarized_until INTEGER NOT NULL, PRIMARY KEY (player_uuid, npc))",
+            "CREATE TABLE IF NOT EXISTS metrics_minutes ("
+                    + "minute INTEGER NOT NULL, requests INTEGER NOT NULL, cache_hits INTEGER NOT NULL, "
+                    + "errors INTEGER NOT NULL, responses INTEGER NOT NULL, response_ms_sum INTEGER NOT NULL, "
+                    + "response_ms_max INTEGER NOT NULL, prompt_tokens INTEGER NOT NULL, "
+                    + "completion_tokens INTEGER NOT NULL, cost_micro_usd INTEGER NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS metrics_minutes_minute ON metrics_minutes (minute)",
+            "CREATE TABLE IF NOT EXISTS metrics_daily (date TEXT PRIMARY KEY, saved_at TEXT NOT NULL, data TEXT NOT NULL)"
+    };
+
+    private final File file;
+    private final Connection writeConnection;
+    private final Connection readConnection;
+    private final int batchSize;
+    private final Logger logger;
+
+    private final BlockingQueue<Write> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+    private final AtomicLong failedWrites = new AtomicLong();
+
+    private ChatrDatabase(File file, Connection writeConnection, Connection readConnection, int batchSize, Logger logger) {
+        this.file = file;
+        this.writeConnection = writeConnection;
+        this.readConnection = readConnection;
+        this.batchSize = Math.max(1, batchSize);
+        this.logger = logger;
+        this.writer = new Thread(this::runWriter, "Chatr-DB-Writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Open (or create) the database file and its tables
+     * @param batchSize Most queued writes committed in one transaction
+     */
+    public static ChatrDatabase open(File file, int batchSize, Logger logger) throws SQLException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        String url = "jdbc:sqlite:" + file.getAbsolutePath();
+        Connection write = DriverManager.getConnection(url);
+        Connection read = null;
+        try {
+            try (Statement statement = write.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                // With WAL this only risks the last transactions on power loss, never corruption
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute("PRAGMA busy_timeout=5000");
+                for (String sql : SCHEMA) {
+                    statement.execute(sql);
+                }
+            }
+            read = DriverManager.getConnection(url);
+            try (Statement statement = read.createStatement()) {
+                statement.execute("PRAGMA busy_timeout=5000");
+            }
+            write.setAutoCommit(false);
+        } catch (SQLException e) {
+            write.close();
+            if (read != null) read.close();
+            throw e;
+        }
+        return new ChatrDatabase(file, write, read, batchSize, logger);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Queue a write; it runs on the writer thread in the next transaction
+     */
+    public void submit(Write write) {
+        if (!running) {
+            logger.warning("[Database] Write dropped, database is closed");
+            return;
+        }
+        queue.add(write);
+    }
+
+    /**
+     * Wait until every write queued so far is committed (or failed)
+     * @return false if that took longer than the timeout
+     */
+    public boolean flush(long timeoutMs) {
+        if (!running) return true;
+        Barrier barrier = new Barrier();
+        queue.add(barrier);
+        try {
+            return barrier.done.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Run a query on the read connection. Writes still queued are not visible; flush() first if needed.
+     */
+    public <T> T read(Read<T> read) throws SQLException {
+        synchronized (readConnection) {
+            return read.run(readConnection);
+        }
+    }
+
+    /**
+     * Read a value from chatr_meta (null if unset)
+     */
+    public String getMeta(String key) throws SQLException {
+        return read(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("SELECT value FROM chatr_meta WHERE key = ?")) {
+                statement.setString(1, key);
+                try (ResultSet result = statement.executeQuery()) {
+                    return result.next() ? result.getString(1) : null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Queue a chatr_meta update
+     */
+    public void setMeta(String key, String value) {
+        submit(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT OR REPLACE INTO chatr_meta (key, value) VALUES (?, ?)")) {
+                statement.setString(1, key);
+                statement.setString(2, value);
+                statement.executeUpdate();
+            }
+        });
+    }
+
+    public long getFailedWrites() {
+        return failedWrites.get();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void runWriter() {
+        List<Write> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Write first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                batch.add(first);
+            } catch (InterruptedException e) {
+                // close() interrupts to wake us; drain what's left
+            }
+            queue.drainTo(batch, batchSize - batch.size());
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Write> batch) {
+        List<Barrier> barriers = new ArrayList<>();
+        List<Write> writes = new ArrayList<>(batch.size());
+        for (Write write : batch) {
+            if (write instanceof Barrier barrier) {
+                barriers.add(barrier);
+            } else {
+                writes.add(write);
+            }
+        }
+        try {
+            for (Write write : writes) {
+                write.run(writeConnection);
+            }
+            writeConnection.commit();
+        } catch (SQLException e) {
+            try {
+                writeConnection.rollback();
+            } catch (SQLException rollback) {
+                // Reporting the cause below
+            }
+            if (writes.size() > 1) {
+                // Retry one at a time, so one bad write doesn't lose the whole batch
+                for (Write write : writes) {
+                    commit(List.of(write));
+                }
+            } else {
+                failedWrites.addAndGet(writes.size());
+                logger.warning("[Database] Write failed: " + e.getMessage());
+            }
+        } finally {
+            for (Barrier barrier : barriers) {
+                barrier.done.countDown();
+            }
+        }
+    }
+
+    /**
+     * Finish queued writes and close both connections
+     */
+    public void close() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            logger.warning("[Database] " + queue.size() + " queued changes were not written");
+        }
+        try {
+            writeConnection.close();
+        } catch (SQLException e) {
+            // Closing anyway
+        }
+        synchronized (readConnection) {
+            try {
+                readConnection.close();
+            } catch (SQLException e) {
+                // Closing anyway
+            }
+        }
+    }
+
+    /**
+     * Marks a point in the queue; released once everything before it is committed
+     */
+    private static final class Barrier implements Write {
+        final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void run(Connection connection) {
+        }
+    }
+}
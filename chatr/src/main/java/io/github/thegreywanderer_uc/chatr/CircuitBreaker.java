@@ -0,0 +1,207 @@
+package io.github.thegreywanderer_uc.chatr;
+
+/**
+ * Circuit breaker for one AI provider.
+ * - CLOSED: calls go through; outcomes are counted in a sliding time window
+ * - OPEN: once the window has enough calls and the failure rate crosses the threshold,
+ *   calls fail fast for open-seconds instead of waiting for a timeout
+ * - HALF_OPEN: after that (or after a successful health probe) a few trial calls are let
+ *   through; a success closes the circuit, a failure opens it again
+ * allowRequest() on a closed circuit is a single volatile read.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final int slices;
+    private final long sliceMs;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openMs;
+    private final int halfOpenTrials;
+
+    // Sliding window of outcomes, guarded by this
+    private final long[] sliceStart;
+    private final int[] sliceCalls;
+    private final int[] sliceFailures;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openUntil;
+    private int trialsInFlight;
+    private long trialsStartedAt;
+    private long timesOpened;
+    private String lastFailure;
+
+    /**
+     * @param windowMs Window over which the failure rate is measured
+     * @param minimumCalls Calls needed in the window before the circuit can open
+     * @param failureRateThreshold Failure rate (0..1) that opens the circuit
+     * @param openMs How long the circuit stays open before trial calls
+     * @param halfOpenTrials Trial calls allowed at once while half-open
+     */
+    public CircuitBreaker(long windowMs, int minimumCalls, double failureRateThreshold, long openMs, int halfOpenTrials) {
+        this.slices = 10;
+        this.sliceMs = Math.max(1, windowMs / slices);
+        this.minimumCalls = Math.max(1, minimumCalls);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMs = openMs;
+        this.halfOpenTrials = Math.max(1, halfOpenTrials);
+        this.sliceStart = new long[slices];
+        this.sliceCalls = new int[slices];
+        this.sliceFailures = new int[slices];
+    }
+
+    /**
+     * Whether a call may go to the provider now. Every allowed call must be followed by
+     * recordSuccess() or recordFailure().
+     */
+    public boolean allowRequest() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        return allowSlow(System.currentTimeMillis());
+    }
+
+    synchronized boolean allowSlow(long now) {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (now < openUntil) {
+                return false;
+            }
+            toHalfOpen(now);
+        }
+        // Trials that never reported back (e.g. a thread died) don't block forever
+        if (trialsInFlight >= halfOpenTrials && now - trialsStartedAt > openMs) {
+            trialsInFlight = 0;
+        }
+        if (trialsInFlight < halfOpenTrials) {
+            if (trialsInFlight == 0) {
+                trialsStartedAt = now;
+            }
+            trialsInFlight++;
+            return true;
+        }
+        return false;
+    }
+
+    public void recordSuccess() {
+        record(System.currentTimeMillis(), true, null);
+    }
+
+    public void recordFailure(String reason) {
+        record(System.currentTimeMillis(), false, reason);
+    }
+
+    synchronized void record(long now, boolean success, String reason) {
+        if (!success) {
+            lastFailure = reason;
+        }
+        switch (state) {
+            case HALF_OPEN:
+                trialsInFlight = Math.max(0, trialsInFlight - 1);
+                if (success) {
+                    close();
+                } else {
+                    open(now);
+                }
+                return;
+            case OPEN:
+                // A call admitted before the circuit opened; the verdict is already in
+                return;
+            default:
+                break;
+        }
+
+        int slice = slice(now);
+        sliceCalls[slice]++;
+        if (!success) {
+            sliceFailures[slice]++;
+            int calls = 0;
+            int failures = 0;
+            for (int i = 0; i < slices; i++) {
+                if (now - sliceStart[i] < slices * sliceMs) {
+                    calls += sliceCalls[i];
+                    failures += sliceFailures[i];
+                }
+            }
+            if (calls >= minimumCalls && failures >= calls * failureRateThreshold) {
+                open(now);
+            }
+        }
+    }
+
+    /**
+     * Result of a background health probe. A passing probe lets an open circuit try
+     * real calls early; a failing probe counts as a failed call.
+     */
+    public synchronized void recordProbe(boolean healthy, String reason) {
+        long now = System.currentTimeMillis();
+        if (healthy) {
+            if (state == State.OPEN) {
+                toHalfOpen(now);
+            }
+        } else if (state == State.CLOSED) {
+            record(now, false, reason);
+        } else {
+            lastFailure = reason;
+            if (state == State.OPEN) {
+                // Still down: push the next trial back
+                openUntil = Math.max(openUntil, now + openMs);
+            }
+        }
+    }
+
+    private int slice(long now) {
+        int slice = (int) ((now / sliceMs) % slices);
+        long start = now - now % sliceMs;
+        if (sliceStart[slice] != start) {
+            sliceStart[slice] = start;
+            sliceCalls[slice] = 0;
+            sliceFailures[slice] = 0;
+        }
+        return slice;
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openUntil = now + openMs;
+        trialsInFlight = 0;
+        timesOpened++;
+    }
+
+    private void toHalfOpen(long now) {
+        state = State.HALF_OPEN;
+        trialsInFlight = 0;
+        trialsStartedAt = now;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        trialsInFlight = 0;
+        for (int i = 0; i < slices; i++) {
+            sliceCalls[i] = 0;
+            sliceFailures[i] = 0;
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Milliseconds until an open circuit allows a trial call (0 if not open)
+     */
+    public long getRetryInMs() {
+        return state == State.OPEN ? Math.max(0, openUntil - System.currentTimeMillis()) : 0;
+    }
+
+    public synchronized long getTimesOpened() {
+        return timesOpened;
+    }
+
+    public synchronized String getLastFailure() {
+        return lastFailure;
+    }
+}
@@ -383,6 +383,14 @@ public class ClickToChatHandler implements Listener {
         }
     }
     
+    /**
+     * Drop a departed player's cooldown (see PlayerSessionService)
+     */
+    public boolean evictPlayer(UUID uuid) {
+        lastChatStartTime.remove(uuid);
+        return true;
+    }
+    
     /**
      * Check if a player is in chat mode
      */
@@ -398,6 +406,13 @@ public class ClickToChatHandler implements Listener {
         return pending != null ? pending.npcName : null;
     }
     
+    /**
+     * Get the number of players currently in chat mode
+     */
+    public int getPendingChatCount() {
+        return pendingChats.size();
+    }
+    
     /**
      * Cancel chat mode for a player
      */
@@ -2,46 +2,144 @@ package io.github.thegreywanderer_uc.chatr;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import io.github.thegreywanderer_uc.chatr.ai.ChatTurn;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.io.*;
-import java.lang.reflect.Type;
-import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 /**
  * Manages conversation memory for NPC interactions.
  * - Per-player, per-NPC conversation history
  * - Includes player friendly names for easy identification
- * - Persists to flat files for long-term memory
+ * - Persists to a ConversationStore for long-term memory (JSON files, a segmented log or SQLite)
+ * - Write-behind: changed conversations are marked dirty and a background task writes
+ *   only those, so a crash loses at most one flush interval
+ * - Lazy: a player's conversations are loaded in the background when they join (or first
+ *   talk to an NPC) and written out and dropped from memory on quit or after being idle
+ * - Summaries: ConversationSummarizer folds older turns into a rolling summary, which is
+ *   sent in place of those turns (see getPromptHistory)
  */
-public class ConversationManager {
+public class ConversationManager implements Listener {
+    
+    // How long a chat request waits for a player's conversations to load
+    private static final long LOAD_TIMEOUT_SECONDS = 10;
     
     private final JavaPlugin plugin;
     private final Gson gson;
     private final File conversationsFolder;
+    private ConversationStore store;
     
     // Key: "playerUUID:npcName" -> conversation history
     private final Map<String, ConversationHistory> conversations = new ConcurrentHashMap<>();
     
+    // Players whose conversations are in memory or being loaded
+    private final Map<UUID, PlayerConversations> players = new ConcurrentHashMap<>();
+    
+    // Keys changed since they were last written
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    // Serializes store loads, writes and deletes, so a flush can't resurrect a cleared conversation
+    private final Object ioLock = new Object();
+    // Clears whose store delete is still queued; matching keys are neither loaded nor written
+    private final Set<Predicate<String>> clearing = ConcurrentHashMap.newKeySet();
+    private BukkitTask flushTask;
+    private BukkitTask compactTask;
+    
     // Configuration
     private int maxMessagesPerConversation;
     private int maxConversationAgeDays;
     private boolean persistenceEnabled;
+    private long unloadIdleMs;
     
-    public ConversationManager(JavaPlugin plugin) {
+    /**
+     * @param database Shared database for conversation.store.type: sqlite (null if not open)
+     */
+    public ConversationManager(JavaPlugin plugin, ChatrDatabase database) {
         this.plugin = plugin;
+        // Compact JSON: these files are written often and rarely read by hand
         this.gson = new GsonBuilder()
-                .setPrettyPrinting()
-                .create();
+            .registerTypeAdapter(MessageRing.class, new MessageRing.JsonAdapter())
+            .create();
         this.conversationsFolder = new File(plugin.getDataFolder(), "conversations");
         
         reload();
-        loadAllConversations();
+        if (persistenceEnabled) {
+            this.store = createStore(database);
+        }
+        
+        // Players already online (plugin reload); everyone else loads on join
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            ensureLoaded(player.getUniqueId());
+        }
+    }
+    
+    /**
+     * Open the configured store (read once at startup)
+     */
+    private ConversationStore createStore(ChatrDatabase database) {
+        var config = plugin.getConfig();
+        String type = config.getString("conversation.store.type", "json");
+        if ("sqlite".equalsIgnoreCase(type)) {
+            if (database != null) {
+                JdbcConversationStore jdbcStore = new JdbcConversationStore(database, plugin.getLogger());
+                importJsonFiles(jdbcStore);
+                return jdbcStore;
+            }
+            plugin.getLogger().warning("[ConversationManager] Database is not available, using JSON files");
+        }
+        if ("log".equalsIgnoreCase(type)) {
+            File logFolder = new File(plugin.getDataFolder(), "conversation-log");
+            try {
+                LogConversationStore logStore = new LogConversationStore(logFolder.toPath(),
+                        config.getLong("conversation.store.log.segment-size-mb", 16) * 1024 * 1024,
+                        config.getBoolean("conversation.store.log.fsync", false),
+                        plugin.getLogger());
+                plugin.getLogger().info("[ConversationManager] Using conversation log in " + logFolder.getName()
+                        + " (" + logStore.playerCount() + " players)");
+                return logStore;
+            } catch (IOException e) {
+                plugin.getLogger().severe("[ConversationManager] Could not open conversation log, using JSON files: " + e.getMessage());
+            }
+        }
+        return new JsonConversationStore(conversationsFolder, gson, plugin.getLogger());
+    }
+    
+    /**
+     * Copy conversations/ into the database the first time it is used, then rename the
+     * folder so it is clear the files are no longer read
+     */
+    private void importJsonFiles(JdbcConversationStore jdbcStore) {
+        if (!conversationsFolder.isDirectory()) return;
+        long cutoffTime = System.currentTimeMillis() - (maxConversationAgeDays * 24L * 60L * 60L * 1000L);
+        try {
+            int imported = jdbcStore.importOnce(new JsonConversationStore(conversationsFolder, gson, plugin.getLogger()),
+                    cutoffTime, maxMessagesPerConversation);
+            if (imported < 0) return;
+            File migrated = new File(plugin.getDataFolder(), "conversations-migrated");
+            if (!conversationsFolder.renameTo(migrated)) {
+                plugin.getLogger().warning("[ConversationManager] Could not rename conversations/ after copying it into the database");
+            }
+            plugin.getLogger().info("[ConversationManager] Copied " + imported + " conversations from JSON files into the database"
+                    + " (originals kept in " + migrated.getName() + "/)");
+        } catch (IOException e) {
+            plugin.getLogger().warning("[ConversationManager] Could not copy JSON conversations into the database: " + e.getMessage());
+        }
     }
     
     /**
@@ -52,6 +150,18 @@ public class ConversationManager {
         this.maxMessagesPerConversation = config.getInt("conversation.max-messages", 20);
         this.maxConversationAgeDays = config.getInt("conversation.max-age-days", 30);
         this.persistenceEnabled = config.getBoolean("conversation.persistence-enabled", true);
+        this.unloadIdleMs = config.getLong("conversation.unload-idle-minutes", 30) * 60_000L;
+        
+        cancelTasks();
+        if (persistenceEnabled) {
+            long intervalTicks = Math.max(1, config.getInt("conversation.flush-interval-seconds", 30)) * 20L;
+            flushTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+                flushDirty();
+                unloadIdle();
+            }, intervalTicks, intervalTicks);
+            long compactTicks = Math.max(1, config.getInt("conversation.compact-interval-minutes", 60)) * 60L * 20L;
+            compactTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::compact, compactTicks, compactTicks);
+        }
     }
     
     /**
@@ -61,37 +171,192 @@ public class ConversationManager {
         return playerUuid.toString() + ":" + npcName.toLowerCase();
     }
     
+    /**
+     * Start loading a player's conversations unless they are loaded or loading
+     */
+    private PlayerConversations ensureLoaded(UUID playerUuid) {
+        PlayerConversations state = players.get(playerUuid);
+        if (state == null) {
+            PlayerConversations created = new PlayerConversations();
+            state = players.putIfAbsent(playerUuid, created);
+            if (state == null) {
+                state = created;
+                if (store == null) {
+                    created.loaded.complete(null);
+                } else {
+                    Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> loadPlayer(playerUuid, created));
+                }
+            }
+        }
+        state.lastAccess = System.currentTimeMillis();
+        return state;
+    }
+    
+    /**
+     * Wait for a player's conversations to be in memory
+     * @return false if loading took too long
+     */
+    private boolean awaitLoaded(UUID playerUuid) {
+        CompletableFuture<Void> loaded = ensureLoaded(playerUuid).loaded;
+        if (loaded.isDone()) return true;
+        try {
+            loaded.get(LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            plugin.getLogger().warning("[ConversationManager] Conversations of " + playerUuid + " did not load in time");
+            return false;
+        }
+    }
+    
+    private void loadPlayer(UUID playerUuid, PlayerConversations state) {
+        long cutoffTime = System.currentTimeMillis() - (maxConversationAgeDays * 24L * 60L * 60L * 1000L);
+        // Under ioLock, so a load waits for an unload of the same player to finish writing
+        synchronized (ioLock) {
+            try {
+                // Quit before the load ran: unloadPlayer already let go of them, so nothing would
+                // ever unload what we'd load (unloads hold ioLock too, so this can't change below)
+                if (players.get(playerUuid) != state) {
+                    return;
+                }
+                for (ConversationHistory history : store.loadPlayer(playerUuid, cutoffTime, maxMessagesPerConversation)) {
+                    String key = getKey(history.playerUuid, history.npcName);
+                    if (!isClearing(key)) {
+                        conversations.putIfAbsent(key, history);
+                    }
+                }
+            } catch (IOException e) {
+                plugin.getLogger().warning("[ConversationManager] Failed to load conversations of " + playerUuid + ": " + e.getMessage());
+            } finally {
+                state.loaded.complete(null);
+            }
+        }
+    }
+    
+    /**
+     * Write a player's changed conversations and drop them from memory
+     */
+    public void unloadPlayer(UUID playerUuid) {
+        if (store == null) return; // Memory is the only copy
+        String prefix = playerUuid.toString() + ":";
+        synchronized (ioLock) {
+            // Removed first, so addMessage reloads (waiting for ioLock) instead of starting over
+            PlayerConversations state = players.remove(playerUuid);
+            boolean kept = false;
+            for (String key : new ArrayList<>(conversations.keySet())) {
+                if (!key.startsWith(prefix)) continue;
+                ConversationHistory history = conversations.get(key);
+                if (history == null) continue;
+                synchronized (history) {
+                    // addMessage retries (and reloads) once it sees this
+                    history.unloaded = true;
+                }
+                if (dirty.remove(key) && !write(key)) {
+                    // Keep it in memory and let the flusher retry
+                    dirty.add(key);
+                    synchronized (history) {
+                        history.unloaded = false;
+                    }
+                    kept = true;
+                    continue;
+                }
+                conversations.remove(key);
+            }
+            if (kept) {
+                // Still tracked, so unloadIdle tries again once the flusher has written them
+                if (state == null) {
+                    state = new PlayerConversations();
+                    state.loaded.complete(null);
+                }
+                players.putIfAbsent(playerUuid, state);
+            }
+        }
+    }
+    
+    /**
+     * Unload players who haven't chatted for the idle time
+     */
+    private void unloadIdle() {
+        if (unloadIdleMs <= 0) return;
+        long cutoff = System.currentTimeMillis() - unloadIdleMs;
+        for (Map.Entry<UUID, PlayerConversations> entry : players.entrySet()) {
+            if (entry.getValue().lastAccess < cutoff && entry.getValue().loaded.isDone()) {
+                unloadPlayer(entry.getKey());
+            }
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        ensureLoaded(event.getPlayer().getUniqueId());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        UUID playerUuid = event.getPlayer().getUniqueId();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> unloadPlayer(playerUuid));
+    }
+    
     /**
      * Add a message to a conversation
      * @param player The player (for UUID and friendly name)
      * @param npcName The NPC name
      * @param role "user" or "assistant"
      * @param content The message content
+     * @return The added message (its id tells it apart from equal messages), or null if not remembered
      */
-    public void addMessage(Player player, String npcName, String role, String content) {
+    public ChatMessage addMessage(Player player, String npcName, String role, String content) {
         String key = getKey(player.getUniqueId(), npcName);
         
-        ConversationHistory history = conversations.computeIfAbsent(key, k -> 
-            new ConversationHistory(player.getUniqueId(), player.getName(), npcName));
-        
-        // Update player name in case it changed
-        history.playerName = player.getName();
-        history.lastUpdated = Instant.now().toEpochMilli();
-        
-        // Add the message
-        history.messages.add(new ChatMessage(role, content, System.currentTimeMillis()));
-        
-        // Trim if over limit
-        while (history.messages.size() > maxMessagesPerConversation) {
-            history.messages.removeFirst();
+        ConversationHistory history;
+        ChatMessage message;
+        do {
+            if (!awaitLoaded(player.getUniqueId())) {
+                return null; // Not remembered, rather than overwriting the stored history
+            }
+            history = conversations.computeIfAbsent(key, k ->
+                new ConversationHistory(player.getUniqueId(), player.getName(), npcName, maxMessagesPerConversation));
+        } while ((message = append(key, history, player, role, content)) == null);
+        return message;
+    }
+    
+    /**
+     * @return null if the conversation was unloaded in the meantime
+     */
+    private ChatMessage append(String key, ConversationHistory history, Player player, String role, String content) {
+        synchronized (history) {
+            if (history.unloaded) {
+                return null;
+            }
+            
+            // Update player name in case it changed
+            history.playerName = player.getName();
+            history.lastUpdated = Instant.now().toEpochMilli();
+            
+            // Follow a changed max-messages, then add (the ring drops the oldest when full)
+            if (history.messages.capacity() != maxMessagesPerConversation) {
+                history.messages.setCapacity(maxMessagesPerConversation);
+            }
+            ChatMessage message = new ChatMessage(role, content, System.currentTimeMillis());
+            history.messages.add(message);
+            history.unsaved++;
+            // Marked while locked, so an unload can't drop it unwritten
+            dirty.add(key);
+            return message;
         }
     }
     
     /**
-     * Get conversation history for building AI context
+     * Get conversation history for building AI context. The list is an immutable
+     * snapshot that can be passed to an AIProvider as it is.
      * @return List of messages in order (oldest first)
      */
     public List<ChatMessage> getHistory(UUID playerUuid, String npcName) {
+        if (!awaitLoaded(playerUuid)) {
+            return Collections.emptyList();
+        }
         String key = getKey(playerUuid, npcName);
         ConversationHistory history = conversations.get(key);
         
@@ -99,22 +364,107 @@ public class ConversationManager {
             return Collections.emptyList();
         }
         
-        return new ArrayList<>(history.messages);
+        return history.messages.snapshot();
     }
     
     /**
-     * Get conversation history formatted for AI API
-     * @return List of Map with "role" and "content" keys
+     * The turns to send with a request: those newer than the conversation's summary
+     * (everything if it has none). Send getSummary() along with them.
+     * @return Immutable list in order (oldest first)
      */
-    public List<Map<String, String>> getHistoryForApi(UUID playerUuid, String npcName) {
-        List<ChatMessage> messages = getHistory(playerUuid, npcName);
-        List<Map<String, String>> result = new ArrayList<>();
-        
-        for (ChatMessage msg : messages) {
-            result.add(Map.of("role", msg.role, "content", msg.content));
+    public List<ChatMessage> getPromptHistory(UUID playerUuid, String npcName) {
+        if (!awaitLoaded(playerUuid)) {
+            return Collections.emptyList();
         }
-        
-        return result;
+        ConversationHistory history = conversations.get(getKey(playerUuid, npcName));
+        if (history == null) {
+            return Collections.emptyList();
+        }
+        long summarizedUntil;
+        List<ChatMessage> messages;
+        synchronized (history) {
+            summarizedUntil = history.summarizedUntil;
+            messages = history.messages.snapshot();
+        }
+        return messages.subList(firstUnsummarized(messages, summarizedUntil), messages.size());
+    }
+    
+    /**
+     * Rolling summary of the turns older than getPromptHistory(), or null if there is none
+     */
+    public String getSummary(UUID playerUuid, String npcName) {
+        ConversationHistory history = conversations.get(getKey(playerUuid, npcName));
+        if (history == null) {
+            return null;
+        }
+        synchronized (history) {
+            return history.summary;
+        }
+    }
+    
+    private static int firstUnsummarized(List<ChatMessage> messages, long summarizedUntil) {
+        int first = 0;
+        while (first < messages.size() && messages.get(first).timestamp <= summarizedUntil) {
+            first++;
+        }
+        return first;
+    }
+    
+    /**
+     * Conversations in memory with at least triggerMessages unsummarized turns
+     * @param keepRecent Newest turns to leave out of the summary, so recent context stays verbatim
+     * @param limit Return at most this many
+     */
+    public List<PendingSummary> getPendingSummaries(int triggerMessages, int keepRecent, int limit) {
+        // Turns that fall out of the ring before being summarized are lost, so trigger before it fills
+        int trigger = Math.max(keepRecent + 1, Math.min(triggerMessages, maxMessagesPerConversation));
+        List<PendingSummary> pending = new ArrayList<>();
+        for (Map.Entry<String, ConversationHistory> entry : conversations.entrySet()) {
+            if (pending.size() >= limit) break;
+            ConversationHistory history = entry.getValue();
+            String summary;
+            long summarizedUntil;
+            List<ChatMessage> messages;
+            synchronized (history) {
+                if (history.unloaded) continue;
+                summary = history.summary;
+                summarizedUntil = history.summarizedUntil;
+                messages = history.messages.snapshot();
+            }
+            int first = firstUnsummarized(messages, summarizedUntil);
+            if (messages.size() - first < trigger) continue;
+            
+            // Don't split turns with the same timestamp: the summary boundary is a timestamp
+            int end = messages.size() - keepRecent;
+            while (end < messages.size() && messages.get(end).timestamp == messages.get(end - 1).timestamp) {
+                end++;
+            }
+            if (end >= messages.size()) continue;
+            pending.add(new PendingSummary(entry.getKey(), history.playerName, history.npcName, summary,
+                    summarizedUntil, messages.subList(first, end)));
+        }
+        return pending;
+    }
+    
+    /**
+     * Store a summary produced for getPendingSummaries()
+     * @return false if the conversation was cleared, unloaded or summarized again in the meantime
+     */
+    public boolean applySummary(PendingSummary pending, String summary) {
+        ConversationHistory history = conversations.get(pending.key);
+        if (history == null) {
+            return false;
+        }
+        synchronized (history) {
+            if (history.unloaded || history.summarizedUntil != pending.previousUntil) {
+                return false;
+            }
+            history.summary = summary;
+            history.summarizedUntil = pending.turns.get(pending.turns.size() - 1).timestamp;
+            history.summaryUnsaved = true;
+            dirty.add(pending.key);
+        }
+        return true;
     }
     
     /**
@@ -122,15 +472,7 @@ public class ConversationManager {
      */
     public void clearHistory(UUID playerUuid, String npcName) {
         String key = getKey(playerUuid, npcName);
-        conversations.remove(key);
-        
-        // Delete file if persistence enabled
-        if (persistenceEnabled) {
-            File file = getConversationFile(playerUuid, npcName);
-            if (file.exists()) {
-                file.delete();
-            }
-        }
+        clear(key::equals, () -> store.delete(playerUuid, npcName));
     }
     
     /**
@@ -138,110 +480,177 @@ public class ConversationManager {
      */
     public void clearAllForPlayer(UUID playerUuid) {
         String prefix = playerUuid.toString() + ":";
-        conversations.keySet().removeIf(key -> key.startsWith(prefix));
-        
-        // Delete player folder if persistence enabled
-        if (persistenceEnabled) {
-            File playerFolder = new File(conversationsFolder, playerUuid.toString());
-            if (playerFolder.exists() && playerFolder.isDirectory()) {
-                for (File file : playerFolder.listFiles()) {
-                    file.delete();
+        clear(key -> key.startsWith(prefix), () -> store.deletePlayer(playerUuid));
+    }
+    
+    /**
+     * Clear every player's conversation with an NPC
+     */
+    public void clearAllForNpc(String npcName) {
+        String suffix = ":" + npcName.toLowerCase();
+        clear(key -> key.endsWith(suffix), () -> store.deleteNpc(npcName));
+    }
+    
+    /**
+     * Forget matching conversations now and delete them from the store in the background
+     * (a store delete can touch many files, and commands call this on the main thread)
+     */
+    private void clear(Predicate<String> matches, StoreDelete delete) {
+        // Registered first, so a load finishing now skips them instead of bringing them back
+        clearing.add(matches);
+        conversations.keySet().removeIf(matches);
+        dirty.removeIf(matches);
+        if (store == null) {
+            clearing.remove(matches);
+            return;
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            synchronized (ioLock) {
+                try {
+                    delete.run();
+                } catch (IOException e) {
+                    plugin.getLogger().warning("[ConversationManager] Failed to delete conversations: " + e.getMessage());
+                } finally {
+                    clearing.remove(matches);
                 }
-                playerFolder.delete();
             }
+        });
+    }
+    
+    private boolean isClearing(String key) {
+        for (Predicate<String> matches : clearing) {
+            if (matches.test(key)) return true;
         }
+        return false;
     }
     
-    /**
-     * Get conversation file path
-     */
-    private File getConversationFile(UUID playerUuid, String npcName) {
-        File playerFolder = new File(conversationsFolder, playerUuid.toString());
-        return new File(playerFolder, npcName.toLowerCase() + ".json");
+    @FunctionalInterface
+    private interface StoreDelete {
+        void run() throws IOException;
     }
     
     /**
-     * Save a specific conversation to file
+     * Save a specific conversation to file now
      */
     public void saveConversation(UUID playerUuid, String npcName) {
-        if (!persistenceEnabled) return;
-        
+        if (store == null) return;
         String key = getKey(playerUuid, npcName);
-        ConversationHistory history = conversations.get(key);
-        
-        if (history == null) return;
-        
-        File file = getConversationFile(playerUuid, npcName);
-        file.getParentFile().mkdirs();
-        
-        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
-                new FileOutputStream(file), StandardCharsets.UTF_8))) {
-            gson.toJson(history, writer);
-        } catch (IOException e) {
-            plugin.getLogger().warning("[ConversationManager] Failed to save conversation: " + e.getMessage());
+        dirty.remove(key);
+        if (!write(key)) {
+            dirty.add(key);
         }
     }
     
     /**
-     * Save all conversations to files
+     * Write every conversation that changed since its last write
+     * @return Number of conversations written
      */
-    public void saveAllConversations() {
-        if (!persistenceEnabled) return;
+    public int flushDirty() {
+        if (store == null || dirty.isEmpty()) return 0;
         
-        int saved = 0;
-        for (Map.Entry<String, ConversationHistory> entry : conversations.entrySet()) {
-            ConversationHistory history = entry.getValue();
-            saveConversation(history.playerUuid, history.npcName);
-            saved++;
+        int written = 0;
+        int failed = 0;
+        for (Iterator<String> it = dirty.iterator(); it.hasNext(); ) {
+            String key = it.next();
+            if (isClearing(key)) {
+                continue; // Written once the delete before it is done
+            }
+            // Removed before writing: a change made during the write marks it dirty again
+            it.remove();
+            if (write(key)) {
+                written++;
+            } else {
+                dirty.add(key);
+                failed++;
+            }
         }
-        
-        plugin.getLogger().info("[ConversationManager] Saved " + saved + " conversations");
+        if (failed > 0) {
+            plugin.getLogger().warning("[ConversationManager] " + failed + " conversations could not be saved, will retry");
+        }
+        return written;
     }
     
     /**
-     * Load all conversations from files
+     * Write one conversation to the store
+     * @return false if the write failed
      */
-    public void loadAllConversations() {
-        if (!persistenceEnabled) return;
-        if (!conversationsFolder.exists()) {
-            conversationsFolder.mkdirs();
-            return;
-        }
-        
-        int loaded = 0;
-        long cutoffTime = System.currentTimeMillis() - (maxConversationAgeDays * 24L * 60L * 60L * 1000L);
-        
-        // Iterate through player folders
-        File[] playerFolders = conversationsFolder.listFiles(File::isDirectory);
-        if (playerFolders == null) return;
-        
-        for (File playerFolder : playerFolders) {
-            File[] conversationFiles = playerFolder.listFiles((dir, name) -> name.endsWith(".json"));
-            if (conversationFiles == null) continue;
-            
-            for (File file : conversationFiles) {
-                try (Reader reader = new BufferedReader(new InputStreamReader(
-                        new FileInputStream(file), StandardCharsets.UTF_8))) {
-                    ConversationHistory history = gson.fromJson(reader, ConversationHistory.class);
-                    
-                    if (history != null) {
-                        // Check if conversation is too old
-                        if (history.lastUpdated < cutoffTime) {
-                            file.delete();
-                            continue;
-                        }
-                        
-                        String key = getKey(history.playerUuid, history.npcName);
-                        conversations.put(key, history);
-                        loaded++;
-                    }
-                } catch (Exception e) {
-                    plugin.getLogger().warning("[ConversationManager] Failed to load " + file.getName() + ": " + e.getMessage());
+    private boolean write(String key) {
+        synchronized (ioLock) {
+            ConversationHistory history = conversations.get(key);
+            if (history == null) {
+                return true; // Cleared in the meantime
+            }
+            if (isClearing(key)) {
+                return false; // Started after a clear whose delete hasn't run yet; it would wipe this write
+            }
+            ConversationHistory snapshot;
+            List<ChatMessage> appended;
+            int unsaved;
+            boolean summaryUnsaved;
+            synchronized (history) {
+                snapshot = history.copy();
+                unsaved = Math.min(history.unsaved, history.messages.size());
+                appended = snapshot.messages.newest(unsaved);
+                summaryUnsaved = history.summaryUnsaved;
+                history.unsaved = 0;
+                history.summaryUnsaved = false;
+            }
+            try {
+                store.write(snapshot, appended);
+                unsaved = 0;
+                if (summaryUnsaved) {
+                    store.writeSummary(snapshot);
+                }
+                return true;
+            } catch (IOException e) {
+                synchronized (history) {
+                    history.unsaved += unsaved;
+                    history.summaryUnsaved |= summaryUnsaved;
                 }
+                plugin.getLogger().warning("[ConversationManager] Failed to save conversation: " + e.getMessage());
+                return false;
             }
         }
-        
-        plugin.getLogger().info("[ConversationManager] Loaded " + loaded + " conversations");
+    }
+    
+    /**
+     * Drop expired conversations and trimmed messages from disk. Not under ioLock: it can take
+     * a while, and the stores guard what it shares with loads and writes themselves.
+     */
+    public void compact() {
+        if (store == null) return;
+        long cutoffTime = System.currentTimeMillis() - (maxConversationAgeDays * 24L * 60L * 60L * 1000L);
+        try {
+            store.compact(cutoffTime, maxMessagesPerConversation);
+        } catch (IOException e) {
+            plugin.getLogger().warning("[ConversationManager] Compaction failed: " + e.getMessage());
+        }
+    }
+    
+    private void cancelTasks() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        if (compactTask != null) {
+            compactTask.cancel();
+            compactTask = null;
+        }
+    }
+    
+    /**
+     * Stop the flush task and write whatever is still dirty
+     */
+    public void shutdown() {
+        cancelTasks();
+        if (store == null) return;
+        int saved = flushDirty();
+        plugin.getLogger().info("[ConversationManager] Saved " + saved + " changed conversations");
+        try {
+            store.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("[ConversationManager] Failed to close conversation store: " + e.getMessage());
+        }
     }
     
     /**
@@ -249,6 +658,7 @@ public class ConversationManager {
      */
     public Map<String, Object> getStats() {
         Map<String, Object> stats = new HashMap<>();
+        stats.put("loadedPlayers", players.size());
         stats.put("totalConversations", conversations.size());
         
         // Count unique players
@@ -264,6 +674,7 @@ public class ConversationManager {
             totalMessages += history.messages.size();
         }
         stats.put("totalMessages", totalMessages);
+        stats.put("unsavedConversations", dirty.size());
         
         return stats;
     }
@@ -272,6 +683,7 @@ public class ConversationManager {
      * Get all NPCs a player has talked to
      */
     public Set<String> getNpcsForPlayer(UUID playerUuid) {
+        awaitLoaded(playerUuid);
         Set<String> npcs = new HashSet<>();
         String prefix = playerUuid.toString() + ":";
         
@@ -288,38 +700,111 @@ public class ConversationManager {
      * Conversation history container
      */
     public static class ConversationHistory {
+        // Capacity of histories read from JSON until trimmed to max-messages
+        private static final int DEFAULT_MAX_MESSAGES = 20;
+        
         public UUID playerUuid;
         public String playerName; // Friendly name for easy identification
         public String npcName;
         public long createdAt;
         public long lastUpdated;
-        public Deque<ChatMessage> messages = new LinkedList<>();
+        public MessageRing messages = new MessageRing(DEFAULT_MAX_MESSAGES);
+        // Rolling summary of every turn up to summarizedUntil (epoch ms), or null
+        public String summary;
+        public long summarizedUntil;
+        // Messages added since the last write (not persisted)
+        transient int unsaved;
+        // Set once dropped from memory; later additions must reload the player first
+        transient boolean unloaded;
+        // Summary changed since the last write (not persisted)
+        transient boolean summaryUnsaved;
         
         public ConversationHistory() {} // For Gson
         
-        public ConversationHistory(UUID playerUuid, String playerName, String npcName) {
+        public ConversationHistory(UUID playerUuid, String playerName, String npcName, int maxMessages) {
+            this.messages = new MessageRing(maxMessages);
             this.playerUuid = playerUuid;
             this.playerName = playerName;
             this.npcName = npcName;
             this.createdAt = System.currentTimeMillis();
             this.lastUpdated = this.createdAt;
         }
+        
+        /**
+         * Copy with its own message ring (messages themselves are never modified)
+         */
+        ConversationHistory copy() {
+            ConversationHistory copy = new ConversationHistory();
+            copy.playerUuid = playerUuid;
+            copy.playerName = playerName;
+            copy.npcName = npcName;
+            copy.createdAt = createdAt;
+            copy.lastUpdated = lastUpdated;
+            copy.messages = messages.copy();
+            copy.summary = summary;
+            copy.summarizedUntil = summarizedUntil;
+            return copy;
+        }
     }
     
     /**
-     * Individual chat message
+     * Turns of one conversation waiting to be folded into its summary
      */
-    public static class ChatMessage {
-        public String role; // "user" or "assistant"
-        public String content;
-        public long timestamp;
+    public static final class PendingSummary {
+        final String key;
+        public final String playerName;
+        public final String npcName;
+        // Summary so far, or null
+        public final String previousSummary;
+        final long previousUntil;
+        // Oldest first
+        public final List<ChatMessage> turns;
         
-        public ChatMessage() {} // For Gson
+        PendingSummary(String key, String playerName, String npcName, String previousSummary,
+                       long previousUntil, List<ChatMessage> turns) {
+            this.key = key;
+            this.playerName = playerName;
+            this.npcName = npcName;
+            this.previousSummary = previousSummary;
+            this.previousUntil = previousUntil;
+            this.turns = turns;
+        }
+    }
+    
+    /**
+     * Load state of one player's conversations
+     */
+    private static final class PlayerConversations {
+        final CompletableFuture<Void> loaded = new CompletableFuture<>();
+        volatile long lastAccess = System.currentTimeMillis();
+    }
+    
+    /**
+     * Individual chat message (immutable)
+     */
+    public static final class ChatMessage implements ChatTurn {
+        private static final AtomicLong NEXT_ID = new AtomicLong();
+        
+        public final long id; // Unique while the server runs, not saved
+        public final String role; // "user" or "assistant", interned
+        public final String content;
+        public final long timestamp;
         
         public ChatMessage(String role, String content, long timestamp) {
-            this.role = role;
+            this.id = NEXT_ID.incrementAndGet();
+            this.role = ChatTurn.internRole(role);
             this.content = content;
             this.timestamp = timestamp;
         }
+        
+        @Override
+        public String getRole() {
+            return role;
+        }
+        
+        @Override
+        public String getContent() {
+            return content;
+        }
     }
 }
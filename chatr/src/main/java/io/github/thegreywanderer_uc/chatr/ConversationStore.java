@@ -0,0 +1,71 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import io.github.thegreywanderer_uc.chatr.ConversationManager.ChatMessage;
+import io.github.thegreywanderer_uc.chatr.ConversationManager.ConversationHistory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Where ConversationManager persists conversation history.
+ * - JsonConversationStore: one JSON file per player per NPC, rewritten on save
+ * - LogConversationStore: append-only segmented log, compacted in the background
+ * - JdbcConversationStore: rows in the shared SQLite database
+ * Loads, writes and deletes come from one thread at a time (ConversationManager serializes
+ * them); compact() runs alongside them, so a store must guard what the two share.
+ */
+public interface ConversationStore {
+
+    /**
+     * Load every conversation updated since the cutoff
+     * @param cutoffTime Conversations last updated before this (epoch ms) are dropped
+     * @param maxMessages Keep at most this many of the newest messages per conversation
+     */
+    List<ConversationHistory> loadAll(long cutoffTime, int maxMessages) throws IOException;
+
+    /**
+     * Load one player's conversations updated since the cutoff
+     */
+    List<ConversationHistory> loadPlayer(UUID playerUuid, long cutoffTime, int maxMessages) throws IOException;
+
+    /**
+     * Persist a conversation
+     * @param snapshot Copy of the whole conversation, safe to read without locking
+     * @param appended Messages added since the last successful write (the tail of the snapshot)
+     */
+    void write(ConversationHistory snapshot, List<ChatMessage> appended) throws IOException;
+
+    /**
+     * Persist a conversation's summary and summarizedUntil, replacing the previous ones
+     * @param snapshot Copy of the whole conversation, safe to read without locking
+     */
+    void writeSummary(ConversationHistory snapshot) throws IOException;
+
+    /**
+     * Delete one conversation
+     */
+    void delete(UUID playerUuid, String npcName) throws IOException;
+
+    /**
+     * Delete every conversation of a player
+     */
+    void deletePlayer(UUID playerUuid) throws IOException;
+
+    /**
+     * Delete every player's conversation with an NPC
+     */
+    void deleteNpc(String npcName) throws IOException;
+
+    /**
+     * Drop expired conversations and messages beyond the limit from disk (no-op by default)
+     */
+    default void compact(long cutoffTime, int maxMessages) throws IOException {
+    }
+
+    /**
+     * Release files (no-op by default)
+     */
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,173 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import io.github.thegreywanderer_uc.chatr.ConversationManager.ChatMessage;
+import io.github.thegreywanderer_uc.chatr.ConversationManager.PendingSummary;
+import io.github.thegreywanderer_uc.chatr.ai.ChatResult;
+import io.github.thegreywanderer_uc.chatr.ai.ChatTurn;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Folds older conversation turns into a rolling summary in the background.
+ * - Once a conversation has trigger-messages turns newer than its summary, everything but
+ *   the newest keep-recent turns is summarized (together with the previous summary)
+ * - Requests then send the summary in the system prompt instead of those turns, so prompt size
+ *   stays bounded while NPCs remember older conversations
+ * - Off-peak only: runs while load shedding is at NORMAL and at most max-in-flight player
+ *   requests are running, a few conversations per run
+ */
+public class ConversationSummarizer {
+
+    private static final String SYSTEM_PROMPT = "You maintain the memory of a character in a Minecraft server. "
+            + "Merge the previous summary and the new conversation turns into one short summary, written in "
+            + "the third person. Keep facts about the player, promises, quests, names, places and items; drop "
+            + "greetings and small talk. Reply with the summary only.";
+
+    /**
+     * Makes the summarization call (normally through the NPC's provider)
+     */
+    @FunctionalInterface
+    public interface Completion {
+        ChatResult complete(String npcName, String systemPrompt, String userMessage, int maxTokens) throws Exception;
+    }
+
+    private final JavaPlugin plugin;
+    private final ConversationManager conversationManager;
+    private final LoadShedder loadShedder;
+    private final IntSupplier inFlight;
+    private final Completion completion;
+
+    private volatile int triggerMessages;
+    private volatile int keepRecent;
+    private volatile int maxTokens;
+    private volatile int maxChars;
+    private volatile int perRun;
+    private volatile int maxInFlight;
+    private BukkitTask task;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong summarized = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skippedBusy = new AtomicLong();
+
+    /**
+     * @param loadShedder Current load level (null = always NORMAL)
+     * @param inFlight Player requests being processed right now
+     */
+    public ConversationSummarizer(JavaPlugin plugin, ConversationManager conversationManager, LoadShedder loadShedder,
+                                  IntSupplier inFlight, Completion completion) {
+        this.plugin = plugin;
+        this.conversationManager = conversationManager;
+        this.loadShedder = loadShedder;
+        this.inFlight = inFlight;
+        this.completion = completion;
+        reload();
+    }
+
+    /**
+     * Reload settings from config and reschedule
+     */
+    public synchronized void reload() {
+        var config = plugin.getConfig();
+        this.keepRecent = Math.max(0, config.getInt("conversation.summary.keep-recent", 6));
+        this.triggerMessages = Math.max(keepRecent + 1, config.getInt("conversation.summary.trigger-messages", 16));
+        this.maxTokens = Math.max(50, config.getInt("conversation.summary.max-tokens", 300));
+        this.maxChars = Math.max(200, config.getInt("conversation.summary.max-chars", 1500));
+        this.perRun = Math.max(1, config.getInt("conversation.summary.conversations-per-run", 3));
+        this.maxInFlight = Math.max(0, config.getInt("conversation.summary.max-in-flight", 0));
+
+        stop();
+        if (config.getBoolean("conversation.summary.enabled", false)) {
+            long intervalTicks = Math.max(5, config.getInt("conversation.summary.interval-seconds", 60)) * 20L;
+            task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::run, intervalTicks, intervalTicks);
+        }
+    }
+
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Summarize a few pending conversations if the server is quiet
+     */
+    void run() {
+        // A slow provider must not pile up runs
+        if (!running.compareAndSet(false, true)) return;
+        try {
+            if (!isOffPeak()) {
+                skippedBusy.incrementAndGet();
+                return;
+            }
+            for (PendingSummary pending : conversationManager.getPendingSummaries(triggerMessages, keepRecent, perRun)) {
+                if (!isOffPeak()) break;
+                summarize(pending);
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private boolean isOffPeak() {
+        if (loadShedder != null && loadShedder.getLevel() != LoadShedder.Level.NORMAL) {
+            return false;
+        }
+        return inFlight.getAsInt() <= maxInFlight;
+    }
+
+    private void summarize(PendingSummary pending) {
+        try {
+            ChatResult result = completion.complete(pending.npcName, SYSTEM_PROMPT, buildPrompt(pending), maxTokens);
+            String summary = result.getContent() != null ? result.getContent().trim() : "";
+            if (summary.isEmpty()) {
+                failed.incrementAndGet();
+                return;
+            }
+            if (summary.length() > maxChars) {
+                summary = summary.substring(0, maxChars);
+            }
+            if (conversationManager.applySummary(pending, summary)) {
+                summarized.incrementAndGet();
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            plugin.getLogger().warning("[ConversationSummarizer] Could not summarize " + pending.playerName + " / "
+                    + pending.npcName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Previous summary followed by the turns to fold in, as a transcript
+     */
+    static String buildPrompt(PendingSummary pending) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("Character: ").append(pending.npcName).append('\n');
+        prompt.append("Player: ").append(pending.playerName).append("\n\n");
+        prompt.append("Previous summary:\n")
+                .append(pending.previousSummary != null ? pending.previousSummary : "(none)").append("\n\n");
+        prompt.append("New turns:\n");
+        for (ChatMessage turn : pending.turns) {
+            prompt.append(ChatTurn.ROLE_ASSISTANT.equals(turn.role) ? pending.npcName : pending.playerName)
+                    .append(": ").append(turn.content).append('\n');
+        }
+        return prompt.toString();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", task != null);
+        stats.put("summarized", summarized.get());
+        stats.put("failed", failed.get());
+        stats.put("skippedBusy", skippedBusy.get());
+        return stats;
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import java.io.IOException;
+
+/**
+ * Turns text into a vector for EpisodicMemory.
+ * - HashingEmbedder: local hashed bag of words, no network, microseconds per call
+ * - ApiEmbedder: an OpenAI-compatible /v1/embeddings endpoint (LM Studio, Ollama, OpenAI)
+ */
+public interface Embedder {
+
+    /**
+     * @return Unit-length vector (cosine similarity is a dot product)
+     */
+    float[] embed(String text) throws IOException;
+
+    /**
+     * Identifies the vector space, so indexes built by a different embedder are not mixed in
+     */
+    String id();
+
+    /**
+     * Scale a vector to unit length in place
+     * @return The same array
+     */
+    static float[] normalize(float[] vector) {
+        double sum = 0;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        if (sum > 0) {
+            float scale = (float) (1.0 / Math.sqrt(sum));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+}
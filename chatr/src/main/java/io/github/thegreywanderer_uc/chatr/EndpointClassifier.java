@@ -0,0 +1,186 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides whether an AI endpoint URL points at a local/LAN server.
+ * - The URL is parsed and its host resolved once, then the answer is cached per URL
+ * - Every resolved address must fall in a local CIDR range (loopback, RFC1918/ULA private, link-local)
+ * - Extra ranges can be added, e.g. a VPN or CGNAT range hosting the AI box
+ * Unparseable or unresolvable endpoints are treated as remote.
+ */
+public class EndpointClassifier {
+
+    static final List<String> DEFAULT_LOCAL_RANGES = List.of(
+            "127.0.0.0/8",      // IPv4 loopback
+            "0.0.0.0/8",        // "this host" (0.0.0.0 binds)
+            "10.0.0.0/8",       // RFC1918
+            "172.16.0.0/12",    // RFC1918
+            "192.168.0.0/16",   // RFC1918
+            "169.254.0.0/16",   // IPv4 link-local
+            "::1/128",          // IPv6 loopback
+            "fc00::/7",         // IPv6 unique local
+            "fe80::/10"         // IPv6 link-local
+    );
+
+    private final List<Cidr> localRanges;
+    private final Map<String, Boolean> cache = new ConcurrentHashMap<>();
+
+    public EndpointClassifier(List<String> extraRanges) {
+        List<Cidr> ranges = new ArrayList<>();
+        for (String range : DEFAULT_LOCAL_RANGES) {
+            ranges.add(Cidr.parse(range));
+        }
+        if (extraRanges != null) {
+            for (String range : extraRanges) {
+                ranges.add(Cidr.parse(range));
+            }
+        }
+        this.localRanges = List.copyOf(ranges);
+    }
+
+    /**
+     * Whether the endpoint is local (cached after the first call per URL)
+     */
+    public boolean isLocal(String endpointUrl) {
+        if (endpointUrl == null || endpointUrl.isEmpty()) {
+            return false;
+        }
+        Boolean cached = cache.get(endpointUrl);
+        if (cached != null) {
+            return cached;
+        }
+        boolean local = classify(endpointUrl);
+        cache.put(endpointUrl, local);
+        return local;
+    }
+
+    /**
+     * Forget cached answers (e.g. after a reload or DNS change)
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    private boolean classify(String endpointUrl) {
+        String host = hostOf(endpointUrl);
+        if (host == null || host.isEmpty()) {
+            return false;
+        }
+        try {
+            InetAddress[] addresses = InetAddress.getAllByName(host);
+            if (addresses.length == 0) {
+                return false;
+            }
+            for (InetAddress address : addresses) {
+                if (!isLocalAddress(address)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (UnknownHostException | SecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Whether an address falls inside one of the local ranges
+     */
+    boolean isLocalAddress(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        for (Cidr range : localRanges) {
+            if (range.contains(bytes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Extract the host from a URL (or a bare host[:port]), without brackets for IPv6 literals
+     */
+    static String hostOf(String endpointUrl) {
+        String url = endpointUrl.trim();
+        if (!url.contains("://")) {
+            url = "http://" + url;
+        }
+        try {
+            String host = URI.create(url).getHost();
+            if (host != null && host.startsWith("[") && host.endsWith("]")) {
+                host = host.substring(1, host.length() - 1);
+            }
+            return host;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * An address range in CIDR notation (IPv4 or IPv6). IPv4-mapped IPv6 addresses
+     * are already unwrapped to IPv4 by InetAddress, so families never need to be mixed.
+     */
+    static class Cidr {
+        private final byte[] network;
+        private final int prefixLength;
+
+        private Cidr(byte[] network, int prefixLength) {
+            this.network = network;
+            this.prefixLength = prefixLength;
+        }
+
+        /**
+         * Parse "a.b.c.d/n" or "x::y/n" (a bare address is a single host)
+         * @throws IllegalArgumentException If the range is not a valid literal
+         */
+        static Cidr parse(String cidr) {
+            String[] parts = cidr.trim().split("/", 2);
+            String addressPart = parts[0];
+            // Only accept literals so parsing never triggers a DNS lookup
+            if (!addressPart.contains(":") && !addressPart.matches("[0-9.]+")) {
+                throw new IllegalArgumentException("Not an IP range: " + cidr);
+            }
+            byte[] network;
+            try {
+                network = InetAddress.getByName(addressPart).getAddress();
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException("Not an IP range: " + cidr, e);
+            }
+            int prefix = network.length * 8;
+            if (parts.length == 2) {
+                try {
+                    prefix = Integer.parseInt(parts[1]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid prefix length: " + cidr, e);
+                }
+                if (prefix < 0 || prefix > network.length * 8) {
+                    throw new IllegalArgumentException("Invalid prefix length: " + cidr);
+                }
+            }
+            return new Cidr(network, prefix);
+        }
+
+        boolean contains(byte[] address) {
+            if (address.length != network.length) {
+                return false;
+            }
+            int fullBytes = prefixLength / 8;
+            for (int i = 0; i < fullBytes; i++) {
+                if (address[i] != network[i]) {
+                    return false;
+                }
+            }
+            int remainingBits = prefixLength % 8;
+            if (remainingBits == 0) {
+                return true;
+            }
+            int mask = (0xFF << (8 - remainingBits)) & 0xFF;
+            return (address[fullBytes] & mask) == (network[fullBytes] & mask);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Past exchanges of one player with one NPC, with their vectors (thread-safe).
+ * - Vectors are stored as signed bytes with a scale per vector (largest component = 127), about
+ *   a quarter of the size of floats; dense API embeddings have only small components, so a fixed
+ *   scale would round most of them to a few steps. The score is a dot product over at most
+ *   max-episodes of them, so a search is a brute-force scan that takes microseconds and needs no
+ *   index structure
+ * - Full: the oldest episode is dropped
+ * - On disk as one small binary file, rewritten whole (temp file + rename)
+ */
+final class EpisodeIndex {
+
+    private static final int MAGIC = 0x43455049; // "CEPI"
+    private static final int VERSION = 2;
+    private static final int VERSION_FIXED_SCALE = 1; // Before per-vector scales: unit vector * 127
+    private static final float SCALE = 127f;
+    private static final long EMPTY_BYTES = 64;
+
+    private final String embedderId;
+    private final int capacity;
+    private int dimensions; // 0 until the first episode
+    private final List<Episode> episodes = new ArrayList<>();
+    private long bytes = EMPTY_BYTES; // estimateBytes(), kept up to date on every change
+    private boolean dirty;
+
+    EpisodeIndex(String embedderId, int capacity) {
+        this.embedderId = embedderId;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Add an exchange, dropping the oldest if full
+     */
+    synchronized void add(float[] vector, String text, long timestamp) {
+        if (dimensions == 0) {
+            dimensions = vector.length;
+        } else if (vector.length != dimensions) {
+            return; // Embedder changed its output size; the index is rebuilt on next load
+        }
+        byte[] quantized = new byte[vector.length];
+        float scale = quantize(vector, quantized);
+        Episode episode = new Episode(quantized, scale, text, timestamp);
+        episodes.add(episode);
+        bytes += episode.estimateBytes();
+        while (episodes.size() > capacity) {
+            bytes -= episodes.removeFirst().estimateBytes();
+        }
+        dirty = true;
+    }
+
+    /**
+     * The most similar episodes older than a timestamp, best first
+     * @param before Only episodes before this (epoch ms), e.g. those not in the recent history
+     */
+    synchronized List<Match> search(float[] query, int topK, float minSimilarity, long before) {
+        List<Match> matches = new ArrayList<>(topK + 1);
+        if (query.length != dimensions || topK <= 0) {
+            return matches;
+        }
+        byte[] q = new byte[query.length];
+        float queryScale = quantize(query, q);
+        for (Episode episode : episodes) {
+            if (episode.timestamp >= before) continue;
+            int dot = 0;
+            byte[] v = episode.vector;
+            for (int i = 0; i < v.length; i++) {
+                dot += v[i] * q[i];
+            }
+            float score = dot * episode.scale * queryScale;
+            if (score < minSimilarity) continue;
+            // Insertion into a short sorted list
+            int at = matches.size();
+            while (at > 0 && matches.get(at - 1).score < score) {
+                at--;
+            }
+            if (at < topK) {
+                matches.add(at, new Match(episode.text, episode.timestamp, score));
+                if (matches.size() > topK) {
+                    matches.removeLast();
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Scale a vector so its largest component is 127
+     * @return What each byte is worth, to turn dot products back into floats
+     */
+    private static float quantize(float[] vector, byte[] out) {
+        float maxAbs = 0;
+        for (float value : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(value));
+        }
+        if (maxAbs == 0 || !Float.isFinite(maxAbs)) {
+            return 0; // Scores 0 against everything
+        }
+        for (int i = 0; i < vector.length; i++) {
+            out[i] = (byte) Math.round(vector[i] / maxAbs * SCALE);
+        }
+        return maxAbs / SCALE;
+    }
+
+    synchronized int size() {
+        return episodes.size();
+    }
+
+    /**
+     * Approximate heap use (for stats and the max-loaded-mb bound)
+     */
+    synchronized long estimateBytes() {
+        return bytes;
+    }
+
+    synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Write to a file if changed since the last write
+     */
+    synchronized void writeIfDirty(Path file) throws IOException {
+        if (!dirty) return;
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(embedderId);
+            out.writeInt(dimensions);
+            out.writeInt(episodes.size());
+            for (Episode episode : episodes) {
+                out.writeLong(episode.timestamp);
+                out.writeFloat(episode.scale);
+                out.write(episode.vector);
+                out.writeUTF(episode.text);
+            }
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        dirty = false;
+    }
+
+    /**
+     * Read an index file
+     * @return An empty index if the file doesn't exist or was built by another embedder
+     */
+    static EpisodeIndex read(Path file, String embedderId, int capacity) throws IOException {
+        EpisodeIndex index = new EpisodeIndex(embedderId, capacity);
+        if (!Files.exists(file)) {
+            return index;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an episode index: " + file.getFileName());
+            }
+            int version = in.readInt();
+            if (version != VERSION && version != VERSION_FIXED_SCALE) {
+                throw new IOException("Unsupported episode index version " + version + ": " + file.getFileName());
+            }
+            if (version != VERSION) {
+                index.dirty = true; // Rewritten in the current format
+            }
+            if (!in.readUTF().equals(embedderId)) {
+                index.dirty = true; // Different vectors; replaced on the next write
+                return index;
+            }
+            int dimensions = in.readInt();
+            int count = in.readInt();
+            index.dimensions = dimensions;
+            for (int i = 0; i < count; i++) {
+                long timestamp = in.readLong();
+                float scale = version == VERSION_FIXED_SCALE ? 1 / SCALE : in.readFloat();
+                byte[] vector = new byte[dimensions];
+                in.readFully(vector);
+                Episode episode = new Episode(vector, scale, in.readUTF(), timestamp);
+                index.episodes.add(episode);
+                index.bytes += episode.estimateBytes();
+            }
+        }
+        while (index.episodes.size() > index.capacity) {
+            index.bytes -= index.episodes.removeFirst().estimateBytes();
+        }
+        return index;
+    }
+
+    private static final class Episode {
+        final byte[] vector;
+        final float scale;
+        final String text;
+        final long timestamp;
+
+        Episode(byte[] vector, float scale, String text, long timestamp) {
+            this.vector = vector;
+            this.scale = scale;
+            this.text = text;
+            this.timestamp = timestamp;
+        }
+
+        long estimateBytes() {
+            return 48 + vector.length + 4 + 40 + text.length() * 2L;
+        }
+    }
+
+    /**
+     * A retrieved episode
+     */
+    static final class Match {
+        final String text;
+        final long timestamp;
+        final float score;
+
+        Match(String text, long timestamp, float score) {
+            this.text = text;
+            this.timestamp = timestamp;
+            this.score = score;
+        }
+    }
+}
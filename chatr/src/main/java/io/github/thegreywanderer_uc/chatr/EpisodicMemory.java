@@ -0,0 +1,325 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-term memory of past exchanges per player per NPC, beyond max-messages.
+ * - Each exchange (player message + reply) is embedded in the background and added to that
+ *   pair's EpisodeIndex, saved in memory/<player uuid>/<npc>.idx
+ * - Before a request, the exchanges most similar to the new message are retrieved and sent
+ *   with it, skipping those still in the recent history
+ * - Bounded: at most max-episodes per pair, and at most max-loaded indexes or max-loaded-mb in
+ *   memory (least recently used are written and dropped); a departed player's indexes are
+ *   written and dropped by PlayerSessionService, so memory doesn't grow with the number of players
+ */
+public class EpisodicMemory {
+
+    private final JavaPlugin plugin;
+    private final Path folder;
+
+    private volatile Embedder embedder;
+    private volatile int topK;
+    private volatile float minSimilarity;
+    private volatile int maxEpisodes;
+    private volatile int maxLoaded;
+    private volatile long maxLoadedBytes;
+    private volatile int maxChars;
+    private BukkitTask flushTask;
+
+    // Key: "playerUUID:npcName" -> index, least recently used first (guarded by itself)
+    private final LinkedHashMap<String, EpisodeIndex> loaded = new LinkedHashMap<>(16, 0.75f, true);
+    // Serializes file reads and writes, so a load never sees a half-evicted index's old file
+    private final Object ioLock = new Object();
+    // Keys cleared but whose file is not deleted yet: not read from disk, and not written
+    private final Set<String> clearing = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong recalls = new AtomicLong();
+    private final AtomicLong recalled = new AtomicLong();
+    private final AtomicLong recallNanos = new AtomicLong();
+    private final AtomicLong embedFailures = new AtomicLong();
+
+    public EpisodicMemory(JavaPlugin plugin) {
+        this.plugin = plugin;
+        this.folder = new File(plugin.getDataFolder(), "memory").toPath();
+        reload();
+    }
+
+    /**
+     * Reload settings. Switching embedders drops loaded indexes; files from the old embedder
+     * are started over as they are next used.
+     */
+    public void reload() {
+        var config = plugin.getConfig();
+        String prefix = "conversation.episodic-memory.";
+        this.topK = Math.max(0, config.getInt(prefix + "top-k", 3));
+        this.minSimilarity = (float) config.getDouble(prefix + "min-similarity", 0.3);
+        this.maxEpisodes = Math.max(1, config.getInt(prefix + "max-episodes", 200));
+        this.maxLoaded = Math.max(1, config.getInt(prefix + "max-loaded", 200));
+        this.maxLoadedBytes = Math.max(1, config.getInt(prefix + "max-loaded-mb", 32)) * 1024L * 1024L;
+        this.maxChars = Math.max(50, config.getInt(prefix + "max-chars", 400));
+
+        Embedder created;
+        if ("api".equalsIgnoreCase(config.getString(prefix + "embedding.type", "hashing"))) {
+            created = new ApiEmbedder(config.getString(prefix + "embedding.url", "http://localhost:1234"),
+                    config.getString(prefix + "embedding.model", "nomic-ai/nomic-embed-text-v1.5"),
+                    config.getString(prefix + "embedding.api-key", ""),
+                    config.getInt(prefix + "embedding.timeout-ms", 2000));
+        } else {
+            created = new HashingEmbedder(config.getInt(prefix + "embedding.dimensions", 256));
+        }
+        if (embedder != null && !embedder.id().equals(created.id())) {
+            flush();
+            synchronized (loaded) {
+                loaded.clear();
+            }
+        }
+        this.embedder = created;
+
+        synchronized (this) {
+            if (flushTask != null) {
+                flushTask.cancel();
+            }
+            long intervalTicks = Math.max(1, config.getInt(prefix + "flush-interval-seconds", 60)) * 20L;
+            flushTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::flush, intervalTicks, intervalTicks);
+        }
+    }
+
+    private static String getKey(UUID playerUuid, String npcName) {
+        return playerUuid.toString() + ":" + npcName.toLowerCase();
+    }
+
+    private Path getFile(UUID playerUuid, String npcName) {
+        return folder.resolve(playerUuid.toString()).resolve(npcName.toLowerCase() + ".idx");
+    }
+
+    /**
+     * Remember an exchange (embedded in the background)
+     */
+    public void record(UUID playerUuid, String playerName, String npcName, String userMessage, String reply) {
+        long timestamp = System.currentTimeMillis();
+        String text = truncate(playerName + ": " + userMessage, maxChars / 2) + "\n"
+                + truncate(npcName + ": " + reply, maxChars / 2);
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                float[] vector = embedder.embed(text);
+                index(playerUuid, npcName).add(vector, text, timestamp);
+                recorded.incrementAndGet();
+            } catch (IOException e) {
+                embedFailures.incrementAndGet();
+                plugin.getLogger().warning("[EpisodicMemory] Could not embed exchange: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * The past exchanges most relevant to a message, best first
+     * @param before Only exchanges recorded before this (epoch ms), i.e. older than the history sent verbatim
+     */
+    public List<String> recall(UUID playerUuid, String npcName, String message, long before) {
+        if (topK == 0) return List.of();
+        long start = System.nanoTime();
+        try {
+            float[] query = embedder.embed(message);
+            List<String> texts = new ArrayList<>();
+            for (EpisodeIndex.Match match : index(playerUuid, npcName).search(query, topK, minSimilarity, before)) {
+                texts.add(match.text);
+            }
+            recalled.addAndGet(texts.size());
+            return texts;
+        } catch (IOException e) {
+            embedFailures.incrementAndGet();
+            plugin.getLogger().warning("[EpisodicMemory] Could not embed message for recall: " + e.getMessage());
+            return List.of();
+        } finally {
+            recalls.incrementAndGet();
+            recallNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * A pair's index, loaded from disk if needed; may evict the least recently used
+     */
+    private EpisodeIndex index(UUID playerUuid, String npcName) {
+        String key = getKey(playerUuid, npcName);
+        synchronized (loaded) {
+            EpisodeIndex index = loaded.get(key);
+            if (index != null) return index;
+        }
+        synchronized (ioLock) {
+            EpisodeIndex index;
+            synchronized (loaded) {
+                index = loaded.get(key);
+                if (index != null) return index;
+            }
+            try {
+                index = clearing.contains(key)
+                        ? new EpisodeIndex(embedder.id(), maxEpisodes)
+                        : EpisodeIndex.read(getFile(playerUuid, npcName), embedder.id(), maxEpisodes);
+            } catch (IOException e) {
+                plugin.getLogger().warning("[EpisodicMemory] Starting over with unreadable " + key + ": " + e.getMessage());
+                index = new EpisodeIndex(embedder.id(), maxEpisodes);
+            }
+
+            Map<String, EpisodeIndex> evicted = new HashMap<>();
+            synchronized (loaded) {
+                loaded.put(key, index);
+                long bytes = 0;
+                for (EpisodeIndex other : loaded.values()) {
+                    bytes += other.estimateBytes();
+                }
+                // Never the one just loaded, which is last
+                Iterator<Map.Entry<String, EpisodeIndex>> it = loaded.entrySet().iterator();
+                while ((loaded.size() > maxLoaded || bytes > maxLoadedBytes) && loaded.size() > 1) {
+                    Map.Entry<String, EpisodeIndex> eldest = it.next();
+                    evicted.put(eldest.getKey(), eldest.getValue());
+                    bytes -= eldest.getValue().estimateBytes();
+                    it.remove();
+                }
+            }
+            for (Map.Entry<String, EpisodeIndex> entry : evicted.entrySet()) {
+                write(entry.getKey(), entry.getValue());
+            }
+            return index;
+        }
+    }
+
+    /**
+     * @return false if the write failed
+     */
+    private boolean write(String key, EpisodeIndex index) {
+        // Stays dirty, so the next flush writes it after the old file is deleted
+        if (clearing.contains(key)) return true;
+        int split = key.indexOf(':');
+        Path file = getFile(UUID.fromString(key.substring(0, split)), key.substring(split + 1));
+        try {
+            index.writeIfDirty(file);
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().warning("[EpisodicMemory] Failed to save " + file.getFileName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Write and drop a departed player's indexes (see PlayerSessionService)
+     * @return false if one could not be written; it stays loaded and is tried again next sweep
+     */
+    public boolean evictPlayer(UUID playerUuid) {
+        String prefix = playerUuid.toString() + ":";
+        synchronized (ioLock) {
+            Map<String, EpisodeIndex> removed = new HashMap<>();
+            synchronized (loaded) {
+                Iterator<Map.Entry<String, EpisodeIndex>> it = loaded.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, EpisodeIndex> entry = it.next();
+                    if (entry.getKey().startsWith(prefix)) {
+                        removed.put(entry.getKey(), entry.getValue());
+                        it.remove();
+                    }
+                }
+            }
+            boolean saved = true;
+            for (Map.Entry<String, EpisodeIndex> entry : removed.entrySet()) {
+                if (!write(entry.getKey(), entry.getValue())) {
+                    saved = false;
+                    synchronized (loaded) {
+                        loaded.putIfAbsent(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            return saved;
+        }
+    }
+
+    /**
+     * Forget everything a player said to an NPC
+     */
+    public void clear(UUID playerUuid, String npcName) {
+        String key = getKey(playerUuid, npcName);
+        // Registered first, so a load finishing now doesn't read the old file back
+        clearing.add(key);
+        synchronized (loaded) {
+            loaded.remove(key);
+        }
+        // Off the caller's thread (commands run on the main thread, and a flush may hold ioLock)
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            synchronized (ioLock) {
+                try {
+                    Files.deleteIfExists(getFile(playerUuid, npcName));
+                } catch (IOException e) {
+                    plugin.getLogger().warning("[EpisodicMemory] Could not delete memory of " + npcName + ": " + e.getMessage());
+                } finally {
+                    clearing.remove(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * Write every changed index
+     */
+    public void flush() {
+        List<Map.Entry<String, EpisodeIndex>> dirty = new ArrayList<>();
+        synchronized (loaded) {
+            for (Map.Entry<String, EpisodeIndex> entry : loaded.entrySet()) {
+                if (entry.getValue().isDirty()) {
+                    dirty.add(Map.entry(entry.getKey(), entry.getValue()));
+                }
+            }
+        }
+        synchronized (ioLock) {
+            for (Map.Entry<String, EpisodeIndex> entry : dirty) {
+                write(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    public void shutdown() {
+        synchronized (this) {
+            if (flushTask != null) {
+                flushTask.cancel();
+                flushTask = null;
+            }
+        }
+        flush();
+    }
+
+    private static String truncate(String text, int maxChars) {
+        return text.length() <= maxChars ? text : text.substring(0, maxChars - 3) + "...";
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        int indexes;
+        long episodes = 0;
+        long bytes = 0;
+        synchronized (loaded) {
+            indexes = loaded.size();
+            for (EpisodeIndex index : loaded.values()) {
+                episodes += index.size();
+                bytes += index.estimateBytes();
+            }
+        }
+        long count = recalls.get();
+        stats.put("loadedIndexes", indexes);
+        stats.put("loadedEpisodes", episodes);
+        stats.put("loadedKb", bytes / 1024);
+        stats.put("recorded", recorded.get());
+        stats.put("recalls", count);
+        stats.put("recalledExchanges", recalled.get());
+        stats.put("avgRecallMs", count > 0 ? String.format("%.2f", recallNanos.get() / 1e6 / count) : "0");
+        stats.put("embedFailures", embedFailures.get());
+        return stats;
+    }
+}
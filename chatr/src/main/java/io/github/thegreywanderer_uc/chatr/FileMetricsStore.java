@@ -0,0 +1,154 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import io.github.thegreywanderer_uc.chatr.MetricsTimeSeries.MinuteTotals;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * Metrics as plain files in metrics/.
+ * - series-YYYY-MM-DD.log: one line per minute, appended
+ * - metrics-YYYY-MM-DD.json: the day's summary, rewritten on each save
+ */
+public class FileMetricsStore implements MetricsStore {
+
+    private static final String SERIES_PREFIX = "series-";
+    private static final String SERIES_SUFFIX = ".log";
+    private static final String DAILY_PREFIX = "metrics-";
+    private static final String DAILY_SUFFIX = ".json";
+    private static final String HEADER = "# minute requests cacheHits errors responses responseMsSum responseMsMax promptTokens completionTokens costMicroUsd";
+
+    private final File folder;
+    private final Logger logger;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    public FileMetricsStore(File folder, Logger logger) {
+        this.folder = folder;
+        this.logger = logger;
+    }
+
+    @Override
+    public void appendMinutes(NavigableMap<Long, MinuteTotals> minutes) throws IOException {
+        Map<LocalDate, StringBuilder> linesByDay = new TreeMap<>();
+        for (Map.Entry<Long, MinuteTotals> entry : minutes.entrySet()) {
+            linesByDay.computeIfAbsent(dayOf(entry.getKey()), k -> new StringBuilder())
+                    .append(entry.getKey()).append(' ').append(entry.getValue().toLine()).append('\n');
+        }
+
+        if (linesByDay.isEmpty()) return;
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+
+        IOException failure = null;
+        for (Map.Entry<LocalDate, StringBuilder> entry : linesByDay.entrySet()) {
+            File file = new File(folder, SERIES_PREFIX + entry.getKey() + SERIES_SUFFIX);
+            boolean isNew = !file.exists();
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(file, true), StandardCharsets.UTF_8))) {
+                if (isNew) {
+                    writer.write(HEADER + "\n");
+                }
+                writer.write(entry.getValue().toString());
+            } catch (IOException e) {
+                failure = new IOException("Failed to append time series to " + file.getName() + ": " + e.getMessage(), e);
+                continue;
+            }
+            LocalDate day = entry.getKey();
+            minutes.keySet().removeIf(minute -> dayOf(minute).equals(day));
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public NavigableMap<Long, MinuteTotals> loadMinutes(long fromMinute) {
+        NavigableMap<Long, MinuteTotals> minutes = new TreeMap<>();
+        File[] files = folder.listFiles((dir, name) -> name.startsWith(SERIES_PREFIX) && name.endsWith(SERIES_SUFFIX));
+        if (files == null) return minutes;
+
+        LocalDate oldestKept = dayOf(fromMinute);
+        for (File file : files) {
+            LocalDate day = dateOf(file.getName(), SERIES_PREFIX, SERIES_SUFFIX);
+            if (day == null) continue;
+            if (day.isBefore(oldestKept)) {
+                if (!file.delete()) {
+                    logger.warning("[Metrics] Could not delete expired time series " + file.getName());
+                }
+                continue;
+            }
+            loadFile(file, minutes);
+        }
+        minutes.headMap(fromMinute).clear();
+        return minutes;
+    }
+
+    private void loadFile(File file, NavigableMap<Long, MinuteTotals> minutes) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.trim().split(" ");
+                if (parts.length != 10) continue; // Torn write from a crash
+                try {
+                    long minute = Long.parseLong(parts[0]);
+                    minutes.merge(minute, MinuteTotals.parse(parts), MinuteTotals::plus);
+                } catch (NumberFormatException e) {
+                    // Skip corrupt line
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("[Metrics] Failed to read time series " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void saveDailySummary(LocalDate date, String json) throws IOException {
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+        File file = new File(folder, DAILY_PREFIX + date + DAILY_SUFFIX);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writer.write(json);
+        }
+    }
+
+    /**
+     * Every saved daily summary (for migrating to another store)
+     */
+    public Map<LocalDate, String> loadDailySummaries() throws IOException {
+        Map<LocalDate, String> summaries = new TreeMap<>();
+        File[] files = folder.listFiles((dir, name) -> name.startsWith(DAILY_PREFIX) && name.endsWith(DAILY_SUFFIX));
+        if (files == null) return summaries;
+        for (File file : files) {
+            LocalDate day = dateOf(file.getName(), DAILY_PREFIX, DAILY_SUFFIX);
+            if (day != null) {
+                summaries.put(day, Files.readString(file.toPath(), StandardCharsets.UTF_8));
+            }
+        }
+        return summaries;
+    }
+
+    private static LocalDate dateOf(String name, String prefix, String suffix) {
+        try {
+            return LocalDate.parse(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private LocalDate dayOf(long minute) {
+        return Instant.ofEpochMilli(minute * 60_000L).atZone(zone).toLocalDate();
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Local embedding by feature hashing: words and word pairs are hashed into a fixed number
+ * of dimensions (with a hashed sign, so collisions tend to cancel out) and weighted by
+ * log term frequency. No model or network needed; it matches on shared words rather than
+ * meaning, which is enough to bring back earlier exchanges about the same people, places
+ * and items.
+ */
+public class HashingEmbedder implements Embedder {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "can", "do", "did", "for", "from",
+            "have", "he", "her", "him", "his", "how", "i", "if", "in", "is", "it", "its", "me", "my",
+            "no", "not", "of", "on", "or", "our", "she", "so", "that", "the", "their", "them", "then",
+            "there", "they", "this", "to", "too", "us", "was", "we", "were", "what", "when", "where",
+            "which", "who", "why", "will", "with", "would", "you", "your");
+
+    private final int dimensions;
+
+    public HashingEmbedder(int dimensions) {
+        this.dimensions = Math.max(16, dimensions);
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] counts = new float[dimensions];
+        String previous = null;
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() < 2 || STOP_WORDS.contains(token)) {
+                continue;
+            }
+            add(counts, token.hashCode());
+            if (previous != null) {
+                add(counts, (previous + ' ' + token).hashCode());
+            }
+            previous = token;
+        }
+        for (int i = 0; i < dimensions; i++) {
+            float c = counts[i];
+            counts[i] = c == 0 ? 0 : Math.copySign((float) (1 + Math.log(Math.abs(c))), c);
+        }
+        return Embedder.normalize(counts);
+    }
+
+    private void add(float[] counts, int hash) {
+        // Mix the bits so similar strings spread out, then use one bit for the sign
+        int mixed = hash * 0x9E3779B9;
+        mixed ^= mixed >>> 16;
+        counts[Math.floorMod(mixed, dimensions)] += (mixed & 0x40000000) != 0 ? 1 : -1;
+    }
+
+    @Override
+    public String id() {
+        return "hashing-" + dimensions;
+    }
+}
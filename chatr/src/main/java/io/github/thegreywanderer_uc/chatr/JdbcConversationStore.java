@@ -0,0 +1,255 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import io.github.thegreywanderer_uc.chatr.ConversationManager.ChatMessage;
+import io.github.thegreywanderer_uc.chatr.ConversationManager.ConversationHistory;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Conversations in the conversation_messages table of ChatrDatabase, one row per message.
+ * - Writes are batched inserts on the database's writer thread
+ * - Loads wait for queued writes first, so a player who rejoins sees what was just saved
+ * - Summaries are one row per conversation in conversation_summaries
+ * - compact() deletes expired conversations and messages beyond max-messages
+ */
+public class JdbcConversationStore implements ConversationStore {
+
+    static final String MIGRATED_KEY = "migrated.conversations-json";
+    private static final long FLUSH_TIMEOUT_MS = 10_000;
+
+    private static final String INSERT = "INSERT INTO conversation_messages "
+            + "(player_uuid, player_name, npc, npc_name, role, content, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_PLAYER = "SELECT npc_name, player_name, role, content, created_at "
+            + "FROM conversation_messages WHERE player_uuid = ? ORDER BY npc, id";
+    private static final String SELECT_PLAYERS = "SELECT DISTINCT player_uuid FROM conversation_messages";
+    private static final String SELECT_SUMMARIES = "SELECT npc, summary, summarized_until "
+            + "FROM conversation_summaries WHERE player_uuid = ?";
+
+    private final ChatrDatabase database;
+    private final Logger logger;
+
+    public JdbcConversationStore(ChatrDatabase database, Logger logger) {
+        this.database = database;
+        this.logger = logger;
+    }
+
+    @Override
+    public List<ConversationHistory> loadAll(long cutoffTime, int maxMessages) throws IOException {
+        flushWrites();
+        List<String> players;
+        try {
+            players = database.read(connection -> {
+                List<String> uuids = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement(SELECT_PLAYERS);
+                     ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        uuids.add(result.getString(1));
+                    }
+                }
+                return uuids;
+            });
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        List<ConversationHistory> loaded = new ArrayList<>();
+        for (String uuid : players) {
+            loaded.addAll(query(UUID.fromString(uuid), cutoffTime, maxMessages));
+        }
+        return loaded;
+    }
+
+    @Override
+    public List<ConversationHistory> loadPlayer(UUID playerUuid, long cutoffTime, int maxMessages) throws IOException {
+        flushWrites();
+        return query(playerUuid, cutoffTime, maxMessages);
+    }
+
+    private List<ConversationHistory> query(UUID playerUuid, long cutoffTime, int maxMessages) throws IOException {
+        Map<String, ConversationHistory> histories = new LinkedHashMap<>();
+        try {
+            database.read(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(SELECT_PLAYER)) {
+                    statement.setString(1, playerUuid.toString());
+                    try (ResultSet result = statement.executeQuery()) {
+                        while (result.next()) {
+                            String npcName = result.getString(1);
+                            long createdAt = result.getLong(5);
+                            ConversationHistory history = histories.computeIfAbsent(npcName.toLowerCase(), k -> {
+                                ConversationHistory created = new ConversationHistory(playerUuid, "", npcName, maxMessages);
+                                created.createdAt = createdAt;
+                                return created;
+                            });
+                            history.playerName = result.getString(2);
+                            history.lastUpdated = createdAt;
+                            // The ring keeps only the newest maxMessages
+                            history.messages.add(new ChatMessage(result.getString(3), result.getString(4), createdAt));
+                        }
+                    }
+                }
+                try (PreparedStatement statement = connection.prepareStatement(SELECT_SUMMARIES)) {
+                    statement.setString(1, playerUuid.toString());
+                    try (ResultSet result = statement.executeQuery()) {
+                        while (result.next()) {
+                            ConversationHistory history = histories.get(result.getString(1));
+                            if (history != null) {
+                                history.summary = result.getString(2);
+                                history.summarizedUntil = result.getLong(3);
+                            }
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        histories.values().removeIf(history -> history.lastUpdated < cutoffTime);
+        return new ArrayList<>(histories.values());
+    }
+
+    private void flushWrites() {
+        if (!database.flush(FLUSH_TIMEOUT_MS)) {
+            logger.warning("[ConversationManager] Database writes are behind, loaded history may be missing recent messages");
+        }
+    }
+
+    @Override
+    public void write(ConversationHistory snapshot, List<ChatMessage> appended) {
+        if (appended.isEmpty()) return;
+        List<ChatMessage> messages = List.copyOf(appended);
+        database.submit(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                for (ChatMessage message : messages) {
+                    statement.setString(1, snapshot.playerUuid.toString());
+                    statement.setString(2, snapshot.playerName);
+                    statement.setString(3, snapshot.npcName.toLowerCase());
+                    statement.setString(4, snapshot.npcName);
+                    statement.setString(5, message.role);
+                    statement.setString(6, message.content);
+                    statement.setLong(7, message.timestamp);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    @Override
+    public void writeSummary(ConversationHistory snapshot) {
+        if (snapshot.summary == null) return;
+        String summary = snapshot.summary;
+        long summarizedUntil = snapshot.summarizedUntil;
+        database.submit(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT OR REPLACE INTO conversation_summaries (player_uuid, npc, summary, summarized_until) "
+                            + "VALUES (?, ?, ?, ?)")) {
+                statement.setString(1, snapshot.playerUuid.toString());
+                statement.setString(2, snapshot.npcName.toLowerCase());
+                statement.setString(3, summary);
+                statement.setLong(4, summarizedUntil);
+                statement.executeUpdate();
+            }
+        });
+    }
+
+    @Override
+    public void delete(UUID playerUuid, String npcName) {
+        database.submit(connection -> {
+            for (String table : new String[] {"conversation_messages", "conversation_summaries"}) {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "DELETE FROM " + table + " WHERE player_uuid = ? AND npc = ?")) {
+                    statement.setString(1, playerUuid.toString());
+                    statement.setString(2, npcName.toLowerCase());
+                    statement.executeUpdate();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void deletePlayer(UUID playerUuid) {
+        database.submit(connection -> {
+            for (String table : new String[] {"conversation_messages", "conversation_summaries"}) {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "DELETE FROM " + table + " WHERE player_uuid = ?")) {
+                    statement.setString(1, playerUuid.toString());
+                    statement.executeUpdate();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void deleteNpc(String npcName) {
+        database.submit(connection -> {
+            for (String table : new String[] {"conversation_messages", "conversation_summaries"}) {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "DELETE FROM " + table + " WHERE npc = ?")) {
+                    statement.setString(1, npcName.toLowerCase());
+                    statement.executeUpdate();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void compact(long cutoffTime, int maxMessages) {
+        database.submit(connection -> {
+            int expired;
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM conversation_messages WHERE (player_uuid, npc) IN ("
+                            + "SELECT player_uuid, npc FROM conversation_messages "
+                            + "GROUP BY player_uuid, npc HAVING MAX(created_at) < ?)")) {
+                statement.setLong(1, cutoffTime);
+                expired = statement.executeUpdate();
+            }
+            int trimmed;
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM conversation_messages WHERE id IN (SELECT id FROM ("
+                            + "SELECT id, ROW_NUMBER() OVER (PARTITION BY player_uuid, npc ORDER BY id DESC) AS newest "
+                            + "FROM conversation_messages) WHERE newest > ?)")) {
+                statement.setInt(1, maxMessages);
+                trimmed = statement.executeUpdate();
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM conversation_summaries WHERE (player_uuid, npc) NOT IN ("
+                            + "SELECT DISTINCT player_uuid, npc FROM conversation_messages)")) {
+                statement.executeUpdate();
+            }
+            if (expired + trimmed > 0) {
+                logger.info("[ConversationManager] Deleted " + expired + " expired and " + trimmed + " trimmed messages");
+            }
+        });
+    }
+
+    /**
+     * Copy conversations from another store, once. Later calls do nothing.
+     * @return Number of conversations copied, or -1 if they were copied before
+     */
+    public int importOnce(ConversationStore source, long cutoffTime, int maxMessages) throws IOException {
+        try {
+            if (database.getMeta(MIGRATED_KEY) != null) {
+                return -1;
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        List<ConversationHistory> histories = source.loadAll(cutoffTime, maxMessages);
+        for (ConversationHistory history : histories) {
+            write(history, history.messages.snapshot());
+            writeSummary(history);
+        }
+        database.setMeta(MIGRATED_KEY, Long.toString(System.currentTimeMillis()));
+        flushWrites();
+        return histories.size();
+    }
+}
@@ -0,0 +1,131 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import io.github.thegreywanderer_uc.chatr.MetricsTimeSeries.MinuteTotals;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * Metrics in the metrics_minutes and metrics_daily tables of ChatrDatabase,
+ * so usage can be queried with any SQLite client.
+ */
+public class JdbcMetricsStore implements MetricsStore {
+
+    static final String MIGRATED_KEY = "migrated.metrics-files";
+
+    private static final String INSERT_MINUTE = "INSERT INTO metrics_minutes (minute, requests, cache_hits, errors, "
+            + "responses, response_ms_sum, response_ms_max, prompt_tokens, completion_tokens, cost_micro_usd) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_MINUTES = "SELECT minute, SUM(requests), SUM(cache_hits), SUM(errors), "
+            + "SUM(responses), SUM(response_ms_sum), MAX(response_ms_max), SUM(prompt_tokens), "
+            + "SUM(completion_tokens), SUM(cost_micro_usd) FROM metrics_minutes WHERE minute >= ? GROUP BY minute";
+
+    private final ChatrDatabase database;
+    private final Logger logger;
+
+    public JdbcMetricsStore(ChatrDatabase database, Logger logger) {
+        this.database = database;
+        this.logger = logger;
+    }
+
+    @Override
+    public void appendMinutes(NavigableMap<Long, MinuteTotals> minutes) {
+        if (minutes.isEmpty()) return;
+        NavigableMap<Long, MinuteTotals> copy = new TreeMap<>(minutes);
+        database.submit(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_MINUTE)) {
+                for (Map.Entry<Long, MinuteTotals> entry : copy.entrySet()) {
+                    MinuteTotals totals = entry.getValue();
+                    statement.setLong(1, entry.getKey());
+                    statement.setLong(2, totals.requests);
+                    statement.setLong(3, totals.cacheHits);
+                    statement.setLong(4, totals.errors);
+                    statement.setLong(5, totals.responses);
+                    statement.setLong(6, totals.responseMsSum);
+                    statement.setLong(7, totals.responseMsMax);
+                    statement.setLong(8, totals.promptTokens);
+                    statement.setLong(9, totals.completionTokens);
+                    statement.setLong(10, totals.costMicroUsd);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    @Override
+    public NavigableMap<Long, MinuteTotals> loadMinutes(long fromMinute) throws IOException {
+        if (!database.flush(10_000)) {
+            logger.warning("[Metrics] Database writes are behind, loaded history may be incomplete");
+        }
+        NavigableMap<Long, MinuteTotals> minutes = new TreeMap<>();
+        try {
+            database.read(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(SELECT_MINUTES)) {
+                    statement.setLong(1, fromMinute);
+                    try (ResultSet result = statement.executeQuery()) {
+                        while (result.next()) {
+                            minutes.put(result.getLong(1), new MinuteTotals(result.getLong(2), result.getLong(3),
+                                    result.getLong(4), result.getLong(5), result.getLong(6), result.getLong(7),
+                                    result.getLong(8), result.getLong(9), result.getLong(10)));
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        database.submit(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM metrics_minutes WHERE minute < ?")) {
+                statement.setLong(1, fromMinute);
+                statement.executeUpdate();
+            }
+        });
+        return minutes;
+    }
+
+    @Override
+    public void saveDailySummary(LocalDate date, String json) {
+        String savedAt = Instant.now().toString();
+        database.submit(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT OR REPLACE INTO metrics_daily (date, saved_at, data) VALUES (?, ?, ?)")) {
+                statement.setString(1, date.toString());
+                statement.setString(2, savedAt);
+                statement.setString(3, json);
+                statement.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Copy history and daily summaries from the metrics files, once. Later calls do nothing.
+     * @return Number of minutes copied, or -1 if they were copied before
+     */
+    public int importOnce(FileMetricsStore source, long fromMinute) throws IOException {
+        try {
+            if (database.getMeta(MIGRATED_KEY) != null) {
+                return -1;
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        NavigableMap<Long, MinuteTotals> minutes = source.loadMinutes(fromMinute);
+        appendMinutes(minutes);
+        for (Map.Entry<LocalDate, String> summary : source.loadDailySummaries().entrySet()) {
+            saveDailySummary(summary.getKey(), summary.getValue());
+        }
+        database.setMeta(MIGRATED_KEY, Long.toString(System.currentTimeMillis()));
+        database.flush(10_000);
+        return minutes.size();
+    }
+}
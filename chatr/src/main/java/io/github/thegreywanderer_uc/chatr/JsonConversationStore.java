@@ -0,0 +1,192 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import com.google.gson.Gson;
+import io.github.thegreywanderer_uc.chatr.ConversationManager.ChatMessage;
+import io.github.thegreywanderer_uc.chatr.ConversationManager.ConversationHistory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * One JSON file per player per NPC (conversations/&lt;uuid&gt;/&lt;npc&gt;.json).
+ * Each save rewrites the whole file via a temp file renamed over the old one,
+ * so a crash never leaves a half-written file. compact() deletes expired files.
+ */
+public class JsonConversationStore implements ConversationStore {
+
+    private final File conversationsFolder;
+    private final Gson gson;
+    private final Logger logger;
+    // Held while compact() checks and deletes a folder's files, and while a write swaps a file
+    // in, so an expired file isn't deleted just after a save replaced it
+    private final Object fileLock = new Object();
+
+    public JsonConversationStore(File conversationsFolder, Gson gson, Logger logger) {
+        this.conversationsFolder = conversationsFolder;
+        this.gson = gson;
+        this.logger = logger;
+    }
+
+    /**
+     * Get conversation file path
+     */
+    private File getConversationFile(UUID playerUuid, String npcName) {
+        File playerFolder = new File(conversationsFolder, playerUuid.toString());
+        return new File(playerFolder, npcName.toLowerCase() + ".json");
+    }
+
+    @Override
+    public List<ConversationHistory> loadAll(long cutoffTime, int maxMessages) {
+        List<ConversationHistory> loaded = new ArrayList<>();
+        if (!conversationsFolder.exists()) {
+            conversationsFolder.mkdirs();
+            return loaded;
+        }
+
+        // Iterate through player folders
+        File[] playerFolders = conversationsFolder.listFiles(File::isDirectory);
+        if (playerFolders == null) return loaded;
+
+        for (File playerFolder : playerFolders) {
+            loadFolder(playerFolder, cutoffTime, maxMessages, loaded);
+        }
+        return loaded;
+    }
+
+    @Override
+    public List<ConversationHistory> loadPlayer(UUID playerUuid, long cutoffTime, int maxMessages) {
+        List<ConversationHistory> loaded = new ArrayList<>();
+        loadFolder(new File(conversationsFolder, playerUuid.toString()), cutoffTime, maxMessages, loaded);
+        return loaded;
+    }
+
+    private void loadFolder(File playerFolder, long cutoffTime, int maxMessages, List<ConversationHistory> loaded) {
+        // Leftovers from a write interrupted by a crash; the .json next to them is intact
+        File[] tempFiles = playerFolder.listFiles((dir, name) -> name.endsWith(".json.tmp"));
+        if (tempFiles != null) {
+            for (File temp : tempFiles) {
+                temp.delete();
+            }
+        }
+
+        File[] conversationFiles = playerFolder.listFiles((dir, name) -> name.endsWith(".json"));
+        if (conversationFiles == null) return;
+
+        for (File file : conversationFiles) {
+            try (Reader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(file), StandardCharsets.UTF_8))) {
+                ConversationHistory history = gson.fromJson(reader, ConversationHistory.class);
+
+                if (history != null) {
+                    // Check if conversation is too old
+                    if (history.lastUpdated < cutoffTime) {
+                        file.delete();
+                        continue;
+                    }
+                    history.messages.setCapacity(maxMessages);
+                    loaded.add(history);
+                }
+            } catch (Exception e) {
+                logger.warning("[ConversationManager] Failed to load " + file.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Delete conversation files not written since the cutoff, so players who never
+     * come back don't keep their files forever
+     */
+    @Override
+    public void compact(long cutoffTime, int maxMessages) {
+        File[] playerFolders = conversationsFolder.listFiles(File::isDirectory);
+        if (playerFolders == null) return;
+
+        int deleted = 0;
+        for (File playerFolder : playerFolders) {
+            synchronized (fileLock) {
+                File[] conversationFiles = playerFolder.listFiles((dir, name) -> name.endsWith(".json"));
+                if (conversationFiles == null) continue;
+                for (File file : conversationFiles) {
+                    if (file.lastModified() < cutoffTime && file.delete()) {
+                        deleted++;
+                    }
+                }
+                String[] remaining = playerFolder.list();
+                if (remaining != null && remaining.length == 0) {
+                    playerFolder.delete();
+                }
+            }
+        }
+        if (deleted > 0) {
+            logger.info("[ConversationManager] Deleted " + deleted + " expired conversation files");
+        }
+    }
+
+    @Override
+    public void write(ConversationHistory snapshot, List<ChatMessage> appended) throws IOException {
+        File file = getConversationFile(snapshot.playerUuid, snapshot.npcName);
+        String json = gson.toJson(snapshot);
+        synchronized (fileLock) {
+            writeAtomically(file.toPath(), json);
+        }
+    }
+
+    @Override
+    public void writeSummary(ConversationHistory snapshot) throws IOException {
+        // The summary is part of the file
+        write(snapshot, List.of());
+    }
+
+    @Override
+    public void delete(UUID playerUuid, String npcName) {
+        File file = getConversationFile(playerUuid, npcName);
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+
+    @Override
+    public void deletePlayer(UUID playerUuid) {
+        File playerFolder = new File(conversationsFolder, playerUuid.toString());
+        if (playerFolder.exists() && playerFolder.isDirectory()) {
+            for (File file : playerFolder.listFiles()) {
+                file.delete();
+            }
+            playerFolder.delete();
+        }
+    }
+
+    @Override
+    public void deleteNpc(String npcName) {
+        File[] playerFolders = conversationsFolder.listFiles(File::isDirectory);
+        if (playerFolders == null) return;
+        for (File playerFolder : playerFolders) {
+            File file = new File(playerFolder, npcName.toLowerCase() + ".json");
+            if (file.exists()) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Replace a file's contents so readers see either the old or the new file, never a partial one
+     */
+    static void writeAtomically(Path target, String content) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets.
+ * - Values are recorded in microseconds
+ * - Each power of two is split into 16 sub-buckets (~6% worst-case error)
+ * - Recording is a couple of atomic adds, safe from any thread
+ * - Reads work on a point-in-time Snapshot
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    // Highest tracked magnitude: values are clamped below 2^40 µs (~12 days)
+    private static final int MAX_MAGNITUDE = 40;
+    private static final long MAX_TRACKABLE_MICROS = (1L << MAX_MAGNITUDE) - 1;
+
+    static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_MAGNITUDE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Record a duration in microseconds
+     */
+    public void recordMicros(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_TRACKABLE_MICROS));
+        counts.incrementAndGet(bucketIndex(value));
+        totalMicros.add(value);
+        maxMicros.accumulate(value);
+    }
+
+    /**
+     * Record a duration in nanoseconds (as measured with System.nanoTime)
+     */
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    /**
+     * Record a duration in milliseconds
+     */
+    public void recordMillis(long millis) {
+        recordMicros(millis * 1000);
+    }
+
+    /**
+     * Clear all recorded values.
+     * Not atomic with respect to concurrent recorders - a value recorded
+     * while the reset is in progress may be partially lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalMicros.reset();
+        maxMicros.reset();
+    }
+
+    /**
+     * Take a point-in-time copy of the histogram
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, totalMicros.sum(), maxMicros.get());
+    }
+
+    /**
+     * Map a value to its bucket.
+     * Values below 16 get their own bucket, larger values share a bucket
+     * with everything that has the same magnitude and top 4 mantissa bits.
+     */
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKET_COUNT) {
+            return (int) micros;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (magnitude - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + (magnitude - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Highest value that maps to the given bucket
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_COUNT;
+        long lower = (long) (SUB_BUCKET_COUNT + offset % SUB_BUCKET_COUNT) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Immutable histogram copy used for percentile queries and merging
+     */
+    public static class Snapshot {
+        public static final Snapshot EMPTY = new Snapshot(new long[BUCKET_COUNT], 0, 0, 0);
+
+        private final long[] counts;
+        private final long count;
+        private final long totalMicros;
+        private final long maxMicros;
+
+        Snapshot(long[] counts, long count, long totalMicros, long maxMicros) {
+            this.counts = counts;
+            this.count = count;
+            this.totalMicros = totalMicros;
+            this.maxMicros = maxMicros;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalMicros() {
+            return totalMicros;
+        }
+
+        public long getMaxMicros() {
+            return maxMicros;
+        }
+
+        public double getMeanMicros() {
+            return count > 0 ? (double) totalMicros / count : 0;
+        }
+
+        /**
+         * Value at the given percentile (0-100), capped at the recorded max
+         */
+        public long percentileMicros(double percentile) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(percentile / 100.0 * count);
+            rank = Math.max(1, Math.min(rank, count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), maxMicros);
+                }
+            }
+            return maxMicros;
+        }
+
+        /**
+         * Number of recorded values at or below the given bound
+         */
+        public long countAtOrBelow(long micros) {
+            if (micros >= maxMicros) return count;
+            int lastIndex = bucketIndex(Math.min(micros, MAX_TRACKABLE_MICROS));
+            long seen = 0;
+            for (int i = 0; i < lastIndex; i++) {
+                seen += counts[i];
+            }
+            // The bound's own bucket only counts if the whole bucket is covered
+            if (bucketUpperBound(lastIndex) <= micros) {
+                seen += counts[lastIndex];
+            }
+            return seen;
+        }
+
+        /**
+         * Combine two snapshots into a new one
+         */
+        public Snapshot merge(Snapshot other) {
+            long[] merged = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                merged[i] = counts[i] + other.counts[i];
+            }
+            return new Snapshot(merged, count + other.count, totalMicros + other.totalMicros,
+                    Math.max(maxMicros, other.maxMicros));
+        }
+    }
+}
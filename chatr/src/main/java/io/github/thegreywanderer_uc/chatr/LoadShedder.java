@@ -0,0 +1,285 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+/**
+ * Graceful degradation when AI providers are saturated.
+ * - Watches in-flight requests, provider admission wait times and the provider error rate
+ * - NORMAL -> ELEVATED -> CRITICAL as soon as any signal crosses a level's threshold
+ * - Steps back down one level at a time, once every signal has stayed below
+ *   recover-ratio of the threshold for recover-seconds (hysteresis, so it doesn't flap)
+ * Each level can serve stale cache entries, cap max_tokens, switch to a cheaper model,
+ * show a "thinking..." message and answer failures with a canned reply.
+ */
+public class LoadShedder {
+
+    public enum Level { NORMAL, ELEVATED, CRITICAL }
+
+    // Signals decay toward zero when nothing new happens
+    private static final long HALF_LIFE_MS = 30_000;
+    private static final double WAIT_ALPHA = 0.2;
+    private static final double ERROR_ALPHA = 0.1;
+
+    private final JavaPlugin plugin;
+    private final IntSupplier inFlight;
+
+    private volatile boolean enabled;
+    private volatile Stage elevated;
+    private volatile Stage critical;
+    private volatile long recoverMs;
+    private volatile double recoverRatio;
+    private volatile String thinkingMessage;
+    private volatile String busyReply;
+
+    // Smoothed signals, guarded by this
+    private double queueWaitMs;
+    private double errorRate;
+    private long lastSampleAt = System.currentTimeMillis();
+
+    private volatile Level level = Level.NORMAL;
+    private long calmSince;
+    private long levelChanges;
+
+    public LoadShedder(JavaPlugin plugin, IntSupplier inFlight) {
+        this.plugin = plugin;
+        this.inFlight = inFlight;
+        reload();
+    }
+
+    /**
+     * For tests: fixed stages without a plugin
+     */
+    LoadShedder(IntSupplier inFlight, Stage elevated, Stage critical, long recoverMs) {
+        this.plugin = null;
+        this.inFlight = inFlight;
+        this.enabled = true;
+        this.elevated = elevated;
+        this.critical = critical;
+        this.recoverMs = recoverMs;
+        this.recoverRatio = 0.7;
+        this.thinkingMessage = "";
+        this.busyReply = "";
+    }
+
+    /**
+     * Reload thresholds and actions from config
+     */
+    public void reload() {
+        var config = plugin.getConfig();
+        this.enabled = config.getBoolean("load-shedding.enabled", true);
+        this.recoverMs = Math.max(1, config.getInt("load-shedding.recover-seconds", 30)) * 1000L;
+        this.recoverRatio = Math.min(1.0, Math.max(0.1, config.getDouble("load-shedding.recover-ratio", 0.7)));
+        this.thinkingMessage = config.getString("load-shedding.thinking-message", "&7&o{npc} is thinking...");
+        this.busyReply = config.getString("load-shedding.busy-reply",
+                "So many adventurers at once! Ask me again in a moment.");
+        this.elevated = Stage.from(config.getConfigurationSection("load-shedding.elevated"),
+                new Stage(16, 3000, 0.25, 300, true, false, Map.of()));
+        this.critical = Stage.from(config.getConfigurationSection("load-shedding.critical"),
+                new Stage(32, 10_000, 0.5, 150, true, true, Map.of()));
+    }
+
+    /**
+     * Record how long a request waited for provider admission
+     */
+    public synchronized void recordQueueWait(long waitMs) {
+        decay(System.currentTimeMillis());
+        queueWaitMs += WAIT_ALPHA * (waitMs - queueWaitMs);
+    }
+
+    /**
+     * Record whether a provider call succeeded
+     */
+    public synchronized void recordOutcome(boolean success) {
+        decay(System.currentTimeMillis());
+        errorRate += ERROR_ALPHA * ((success ? 0 : 1) - errorRate);
+    }
+
+    private void decay(long now) {
+        long elapsed = now - lastSampleAt;
+        if (elapsed > 0) {
+            double factor = Math.pow(0.5, (double) elapsed / HALF_LIFE_MS);
+            queueWaitMs *= factor;
+            errorRate *= factor;
+            lastSampleAt = now;
+        }
+    }
+
+    /**
+     * Current level, re-evaluated from the signals
+     */
+    public Level getLevel() {
+        if (!enabled) return Level.NORMAL;
+        return evaluate(System.currentTimeMillis());
+    }
+
+    synchronized Level evaluate(long now) {
+        decay(now);
+        int requests = inFlight.getAsInt();
+
+        Level target = Level.NORMAL;
+        if (critical.isCrossed(requests, queueWaitMs, errorRate, 1.0)) {
+            target = Level.CRITICAL;
+        } else if (elevated.isCrossed(requests, queueWaitMs, errorRate, 1.0)) {
+            target = Level.ELEVATED;
+        }
+
+        if (target.ordinal() > level.ordinal()) {
+            changeLevel(target, requests);
+            calmSince = 0;
+        } else if (target.ordinal() < level.ordinal()) {
+            // Only step down once signals are clearly below the current level's thresholds
+            Stage current = level == Level.CRITICAL ? critical : elevated;
+            if (current.isCrossed(requests, queueWaitMs, errorRate, recoverRatio)) {
+                calmSince = 0;
+            } else if (calmSince == 0) {
+                calmSince = now;
+            } else if (now - calmSince >= recoverMs) {
+                changeLevel(Level.values()[level.ordinal() - 1], requests);
+                calmSince = now;
+            }
+        } else {
+            calmSince = 0;
+        }
+        return level;
+    }
+
+    private void changeLevel(Level next, int requests) {
+        Level previous = level;
+        level = next;
+        levelChanges++;
+        if (plugin != null) {
+            String message = "[LoadShedding] " + previous + " -> " + next + " (in-flight " + requests
+                    + ", queue wait " + Math.round(queueWaitMs) + "ms, error rate "
+                    + String.format("%.0f%%", errorRate * 100) + ")";
+            if (next.ordinal() > previous.ordinal()) {
+                plugin.getLogger().warning(message);
+            } else {
+                plugin.getLogger().info(message);
+            }
+        }
+    }
+
+    private Stage stageFor(Level current) {
+        switch (current) {
+            case CRITICAL: return critical;
+            case ELEVATED: return elevated;
+            default: return null;
+        }
+    }
+
+    /**
+     * Whether expired cache entries may be served instead of calling the provider
+     */
+    public boolean shouldServeStale(Level current) {
+        Stage stage = stageFor(current);
+        return stage != null && stage.serveStaleCache;
+    }
+
+    /**
+     * Cap max_tokens for the current level
+     */
+    public int adjustMaxTokens(Level current, int maxTokens) {
+        Stage stage = stageFor(current);
+        return stage != null && stage.maxTokens > 0 ? Math.min(maxTokens, stage.maxTokens) : maxTokens;
+    }
+
+    /**
+     * Cheaper model for a provider at the current level, or the original model
+     */
+    public String adjustModel(Level current, String providerId, String model) {
+        Stage stage = stageFor(current);
+        if (stage == null || providerId == null) return model;
+        String cheaper = stage.models.get(providerId.toLowerCase());
+        return cheaper != null && !cheaper.isEmpty() ? cheaper : model;
+    }
+
+    /**
+     * "Thinking..." message to show while the player waits, or null for none
+     */
+    public String getThinkingMessage(Level current, String npcName) {
+        if (current == Level.NORMAL || thinkingMessage == null || thinkingMessage.isEmpty()) return null;
+        return thinkingMessage.replace("{npc}", npcName);
+    }
+
+    /**
+     * Canned reply when a request fails under pressure, or null to report the error as usual
+     */
+    public String getBusyReply(Level current) {
+        Stage stage = stageFor(current);
+        if (stage == null || !stage.cannedReplies || busyReply == null || busyReply.isEmpty()) return null;
+        return busyReply;
+    }
+
+    /**
+     * Current signals and level, for /chatr stats
+     */
+    public synchronized Map<String, Object> getStats() {
+        decay(System.currentTimeMillis());
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("level", level.name());
+        stats.put("inFlight", inFlight.getAsInt());
+        stats.put("queueWaitMs", Math.round(queueWaitMs));
+        stats.put("errorRate", String.format("%.1f%%", errorRate * 100));
+        stats.put("levelChanges", levelChanges);
+        return stats;
+    }
+
+    /**
+     * Thresholds that trigger a level, and what the level does
+     */
+    static class Stage {
+        final int inFlight;
+        final long queueWaitMs;
+        final double errorRate;
+        final int maxTokens;
+        final boolean serveStaleCache;
+        final boolean cannedReplies;
+        final Map<String, String> models;
+
+        Stage(int inFlight, long queueWaitMs, double errorRate, int maxTokens,
+              boolean serveStaleCache, boolean cannedReplies, Map<String, String> models) {
+            this.inFlight = inFlight;
+            this.queueWaitMs = queueWaitMs;
+            this.errorRate = errorRate;
+            this.maxTokens = maxTokens;
+            this.serveStaleCache = serveStaleCache;
+            this.cannedReplies = cannedReplies;
+            this.models = models;
+        }
+
+        static Stage from(ConfigurationSection section, Stage defaults) {
+            if (section == null) return defaults;
+            Map<String, String> models = new HashMap<>();
+            ConfigurationSection modelSection = section.getConfigurationSection("models");
+            if (modelSection != null) {
+                for (String providerId : modelSection.getKeys(false)) {
+                    models.put(providerId.toLowerCase(), modelSection.getString(providerId, ""));
+                }
+            }
+            return new Stage(
+                    section.getInt("in-flight", defaults.inFlight),
+                    section.getLong("queue-wait-ms", defaults.queueWaitMs),
+                    section.getDouble("error-rate", defaults.errorRate),
+                    section.getInt("max-tokens", defaults.maxTokens),
+                    section.getBoolean("serve-stale-cache", defaults.serveStaleCache),
+                    section.getBoolean("canned-replies", defaults.cannedReplies),
+                    Map.copyOf(models));
+        }
+
+        /**
+         * Whether any signal is at or above ratio * its threshold (0 disables a signal)
+         */
+        boolean isCrossed(int requests, double waitMs, double errors, double ratio) {
+            return (inFlight > 0 && requests >= inFlight * ratio)
+                    || (queueWaitMs > 0 && waitMs >= queueWaitMs * ratio)
+                    || (errorRate > 0 && errors >= errorRate * ratio);
+        }
+    }
+}
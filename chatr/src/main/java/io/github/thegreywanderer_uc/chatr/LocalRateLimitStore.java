@@ -0,0 +1,114 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory GCRA state: one packed AtomicLong per player, updated by CAS,
+ * so a check that passes also consumes without locks or allocation.
+ */
+public class LocalRateLimitStore implements RateLimitStore {
+    
+    // State layout: high 40 bits = last accepted request (ms since epochBase),
+    // low 24 bits = TAT minus last request (ms, clamped)
+    private static final int TAT_BITS = 24;
+    private static final long TAT_MASK = (1L << TAT_BITS) - 1;
+    static final long EMPTY = -1L;
+    
+    // Key: playerUUID -> packed GCRA state
+    private final Map<UUID, AtomicLong> playerStates = new ConcurrentHashMap<>();
+    
+    // Timestamps are stored relative to this, so they fit in 40 bits
+    private final long epochBase = System.currentTimeMillis();
+    
+    @Override
+    public long acquire(UUID player, long intervalMs, long toleranceMs, long cooldownMs) {
+        return acquire(stateFor(player), now(), intervalMs, toleranceMs, cooldownMs);
+    }
+    
+    @Override
+    public int remaining(UUID player, long intervalMs, int burst) {
+        AtomicLong state = playerStates.get(player);
+        long current = state != null ? state.get() : EMPTY;
+        if (current == EMPTY) {
+            return burst;
+        }
+        long last = current >>> TAT_BITS;
+        return RateLimitStore.remainingFor(last + (current & TAT_MASK), now(), intervalMs, burst);
+    }
+    
+    @Override
+    public void clear(UUID player) {
+        playerStates.remove(player);
+    }
+    
+    @Override
+    public boolean clearIfRecovered(UUID player) {
+        AtomicLong state = playerStates.get(player);
+        if (state == null) {
+            return true;
+        }
+        long current = state.get();
+        if (current != EMPTY) {
+            long last = current >>> TAT_BITS;
+            if (last + (current & TAT_MASK) > now()) {
+                return false;
+            }
+        }
+        playerStates.remove(player, state);
+        return true;
+    }
+    
+    /**
+     * GCRA check-and-consume on a packed state.
+     * @param state Packed state (EMPTY for a fresh player)
+     * @param now Current time, relative to epochBase
+     * @param intervalMs Emission interval (60000 / requests-per-minute), 0 for unlimited
+     * @param toleranceMs Burst tolerance ((burst - 1) * intervalMs)
+     * @param cooldownMs Minimum time between accepted requests
+     * @return 0 if allowed and consumed, -waitMs if blocked by cooldown, +waitMs if over the rate
+     */
+    static long acquire(AtomicLong state, long now, long intervalMs, long toleranceMs, long cooldownMs) {
+        while (true) {
+            long current = state.get();
+            long last;
+            long tat;
+            if (current == EMPTY) {
+                last = Long.MIN_VALUE;
+                tat = now;
+            } else {
+                last = current >>> TAT_BITS;
+                tat = last + (current & TAT_MASK);
+            }
+            
+            if (last != Long.MIN_VALUE && now - last < cooldownMs) {
+                return -(last + cooldownMs - now);
+            }
+            
+            tat = Math.max(tat, now);
+            if (tat - now > toleranceMs) {
+                return tat - toleranceMs - now;
+            }
+            
+            long next = pack(now, tat + intervalMs);
+            if (state.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+    
+    private static long pack(long last, long tat) {
+        return (last << TAT_BITS) | Math.min(tat - last, TAT_MASK);
+    }
+    
+    private long now() {
+        return Math.max(0, System.currentTimeMillis() - epochBase);
+    }
+    
+    private AtomicLong stateFor(UUID uuid) {
+        AtomicLong state = playerStates.get(uuid);
+        return state != null ? state : playerStates.computeIfAbsent(uuid, k -> new AtomicLong(EMPTY));
+    }
+}
@@ -0,0 +1,685 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import io.github.thegreywanderer_uc.chatr.ConversationManager.ChatMessage;
+import io.github.thegreywanderer_uc.chatr.ConversationManager.ConversationHistory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only segmented log of conversation messages.
+ * - Each message is one binary record: [length][CRC32][payload], appended to the active
+ *   segment (segment-NNNNNN.log), which rolls over once it reaches the segment size
+ * - Clearing a conversation or a player appends a tombstone record
+ * - A new summary is one record too; only the newest per conversation is read
+ * - An in-memory index maps each player's conversations to the positions of their records, built by
+ *   scanning the segments on open; a torn record at the end of the last segment (crash
+ *   mid-write) is truncated away, and the rest of an older segment after a bad checksum
+ *   is skipped
+ * - compact() rewrites the live records (newest max-messages per conversation, expired
+ *   conversations dropped) into one segment and deletes the old ones; the store is only
+ *   locked while it seals the active segment and while it swaps the result in
+ */
+public class LogConversationStore implements ConversationStore {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.log");
+    private static final String COMPACTED_SUFFIX = ".compacted";
+    private static final String COMPACT_TEMP = "compact.tmp";
+
+    private static final byte APPEND = 1;
+    private static final byte CLEAR = 2;
+    private static final byte CLEAR_PLAYER = 3;
+    // Same layout as APPEND; content is the summary and timestamp its summarizedUntil
+    private static final byte SUMMARY = 4;
+
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+    // Record position layout: high 24 bits = segment id, low 40 bits = offset in segment
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    private final Path folder;
+    private final long segmentBytes;
+    private final boolean fsync;
+    private final Logger logger;
+
+    // Player -> lowercase NPC name -> record positions, oldest first
+    private final Map<UUID, Map<String, List<Long>>> index = new HashMap<>();
+    // Player -> lowercase NPC name -> position of the newest summary record
+    private final Map<UUID, Map<String, Long>> summaries = new HashMap<>();
+    private final Map<Integer, FileChannel> readers = new HashMap<>();
+
+    private int activeId;
+    private FileChannel active;
+    private long activeSize;
+    private long bytesSinceCompaction;
+    private boolean compacting;
+
+    /**
+     * Open (or create) the log in a folder and build the index
+     * @param segmentBytes Roll to a new segment once the active one reaches this size
+     * @param fsync Force each batch of appends to disk before returning
+     */
+    public LogConversationStore(Path folder, long segmentBytes, boolean fsync, Logger logger) throws IOException {
+        this.folder = folder;
+        this.segmentBytes = Math.max(64 * 1024, segmentBytes);
+        this.fsync = fsync;
+        this.logger = logger;
+        Files.createDirectories(folder);
+        recoverCompaction();
+
+        List<Integer> ids = segmentIds();
+        for (int i = 0; i < ids.size(); i++) {
+            scan(ids.get(i), i == ids.size() - 1);
+            // Compact at least once per run, in case the last run never got to it
+            bytesSinceCompaction += Files.size(segmentPath(ids.get(i)));
+        }
+        openActive(ids.isEmpty() ? 1 : ids.get(ids.size() - 1));
+    }
+
+    private Path segmentPath(int id) {
+        return folder.resolve(String.format("segment-%06d.log", id));
+    }
+
+    private static long position(int segmentId, long offset) {
+        return ((long) segmentId << OFFSET_BITS) | offset;
+    }
+
+    private List<Integer> segmentIds() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(folder)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    ids.add(Integer.parseInt(matcher.group(1)));
+                }
+            });
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Finish or discard a compaction interrupted by a crash. Once the compacted segment has
+     * been renamed into place it is complete, so the segments it replaces can go.
+     */
+    private void recoverCompaction() throws IOException {
+        Files.deleteIfExists(folder.resolve(COMPACT_TEMP));
+        try (Stream<Path> files = Files.list(folder)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(COMPACTED_SUFFIX)) {
+                    Matcher matcher = SEGMENT_NAME.matcher(name.substring(0, name.length() - COMPACTED_SUFFIX.length()));
+                    if (matcher.matches()) {
+                        finishCompaction(Integer.parseInt(matcher.group(1)));
+                        logger.info("[ConversationLog] Finished an interrupted compaction");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace every segment up to lastId with the compacted one
+     */
+    private void finishCompaction(int lastId) throws IOException {
+        for (int id : segmentIds()) {
+            if (id <= lastId) {
+                Files.deleteIfExists(segmentPath(id));
+            }
+        }
+        Path segment = segmentPath(lastId);
+        Files.move(segment.resolveSibling(segment.getFileName() + COMPACTED_SUFFIX), segment,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a segment and apply its records to the index
+     */
+    private void scan(int id, boolean last) throws IOException {
+        Path path = segmentPath(id);
+        long offset = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            while (true) {
+                Record record;
+                try {
+                    record = readRecord(in);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (record == null) {
+                    break;
+                }
+                apply(record, position(id, offset));
+                offset += HEADER_BYTES + record.size;
+            }
+        }
+
+        long size = Files.size(path);
+        if (offset < size) {
+            if (last) {
+                // Torn write from a crash: drop the partial record so appends continue from a valid end
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(offset);
+                }
+                logger.warning("[ConversationLog] Truncated " + (size - offset) + " bytes of incomplete data from " + path.getFileName());
+            } else {
+                logger.warning("[ConversationLog] Skipped " + (size - offset) + " bytes of corrupt data in " + path.getFileName());
+            }
+        }
+    }
+
+    private void apply(Record record, long position) {
+        switch (record.type) {
+            case APPEND -> index.computeIfAbsent(record.playerUuid, k -> new HashMap<>())
+                    .computeIfAbsent(record.npcName.toLowerCase(), k -> new ArrayList<>())
+                    .add(position);
+            case SUMMARY -> summaries.computeIfAbsent(record.playerUuid, k -> new HashMap<>())
+                    .put(record.npcName.toLowerCase(), position);
+            case CLEAR -> {
+                Map<String, List<Long>> npcs = index.get(record.playerUuid);
+                if (npcs != null) {
+                    npcs.remove(record.npcName.toLowerCase());
+                    if (npcs.isEmpty()) index.remove(record.playerUuid);
+                }
+                Map<String, Long> npcSummaries = summaries.get(record.playerUuid);
+                if (npcSummaries != null) {
+                    npcSummaries.remove(record.npcName.toLowerCase());
+                    if (npcSummaries.isEmpty()) summaries.remove(record.playerUuid);
+                }
+            }
+            case CLEAR_PLAYER -> {
+                index.remove(record.playerUuid);
+                summaries.remove(record.playerUuid);
+            }
+            default -> { }
+        }
+    }
+
+    private void openActive(int id) throws IOException {
+        activeId = id;
+        active = FileChannel.open(segmentPath(id), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        activeSize = active.size();
+        active.position(activeSize);
+    }
+
+    private void roll() throws IOException {
+        active.force(true);
+        active.close();
+        openActive(activeId + 1);
+    }
+
+    /**
+     * Append records in one write and index them
+     */
+    private void append(List<Record> records) throws IOException {
+        if (records.isEmpty()) return;
+        List<byte[]> frames = new ArrayList<>(records.size());
+        int total = 0;
+        for (Record record : records) {
+            byte[] frame = frame(record);
+            frames.add(frame);
+            total += frame.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        frames.forEach(buffer::put);
+        buffer.flip();
+
+        long start = activeSize;
+        try {
+            while (buffer.hasRemaining()) {
+                active.write(buffer);
+            }
+            if (fsync) {
+                active.force(false);
+            }
+        } catch (IOException e) {
+            // Cut off whatever part of the batch made it, so the log stays well-formed
+            active.truncate(start);
+            active.position(start);
+            throw e;
+        }
+
+        long offset = start;
+        for (int i = 0; i < records.size(); i++) {
+            apply(records.get(i), position(activeId, offset));
+            offset += frames.get(i).length;
+        }
+        activeSize = offset;
+        bytesSinceCompaction += total;
+        if (activeSize >= segmentBytes) {
+            roll();
+        }
+    }
+
+    @Override
+    public synchronized List<ConversationHistory> loadAll(long cutoffTime, int maxMessages) throws IOException {
+        List<ConversationHistory> loaded = new ArrayList<>();
+        for (UUID playerUuid : index.keySet()) {
+            loaded.addAll(loadPlayer(playerUuid, cutoffTime, maxMessages));
+        }
+        return loaded;
+    }
+
+    @Override
+    public synchronized List<ConversationHistory> loadPlayer(UUID playerUuid, long cutoffTime, int maxMessages) throws IOException {
+        List<ConversationHistory> loaded = new ArrayList<>();
+        Map<String, List<Long>> npcs = index.get(playerUuid);
+        if (npcs == null) return loaded;
+        for (Map.Entry<String, List<Long>> entry : npcs.entrySet()) {
+            ConversationHistory history = read(entry.getValue(), maxMessages);
+            if (history != null && history.lastUpdated >= cutoffTime) {
+                Long summary = summaryPosition(playerUuid, entry.getKey());
+                if (summary != null) {
+                    Record record = readAt(summary);
+                    history.summary = record.content;
+                    history.summarizedUntil = record.timestamp;
+                }
+                loaded.add(history);
+            }
+        }
+        return loaded;
+    }
+
+    private Long summaryPosition(UUID playerUuid, String npc) {
+        Map<String, Long> npcSummaries = summaries.get(playerUuid);
+        return npcSummaries != null ? npcSummaries.get(npc) : null;
+    }
+
+    /**
+     * Rebuild a conversation from the newest maxMessages of its records
+     */
+    private ConversationHistory read(List<Long> positions, int maxMessages) throws IOException {
+        ConversationHistory history = null;
+        for (int i = Math.max(0, positions.size() - maxMessages); i < positions.size(); i++) {
+            Record record = readAt(positions.get(i));
+            if (history == null) {
+                history = new ConversationHistory(record.playerUuid, record.playerName, record.npcName, maxMessages);
+                history.createdAt = record.timestamp;
+            }
+            history.playerName = record.playerName;
+            history.lastUpdated = record.timestamp;
+            history.messages.add(new ChatMessage(record.role, record.content, record.timestamp));
+        }
+        return history;
+    }
+
+    private Record readAt(long position) throws IOException {
+        return readAt(readers, position);
+    }
+
+    private Record readAt(Map<Integer, FileChannel> channels, long position) throws IOException {
+        int segmentId = segmentOf(position);
+        long offset = position & OFFSET_MASK;
+        FileChannel channel = channels.get(segmentId);
+        if (channel == null) {
+            channel = FileChannel.open(segmentPath(segmentId), StandardOpenOption.READ);
+            channels.put(segmentId, channel);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(channel, header, offset);
+        header.flip();
+        int size = header.getInt();
+        int crc = header.getInt();
+        if (size <= 0 || size > MAX_RECORD_BYTES) {
+            throw new IOException("Corrupt record in segment " + segmentId + " at " + offset);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        readFully(channel, payload, offset + HEADER_BYTES);
+        Record record = decode(payload.array(), crc);
+        if (record == null) {
+            throw new IOException("Checksum mismatch in segment " + segmentId + " at " + offset);
+        }
+        return record;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Record past end of segment");
+            }
+        }
+    }
+
+    @Override
+    public synchronized void write(ConversationHistory snapshot, List<ChatMessage> appended) throws IOException {
+        List<Record> records = new ArrayList<>(appended.size());
+        for (ChatMessage message : appended) {
+            records.add(new Record(APPEND, snapshot.playerUuid, snapshot.npcName, snapshot.playerName,
+                    message.role, message.content, message.timestamp));
+        }
+        append(records);
+    }
+
+    @Override
+    public synchronized void writeSummary(ConversationHistory snapshot) throws IOException {
+        if (snapshot.summary == null) return;
+        append(List.of(new Record(SUMMARY, snapshot.playerUuid, snapshot.npcName, snapshot.playerName,
+                "", snapshot.summary, snapshot.summarizedUntil)));
+    }
+
+    @Override
+    public synchronized void delete(UUID playerUuid, String npcName) throws IOException {
+        Map<String, List<Long>> npcs = index.get(playerUuid);
+        if (npcs == null || !npcs.containsKey(npcName.toLowerCase())) return;
+        append(List.of(new Record(CLEAR, playerUuid, npcName, "", "", "", System.currentTimeMillis())));
+    }
+
+    @Override
+    public synchronized void deletePlayer(UUID playerUuid) throws IOException {
+        if (!index.containsKey(playerUuid)) return;
+        append(List.of(new Record(CLEAR_PLAYER, playerUuid, "", "", "", "", System.currentTimeMillis())));
+    }
+
+    @Override
+    public synchronized void deleteNpc(String npcName) throws IOException {
+        long now = System.currentTimeMillis();
+        List<Record> records = new ArrayList<>();
+        for (Map.Entry<UUID, Map<String, List<Long>>> player : index.entrySet()) {
+            if (player.getValue().containsKey(npcName.toLowerCase())) {
+                records.add(new Record(CLEAR, player.getKey(), npcName, "", "", "", now));
+            }
+        }
+        if (!records.isEmpty()) {
+            append(records);
+        }
+    }
+
+    /**
+     * Rewrite the live records into one segment. Only sealing the active segment and swapping
+     * in the result lock the store; the rewrite itself reads sealed segments while loads,
+     * appends and deletes carry on.
+     */
+    @Override
+    public void compact(long cutoffTime, int maxMessages) throws IOException {
+        // Seal the active segment and copy the index, so everything to compact is in segments up to lastId
+        int lastId;
+        long compactedBytes;
+        Map<UUID, Map<String, List<Long>>> indexCopy = new HashMap<>();
+        Map<UUID, Map<String, Long>> summariesCopy = new HashMap<>();
+        synchronized (this) {
+            if (compacting || active == null || bytesSinceCompaction == 0) return;
+            if (activeSize > 0) {
+                roll();
+            }
+            lastId = activeId - 1;
+            if (lastId < 1) return;
+            compacting = true;
+            compactedBytes = bytesSinceCompaction;
+            for (Map.Entry<UUID, Map<String, List<Long>>> player : index.entrySet()) {
+                Map<String, List<Long>> npcs = new HashMap<>();
+                player.getValue().forEach((npc, positions) -> npcs.put(npc, new ArrayList<>(positions)));
+                indexCopy.put(player.getKey(), npcs);
+            }
+            summaries.forEach((player, npcs) -> summariesCopy.put(player, new HashMap<>(npcs)));
+        }
+
+        Path temp = folder.resolve(COMPACT_TEMP);
+        try {
+            long before = 0;
+            for (int id : segmentIds()) {
+                if (id <= lastId) before += Files.size(segmentPath(id));
+            }
+
+            // Sealed segments don't change, so they are read with our own channels and no lock
+            Map<Integer, FileChannel> compactReaders = new HashMap<>();
+            Map<UUID, Map<String, List<Long>>> compacted = new HashMap<>();
+            Map<UUID, Map<String, Long>> compactedSummaries = new HashMap<>();
+            int conversations = 0;
+            long offset = 0;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)) {
+                for (Map.Entry<UUID, Map<String, List<Long>>> player : indexCopy.entrySet()) {
+                    for (Map.Entry<String, List<Long>> entry : player.getValue().entrySet()) {
+                        List<Long> positions = entry.getValue();
+                        if (positions.isEmpty() || readAt(compactReaders, positions.get(positions.size() - 1)).timestamp < cutoffTime) {
+                            continue;
+                        }
+                        List<Long> kept = new ArrayList<>();
+                        for (int i = Math.max(0, positions.size() - maxMessages); i < positions.size(); i++) {
+                            byte[] frame = frame(readAt(compactReaders, positions.get(i)));
+                            out.write(frame);
+                            kept.add(position(lastId, offset));
+                            offset += frame.length;
+                        }
+                        compacted.computeIfAbsent(player.getKey(), k -> new HashMap<>()).put(entry.getKey(), kept);
+                        Map<String, Long> npcSummaries = summariesCopy.get(player.getKey());
+                        Long summary = npcSummaries != null ? npcSummaries.get(entry.getKey()) : null;
+                        if (summary != null) {
+                            byte[] frame = frame(readAt(compactReaders, summary));
+                            out.write(frame);
+                            compactedSummaries.computeIfAbsent(player.getKey(), k -> new HashMap<>())
+                                    .put(entry.getKey(), position(lastId, offset));
+                            offset += frame.length;
+                        }
+                        conversations++;
+                    }
+                }
+            } finally {
+                closeAll(compactReaders);
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+
+            synchronized (this) {
+                if (active == null) {
+                    // Closed while compacting; the old segments are still complete
+                    Files.deleteIfExists(temp);
+                    return;
+                }
+                closeReaders();
+                Path segment = segmentPath(lastId);
+                Files.move(temp, segment.resolveSibling(segment.getFileName() + COMPACTED_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+                finishCompaction(lastId);
+                merge(lastId, compacted, compactedSummaries);
+                bytesSinceCompaction = Math.max(0, bytesSinceCompaction - compactedBytes);
+            }
+            logger.info("[ConversationLog] Compacted " + (before / 1024) + " KB to " + (offset / 1024) + " KB ("
+                    + conversations + " conversations)");
+        } finally {
+            Files.deleteIfExists(temp);
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * Point the index at the compacted segment, keeping what changed while it was written:
+     * records appended since (segments after lastId) stay, and a conversation cleared since
+     * has no records up to lastId left, so its compacted copy is dropped
+     */
+    private void merge(int lastId, Map<UUID, Map<String, List<Long>>> compacted, Map<UUID, Map<String, Long>> compactedSummaries) {
+        for (Iterator<Map.Entry<UUID, Map<String, List<Long>>>> players = index.entrySet().iterator(); players.hasNext(); ) {
+            Map.Entry<UUID, Map<String, List<Long>>> player = players.next();
+            Map<String, List<Long>> compactedNpcs = compacted.getOrDefault(player.getKey(), Map.of());
+            for (Iterator<Map.Entry<String, List<Long>>> npcs = player.getValue().entrySet().iterator(); npcs.hasNext(); ) {
+                Map.Entry<String, List<Long>> entry = npcs.next();
+                List<Long> positions = entry.getValue();
+                int firstNew = 0;
+                while (firstNew < positions.size() && segmentOf(positions.get(firstNew)) <= lastId) {
+                    firstNew++;
+                }
+                List<Long> merged = new ArrayList<>();
+                if (firstNew > 0) {
+                    merged.addAll(compactedNpcs.getOrDefault(entry.getKey(), List.of()));
+                }
+                merged.addAll(positions.subList(firstNew, positions.size()));
+                if (merged.isEmpty()) {
+                    npcs.remove();
+                } else {
+                    entry.setValue(merged);
+                }
+            }
+            if (player.getValue().isEmpty()) {
+                players.remove();
+            }
+        }
+        for (Iterator<Map.Entry<UUID, Map<String, Long>>> players = summaries.entrySet().iterator(); players.hasNext(); ) {
+            Map.Entry<UUID, Map<String, Long>> player = players.next();
+            Map<String, Long> compactedNpcs = compactedSummaries.getOrDefault(player.getKey(), Map.of());
+            Map<String, List<Long>> live = index.getOrDefault(player.getKey(), Map.of());
+            for (Iterator<Map.Entry<String, Long>> npcs = player.getValue().entrySet().iterator(); npcs.hasNext(); ) {
+                Map.Entry<String, Long> entry = npcs.next();
+                if (segmentOf(entry.getValue()) > lastId) continue;
+                Long moved = live.containsKey(entry.getKey()) ? compactedNpcs.get(entry.getKey()) : null;
+                if (moved == null) {
+                    npcs.remove();
+                } else {
+                    entry.setValue(moved);
+                }
+            }
+            if (player.getValue().isEmpty()) {
+                players.remove();
+            }
+        }
+    }
+
+    private static int segmentOf(long position) {
+        return (int) (position >>> OFFSET_BITS);
+    }
+
+    private void closeReaders() {
+        closeAll(readers);
+    }
+
+    private static void closeAll(Map<Integer, FileChannel> channels) {
+        for (FileChannel channel : channels.values()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+        channels.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeReaders();
+        if (active != null) {
+            active.force(true);
+            active.close();
+            active = null;
+        }
+    }
+
+    /**
+     * Number of players with stored conversations
+     */
+    public synchronized int playerCount() {
+        return index.size();
+    }
+
+    private static byte[] frame(Record record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + record.content.length() * 2);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(record.type);
+        out.writeLong(record.playerUuid.getMostSignificantBits());
+        out.writeLong(record.playerUuid.getLeastSignificantBits());
+        out.writeUTF(record.npcName);
+        out.writeLong(record.timestamp);
+        if (record.type == APPEND || record.type == SUMMARY) {
+            out.writeUTF(record.playerName);
+            out.writeUTF(record.role);
+            byte[] content = record.content.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(content.length);
+            out.write(content);
+        }
+        byte[] payload = bytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        frame.putInt(payload.length);
+        frame.putInt((int) crc.getValue());
+        frame.put(payload);
+        return frame.array();
+    }
+
+    /**
+     * Read the next record from a stream
+     * @return null if the data there is not a valid record
+     * @throws EOFException at a clean end of the segment
+     */
+    private static Record readRecord(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size <= 0 || size > MAX_RECORD_BYTES) {
+            return null;
+        }
+        int crc;
+        byte[] payload = new byte[size];
+        try {
+            crc = in.readInt();
+            in.readFully(payload);
+        } catch (EOFException e) {
+            return null;
+        }
+        Record record = decode(payload, crc);
+        if (record != null) {
+            record.size = size;
+        }
+        return record;
+    }
+
+    /**
+     * @return null if the checksum doesn't match
+     */
+    private static Record decode(byte[] payload, int expectedCrc) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != expectedCrc) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        UUID playerUuid = new UUID(in.readLong(), in.readLong());
+        String npcName = in.readUTF();
+        long timestamp = in.readLong();
+        if (type != APPEND && type != SUMMARY) {
+            return new Record(type, playerUuid, npcName, "", "", "", timestamp);
+        }
+        String playerName = in.readUTF();
+        String role = in.readUTF();
+        byte[] content = new byte[in.readInt()];
+        in.readFully(content);
+        return new Record(type, playerUuid, npcName, playerName, role,
+                new String(content, StandardCharsets.UTF_8), timestamp);
+    }
+
+    private static final class Record {
+        final byte type;
+        final UUID playerUuid;
+        final String npcName;
+        final String playerName;
+        final String role;
+        final String content;
+        final long timestamp;
+        int size;
+
+        Record(byte type, UUID playerUuid, String npcName, String playerName, String role, String content, long timestamp) {
+            this.type = type;
+            this.playerUuid = playerUuid;
+            this.npcName = npcName;
+            this.playerName = playerName;
+            this.role = role;
+            this.content = content;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import io.github.thegreywanderer_uc.chatr.ConversationManager.ChatMessage;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Fixed-capacity message buffer of one conversation (thread-safe).
+ * - Adding to a full ring overwrites the oldest message, so trimming is free
+ * - snapshot() is an immutable list, oldest first, that stays valid while messages are added;
+ *   it is built once per change and shared by every reader until the next add
+ * - Serialized to JSON as a plain array of messages, like the list it replaced
+ */
+public final class MessageRing {
+
+    private ChatMessage[] slots;
+    private int head; // Index of the oldest message
+    private int size;
+    // Cleared on every change
+    private volatile Snapshot snapshot;
+
+    public MessageRing(int capacity) {
+        this.slots = new ChatMessage[Math.max(1, capacity)];
+    }
+
+    /**
+     * Append a message, dropping the oldest if full
+     */
+    public synchronized void add(ChatMessage message) {
+        if (size < slots.length) {
+            slots[(head + size) % slots.length] = message;
+            size++;
+        } else {
+            slots[head] = message;
+            head = (head + 1) % slots.length;
+        }
+        snapshot = null;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Change the capacity, keeping the newest messages if it shrinks
+     */
+    public synchronized void setCapacity(int capacity) {
+        capacity = Math.max(1, capacity);
+        if (capacity == slots.length) return;
+        int kept = Math.min(size, capacity);
+        ChatMessage[] resized = new ChatMessage[capacity];
+        copyNewest(kept, resized);
+        slots = resized;
+        head = 0;
+        size = kept;
+        snapshot = null;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(slots, null);
+        head = 0;
+        size = 0;
+        snapshot = null;
+    }
+
+    /**
+     * The messages now in the ring, oldest first (immutable)
+     */
+    public List<ChatMessage> snapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                ChatMessage[] ordered = new ChatMessage[size];
+                copyNewest(size, ordered);
+                snapshot = new Snapshot(ordered);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * The newest count messages, oldest first (immutable)
+     */
+    public List<ChatMessage> newest(int count) {
+        List<ChatMessage> all = snapshot();
+        count = Math.max(0, Math.min(count, all.size()));
+        return all.subList(all.size() - count, all.size());
+    }
+
+    /**
+     * A separate ring with the same capacity and messages
+     */
+    public synchronized MessageRing copy() {
+        MessageRing copy = new MessageRing(slots.length);
+        copyNewest(size, copy.slots);
+        copy.size = size;
+        copy.snapshot = snapshot;
+        return copy;
+    }
+
+    private void copyNewest(int count, ChatMessage[] target) {
+        int start = head + size - count;
+        for (int i = 0; i < count; i++) {
+            target[i] = slots[(start + i) % slots.length];
+        }
+    }
+
+    private static final class Snapshot extends AbstractList<ChatMessage> implements RandomAccess {
+        private final ChatMessage[] messages;
+
+        Snapshot(ChatMessage[] messages) {
+            this.messages = messages;
+        }
+
+        @Override
+        public ChatMessage get(int index) {
+            return messages[index];
+        }
+
+        @Override
+        public int size() {
+            return messages.length;
+        }
+    }
+
+    /**
+     * Reads and writes a ring as a JSON array of messages. The ring is sized to what was read;
+     * the loader trims it to max-messages.
+     */
+    public static final class JsonAdapter extends TypeAdapter<MessageRing> {
+
+        @Override
+        public void write(JsonWriter out, MessageRing ring) throws IOException {
+            if (ring == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginArray();
+            for (ChatMessage message : ring.snapshot()) {
+                out.beginObject();
+                out.name("role").value(message.role);
+                out.name("content").value(message.content);
+                out.name("timestamp").value(message.timestamp);
+                out.endObject();
+            }
+            out.endArray();
+        }
+
+        @Override
+        public MessageRing read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            List<ChatMessage> messages = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                String role = null;
+                String content = null;
+                long timestamp = 0;
+                in.beginObject();
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        continue;
+                    }
+                    switch (name) {
+                        case "role" -> role = in.nextString();
+                        case "content" -> content = in.nextString();
+                        case "timestamp" -> timestamp = in.nextLong();
+                        default -> in.skipValue();
+                    }
+                }
+                in.endObject();
+                messages.add(new ChatMessage(role, content, timestamp));
+            }
+            in.endArray();
+
+            MessageRing ring = new MessageRing(messages.size());
+            for (ChatMessage message : messages) {
+                ring.add(message);
+            }
+            return ring;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Embedded HTTP endpoint exposing Chatr metrics in OpenMetrics text format.
+ * - Counters: requests, cache hits/misses, errors per NPC and per provider, tokens and cost
+ * - Gauges: cache hit ratio plus anything registered with MetricsManager.registerGauge
+ * - Histograms: response time, time to first token, per provider and per stage (RAG, cache...)
+ * Runs on its own single daemon thread so scrapes never touch the server thread.
+ */
+public class MetricsExporter {
+
+    private static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    // Histogram bucket bounds in seconds, covering cache hits up to slow cloud models
+    private static final double[] BUCKETS_SECONDS = {
+            0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60
+    };
+
+    private final JavaPlugin plugin;
+    private final MetricsManager metrics;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public MetricsExporter(JavaPlugin plugin, MetricsManager metrics) {
+        this.plugin = plugin;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Start the HTTP endpoint if enabled in config
+     */
+    public void start() {
+        var config = plugin.getConfig();
+        if (!config.getBoolean("metrics.exporter.enabled", false)) {
+            return;
+        }
+
+        String bindAddress = config.getString("metrics.exporter.bind-address", "127.0.0.1");
+        int port = config.getInt("metrics.exporter.port", 9464);
+        String path = config.getString("metrics.exporter.path", "/metrics");
+
+        try {
+            server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+            server.createContext(path, this::handle);
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "Chatr-MetricsExporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            server.setExecutor(executor);
+            server.start();
+            plugin.getLogger().info("[Metrics] OpenMetrics exporter listening on http://" + bindAddress + ":" + port + path);
+        } catch (IOException e) {
+            plugin.getLogger().warning("[Metrics] Failed to start exporter on " + bindAddress + ":" + port + ": " + e.getMessage());
+            server = null;
+        }
+    }
+
+    /**
+     * Stop the HTTP endpoint
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Render all metrics as OpenMetrics text
+     */
+    String render() {
+        StringBuilder out = new StringBuilder(8192);
+
+        // Requests and cache
+        MetricsManager.Totals totals = metrics.getTotals();
+        counterHeader(out, "chatr_requests", "AI chat requests handled, including cache hits");
+        sample(out, "chatr_requests_total", null, totals.requests);
+        counterHeader(out, "chatr_cache_hits", "Requests answered from the response cache");
+        sample(out, "chatr_cache_hits_total", null, totals.cacheHits);
+        counterHeader(out, "chatr_cache_misses", "Requests that went to a provider");
+        sample(out, "chatr_cache_misses_total", null, totals.cacheMisses);
+
+        gaugeHeader(out, "chatr_cache_hit_ratio", "Cache hits divided by requests since startup");
+        sample(out, "chatr_cache_hit_ratio", null, totals.cacheHitRatio());
+
+        // Per-NPC counters
+        Map<String, MetricsManager.NpcMetrics> npcs = new TreeMap<>(metrics.getNpcMetrics());
+        counterHeader(out, "chatr_npc_requests", "AI chat requests per NPC");
+        for (Map.Entry<String, MetricsManager.NpcMetrics> entry : npcs.entrySet()) {
+            sample(out, "chatr_npc_requests_total", labels("npc", entry.getKey()), entry.getValue().requests.sum());
+        }
+        counterHeader(out, "chatr_npc_errors", "Failed AI chat requests per NPC and error type");
+        for (Map.Entry<String, MetricsManager.NpcMetrics> entry : npcs.entrySet()) {
+            for (Map.Entry<String, LongAdder> error : new TreeMap<>(entry.getValue().errorTypes).entrySet()) {
+                sample(out, "chatr_npc_errors_total", labels("npc", entry.getKey(), "type", error.getKey()), error.getValue().sum());
+            }
+        }
+
+        // Provider errors
+        counterHeader(out, "chatr_provider_errors", "Failed provider calls by provider and error type");
+        for (Map.Entry<String, Map<String, LongAdder>> provider : new TreeMap<>(metrics.getProviderErrors()).entrySet()) {
+            for (Map.Entry<String, LongAdder> error : new TreeMap<>(provider.getValue()).entrySet()) {
+                sample(out, "chatr_provider_errors_total", labels("provider", provider.getKey(), "type", error.getKey()), error.getValue().sum());
+            }
+        }
+
+        // Tokens and estimated cost
+        List<MetricsManager.TokenUsage> models = new ArrayList<>(metrics.getModelTokenUsage());
+        models.sort(Comparator.comparing(u -> u.label));
+        counterHeader(out, "chatr_tokens", "Tokens reported by providers");
+        for (MetricsManager.TokenUsage usage : models) {
+            sample(out, "chatr_tokens_total", labels("provider", usage.provider, "model", usage.model, "type", "prompt"), usage.promptTokens.sum());
+            sample(out, "chatr_tokens_total", labels("provider", usage.provider, "model", usage.model, "type", "completion"), usage.completionTokens.sum());
+        }
+        counterHeader(out, "chatr_token_cost_usd", "Estimated spend from metrics.token-costs");
+        for (MetricsManager.TokenUsage usage : models) {
+            sample(out, "chatr_token_cost_usd_total", labels("provider", usage.provider, "model", usage.model), usage.cost.sum());
+        }
+        List<MetricsManager.TokenUsage> npcTokens = new ArrayList<>(metrics.getNpcTokenUsage());
+        npcTokens.sort(Comparator.comparing(u -> u.label));
+        counterHeader(out, "chatr_npc_tokens", "Tokens used per NPC");
+        for (MetricsManager.TokenUsage usage : npcTokens) {
+            sample(out, "chatr_npc_tokens_total", labels("npc", usage.label, "type", "prompt"), usage.promptTokens.sum());
+            sample(out, "chatr_npc_tokens_total", labels("npc", usage.label, "type", "completion"), usage.completionTokens.sum());
+        }
+
+        // Registered gauges (queue depth, in-flight requests...)
+        for (Map.Entry<String, MetricsManager.Gauge> entry : new TreeMap<>(metrics.getGauges()).entrySet()) {
+            MetricsManager.Gauge gauge = entry.getValue();
+            gaugeHeader(out, entry.getKey(), gauge.help);
+            try {
+                if (gauge.labeledSupplier != null) {
+                    for (Map.Entry<String, ? extends Number> value : new TreeMap<>(gauge.labeledSupplier.get()).entrySet()) {
+                        sample(out, entry.getKey(), labels(gauge.labelName, value.getKey()), value.getValue().doubleValue());
+                    }
+                } else {
+                    sample(out, entry.getKey(), null, gauge.supplier.getAsDouble());
+                }
+            } catch (RuntimeException e) {
+                // Skip gauges whose source is gone (e.g. during reload)
+            }
+        }
+
+        // Latency histograms
+        histogramHeader(out, "chatr_response_seconds", "End-to-end response time of provider calls");
+        histogram(out, "chatr_response_seconds", null, metrics.getResponseLatencySnapshot());
+        histogramHeader(out, "chatr_first_token_seconds", "Time until the provider started answering");
+        histogram(out, "chatr_first_token_seconds", null, metrics.getFirstTokenLatencySnapshot());
+        histogramHeader(out, "chatr_provider_response_seconds", "Response time per provider");
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : metrics.getProviderLatencySnapshots().entrySet()) {
+            histogram(out, "chatr_provider_response_seconds", labels("provider", entry.getKey()), entry.getValue());
+        }
+        histogramHeader(out, "chatr_stage_seconds", "Time spent per request stage (cache, rate-limit, rag, provider)");
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : metrics.getStageLatencySnapshots().entrySet()) {
+            histogram(out, "chatr_stage_seconds", labels("stage", entry.getKey()), entry.getValue());
+        }
+
+        out.append("# EOF\n");
+        return out.toString();
+    }
+
+    private static void counterHeader(StringBuilder out, String family, String help) {
+        out.append("# TYPE ").append(family).append(" counter\n");
+        out.append("# HELP ").append(family).append(' ').append(help).append('\n');
+    }
+
+    private static void gaugeHeader(StringBuilder out, String family, String help) {
+        out.append("# TYPE ").append(family).append(" gauge\n");
+        out.append("# HELP ").append(family).append(' ').append(help).append('\n');
+    }
+
+    private static void histogramHeader(StringBuilder out, String family, String help) {
+        out.append("# TYPE ").append(family).append(" histogram\n");
+        out.append("# UNIT ").append(family).append(" seconds\n");
+        out.append("# HELP ").append(family).append(' ').append(help).append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String family, String labels, LatencyHistogram.Snapshot snapshot) {
+        String prefix = labels == null ? "" : labels + ",";
+        for (double bound : BUCKETS_SECONDS) {
+            long count = snapshot.countAtOrBelow((long) (bound * 1_000_000));
+            sample(out, family + "_bucket", prefix + "le=\"" + bound + "\"", count);
+        }
+        sample(out, family + "_bucket", prefix + "le=\"+Inf\"", snapshot.getCount());
+        sample(out, family + "_count", labels, snapshot.getCount());
+        sample(out, family + "_sum", labels, snapshot.getTotalMicros() / 1_000_000.0);
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        if (labels != null) out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (labels != null) out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Build a label set from name/value pairs, escaping values (null becomes an empty value)
+     */
+    static String labels(String... pairs) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i + 1 < pairs.length; i += 2) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(pairs[i]).append("=\"");
+            String value = pairs[i + 1] != null ? pairs[i + 1] : "";
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+                switch (ch) {
+                    case '\\': sb.append("\\\\"); break;
+                    case '"': sb.append("\\\""); break;
+                    case '\n': sb.append("\\n"); break;
+                    default: sb.append(ch);
+                }
+            }
+            sb.append('"');
+        }
+        return sb.toString();
+    }
+}
@@ -3,43 +3,86 @@ package io.github.thegreywanderer_uc.chatr;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
+import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.io.*;
 import java.lang.reflect.Type;
-import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
 
 /**
  * Tracks metrics and analytics for AI API usage.
  * - API calls per NPC
- * - Response times
- * - Token usage (if available)
+ * - Response times (latency histograms with p50/p90/p99/max)
+ * - Token usage and estimated cost per provider, model, NPC and player (if reported)
  * - Cache hit/miss rates
  * - Player usage statistics
+ * - Per-minute history persisted to disk for windowed queries (last hour/day/week)
  */
 public class MetricsManager {
     
     private final JavaPlugin plugin;
     private final Gson gson;
     private final File metricsFolder;
+    private final MetricsStore store;
     
     // Real-time metrics (reset on restart)
     private final Map<String, NpcMetrics> npcMetrics = new ConcurrentHashMap<>();
     private final Map<UUID, PlayerMetrics> playerMetrics = new ConcurrentHashMap<>();
     
-    // Global counters
-    private final AtomicInteger totalRequests = new AtomicInteger(0);
-    private final AtomicInteger cacheHits = new AtomicInteger(0);
-    private final AtomicInteger cacheMisses = new AtomicInteger(0);
-    private final AtomicLong totalResponseTimeMs = new AtomicLong(0);
-    private final AtomicInteger totalErrors = new AtomicInteger(0);
+    // Global counters (striped, so concurrent requests don't contend on one cache line)
+    private final LongAdder totalRequests = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder totalResponseTimeMs = new LongAdder();
+    private final LongAdder totalErrors = new LongAdder();
+    
+    // Heavy hitters, bounded no matter how many players show up
+    private final SpaceSavingTopK<String> topNpcs;
+    private final SpaceSavingTopK<UUID> topPlayers;
+    
+    // Latency stage names for recordStage()
+    public static final String STAGE_CACHE = "cache";
+    public static final String STAGE_RATE_LIMIT = "rate-limit";
+    public static final String STAGE_ADMISSION = "admission";
+    public static final String STAGE_RAG = "rag";
+    public static final String STAGE_MEMORY = "memory";
+    public static final String STAGE_PROVIDER = "provider";
+    
+    // Latency histograms (lifetime + sliding window)
+    private final LatencySeries responseLatency;
+    private final LatencySeries firstTokenLatency;
+    private final Map<String, LatencySeries> providerLatency = new ConcurrentHashMap<>();
+    private final Map<String, LatencySeries> stageLatency = new ConcurrentHashMap<>();
+    
+    // Provider errors by provider name, then error type
+    private final Map<String, Map<String, LongAdder>> providerErrors = new ConcurrentHashMap<>();
+    
+    // Token usage, grouped several ways (only requests whose provider reported usage)
+    private final TokenUsage totalTokens = new TokenUsage("total");
+    private final Map<String, TokenUsage> tokensByProvider = new ConcurrentHashMap<>();
+    private final Map<String, TokenUsage> tokensByModel = new ConcurrentHashMap<>();
+    private final Map<String, TokenUsage> tokensByNpc = new ConcurrentHashMap<>();
+    private final Map<UUID, TokenUsage> tokensByPlayer = new ConcurrentHashMap<>();
+    private volatile List<TokenCost> tokenCosts = List.of();
+    
+    // Live values sampled on demand (queue depth, in-flight requests...)
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    
+    // Durable per-minute history
+    private final MetricsTimeSeries timeSeries;
+    private BukkitTask flushTask;
     
     // Session start time
     private final long sessionStartTime = System.currentTimeMillis();
@@ -47,16 +90,56 @@ public class MetricsManager {
     // Configuration
     private boolean enabled;
     private boolean persistMetrics;
+    private long latencyWindowMillis;
     
-    public MetricsManager(JavaPlugin plugin) {
+    /**
+     * @param database Shared database for metrics.store.type: sqlite (null if not open)
+     */
+    public MetricsManager(JavaPlugin plugin, ChatrDatabase database) {
         this.plugin = plugin;
         this.gson = new GsonBuilder()
                 .setPrettyPrinting()
                 .create();
         this.metricsFolder = new File(plugin.getDataFolder(), "metrics");
+        this.store = createStore(database);
+        this.timeSeries = new MetricsTimeSeries(plugin, store);
+        int topCapacity = Math.max(20, plugin.getConfig().getInt("metrics.top-tracked", 100));
+        this.topNpcs = new SpaceSavingTopK<>(topCapacity);
+        this.topPlayers = new SpaceSavingTopK<>(topCapacity);
         
         reload();
-        loadTodayMetrics();
+        this.responseLatency = new LatencySeries(latencyWindowMillis);
+        this.firstTokenLatency = new LatencySeries(latencyWindowMillis);
+        loadHistory();
+    }
+    
+    /**
+     * Metric files, or the database (copying the files into it the first time)
+     */
+    private MetricsStore createStore(ChatrDatabase database) {
+        FileMetricsStore fileStore = new FileMetricsStore(metricsFolder, plugin.getLogger());
+        if (!"sqlite".equalsIgnoreCase(plugin.getConfig().getString("metrics.store.type", "file"))) {
+            return fileStore;
+        }
+        if (database == null) {
+            plugin.getLogger().warning("[Metrics] Database is not available, keeping metrics in files");
+            return fileStore;
+        }
+        
+        JdbcMetricsStore jdbcStore = new JdbcMetricsStore(database, plugin.getLogger());
+        if (metricsFolder.exists()) {
+            long fromMinute = System.currentTimeMillis() / 60_000L
+                    - plugin.getConfig().getInt("metrics.retention-days", 8) * 1440L;
+            try {
+                int minutes = jdbcStore.importOnce(fileStore, fromMinute);
+                if (minutes >= 0) {
+                    plugin.getLogger().info("[Metrics] Copied " + minutes + " minutes of history and the daily summaries from metrics/ into the database");
+                }
+            } catch (IOException e) {
+                plugin.getLogger().warning("[Metrics] Could not copy metric files into the database: " + e.getMessage());
+            }
+        }
+        return jdbcStore;
     }
     
     /**
@@ -66,6 +149,32 @@ public class MetricsManager {
         var config = plugin.getConfig();
         this.enabled = config.getBoolean("metrics.enabled", true);
         this.persistMetrics = config.getBoolean("metrics.persist", true);
+        this.latencyWindowMillis = Math.max(10, config.getInt("metrics.latency-window-seconds", 300)) * 1000L;
+        
+        // Cost rates in USD per 1M tokens, first matching entry wins
+        List<TokenCost> costs = new ArrayList<>();
+        for (Map<?, ?> entry : config.getMapList("metrics.token-costs")) {
+            Object provider = entry.get("provider");
+            Object model = entry.get("model");
+            costs.add(new TokenCost(
+                    provider != null ? provider.toString().toLowerCase() : null,
+                    model != null ? model.toString() : null,
+                    toDouble(entry.get("input")),
+                    toDouble(entry.get("output"))));
+        }
+        this.tokenCosts = costs;
+        
+        // Time series flush schedule
+        timeSeries.setRetentionDays(config.getInt("metrics.retention-days", 8));
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        if (enabled && persistMetrics) {
+            long intervalTicks = Math.max(5, config.getInt("metrics.flush-interval-seconds", 60)) * 20L;
+            flushTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin,
+                    () -> timeSeries.flush(false), intervalTicks, intervalTicks);
+        }
     }
     
     /**
@@ -78,36 +187,232 @@ public class MetricsManager {
      */
     public void recordRequest(String npcName, UUID playerUuid, String playerName, 
                               long responseTimeMs, boolean wasCached) {
+        recordRequest(npcName, null, playerUuid, playerName, responseTimeMs, -1, wasCached);
+    }
+    
+    /**
+     * Record a successful API request with latency breakdown
+     * @param npcName The NPC that was queried
+     * @param providerName The provider that answered (null if unknown or cached)
+     * @param playerUuid The player who made the request
+     * @param playerName The player's display name
+     * @param responseTimeMs Total time until the reply was ready
+     * @param timeToFirstTokenMs Time until the provider started answering (-1 if unknown)
+     * @param wasCached Whether the response was from cache
+     */
+    public void recordRequest(String npcName, String providerName, UUID playerUuid, String playerName,
+                              long responseTimeMs, long timeToFirstTokenMs, boolean wasCached) {
         if (!enabled) return;
         
-        totalRequests.incrementAndGet();
+        totalRequests.increment();
         
         if (wasCached) {
-            cacheHits.incrementAndGet();
+            cacheHits.increment();
+            if (persistMetrics) {
+                timeSeries.recordRequest(true, responseTimeMs);
+            }
         } else {
-            cacheMisses.incrementAndGet();
-            totalResponseTimeMs.addAndGet(responseTimeMs);
+            cacheMisses.increment();
+            totalResponseTimeMs.add(responseTimeMs);
+            
+            if (persistMetrics) {
+                timeSeries.recordRequest(false, responseTimeMs);
+            }
+            
+            // Cached replies would drown the provider tail, so only live calls are histogrammed
+            responseLatency.recordMillis(responseTimeMs);
+            if (timeToFirstTokenMs >= 0) {
+                firstTokenLatency.recordMillis(timeToFirstTokenMs);
+            }
+            if (providerName != null) {
+                getOrCreate(providerLatency, providerName, k -> new LatencySeries(latencyWindowMillis))
+                        .recordMillis(responseTimeMs);
+            }
         }
         
         // NPC metrics
-        npcMetrics.computeIfAbsent(npcName, k -> new NpcMetrics(npcName))
-                .recordRequest(responseTimeMs, wasCached);
+        npcMetricsFor(npcName).recordRequest(responseTimeMs, timeToFirstTokenMs, wasCached);
+        topNpcs.offer(npcName);
         
         // Player metrics
-        playerMetrics.computeIfAbsent(playerUuid, k -> new PlayerMetrics(playerUuid, playerName))
-                .recordRequest(npcName);
+        PlayerMetrics player = getOrCreate(playerMetrics, playerUuid, k -> new PlayerMetrics(playerUuid, playerName));
+        player.playerName = playerName;
+        player.recordRequest(npcName);
+        topPlayers.offer(playerUuid);
+    }
+    
+    private NpcMetrics npcMetricsFor(String npcName) {
+        return getOrCreate(npcMetrics, npcName, k -> new NpcMetrics(npcName, latencyWindowMillis));
+    }
+    
+    /**
+     * Lock-free lookup for the common case; computeIfAbsent only runs for new keys
+     */
+    private static <K, V> V getOrCreate(Map<K, V> map, K key, java.util.function.Function<K, V> factory) {
+        V value = map.get(key);
+        return value != null ? value : map.computeIfAbsent(key, factory);
     }
     
     /**
      * Record an error
      */
     public void recordError(String npcName, UUID playerUuid, String errorType) {
+        recordError(npcName, null, playerUuid, errorType);
+    }
+    
+    /**
+     * Record an error attributed to a provider
+     * @param providerName The provider that failed (null if the request never reached one)
+     */
+    public void recordError(String npcName, String providerName, UUID playerUuid, String errorType) {
         if (!enabled) return;
         
-        totalErrors.incrementAndGet();
+        totalErrors.increment();
+        if (persistMetrics) {
+            timeSeries.recordError();
+        }
+        
+        npcMetricsFor(npcName).recordError(errorType);
+        if (providerName != null) {
+            getOrCreate(getOrCreate(providerErrors, providerName, k -> new ConcurrentHashMap<>()),
+                    errorType, k -> new LongAdder()).increment();
+        }
+    }
+    
+    /**
+     * Map an exception to a short error type label (timeout, connection, http_429, ...)
+     */
+    public static String classifyError(Throwable error) {
+        Throwable root = error;
+        while (root.getCause() != null && root.getCause() != root) {
+            if (root instanceof java.net.SocketTimeoutException) break;
+            root = root.getCause();
+        }
+        if (root instanceof java.net.SocketTimeoutException) return "timeout";
+        if (root instanceof java.net.ConnectException || root instanceof java.net.UnknownHostException) return "connection";
+        
+        String message = root.getMessage() != null ? root.getMessage() : "";
+        if (message.startsWith("Rate limited")) return "rate_limited";
+        if (message.startsWith("Provider busy")) return "provider_busy";
+        if (message.startsWith("Circuit open")) return "circuit_open";
+        int statusIndex = message.indexOf("status ");
+        if (statusIndex >= 0 && message.length() >= statusIndex + 10) {
+            String code = message.substring(statusIndex + 7, statusIndex + 10);
+            if (code.chars().allMatch(Character::isDigit)) {
+                return "http_" + code;
+            }
+        }
+        if (message.contains("Invalid response")) return "invalid_response";
+        return "other";
+    }
+    
+    /**
+     * Register a gauge that is sampled whenever metrics are exported
+     * @param name Metric name (OpenMetrics style, e.g. chatr_requests_in_flight)
+     * @param help One-line description
+     * @param supplier Supplies the current value
+     */
+    public void registerGauge(String name, String help, DoubleSupplier supplier) {
+        gauges.put(name, new Gauge(help, supplier, null, null));
+    }
+    
+    /**
+     * Register a gauge with one sample per label value (e.g. queue depth per provider)
+     * @param name Metric name
+     * @param help One-line description
+     * @param labelName Label name (e.g. provider)
+     * @param supplier Supplies the current value for each label value
+     */
+    public void registerGauge(String name, String help, String labelName, Supplier<Map<String, ? extends Number>> supplier) {
+        gauges.put(name, new Gauge(help, null, labelName, supplier));
+    }
+    
+    /**
+     * Record token usage reported by a provider
+     * @param npcName The NPC that was queried
+     * @param providerId The provider id (groq, gemini, direct...)
+     * @param model The model that answered
+     * @param playerUuid The player who made the request (null for non-player requests)
+     * @param playerName The player's display name
+     * @param promptTokens Input tokens
+     * @param completionTokens Output tokens
+     */
+    public void recordTokens(String npcName, String providerId, String model, UUID playerUuid, String playerName,
+                             int promptTokens, int completionTokens) {
+        if (!enabled || promptTokens < 0 || completionTokens < 0) return;
+        
+        double cost = estimateCost(providerId, model, promptTokens, completionTokens);
+        
+        totalTokens.add(promptTokens, completionTokens, cost);
+        if (persistMetrics) {
+            timeSeries.recordTokens(promptTokens, completionTokens, cost);
+        }
+        getOrCreate(tokensByProvider, providerId, k -> new TokenUsage(providerId))
+                .add(promptTokens, completionTokens, cost);
+        getOrCreate(tokensByModel, providerId + "/" + model, k -> new TokenUsage(providerId, model))
+                .add(promptTokens, completionTokens, cost);
+        getOrCreate(tokensByNpc, npcName, k -> new TokenUsage(npcName))
+                .add(promptTokens, completionTokens, cost);
+        if (playerUuid != null) {
+            TokenUsage usage = getOrCreate(tokensByPlayer, playerUuid, k -> new TokenUsage(playerName));
+            usage.label = playerName;
+            usage.add(promptTokens, completionTokens, cost);
+        }
+    }
+    
+    /**
+     * Estimate the cost of a request in USD using the configured token-costs
+     */
+    double estimateCost(String providerId, String model, int promptTokens, int completionTokens) {
+        for (TokenCost rate : tokenCosts) {
+            if (rate.matches(providerId, model)) {
+                return (promptTokens * rate.inputPerMillion + completionTokens * rate.outputPerMillion) / 1_000_000.0;
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Get token usage grouped by providers, models, npcs or players, highest total first
+     * @param groupBy One of providers, models, npcs, players
+     * @param limit Maximum entries to return
+     */
+    public Map<String, Map<String, Object>> getTokenUsage(String groupBy, int limit) {
+        Collection<TokenUsage> usages;
+        switch (groupBy) {
+            case "models": usages = tokensByModel.values(); break;
+            case "npcs": usages = tokensByNpc.values(); break;
+            case "players": usages = tokensByPlayer.values(); break;
+            default: usages = tokensByProvider.values();
+        }
+        
+        List<TokenUsage> sorted = new ArrayList<>(usages);
+        sorted.sort((a, b) -> Long.compare(b.totalTokens(), a.totalTokens()));
         
-        npcMetrics.computeIfAbsent(npcName, k -> new NpcMetrics(npcName))
-                .recordError(errorType);
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        for (TokenUsage usage : sorted.subList(0, Math.min(limit, sorted.size()))) {
+            result.put(usage.label, usage.toMap());
+        }
+        return result;
+    }
+    
+    /**
+     * Get overall token usage and estimated cost
+     */
+    public Map<String, Object> getTokenTotals() {
+        return totalTokens.toMap();
+    }
+    
+    /**
+     * Record how long a pipeline stage took (cache lookup, rate limit check, RAG retrieval...)
+     * @param stage One of the STAGE_* names
+     * @param durationNanos Duration measured with System.nanoTime()
+     */
+    public void recordStage(String stage, long durationNanos) {
+        if (!enabled) return;
+        
+        getOrCreate(stageLatency, stage, k -> new LatencySeries(latencyWindowMillis))
+                .recordNanos(durationNanos);
     }
     
     /**
@@ -115,28 +420,31 @@ public class MetricsManager {
      */
     public Map<String, Object> getSummary() {
         Map<String, Object> summary = new LinkedHashMap<>();
+        Totals totals = getTotals();
         
         long uptimeMs = System.currentTimeMillis() - sessionStartTime;
         summary.put("uptimeMinutes", uptimeMs / 60000);
-        summary.put("totalRequests", totalRequests.get());
-        summary.put("cacheHits", cacheHits.get());
-        summary.put("cacheMisses", cacheMisses.get());
+        summary.put("totalRequests", totals.requests);
+        summary.put("cacheHits", totals.cacheHits);
+        summary.put("cacheMisses", totals.cacheMisses);
+        summary.put("cacheHitRate", String.format("%.1f%%", totals.cacheHitRatio() * 100));
+        summary.put("avgResponseTimeMs", totals.avgResponseTimeMs());
         
-        double cacheHitRate = totalRequests.get() > 0 
-                ? (double) cacheHits.get() / totalRequests.get() * 100 
-                : 0;
-        summary.put("cacheHitRate", String.format("%.1f%%", cacheHitRate));
+        // Tail latency over the recent window
+        LatencyHistogram.Snapshot recent = responseLatency.recent.snapshot();
+        summary.put("latencyWindowSeconds", responseLatency.recent.getWindowSeconds());
+        summary.put("p50ResponseTimeMs", toMillis(recent.percentileMicros(50)));
+        summary.put("p90ResponseTimeMs", toMillis(recent.percentileMicros(90)));
+        summary.put("p99ResponseTimeMs", toMillis(recent.percentileMicros(99)));
+        summary.put("maxResponseTimeMs", toMillis(recent.getMaxMicros()));
         
-        long avgResponseTime = cacheMisses.get() > 0 
-                ? totalResponseTimeMs.get() / cacheMisses.get() 
-                : 0;
-        summary.put("avgResponseTimeMs", avgResponseTime);
-        
-        summary.put("totalErrors", totalErrors.get());
+        summary.put("totalErrors", totals.errors);
+        summary.put("totalTokens", totalTokens.totalTokens());
+        summary.put("estimatedCostUsd", roundCost(totalTokens.cost.sum()));
         summary.put("activeNpcs", npcMetrics.size());
         summary.put("uniquePlayers", playerMetrics.size());
         
-        return summary;
+        return Collections.unmodifiableMap(summary);
     }
     
     /**
@@ -161,144 +469,476 @@ public class MetricsManager {
         return all;
     }
     
+    /**
+     * Get totals for the last windowMinutes minutes, including history from previous runs
+     */
+    public Map<String, Object> getWindowStats(long windowMinutes) {
+        return timeSeries.query(windowMinutes);
+    }
+    
+    /**
+     * Get latency percentiles for the recent window, grouped by series.
+     * Keys are "total", "first-token", "provider:<name>" and "stage:<name>".
+     */
+    public Map<String, Map<String, Object>> getLatencyStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        stats.put("total", describe(responseLatency.recent.snapshot()));
+        stats.put("first-token", describe(firstTokenLatency.recent.snapshot()));
+        for (Map.Entry<String, LatencySeries> entry : new TreeMap<>(providerLatency).entrySet()) {
+            stats.put("provider:" + entry.getKey(), describe(entry.getValue().recent.snapshot()));
+        }
+        for (Map.Entry<String, LatencySeries> entry : new TreeMap<>(stageLatency).entrySet()) {
+            stats.put("stage:" + entry.getKey(), describe(entry.getValue().recent.snapshot()));
+        }
+        return stats;
+    }
+    
+    /**
+     * Recent response time percentile for one provider
+     * @param minSamples Fewer samples than this in the window give no answer
+     * @return The percentile in milliseconds, or -1 if there isn't enough data
+     */
+    public long getProviderLatencyPercentileMs(String providerName, double percentile, long minSamples) {
+        LatencySeries series = providerName != null ? providerLatency.get(providerName) : null;
+        if (series == null) return -1;
+        LatencyHistogram.Snapshot recent = series.recent.snapshot();
+        if (recent.getCount() < Math.max(1, minSamples)) return -1;
+        return recent.percentileMicros(percentile) / 1000;
+    }
+    
+    /**
+     * Get the latency window length in seconds
+     */
+    public long getLatencyWindowSeconds() {
+        return responseLatency.recent.getWindowSeconds();
+    }
+    
+    /**
+     * Read the global counters once, so derived values (hit ratio, averages) are consistent
+     */
+    Totals getTotals() {
+        return new Totals(totalRequests.sum(), cacheHits.sum(), cacheMisses.sum(),
+                totalResponseTimeMs.sum(), totalErrors.sum());
+    }
+    
+    // Raw accessors for MetricsExporter
+    
+    Map<String, NpcMetrics> getNpcMetrics() {
+        return npcMetrics;
+    }
+    
+    Map<String, Map<String, LongAdder>> getProviderErrors() {
+        return providerErrors;
+    }
+    
+    Collection<TokenUsage> getModelTokenUsage() {
+        return tokensByModel.values();
+    }
+    
+    Collection<TokenUsage> getNpcTokenUsage() {
+        return tokensByNpc.values();
+    }
+    
+    Map<String, Gauge> getGauges() {
+        return gauges;
+    }
+    
+    LatencyHistogram.Snapshot getResponseLatencySnapshot() {
+        return responseLatency.lifetime.snapshot();
+    }
+    
+    LatencyHistogram.Snapshot getFirstTokenLatencySnapshot() {
+        return firstTokenLatency.lifetime.snapshot();
+    }
+    
+    Map<String, LatencyHistogram.Snapshot> getProviderLatencySnapshots() {
+        return lifetimeSnapshots(providerLatency);
+    }
+    
+    Map<String, LatencyHistogram.Snapshot> getStageLatencySnapshots() {
+        return lifetimeSnapshots(stageLatency);
+    }
+    
+    private static Map<String, LatencyHistogram.Snapshot> lifetimeSnapshots(Map<String, LatencySeries> series) {
+        Map<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        for (Map.Entry<String, LatencySeries> entry : series.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().lifetime.snapshot());
+        }
+        return snapshots;
+    }
+    
     /**
      * Get top NPCs by request count
      */
-    public List<Map.Entry<String, Integer>> getTopNpcs(int limit) {
-        List<Map.Entry<String, Integer>> sorted = new ArrayList<>();
-        for (Map.Entry<String, NpcMetrics> entry : npcMetrics.entrySet()) {
-            sorted.add(Map.entry(entry.getKey(), entry.getValue().requests.get()));
+    public List<Map.Entry<String, Long>> getTopNpcs(int limit) {
+        return topNpcs.top(limit);
+    }
+    
+    /**
+     * Drop a departed player's metrics (see PlayerSessionService); players among the top tracked
+     * are kept so getTopPlayers() can still name them
+     * @return false if kept
+     */
+    public boolean evictPlayer(UUID playerUuid) {
+        if (topPlayers.contains(playerUuid)) {
+            return false;
         }
-        sorted.sort((a, b) -> b.getValue().compareTo(a.getValue()));
-        return sorted.subList(0, Math.min(limit, sorted.size()));
+        playerMetrics.remove(playerUuid);
+        tokensByPlayer.remove(playerUuid);
+        return true;
     }
     
     /**
-     * Get top players by request count
+     * Get top players by request count (approximate once more players than metrics.top-tracked are seen)
      */
-    public List<Map.Entry<String, Integer>> getTopPlayers(int limit) {
-        List<Map.Entry<String, Integer>> sorted = new ArrayList<>();
-        for (Map.Entry<UUID, PlayerMetrics> entry : playerMetrics.entrySet()) {
-            sorted.add(Map.entry(entry.getValue().playerName, entry.getValue().totalRequests.get()));
+    public List<Map.Entry<String, Long>> getTopPlayers(int limit) {
+        List<Map.Entry<String, Long>> top = new ArrayList<>();
+        for (Map.Entry<UUID, Long> entry : topPlayers.top(limit)) {
+            PlayerMetrics pm = playerMetrics.get(entry.getKey());
+            String name = pm != null ? pm.playerName : entry.getKey().toString();
+            top.add(Map.entry(name, entry.getValue()));
         }
-        sorted.sort((a, b) -> b.getValue().compareTo(a.getValue()));
-        return sorted.subList(0, Math.min(limit, sorted.size()));
+        return List.copyOf(top);
     }
     
     /**
-     * Save metrics to file (for daily persistence)
+     * Save today's summary to the store (for daily persistence)
      */
     public void saveMetrics() {
         if (!enabled || !persistMetrics) return;
         
-        if (!metricsFolder.exists()) {
-            metricsFolder.mkdirs();
-        }
-        
         String date = LocalDate.now().toString();
-        File file = new File(metricsFolder, "metrics-" + date + ".json");
-        
         Map<String, Object> data = new LinkedHashMap<>();
         data.put("date", date);
         data.put("savedAt", Instant.now().toString());
         data.put("summary", getSummary());
         data.put("npcMetrics", getAllNpcStats());
+        data.put("tokensByProvider", getTokenUsage("providers", Integer.MAX_VALUE));
+        data.put("tokensByModel", getTokenUsage("models", Integer.MAX_VALUE));
+        data.put("tokensByNpc", getTokenUsage("npcs", Integer.MAX_VALUE));
         
         // Player metrics (anonymized - just counts)
-        Map<String, Integer> playerCounts = new LinkedHashMap<>();
+        Map<String, Long> playerCounts = new LinkedHashMap<>();
         for (PlayerMetrics pm : playerMetrics.values()) {
-            playerCounts.put(pm.playerName, pm.totalRequests.get());
+            playerCounts.put(pm.playerName, pm.totalRequests.sum());
         }
         data.put("playerCounts", playerCounts);
         
-        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
-                new FileOutputStream(file), StandardCharsets.UTF_8))) {
-            gson.toJson(data, writer);
+        try {
+            store.saveDailySummary(LocalDate.now(), gson.toJson(data));
         } catch (IOException e) {
             plugin.getLogger().warning("[Metrics] Failed to save metrics: " + e.getMessage());
         }
     }
     
     /**
-     * Load today's metrics if they exist
+     * Load per-minute history from previous runs
      */
-    private void loadTodayMetrics() {
+    private void loadHistory() {
         if (!enabled || !persistMetrics) return;
-        if (!metricsFolder.exists()) return;
         
-        String date = LocalDate.now().toString();
-        File file = new File(metricsFolder, "metrics-" + date + ".json");
-        
-        if (!file.exists()) return;
-        
-        // We don't restore full state, just log that previous data exists
-        plugin.getLogger().info("[Metrics] Found existing metrics for today: " + file.getName());
+        int minutes = timeSeries.load();
+        if (minutes > 0) {
+            plugin.getLogger().info("[Metrics] Loaded " + minutes + " minutes of metrics history");
+        }
+    }
+    
+    /**
+     * Stop the flush task and write everything to disk
+     */
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        if (enabled && persistMetrics) {
+            timeSeries.flush(true);
+        }
+        saveMetrics();
     }
     
     /**
      * Reset all metrics
      */
     public void reset() {
-        totalRequests.set(0);
-        cacheHits.set(0);
-        cacheMisses.set(0);
-        totalResponseTimeMs.set(0);
-        totalErrors.set(0);
+        totalRequests.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+        totalResponseTimeMs.reset();
+        totalErrors.reset();
         npcMetrics.clear();
         playerMetrics.clear();
+        topNpcs.clear();
+        topPlayers.clear();
+        responseLatency.reset();
+        firstTokenLatency.reset();
+        providerLatency.clear();
+        stageLatency.clear();
+        providerErrors.clear();
+        totalTokens.reset();
+        tokensByProvider.clear();
+        tokensByModel.clear();
+        tokensByNpc.clear();
+        tokensByPlayer.clear();
+    }
+    
+    private static double toDouble(Object value) {
+        if (value instanceof Number) return ((Number) value).doubleValue();
+        if (value == null) return 0;
+        try {
+            return Double.parseDouble(value.toString());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    private static double roundCost(double usd) {
+        return Math.round(usd * 1_000_000) / 1_000_000.0;
+    }
+    
+    /**
+     * Summarize a histogram snapshot as count/p50/p90/p99/max in milliseconds
+     */
+    private static Map<String, Object> describe(LatencyHistogram.Snapshot snapshot) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", snapshot.getCount());
+        map.put("p50Ms", toMillis(snapshot.percentileMicros(50)));
+        map.put("p90Ms", toMillis(snapshot.percentileMicros(90)));
+        map.put("p99Ms", toMillis(snapshot.percentileMicros(99)));
+        map.put("maxMs", toMillis(snapshot.getMaxMicros()));
+        return map;
+    }
+    
+    /**
+     * Convert microseconds to milliseconds, keeping one decimal for sub-10ms values
+     */
+    private static Object toMillis(long micros) {
+        if (micros < 10_000) {
+            return Math.round(micros / 100.0) / 10.0;
+        }
+        return micros / 1000;
+    }
+    
+    /**
+     * Lifetime histogram plus a sliding-window histogram for recent percentiles
+     */
+    private static class LatencySeries {
+        final LatencyHistogram lifetime = new LatencyHistogram();
+        final SlidingWindowHistogram recent;
+        
+        LatencySeries(long windowMillis) {
+            this.recent = new SlidingWindowHistogram(windowMillis, 10);
+        }
+        
+        void recordMillis(long millis) {
+            lifetime.recordMillis(millis);
+            recent.recordMillis(millis);
+        }
+        
+        void recordNanos(long nanos) {
+            lifetime.recordNanos(nanos);
+            recent.recordNanos(nanos);
+        }
+        
+        void reset() {
+            lifetime.reset();
+            // Window slices age out on their own
+        }
+    }
+    
+    /**
+     * Token counters for one provider, model, NPC or player
+     */
+    static class TokenUsage {
+        volatile String label;
+        final String provider;
+        final String model;
+        final LongAdder requests = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+        final DoubleAdder cost = new DoubleAdder();
+        
+        TokenUsage(String label) {
+            this.label = label;
+            this.provider = null;
+            this.model = null;
+        }
+        
+        TokenUsage(String provider, String model) {
+            this.label = provider + "/" + model;
+            this.provider = provider;
+            this.model = model;
+        }
+        
+        void add(int prompt, int completion, double usd) {
+            requests.increment();
+            promptTokens.add(prompt);
+            completionTokens.add(completion);
+            cost.add(usd);
+        }
+        
+        long totalTokens() {
+            return promptTokens.sum() + completionTokens.sum();
+        }
+        
+        void reset() {
+            requests.reset();
+            promptTokens.reset();
+            completionTokens.reset();
+            cost.reset();
+        }
+        
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            long count = requests.sum();
+            long prompt = promptTokens.sum();
+            long completion = completionTokens.sum();
+            map.put("requests", count);
+            map.put("promptTokens", prompt);
+            map.put("completionTokens", completion);
+            map.put("totalTokens", prompt + completion);
+            map.put("avgPromptTokens", count > 0 ? prompt / count : 0);
+            map.put("estimatedCostUsd", roundCost(cost.sum()));
+            return Collections.unmodifiableMap(map);
+        }
+    }
+    
+    /**
+     * Cost rate for a provider (and optionally a specific model)
+     */
+    private static class TokenCost {
+        final String provider;
+        final String model;
+        final double inputPerMillion;
+        final double outputPerMillion;
+        
+        TokenCost(String provider, String model, double inputPerMillion, double outputPerMillion) {
+            this.provider = provider;
+            this.model = model;
+            this.inputPerMillion = inputPerMillion;
+            this.outputPerMillion = outputPerMillion;
+        }
+        
+        boolean matches(String providerId, String modelName) {
+            if (provider != null && !provider.equalsIgnoreCase(providerId)) return false;
+            // Prefix match so dated variants (gpt-4o-mini-2024-07-18) use the base rate
+            return model == null || (modelName != null && modelName.toLowerCase().startsWith(model.toLowerCase()));
+        }
+    }
+    
+    /**
+     * Immutable point-in-time copy of the global counters
+     */
+    static class Totals {
+        final long requests;
+        final long cacheHits;
+        final long cacheMisses;
+        final long responseTimeMs;
+        final long errors;
+        
+        Totals(long requests, long cacheHits, long cacheMisses, long responseTimeMs, long errors) {
+            this.requests = requests;
+            this.cacheHits = cacheHits;
+            this.cacheMisses = cacheMisses;
+            this.responseTimeMs = responseTimeMs;
+            this.errors = errors;
+        }
+        
+        double cacheHitRatio() {
+            return requests > 0 ? (double) cacheHits / requests : 0;
+        }
+        
+        long avgResponseTimeMs() {
+            return cacheMisses > 0 ? responseTimeMs / cacheMisses : 0;
+        }
+    }
+    
+    /**
+     * Sampled gauge value with its help text
+     */
+    static class Gauge {
+        final String help;
+        final DoubleSupplier supplier;
+        final String labelName;
+        final Supplier<Map<String, ? extends Number>> labeledSupplier;
+        
+        Gauge(String help, DoubleSupplier supplier, String labelName, Supplier<Map<String, ? extends Number>> labeledSupplier) {
+            this.help = help;
+            this.supplier = supplier;
+            this.labelName = labelName;
+            this.labeledSupplier = labeledSupplier;
+        }
     }
     
     /**
      * NPC-specific metrics
      */
-    private static class NpcMetrics {
+    static class NpcMetrics {
         final String npcName;
-        final AtomicInteger requests = new AtomicInteger(0);
-        final AtomicInteger cacheHits = new AtomicInteger(0);
-        final AtomicLong totalResponseTimeMs = new AtomicLong(0);
-        final AtomicInteger errors = new AtomicInteger(0);
-        final Map<String, AtomicInteger> errorTypes = new ConcurrentHashMap<>();
-        long firstRequestTime = 0;
-        long lastRequestTime = 0;
-        
-        NpcMetrics(String npcName) {
+        final LongAdder requests = new LongAdder();
+        final LongAdder cacheHits = new LongAdder();
+        final LongAdder totalResponseTimeMs = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final Map<String, LongAdder> errorTypes = new ConcurrentHashMap<>();
+        final LatencySeries latency;
+        final LatencySeries firstTokenLatency;
+        final AtomicLong firstRequestTime = new AtomicLong();
+        final LongAccumulator lastRequestTime = new LongAccumulator(Math::max, 0);
+        
+        NpcMetrics(String npcName, long latencyWindowMillis) {
             this.npcName = npcName;
+            this.latency = new LatencySeries(latencyWindowMillis);
+            this.firstTokenLatency = new LatencySeries(latencyWindowMillis);
         }
         
-        void recordRequest(long responseTimeMs, boolean wasCached) {
-            requests.incrementAndGet();
+        void recordRequest(long responseTimeMs, long timeToFirstTokenMs, boolean wasCached) {
+            requests.increment();
             if (wasCached) {
-                cacheHits.incrementAndGet();
+                cacheHits.increment();
             } else {
-                totalResponseTimeMs.addAndGet(responseTimeMs);
+                totalResponseTimeMs.add(responseTimeMs);
+                latency.recordMillis(responseTimeMs);
+                if (timeToFirstTokenMs >= 0) {
+                    firstTokenLatency.recordMillis(timeToFirstTokenMs);
+                }
             }
             
             long now = System.currentTimeMillis();
-            if (firstRequestTime == 0) firstRequestTime = now;
-            lastRequestTime = now;
+            if (firstRequestTime.get() == 0) firstRequestTime.compareAndSet(0, now);
+            lastRequestTime.accumulate(now);
         }
         
         void recordError(String errorType) {
-            errors.incrementAndGet();
-            errorTypes.computeIfAbsent(errorType, k -> new AtomicInteger(0)).incrementAndGet();
+            errors.increment();
+            getOrCreate(errorTypes, errorType, k -> new LongAdder()).increment();
         }
         
         Map<String, Object> toMap() {
             Map<String, Object> map = new LinkedHashMap<>();
-            map.put("requests", requests.get());
-            map.put("cacheHits", cacheHits.get());
-            map.put("errors", errors.get());
+            long requestCount = requests.sum();
+            long hitCount = cacheHits.sum();
+            map.put("requests", requestCount);
+            map.put("cacheHits", hitCount);
+            map.put("errors", errors.sum());
             
-            int nonCached = requests.get() - cacheHits.get();
-            long avgTime = nonCached > 0 ? totalResponseTimeMs.get() / nonCached : 0;
+            long nonCached = requestCount - hitCount;
+            long avgTime = nonCached > 0 ? totalResponseTimeMs.sum() / nonCached : 0;
             map.put("avgResponseTimeMs", avgTime);
             
-            if (firstRequestTime > 0) {
-                map.put("firstRequest", Instant.ofEpochMilli(firstRequestTime).toString());
-                map.put("lastRequest", Instant.ofEpochMilli(lastRequestTime).toString());
+            LatencyHistogram.Snapshot recent = latency.recent.snapshot();
+            map.put("p50ResponseTimeMs", toMillis(recent.percentileMicros(50)));
+            map.put("p90ResponseTimeMs", toMillis(recent.percentileMicros(90)));
+            map.put("p99ResponseTimeMs", toMillis(recent.percentileMicros(99)));
+            map.put("maxResponseTimeMs", toMillis(recent.getMaxMicros()));
+            map.put("p50FirstTokenMs", toMillis(firstTokenLatency.recent.snapshot().percentileMicros(50)));
+            
+            long first = firstRequestTime.get();
+            if (first > 0) {
+                map.put("firstRequest", Instant.ofEpochMilli(first).toString());
+                map.put("lastRequest", Instant.ofEpochMilli(lastRequestTime.get()).toString());
             }
             
-            return map;
+            return Collections.unmodifiableMap(map);
         }
     }
     
@@ -307,9 +947,9 @@ public class MetricsManager {
      */
     private static class PlayerMetrics {
         final UUID playerUuid;
-        String playerName;
-        final AtomicInteger totalRequests = new AtomicInteger(0);
-        final Map<String, AtomicInteger> npcInteractions = new ConcurrentHashMap<>();
+        volatile String playerName;
+        final LongAdder totalRequests = new LongAdder();
+        final Map<String, LongAdder> npcInteractions = new ConcurrentHashMap<>();
         
         PlayerMetrics(UUID playerUuid, String playerName) {
             this.playerUuid = playerUuid;
@@ -317,8 +957,8 @@ public class MetricsManager {
         }
         
         void recordRequest(String npcName) {
-            totalRequests.incrementAndGet();
-            npcInteractions.computeIfAbsent(npcName, k -> new AtomicInteger(0)).incrementAndGet();
+            totalRequests.increment();
+            getOrCreate(npcInteractions, npcName, k -> new LongAdder()).increment();
         }
     }
 }
@@ -0,0 +1,39 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import io.github.thegreywanderer_uc.chatr.MetricsTimeSeries.MinuteTotals;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.NavigableMap;
+
+/**
+ * Where MetricsManager keeps per-minute history and daily summaries.
+ * - FileMetricsStore: metrics/series-YYYY-MM-DD.log and metrics/metrics-YYYY-MM-DD.json
+ * - JdbcMetricsStore: the metrics_minutes and metrics_daily tables of ChatrDatabase
+ */
+public interface MetricsStore {
+
+    /**
+     * Append closed minutes. A minute may be appended more than once (e.g. across
+     * restarts); loadMinutes() sums them.
+     * @throws IOException If some could not be written; those written are removed from
+     *         minutes, so the caller can retry the rest
+     */
+    void appendMinutes(NavigableMap<Long, MinuteTotals> minutes) throws IOException;
+
+    /**
+     * Load minutes from fromMinute (minutes since the epoch) on, and delete older ones
+     */
+    NavigableMap<Long, MinuteTotals> loadMinutes(long fromMinute) throws IOException;
+
+    /**
+     * Save the day's summary (JSON), replacing an earlier save for the same day
+     */
+    void saveDailySummary(LocalDate date, String json) throws IOException;
+
+    /**
+     * Release resources (no-op by default)
+     */
+    default void close() {
+    }
+}
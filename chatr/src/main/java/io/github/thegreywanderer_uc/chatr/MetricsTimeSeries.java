@@ -0,0 +1,275 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append-only per-minute metrics history.
+ * - Requests are added to an open bucket for the current minute
+ * - flush() appends closed minutes to the MetricsStore (files or database); minutes that fail
+ *   to append are kept and retried on the next flush
+ * - Startup loads the retained minutes back, so windows survive restarts and crashes
+ * - Rows for the same minute (e.g. after a restart) are summed when loaded
+ */
+public class MetricsTimeSeries {
+
+    private final JavaPlugin plugin;
+    private final MetricsStore store;
+
+    // Minutes still receiving writes
+    private final Map<Long, OpenMinute> openMinutes = new ConcurrentHashMap<>();
+    // Closed minutes, loaded from disk or flushed this session
+    private final NavigableMap<Long, MinuteTotals> history = new ConcurrentSkipListMap<>();
+    // Closed minutes the store failed to append, retried on the next flush (guarded by this)
+    private final NavigableMap<Long, MinuteTotals> unsaved = new TreeMap<>();
+
+    private volatile int retentionDays = 8;
+
+    public MetricsTimeSeries(JavaPlugin plugin, MetricsStore store) {
+        this.plugin = plugin;
+        this.store = store;
+    }
+
+    public void setRetentionDays(int retentionDays) {
+        this.retentionDays = Math.max(1, retentionDays);
+    }
+
+    /**
+     * Record a request (cached requests are not counted as responses)
+     */
+    public void recordRequest(boolean cached, long responseTimeMs) {
+        OpenMinute minute = current();
+        minute.requests.increment();
+        if (cached) {
+            minute.cacheHits.increment();
+        } else {
+            minute.responses.increment();
+            minute.responseMsSum.add(responseTimeMs);
+            minute.responseMsMax.accumulate(responseTimeMs);
+        }
+    }
+
+    public void recordError() {
+        current().errors.increment();
+    }
+
+    public void recordTokens(int promptTokens, int completionTokens, double costUsd) {
+        OpenMinute minute = current();
+        minute.promptTokens.add(promptTokens);
+        minute.completionTokens.add(completionTokens);
+        minute.costMicroUsd.add(Math.round(costUsd * 1_000_000));
+    }
+
+    private OpenMinute current() {
+        long minute = System.currentTimeMillis() / 60_000L;
+        OpenMinute open = openMinutes.get(minute);
+        return open != null ? open : openMinutes.computeIfAbsent(minute, k -> new OpenMinute());
+    }
+
+    /**
+     * Append closed minutes to disk.
+     * The previous minute is kept open for a grace period so late writers are not lost.
+     * @param all Also flush the current minute (used on shutdown)
+     */
+    public synchronized void flush(boolean all) {
+        long nowMinute = System.currentTimeMillis() / 60_000L;
+        NavigableMap<Long, MinuteTotals> closed = new TreeMap<>();
+
+        for (Long minute : new TreeSet<>(openMinutes.keySet())) {
+            if (!all && minute >= nowMinute - 1) continue;
+            OpenMinute open = openMinutes.remove(minute);
+            if (open == null) continue;
+            MinuteTotals totals = open.toTotals();
+            if (totals.isEmpty()) continue;
+
+            history.merge(minute, totals, MinuteTotals::plus);
+            closed.put(minute, totals);
+        }
+
+        for (Map.Entry<Long, MinuteTotals> entry : closed.entrySet()) {
+            unsaved.merge(entry.getKey(), entry.getValue(), MinuteTotals::plus);
+        }
+        if (unsaved.isEmpty()) return;
+        try {
+            // Removes what was written, even when it throws
+            store.appendMinutes(unsaved);
+            unsaved.clear();
+        } catch (IOException e) {
+            plugin.getLogger().warning("[Metrics] Failed to save time series (" + unsaved.size()
+                    + " minutes kept for the next flush): " + e.getMessage());
+        }
+
+        prune(nowMinute);
+    }
+
+    /**
+     * Load retained history and delete what is past retention
+     * @return Number of minutes loaded
+     */
+    public synchronized int load() {
+        try {
+            for (Map.Entry<Long, MinuteTotals> entry : store.loadMinutes(retentionStartMinute()).entrySet()) {
+                history.merge(entry.getKey(), entry.getValue(), MinuteTotals::plus);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("[Metrics] Failed to load time series: " + e.getMessage());
+        }
+
+        prune(System.currentTimeMillis() / 60_000L);
+        return history.size();
+    }
+
+    /**
+     * Oldest minute kept (minutes since the epoch)
+     */
+    public long retentionStartMinute() {
+        return System.currentTimeMillis() / 60_000L - retentionDays * 1440L;
+    }
+
+    private void prune(long nowMinute) {
+        long cutoff = nowMinute - retentionDays * 1440L;
+        history.headMap(cutoff).clear();
+        unsaved.headMap(cutoff).clear();
+    }
+
+    /**
+     * Aggregate the last windowMinutes minutes, including minutes not yet flushed
+     */
+    public Map<String, Object> query(long windowMinutes) {
+        long nowMinute = System.currentTimeMillis() / 60_000L;
+        long fromMinute = nowMinute - windowMinutes + 1;
+
+        MinuteTotals sum = new MinuteTotals();
+        for (MinuteTotals totals : history.tailMap(fromMinute, true).values()) {
+            sum = sum.plus(totals);
+        }
+        for (Map.Entry<Long, OpenMinute> entry : openMinutes.entrySet()) {
+            if (entry.getKey() >= fromMinute) {
+                sum = sum.plus(entry.getValue().toTotals());
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("from", Instant.ofEpochMilli(fromMinute * 60_000L).toString());
+        result.put("requests", sum.requests);
+        result.put("requestsPerMinute", Math.round(sum.requests * 100.0 / windowMinutes) / 100.0);
+        result.put("cacheHits", sum.cacheHits);
+        result.put("cacheHitRate", sum.requests > 0 ? String.format("%.1f%%", sum.cacheHits * 100.0 / sum.requests) : "0.0%");
+        result.put("errors", sum.errors);
+        result.put("avgResponseTimeMs", sum.responses > 0 ? sum.responseMsSum / sum.responses : 0);
+        result.put("maxResponseTimeMs", sum.responseMsMax);
+        result.put("promptTokens", sum.promptTokens);
+        result.put("completionTokens", sum.completionTokens);
+        result.put("estimatedCostUsd", sum.costMicroUsd / 1_000_000.0);
+        Map.Entry<Long, MinuteTotals> oldest = history.firstEntry();
+        if (oldest != null) {
+            result.put("historySince", Instant.ofEpochMilli(oldest.getKey() * 60_000L).toString());
+        }
+        return result;
+    }
+
+    /**
+     * Parse a window like 30m, 1h, 1d or 1w into minutes
+     * @return Minutes, or -1 if the window is invalid
+     */
+    public static long parseWindowMinutes(String window) {
+        if (window == null || window.length() < 2) return -1;
+        char unit = Character.toLowerCase(window.charAt(window.length() - 1));
+        long amount;
+        try {
+            amount = Long.parseLong(window.substring(0, window.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (amount <= 0) return -1;
+        switch (unit) {
+            case 'm': return amount;
+            case 'h': return amount * 60;
+            case 'd': return amount * 1440;
+            case 'w': return amount * 10080;
+            default: return -1;
+        }
+    }
+
+    /**
+     * Minute still receiving concurrent writes
+     */
+    private static class OpenMinute {
+        final LongAdder requests = new LongAdder();
+        final LongAdder cacheHits = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder responses = new LongAdder();
+        final LongAdder responseMsSum = new LongAdder();
+        final LongAccumulator responseMsMax = new LongAccumulator(Math::max, 0);
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+        final LongAdder costMicroUsd = new LongAdder();
+
+        MinuteTotals toTotals() {
+            return new MinuteTotals(requests.sum(), cacheHits.sum(), errors.sum(), responses.sum(),
+                    responseMsSum.sum(), responseMsMax.get(), promptTokens.sum(), completionTokens.sum(),
+                    costMicroUsd.sum());
+        }
+    }
+
+    /**
+     * Immutable totals for one minute (or a sum of minutes)
+     */
+    static class MinuteTotals {
+        final long requests;
+        final long cacheHits;
+        final long errors;
+        final long responses;
+        final long responseMsSum;
+        final long responseMsMax;
+        final long promptTokens;
+        final long completionTokens;
+        final long costMicroUsd;
+
+        MinuteTotals() {
+            this(0, 0, 0, 0, 0, 0, 0, 0, 0);
+        }
+
+        MinuteTotals(long requests, long cacheHits, long errors, long responses, long responseMsSum,
+                     long responseMsMax, long promptTokens, long completionTokens, long costMicroUsd) {
+            this.requests = requests;
+            this.cacheHits = cacheHits;
+            this.errors = errors;
+            this.responses = responses;
+            this.responseMsSum = responseMsSum;
+            this.responseMsMax = responseMsMax;
+            this.promptTokens = promptTokens;
+            this.completionTokens = completionTokens;
+            this.costMicroUsd = costMicroUsd;
+        }
+
+        static MinuteTotals parse(String[] parts) {
+            return new MinuteTotals(Long.parseLong(parts[1]), Long.parseLong(parts[2]), Long.parseLong(parts[3]),
+                    Long.parseLong(parts[4]), Long.parseLong(parts[5]), Long.parseLong(parts[6]),
+                    Long.parseLong(parts[7]), Long.parseLong(parts[8]), Long.parseLong(parts[9]));
+        }
+
+        MinuteTotals plus(MinuteTotals other) {
+            return new MinuteTotals(requests + other.requests, cacheHits + other.cacheHits, errors + other.errors,
+                    responses + other.responses, responseMsSum + other.responseMsSum,
+                    Math.max(responseMsMax, other.responseMsMax), promptTokens + other.promptTokens,
+                    completionTokens + other.completionTokens, costMicroUsd + other.costMicroUsd);
+        }
+
+        boolean isEmpty() {
+            return requests == 0 && errors == 0 && promptTokens == 0 && completionTokens == 0;
+        }
+
+        String toLine() {
+            return requests + " " + cacheHits + " " + errors + " " + responses + " " + responseMsSum + " "
+                    + responseMsMax + " " + promptTokens + " " + completionTokens + " " + costMicroUsd;
+        }
+    }
+}
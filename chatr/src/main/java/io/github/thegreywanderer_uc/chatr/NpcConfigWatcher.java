@@ -0,0 +1,173 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Watches npcs/&lt;name&gt;/config.yml and reports which NPC changed, so one NPC can be
+ * reloaded without /chatr reload.
+ * - Runs on its own daemon thread; the callback is called from that thread
+ * - Editors often write a file in several steps, so changes are reported once the file
+ *   has been quiet for the debounce delay
+ * - NPC folders created later are picked up automatically
+ */
+public class NpcConfigWatcher {
+
+    private static final String CONFIG_FILE = "config.yml";
+
+    private final Path npcsFolder;
+    private final long debounceMs;
+    private final Consumer<String> onChange;
+    private final Logger logger;
+
+    private WatchService watchService;
+    private Thread thread;
+    private final Map<WatchKey, String> keys = new HashMap<>();
+    // NPC name -> when to report it, only touched by the watcher thread
+    private final Map<String, Long> pending = new HashMap<>();
+
+    public NpcConfigWatcher(Path npcsFolder, long debounceMs, Consumer<String> onChange, Logger logger) {
+        this.npcsFolder = npcsFolder;
+        this.debounceMs = Math.max(0, debounceMs);
+        this.onChange = onChange;
+        this.logger = logger;
+    }
+
+    /**
+     * Start watching (no-op if already running)
+     */
+    public synchronized void start() throws IOException {
+        if (thread != null) return;
+        Files.createDirectories(npcsFolder);
+        keys.clear();
+        pending.clear();
+        watchService = npcsFolder.getFileSystem().newWatchService();
+        keys.put(npcsFolder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE), null);
+        try (DirectoryStream<Path> folders = Files.newDirectoryStream(npcsFolder, Files::isDirectory)) {
+            for (Path folder : folders) {
+                watchNpcFolder(watchService, folder);
+            }
+        }
+        thread = new Thread(this::run, "Chatr-NpcConfigWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop watching and wait briefly for the thread to exit
+     */
+    public synchronized void stop() {
+        if (thread == null) return;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        thread.interrupt();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+        watchService = null;
+    }
+
+    public synchronized boolean isRunning() {
+        return thread != null;
+    }
+
+    private void watchNpcFolder(WatchService service, Path folder) throws IOException {
+        WatchKey key = folder.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        keys.put(key, folder.getFileName().toString());
+    }
+
+    private void run() {
+        WatchService service = watchService;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = pending.isEmpty()
+                        ? service.take()
+                        : service.poll(Math.max(1, nextDeadline() - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    handle(service, key);
+                }
+                reportDue();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    private void handle(WatchService service, WatchKey key) {
+        String npcName = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost: re-check every NPC we know about
+                for (String name : keys.values()) {
+                    if (name != null) pending.put(name, System.currentTimeMillis() + debounceMs);
+                }
+                continue;
+            }
+            Path changed = (Path) event.context();
+            if (npcName == null) {
+                // A new NPC folder (or a file) in npcs/
+                Path folder = npcsFolder.resolve(changed);
+                if (Files.isDirectory(folder)) {
+                    try {
+                        watchNpcFolder(service, folder);
+                        if (Files.exists(folder.resolve(CONFIG_FILE))) {
+                            pending.put(changed.toString(), System.currentTimeMillis() + debounceMs);
+                        }
+                    } catch (IOException e) {
+                        logger.warning("[NpcConfig] Could not watch " + folder + ": " + e.getMessage());
+                    }
+                }
+            } else if (CONFIG_FILE.equals(changed.toString())) {
+                pending.put(npcName, System.currentTimeMillis() + debounceMs);
+            }
+        }
+        if (!key.reset()) {
+            // Folder was deleted
+            keys.remove(key);
+        }
+    }
+
+    private long nextDeadline() {
+        long next = Long.MAX_VALUE;
+        for (long deadline : pending.values()) {
+            next = Math.min(next, deadline);
+        }
+        return next;
+    }
+
+    private void reportDue() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Long>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            if (entry.getValue() <= now) {
+                it.remove();
+                try {
+                    onChange.accept(entry.getKey());
+                } catch (RuntimeException e) {
+                    logger.warning("[NpcConfig] Reload of NPC '" + entry.getKey() + "' failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import io.github.thegreywanderer_uc.chatr.ai.AIProvider;
+import io.github.thegreywanderer_uc.chatr.ai.AIProviderFactory;
+
+import java.util.List;
+
+/**
+ * Everything a chat request needs to know about an NPC, resolved once from its
+ * config.yml and the global config. Immutable; a reload builds a new one.
+ */
+public class NpcProfile {
+
+    private final String npcName;
+    private final List<AIProviderFactory.Route> routes;
+    private final String model;
+    private final double temperature;
+    private final String systemPrompt;
+    private final Boolean hedge;
+    private final boolean chatLogging;
+
+    public NpcProfile(String npcName, List<AIProviderFactory.Route> routes, String model, double temperature,
+                      String systemPrompt, Boolean hedge, boolean chatLogging) {
+        this.npcName = npcName;
+        this.routes = List.copyOf(routes);
+        this.model = model;
+        this.temperature = temperature;
+        this.systemPrompt = systemPrompt;
+        this.hedge = hedge;
+        this.chatLogging = chatLogging;
+    }
+
+    public String getNpcName() {
+        return npcName;
+    }
+
+    /**
+     * The NPC's own provider followed by its fallbacks
+     */
+    public List<AIProviderFactory.Route> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * The NPC's own provider, or null if none is configured
+     */
+    public AIProvider getProvider() {
+        return routes.isEmpty() ? null : routes.get(0).provider;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public double getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * System prompt before context variables are substituted (empty if not configured)
+     */
+    public String getSystemPrompt() {
+        return systemPrompt;
+    }
+
+    /**
+     * Whether to hedge requests, or null to use the global ai.hedging.enabled
+     */
+    public Boolean getHedge() {
+        return hedge;
+    }
+
+    /**
+     * Whether chats with this NPC are written to its logs folder (enable-chat-logging)
+     */
+    public boolean isChatLogging() {
+        return chatLogging;
+    }
+}
@@ -0,0 +1,119 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import io.github.thegreywanderer_uc.chatr.ai.AIProvider;
+import io.github.thegreywanderer_uc.chatr.ai.AIProviderFactory;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Resolved NPC profiles, so the chat path does no YAML parsing or disk I/O.
+ * - A profile is built on first use from the NPC's already-loaded config and the global config
+ * - refresh() swaps in a new profile for one NPC (config file edits)
+ * - invalidate() drops one NPC (reload-npc); invalidateAll() drops every
+ *   profile (/chatr reload, where providers are rebuilt too)
+ */
+public class NpcProfileRegistry {
+
+    private final JavaPlugin plugin;
+    private final AIProviderFactory providerFactory;
+    private final Function<String, ? extends ConfigurationSection> npcConfigs;
+    private final Map<String, NpcProfile> profiles = new ConcurrentHashMap<>();
+
+    /**
+     * @param npcConfigs Looks up an NPC's loaded config.yml (null if it has none)
+     */
+    public NpcProfileRegistry(JavaPlugin plugin, AIProviderFactory providerFactory,
+                              Function<String, ? extends ConfigurationSection> npcConfigs) {
+        this.plugin = plugin;
+        this.providerFactory = providerFactory;
+        this.npcConfigs = npcConfigs;
+    }
+
+    /**
+     * The NPC's profile, resolved on first use
+     */
+    public NpcProfile get(String npcName) {
+        return profiles.computeIfAbsent(npcName, this::resolve);
+    }
+
+    /**
+     * Drop one NPC's profile so the next request resolves it again
+     */
+    public void invalidate(String npcName) {
+        profiles.remove(npcName);
+    }
+
+    /**
+     * Resolve one NPC's profile again and swap it in, so requests see either the old
+     * or the new profile and never a gap
+     */
+    public NpcProfile refresh(String npcName) {
+        NpcProfile profile = resolve(npcName);
+        profiles.put(npcName, profile);
+        return profile;
+    }
+
+    /**
+     * Drop every profile
+     */
+    public void invalidateAll() {
+        profiles.clear();
+    }
+
+    private NpcProfile resolve(String npcName) {
+        ConfigurationSection npcConfig = npcConfigs.apply(npcName);
+        FileConfiguration config = plugin.getConfig();
+
+        String model = setting(npcConfig, "model");
+        if (model == null) {
+            model = config.getString("ai.model");
+        }
+        double temperature = config.getDouble("ai.temperature");
+        if (npcConfig != null && npcConfig.contains("ai.temperature")) {
+            temperature = npcConfig.getDouble("ai.temperature");
+        } else if (npcConfig != null && npcConfig.contains("temperature")) {
+            temperature = npcConfig.getDouble("temperature");
+        }
+        List<?> fallbacks = npcConfig != null && npcConfig.contains("ai.fallbacks")
+                ? npcConfig.getList("ai.fallbacks")
+                : config.getList("ai.fallbacks");
+        Boolean hedge = npcConfig != null && npcConfig.contains("ai.hedge") ? npcConfig.getBoolean("ai.hedge") : null;
+
+        NpcProfile profile = new NpcProfile(
+                npcName,
+                providerFactory.getRoutesForNpc(npcName, npcConfig, fallbacks),
+                model,
+                temperature,
+                npcConfig != null ? npcConfig.getString("system-prompt", "").trim() : "",
+                hedge,
+                npcConfig != null && npcConfig.getBoolean("enable-chat-logging", true));
+
+        if (config.getBoolean("debug-mode", false)) {
+            AIProvider provider = profile.getProvider();
+            plugin.getLogger().info("[DEBUG] Resolved NPC '" + npcName + "': provider "
+                    + (provider != null ? provider.getId() + " (" + provider.getBaseUrl() + ")" : "none")
+                    + ", model " + model + ", " + (profile.getRoutes().size() - (provider != null ? 1 : 0)) + " fallback(s)");
+        }
+        return profile;
+    }
+
+    /**
+     * ai.setting first (new format), then the root level for backward compatibility
+     */
+    private static String setting(ConfigurationSection npcConfig, String setting) {
+        if (npcConfig == null) return null;
+        if (npcConfig.contains("ai." + setting)) {
+            return npcConfig.getString("ai." + setting);
+        }
+        if (npcConfig.contains(setting)) {
+            return npcConfig.getString(setting);
+        }
+        return null;
+    }
+}
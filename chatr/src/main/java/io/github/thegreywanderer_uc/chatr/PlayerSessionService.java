@@ -0,0 +1,129 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drops the per-player state managers keep (rate limits, cooldowns, metrics, episode indexes,
+ * last NPC) once a player is gone, so memory stays flat on long-running servers with many
+ * different players.
+ * - Managers register a PlayerState; it is evicted once the player has been offline for
+ *   player-sessions.evict-after-seconds, so a quick reconnect keeps cooldowns and limits
+ * - A background sweep every sweep-interval-seconds evicts players whose time is up; a state
+ *   that still needs a player (e.g. a rate limit that hasn't recovered) is asked again next sweep
+ * - Conversations are not registered here: ConversationManager unloads them itself
+ */
+public class PlayerSessionService implements Listener {
+
+    /**
+     * Per-player state held by a manager
+     */
+    @FunctionalInterface
+    public interface PlayerState {
+        /**
+         * Drop everything kept for a player who left (called from a background thread)
+         * @return false to keep the player and be asked again on the next sweep
+         */
+        boolean evict(UUID playerUuid);
+    }
+
+    private final JavaPlugin plugin;
+    private final Map<String, PlayerState> states = new ConcurrentHashMap<>();
+    // Players who left -> when (epoch ms); removed on rejoin or once every state let go of them
+    private final Map<UUID, Long> offlineSince = new ConcurrentHashMap<>();
+
+    private volatile long evictAfterMs;
+    private BukkitTask sweepTask;
+
+    private final AtomicLong evictedPlayers = new AtomicLong();
+    private volatile int retained; // Kept by some state in the last sweep
+
+    public PlayerSessionService(JavaPlugin plugin) {
+        this.plugin = plugin;
+        reload();
+    }
+
+    /**
+     * Reload settings from config and reschedule the sweep
+     */
+    public synchronized void reload() {
+        var config = plugin.getConfig();
+        this.evictAfterMs = Math.max(0, config.getLong("player-sessions.evict-after-seconds", 300)) * 1000L;
+        stop();
+        long intervalTicks = Math.max(5, config.getInt("player-sessions.sweep-interval-seconds", 60)) * 20L;
+        sweepTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::sweep, intervalTicks, intervalTicks);
+    }
+
+    public synchronized void stop() {
+        if (sweepTask != null) {
+            sweepTask.cancel();
+            sweepTask = null;
+        }
+    }
+
+    /**
+     * Register a manager's per-player state
+     * @param name Shown in stats and logs
+     */
+    public void register(String name, PlayerState state) {
+        states.put(name, state);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        offlineSince.remove(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        offlineSince.put(event.getPlayer().getUniqueId(), System.currentTimeMillis());
+    }
+
+    /**
+     * Evict players who have been offline for evict-after-seconds
+     */
+    void sweep() {
+        long cutoff = System.currentTimeMillis() - evictAfterMs;
+        int kept = 0;
+        for (Map.Entry<UUID, Long> entry : offlineSince.entrySet()) {
+            if (entry.getValue() > cutoff) continue;
+            UUID playerUuid = entry.getKey();
+            boolean done = true;
+            for (Map.Entry<String, PlayerState> state : states.entrySet()) {
+                try {
+                    done &= state.getValue().evict(playerUuid);
+                } catch (RuntimeException e) {
+                    plugin.getLogger().warning("[PlayerSessions] Could not evict " + state.getKey() + " of " + playerUuid + ": " + e.getMessage());
+                }
+            }
+            if (!done) {
+                kept++;
+            } else if (offlineSince.remove(playerUuid, entry.getValue())) {
+                // Unless they rejoined (and left again) during the sweep
+                evictedPlayers.incrementAndGet();
+            }
+        }
+        retained = kept;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("registeredStates", states.size());
+        stats.put("offlineTracked", offlineSince.size());
+        stats.put("evictedPlayers", evictedPlayers.get());
+        stats.put("retained", retained);
+        return stats;
+    }
+}
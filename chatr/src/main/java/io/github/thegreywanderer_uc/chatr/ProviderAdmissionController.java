@@ -0,0 +1,394 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Provider-level admission control, protecting AI backends from the combined load of all players.
+ * - max-in-flight: concurrent calls per provider
+ * - requests-per-minute / tokens-per-minute: budgets matching the provider's quota
+ * - When a provider is saturated, callers wait in a queue served round-robin per player,
+ *   so one player spamming an NPC can't starve everyone else
+ * Configured per provider id under ai.provider-limits (with an optional "default" section).
+ * Providers without limits skip the gate entirely.
+ */
+public class ProviderAdmissionController {
+
+    private final JavaPlugin plugin;
+    private final Map<String, Gate> gates = new ConcurrentHashMap<>();
+
+    private volatile Map<String, Limits> limitsByProvider = Map.of();
+    private volatile Limits defaultLimits = Limits.UNLIMITED;
+
+    public ProviderAdmissionController(JavaPlugin plugin) {
+        this.plugin = plugin;
+        reload();
+    }
+
+    /**
+     * Reload limits from config. Queued callers are kept and re-evaluated against the new limits.
+     */
+    public void reload() {
+        Map<String, Limits> limits = new HashMap<>();
+        Limits fallback = Limits.UNLIMITED;
+
+        ConfigurationSection section = plugin.getConfig().getConfigurationSection("ai.provider-limits");
+        if (section != null) {
+            for (String providerId : section.getKeys(false)) {
+                ConfigurationSection providerSection = section.getConfigurationSection(providerId);
+                if (providerSection == null) continue;
+                Limits parsed = Limits.from(providerSection);
+                if (providerId.equalsIgnoreCase("default")) {
+                    fallback = parsed;
+                } else {
+                    limits.put(providerId.toLowerCase(), parsed);
+                }
+            }
+        }
+
+        this.limitsByProvider = limits;
+        this.defaultLimits = fallback;
+        for (Map.Entry<String, Gate> entry : gates.entrySet()) {
+            entry.getValue().setLimits(limitsFor(entry.getKey()));
+        }
+        if (!limits.isEmpty()) {
+            plugin.getLogger().info("[Admission] Provider limits loaded for " + limits.keySet());
+        }
+    }
+
+    private Limits limitsFor(String providerId) {
+        return limitsByProvider.getOrDefault(providerId, defaultLimits);
+    }
+
+    /**
+     * Wait until a provider can take another call.
+     * @param providerId The provider id (direct, groq, gemini...)
+     * @param queueKey Fairness key, usually the player UUID (null shares one queue)
+     * @param estimatedTokens Tokens the call may use (prompt estimate + max tokens)
+     * @return A permit that must be released when the call completes
+     * @throws RuntimeException If the queue is full, the wait timed out or the thread was interrupted
+     */
+    public Permit acquire(String providerId, Object queueKey, int estimatedTokens) {
+        String id = providerId != null ? providerId.toLowerCase() : "unknown";
+        Gate gate = gates.get(id);
+        if (gate == null) {
+            Limits limits = limitsFor(id);
+            if (limits.isUnlimited()) {
+                return Permit.NONE;
+            }
+            gate = gates.computeIfAbsent(id, k -> new Gate(k, limitsFor(k)));
+        }
+        return gate.acquire(queueKey != null ? queueKey : Gate.SHARED_QUEUE, Math.max(0, estimatedTokens));
+    }
+
+    /**
+     * Callers currently waiting, per provider
+     */
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new TreeMap<>();
+        for (Map.Entry<String, Gate> entry : gates.entrySet()) {
+            depths.put(entry.getKey(), entry.getValue().getQueued());
+        }
+        return depths;
+    }
+
+    /**
+     * Calls currently admitted, per provider
+     */
+    public Map<String, Integer> getInFlight() {
+        Map<String, Integer> inFlight = new TreeMap<>();
+        for (Map.Entry<String, Gate> entry : gates.entrySet()) {
+            inFlight.put(entry.getKey(), entry.getValue().getInFlight());
+        }
+        return inFlight;
+    }
+
+    /**
+     * Rough token estimate for a prompt (about 4 characters per token)
+     */
+    public static int estimateTokens(int promptChars, int maxTokens) {
+        return promptChars / 4 + Math.max(0, maxTokens);
+    }
+
+    /**
+     * Per-provider limits; 0 or less means no limit
+     */
+    static class Limits {
+        static final Limits UNLIMITED = new Limits(0, 0, 0, 30_000, 0);
+
+        final int maxInFlight;
+        final int requestsPerMinute;
+        final int tokensPerMinute;
+        final long queueTimeoutMs;
+        final int maxQueue;
+
+        Limits(int maxInFlight, int requestsPerMinute, int tokensPerMinute, long queueTimeoutMs, int maxQueue) {
+            this.maxInFlight = maxInFlight;
+            this.requestsPerMinute = requestsPerMinute;
+            this.tokensPerMinute = tokensPerMinute;
+            this.queueTimeoutMs = queueTimeoutMs;
+            this.maxQueue = maxQueue;
+        }
+
+        static Limits from(ConfigurationSection section) {
+            return new Limits(
+                    section.getInt("max-in-flight", 0),
+                    section.getInt("requests-per-minute", 0),
+                    section.getInt("tokens-per-minute", 0),
+                    Math.max(1, section.getInt("queue-timeout-seconds", 30)) * 1000L,
+                    section.getInt("max-queue", 0));
+        }
+
+        boolean isUnlimited() {
+            return maxInFlight <= 0 && requestsPerMinute <= 0 && tokensPerMinute <= 0;
+        }
+    }
+
+    /**
+     * Admission state for one provider: in-flight count, continuously refilled request and
+     * token budgets, and per-key FIFO queues rotated round-robin.
+     */
+    static class Gate {
+        static final Object SHARED_QUEUE = new Object();
+        private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+        private final String providerId;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final LinkedHashMap<Object, ArrayDeque<Waiter>> queues = new LinkedHashMap<>();
+
+        private Limits limits;
+        private int inFlight;
+        private int queued;
+        private double requestBudget;
+        private double tokenBudget;
+        private long lastRefillNanos = System.nanoTime();
+
+        Gate(String providerId, Limits limits) {
+            this.providerId = providerId;
+            this.limits = limits;
+            this.requestBudget = limits.requestsPerMinute;
+            this.tokenBudget = limits.tokensPerMinute;
+        }
+
+        void setLimits(Limits limits) {
+            lock.lock();
+            try {
+                refill();
+                // Budgets that were unlimited start full, the rest keep what is left
+                requestBudget = this.limits.requestsPerMinute > 0
+                        ? Math.min(requestBudget, limits.requestsPerMinute) : limits.requestsPerMinute;
+                tokenBudget = this.limits.tokensPerMinute > 0
+                        ? Math.min(tokenBudget, limits.tokensPerMinute) : limits.tokensPerMinute;
+                this.limits = limits;
+                dispatch();
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Permit acquire(Object queueKey, int estimatedTokens) {
+            lock.lock();
+            try {
+                Waiter waiter = new Waiter(estimatedTokens);
+                if (queued == 0 && tryAdmit(waiter)) {
+                    return new Permit(this, waiter.estimatedTokens);
+                }
+                if (limits.maxQueue > 0 && queued >= limits.maxQueue) {
+                    throw new RuntimeException("Provider busy: '" + providerId + "' queue is full (" + queued + " waiting)");
+                }
+
+                queues.computeIfAbsent(queueKey, k -> new ArrayDeque<>()).addLast(waiter);
+                queued++;
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(limits.queueTimeoutMs);
+                try {
+                    while (!waiter.admitted) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            throw new RuntimeException("Provider busy: timed out waiting for '" + providerId + "'");
+                        }
+                        changed.awaitNanos(Math.min(remaining, nanosUntilBudget()));
+                        if (!waiter.admitted) {
+                            dispatch();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    if (!waiter.admitted) {
+                        throw new RuntimeException("Provider busy: interrupted waiting for '" + providerId + "'", e);
+                    }
+                } finally {
+                    if (!waiter.admitted) {
+                        removeWaiter(queueKey, waiter);
+                        dispatch();
+                    }
+                }
+                return new Permit(this, waiter.estimatedTokens);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(int reservedTokens, int actualTokens) {
+            lock.lock();
+            try {
+                inFlight--;
+                if (limits.tokensPerMinute > 0 && actualTokens >= 0) {
+                    // Return over-reserved tokens, or charge the difference if the estimate was low
+                    tokenBudget = Math.min(limits.tokensPerMinute, tokenBudget + reservedTokens - actualTokens);
+                }
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Admit queued waiters round-robin until the provider is saturated
+         */
+        private void dispatch() {
+            boolean admittedAny = false;
+            while (!queues.isEmpty()) {
+                Iterator<Map.Entry<Object, ArrayDeque<Waiter>>> it = queues.entrySet().iterator();
+                Map.Entry<Object, ArrayDeque<Waiter>> next = it.next();
+                Waiter waiter = next.getValue().peekFirst();
+                if (!tryAdmit(waiter)) break;
+
+                next.getValue().pollFirst();
+                queued--;
+                waiter.admitted = true;
+                admittedAny = true;
+                // Move this key to the back of the rotation
+                it.remove();
+                if (!next.getValue().isEmpty()) {
+                    queues.put(next.getKey(), next.getValue());
+                }
+            }
+            if (admittedAny) {
+                changed.signalAll();
+            }
+        }
+
+        private boolean tryAdmit(Waiter waiter) {
+            refill();
+            if (limits.maxInFlight > 0 && inFlight >= limits.maxInFlight) return false;
+            if (limits.requestsPerMinute > 0 && requestBudget < 1) return false;
+            // A call larger than the whole budget waits for a full bucket rather than forever
+            if (limits.tokensPerMinute > 0 && tokenBudget < Math.min(waiter.estimatedTokens, limits.tokensPerMinute)) return false;
+
+            inFlight++;
+            if (limits.requestsPerMinute > 0) requestBudget -= 1;
+            if (limits.tokensPerMinute > 0) tokenBudget -= waiter.estimatedTokens;
+            return true;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            long elapsed = now - lastRefillNanos;
+            lastRefillNanos = now;
+            if (limits.requestsPerMinute > 0) {
+                requestBudget = Math.min(limits.requestsPerMinute, requestBudget + (double) elapsed * limits.requestsPerMinute / MINUTE_NANOS);
+            }
+            if (limits.tokensPerMinute > 0) {
+                tokenBudget = Math.min(limits.tokensPerMinute, tokenBudget + (double) elapsed * limits.tokensPerMinute / MINUTE_NANOS);
+            }
+        }
+
+        /**
+         * How long until the budgets could admit the head of the queue (in-flight slots are signalled instead)
+         */
+        private long nanosUntilBudget() {
+            long wait = Long.MAX_VALUE;
+            if (limits.requestsPerMinute > 0 && requestBudget < 1) {
+                wait = (long) ((1 - requestBudget) * MINUTE_NANOS / limits.requestsPerMinute);
+            }
+            if (limits.tokensPerMinute > 0 && !queues.isEmpty()) {
+                int needed = Math.min(queues.values().iterator().next().peekFirst().estimatedTokens, limits.tokensPerMinute);
+                if (tokenBudget < needed) {
+                    wait = Math.min(wait, (long) ((needed - tokenBudget) * MINUTE_NANOS / limits.tokensPerMinute));
+                }
+            }
+            return Math.max(TimeUnit.MILLISECONDS.toNanos(1), wait);
+        }
+
+        private void removeWaiter(Object queueKey, Waiter waiter) {
+            ArrayDeque<Waiter> queue = queues.get(queueKey);
+            if (queue != null && queue.remove(waiter)) {
+                queued--;
+                if (queue.isEmpty()) {
+                    queues.remove(queueKey);
+                }
+            }
+        }
+
+        int getQueued() {
+            lock.lock();
+            try {
+                return queued;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int getInFlight() {
+            lock.lock();
+            try {
+                return inFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static class Waiter {
+        final int estimatedTokens;
+        boolean admitted;
+
+        Waiter(int estimatedTokens) {
+            this.estimatedTokens = estimatedTokens;
+        }
+    }
+
+    /**
+     * An admitted call. Release it exactly once, with the actual token usage if known.
+     */
+    public static class Permit implements AutoCloseable {
+        static final Permit NONE = new Permit(null, 0);
+
+        private final Gate gate;
+        private final int reservedTokens;
+        private boolean released;
+
+        Permit(Gate gate, int reservedTokens) {
+            this.gate = gate;
+            this.reservedTokens = reservedTokens;
+        }
+
+        /**
+         * Release the permit
+         * @param actualTokens Tokens the call used, or -1 if unknown (the estimate is kept)
+         */
+        public synchronized void release(int actualTokens) {
+            if (released || gate == null) return;
+            released = true;
+            gate.release(reservedTokens, actualTokens);
+        }
+
+        @Override
+        public void close() {
+            release(-1);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import io.github.thegreywanderer_uc.chatr.ai.AIProvider;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks provider health so a dead endpoint fails fast instead of tying up every
+ * request until its timeout.
+ * - One CircuitBreaker per provider id, created on the provider's first request
+ * - Timeouts, connection errors, 5xx, 408 and 429 count as failures; other 4xx mean the
+ *   provider answered, so they count as successes
+ * - A background task probes every provider that has served requests (GET /v1/models or
+ *   the provider's equivalent); a passing probe lets an open circuit retry early
+ */
+public class ProviderHealthMonitor {
+
+    private final JavaPlugin plugin;
+    private final Map<String, Tracked> providers = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled;
+    private volatile long windowMs;
+    private volatile int minimumCalls;
+    private volatile double failureRateThreshold;
+    private volatile long openMs;
+    private volatile int halfOpenTrials;
+    private BukkitTask probeTask;
+
+    public ProviderHealthMonitor(JavaPlugin plugin) {
+        this.plugin = plugin;
+        reload();
+    }
+
+    /**
+     * Reload settings, reset all circuits and restart the probe task
+     */
+    public synchronized void reload() {
+        var config = plugin.getConfig();
+        this.enabled = config.getBoolean("ai.circuit-breaker.enabled", true);
+        this.windowMs = Math.max(1, config.getInt("ai.circuit-breaker.window-seconds", 30)) * 1000L;
+        this.minimumCalls = Math.max(1, config.getInt("ai.circuit-breaker.minimum-calls", 5));
+        this.failureRateThreshold = Math.min(1.0, Math.max(0.01,
+                config.getDouble("ai.circuit-breaker.failure-rate-threshold", 0.5)));
+        this.openMs = Math.max(1, config.getInt("ai.circuit-breaker.open-seconds", 30)) * 1000L;
+        this.halfOpenTrials = Math.max(1, config.getInt("ai.circuit-breaker.half-open-requests", 1));
+        providers.clear();
+
+        if (probeTask != null) {
+            probeTask.cancel();
+            probeTask = null;
+        }
+        int probeSeconds = config.getInt("ai.circuit-breaker.probe-interval-seconds", 60);
+        if (enabled && probeSeconds > 0) {
+            long intervalTicks = Math.max(5, probeSeconds) * 20L;
+            probeTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::probeAll, intervalTicks, intervalTicks);
+        }
+    }
+
+    /**
+     * Stop the probe task
+     */
+    public synchronized void stop() {
+        if (probeTask != null) {
+            probeTask.cancel();
+            probeTask = null;
+        }
+    }
+
+    /**
+     * Whether a request may be sent to the provider. If true, the outcome must be
+     * reported with recordSuccess() or recordFailure().
+     */
+    public boolean allowRequest(AIProvider provider) {
+        if (!enabled) return true;
+        return track(provider).breaker.allowRequest();
+    }
+
+    public void recordSuccess(AIProvider provider) {
+        if (!enabled) return;
+        CircuitBreaker breaker = track(provider).breaker;
+        CircuitBreaker.State before = breaker.getState();
+        breaker.recordSuccess();
+        logTransition(provider.getId(), before, breaker);
+    }
+
+    /**
+     * Report a failed call; errors that show the provider is up are counted as successes
+     */
+    public void recordFailure(AIProvider provider, Throwable error) {
+        if (!enabled) return;
+        CircuitBreaker breaker = track(provider).breaker;
+        CircuitBreaker.State before = breaker.getState();
+        if (isProviderFault(error)) {
+            breaker.recordFailure(error.getMessage());
+        } else {
+            breaker.recordSuccess();
+        }
+        logTransition(provider.getId(), before, breaker);
+    }
+
+    /**
+     * Seconds until an open circuit retries, for error messages
+     */
+    public long getRetryInSeconds(AIProvider provider) {
+        Tracked tracked = providers.get(provider.getId());
+        return tracked != null ? (tracked.breaker.getRetryInMs() + 999) / 1000 : 0;
+    }
+
+    /**
+     * Circuit state per provider id
+     */
+    public Map<String, CircuitBreaker.State> getStates() {
+        Map<String, CircuitBreaker.State> states = new TreeMap<>();
+        for (Map.Entry<String, Tracked> entry : providers.entrySet()) {
+            states.put(entry.getKey(), entry.getValue().breaker.getState());
+        }
+        return states;
+    }
+
+    /**
+     * Circuit state per provider id as a number (0 closed, 1 half-open, 2 open), for gauges
+     */
+    public Map<String, Integer> getStateLevels() {
+        Map<String, Integer> levels = new TreeMap<>();
+        for (Map.Entry<String, CircuitBreaker.State> entry : getStates().entrySet()) {
+            levels.put(entry.getKey(), entry.getValue().ordinal());
+        }
+        return levels;
+    }
+
+    /**
+     * Per-provider details, for /chatr stats
+     */
+    public Map<String, String> getSummary() {
+        Map<String, String> summary = new LinkedHashMap<>();
+        for (Map.Entry<String, Tracked> entry : new TreeMap<>(providers).entrySet()) {
+            CircuitBreaker breaker = entry.getValue().breaker;
+            StringBuilder line = new StringBuilder(breaker.getState().name());
+            if (breaker.getState() == CircuitBreaker.State.OPEN) {
+                line.append(" (retry in ").append((breaker.getRetryInMs() + 999) / 1000).append("s)");
+            }
+            line.append(", opened ").append(breaker.getTimesOpened()).append("x");
+            if (breaker.getLastFailure() != null) {
+                line.append(", last error: ").append(breaker.getLastFailure());
+            }
+            summary.put(entry.getKey(), line.toString());
+        }
+        return summary;
+    }
+
+    private Tracked track(AIProvider provider) {
+        Tracked tracked = providers.computeIfAbsent(provider.getId(), id -> new Tracked(
+                new CircuitBreaker(windowMs, minimumCalls, failureRateThreshold, openMs, halfOpenTrials)));
+        // Same id means same URL (NPC URL overrides get their own id); keep the newest instance
+        tracked.provider = provider;
+        return tracked;
+    }
+
+    private void probeAll() {
+        for (Map.Entry<String, Tracked> entry : providers.entrySet()) {
+            Tracked tracked = entry.getValue();
+            AIProvider provider = tracked.provider;
+            if (provider == null) continue;
+            CircuitBreaker.State before = tracked.breaker.getState();
+            try {
+                provider.healthCheck();
+                tracked.breaker.recordProbe(true, null);
+            } catch (Exception e) {
+                tracked.breaker.recordProbe(!isProviderFault(e), e.getMessage());
+            }
+            logTransition(entry.getKey(), before, tracked.breaker);
+        }
+    }
+
+    private void logTransition(String providerId, CircuitBreaker.State before, CircuitBreaker breaker) {
+        CircuitBreaker.State after = breaker.getState();
+        if (before == after) return;
+        if (after == CircuitBreaker.State.OPEN) {
+            plugin.getLogger().warning("[Health] Circuit for provider '" + providerId + "' opened ("
+                    + breaker.getLastFailure() + "), failing fast for " + openMs / 1000 + "s");
+        } else {
+            plugin.getLogger().info("[Health] Circuit for provider '" + providerId + "' " + before + " -> " + after);
+        }
+    }
+
+    /**
+     * Whether an error means the provider itself is unhealthy (rather than a bad request)
+     */
+    static boolean isProviderFault(Throwable error) {
+        String type = MetricsManager.classifyError(error);
+        if (type.startsWith("http_4")) {
+            return type.equals("http_408") || type.equals("http_429");
+        }
+        return true;
+    }
+
+    private static class Tracked {
+        final CircuitBreaker breaker;
+        volatile AIProvider provider;
+
+        Tracked(CircuitBreaker breaker) {
+            this.breaker = breaker;
+        }
+    }
+}
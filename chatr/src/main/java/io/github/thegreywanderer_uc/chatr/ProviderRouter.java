@@ -0,0 +1,181 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends a request down an ordered list of endpoints.
+ * - Failover: if an endpoint fails (error, timeout, open circuit), the next one is tried
+ * - Hedging: if the first endpoint hasn't answered within the hedge delay (its recent p95),
+ *   the second one is asked too and whichever answers first wins
+ * The losing hedge is left to finish on its own; each attempt releases its own permits.
+ */
+public class ProviderRouter {
+
+    /**
+     * One call to one endpoint
+     */
+    @FunctionalInterface
+    public interface Attempt<R, T> {
+        T call(R route) throws Exception;
+    }
+
+    private final ExecutorService executor;
+    private final LongAdder failovers = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    public ProviderRouter() {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Chatr-Hedge-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Try the routes in order until one answers
+     * @param routes Endpoints in failover order
+     * @param hedgeDelayMs Ask the second route too if the first takes longer than this (0 = no hedging)
+     * @param attempt The call to make against a route
+     * @return The answer and the route that produced it
+     * @throws Exception The last error if every route failed
+     */
+    public <R, T> Answer<R, T> execute(List<R> routes, long hedgeDelayMs, Attempt<R, T> attempt) throws Exception {
+        if (routes.isEmpty()) {
+            throw new IllegalArgumentException("No routes to try");
+        }
+        Exception lastError = null;
+        int next = 0;
+
+        if (hedgeDelayMs > 0 && routes.size() > 1) {
+            R primaryRoute = routes.get(0);
+            CompletableFuture<T> primary = submit(attempt, primaryRoute);
+            try {
+                return new Answer<>(primaryRoute, primary.get(hedgeDelayMs, TimeUnit.MILLISECONDS), false);
+            } catch (TimeoutException e) {
+                // Slow: race the second route against it
+                hedges.increment();
+                R backupRoute = routes.get(1);
+                CompletableFuture<T> backup = submit(attempt, backupRoute);
+                try {
+                    Answer<R, T> answer = firstSuccess(primaryRoute, primary, backupRoute, backup).get();
+                    if (answer.route == backupRoute) {
+                        hedgeWins.increment();
+                    }
+                    return answer;
+                } catch (ExecutionException failed) {
+                    lastError = unwrap(failed);
+                    next = 2;
+                }
+            } catch (ExecutionException failed) {
+                lastError = unwrap(failed);
+                next = 1;
+            }
+        }
+
+        for (int i = next; i < routes.size(); i++) {
+            if (lastError != null) {
+                failovers.increment();
+            }
+            R route = routes.get(i);
+            try {
+                return new Answer<>(route, attempt.call(route), i > 0);
+            } catch (Exception e) {
+                if (lastError != null) {
+                    e.addSuppressed(lastError);
+                }
+                lastError = e;
+            }
+        }
+        throw lastError;
+    }
+
+    private <R, T> CompletableFuture<T> submit(Attempt<R, T> attempt, R route) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return attempt.call(route);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Completes with the first successful answer, or fails once both have failed
+     */
+    private static <R, T> CompletableFuture<Answer<R, T>> firstSuccess(R firstRoute, CompletableFuture<T> first,
+                                                                       R secondRoute, CompletableFuture<T> second) {
+        CompletableFuture<Answer<R, T>> result = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        first.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(new Answer<>(firstRoute, value, false));
+            } else if (failures.incrementAndGet() == 2) {
+                result.completeExceptionally(error);
+            }
+        });
+        second.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(new Answer<>(secondRoute, value, true));
+            } else if (failures.incrementAndGet() == 2) {
+                result.completeExceptionally(error);
+            }
+        });
+        return result;
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof Exception ? (Exception) cause : e;
+    }
+
+    public long getFailovers() {
+        return failovers.sum();
+    }
+
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * Stop the hedge threads
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A successful answer and where it came from
+     */
+    public static class Answer<R, T> {
+        public final R route;
+        public final T value;
+        /** Whether a route other than the first one answered */
+        public final boolean fromBackup;
+
+        Answer(R route, T value, boolean fromBackup) {
+            this.route = route;
+            this.value = value;
+            this.fromBackup = fromBackup;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import java.util.UUID;
+
+/**
+ * Where RateLimiter keeps per-player GCRA state.
+ * - LocalRateLimitStore: in memory, per server
+ * - RedisRateLimitStore: shared by every server on a network, falling back to local when unreachable
+ */
+public interface RateLimitStore {
+    
+    /**
+     * Atomically check and consume one request for a player
+     * @param player The player
+     * @param intervalMs Emission interval (60000 / requests-per-minute), 0 for unlimited
+     * @param toleranceMs Burst tolerance ((burst - 1) * intervalMs)
+     * @param cooldownMs Minimum time between accepted requests
+     * @return 0 if allowed and consumed, -waitMs if blocked by cooldown, +waitMs if over the rate
+     */
+    long acquire(UUID player, long intervalMs, long toleranceMs, long cooldownMs);
+    
+    /**
+     * How many requests the player could make right now (ignoring cooldown)
+     */
+    int remaining(UUID player, long intervalMs, int burst);
+    
+    /**
+     * Forget a player's state
+     */
+    void clear(UUID player);
+    
+    /**
+     * Forget a player's state if it no longer limits them (their burst has fully refilled)
+     * @return false if the state is still needed
+     */
+    boolean clearIfRecovered(UUID player);
+    
+    /**
+     * Release connections (no-op for local stores)
+     */
+    default void close() {
+    }
+    
+    /**
+     * How many requests fit in the headroom left before a TAT reaches now + tolerance
+     */
+    static int remainingFor(long tat, long now, long intervalMs, int burst) {
+        long headroom = (burst - 1) * intervalMs - (Math.max(tat, now) - now);
+        return headroom < 0 ? 0 : (int) Math.min(burst, headroom / intervalMs + 1);
+    }
+}
@@ -1,8 +1,16 @@
 package io.github.thegreywanderer_uc.chatr;
 
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -10,34 +18,43 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * Rate limiter for AI API calls.
  * - Global base rate limit for all players
- * - Permission-based overrides (chatr.ratelimit.tier1, etc.)
+ * - Permission-based tiers, checked in config order (first match wins)
  * - Bypass flag for local endpoints (LM Studio, Ollama)
+ * 
+ * Limiting uses GCRA (generic cell rate algorithm): per player, the last accepted
+ * request and the theoretical arrival time. A check that passes also consumes in one
+ * atomic step (a CAS locally, a Lua script in Redis), so concurrent requests from one
+ * player can't both slip through, and there are no window-edge double bursts.
+ * State lives in a RateLimitStore: local memory, or Redis to share quotas across a network.
+ * 
+ * A player's tier is resolved once and cached, so permission checks stay off the
+ * per-request path. The cache is dropped on join/quit and reload, and entries expire
+ * after rate-limit.tier-cache-seconds to pick up permission changes in between.
  */
-public class RateLimiter {
+public class RateLimiter implements Listener {
     
     private final JavaPlugin plugin;
     
-    // Key: playerUUID -> last request timestamp
-    private final Map<UUID, Long> lastRequestTime = new ConcurrentHashMap<>();
+    // Local state survives reloads and backs the shared store when it is unreachable
+    private final LocalRateLimitStore localStore = new LocalRateLimitStore();
+    private volatile RateLimitStore store = localStore;
     
-    // Key: playerUUID -> request count in current window
-    private final Map<UUID, Integer> requestCounts = new ConcurrentHashMap<>();
-    
-    // Key: playerUUID -> window start timestamp
-    private final Map<UUID, Long> windowStart = new ConcurrentHashMap<>();
+    // Key: playerUUID -> resolved tier
+    private final Map<UUID, ResolvedTier> resolvedTiers = new ConcurrentHashMap<>();
     
     // Configuration
-    private boolean enabled;
-    private boolean bypassForLocalEndpoints;
-    private int baseRateLimitPerMinute;
-    private int baseCooldownSeconds;
+    private volatile boolean enabled;
+    private volatile boolean bypassForLocalEndpoints;
+    private volatile int burst;
+    private volatile long tierCacheMs;
+    private volatile EndpointClassifier endpointClassifier;
     
-    // Permission tier limits (requests per minute)
-    private Map<String, Integer> tierLimits;
+    // Permission tiers in priority order, and the tier for everyone else
+    private volatile List<Tier> tiers = List.of();
+    private volatile Tier baseTier;
     
     public RateLimiter(JavaPlugin plugin) {
         this.plugin = plugin;
-        this.tierLimits = new ConcurrentHashMap<>();
         reload();
     }
     
@@ -49,173 +66,256 @@ public class RateLimiter {
         
         this.enabled = config.getBoolean("rate-limit.enabled", true);
         this.bypassForLocalEndpoints = config.getBoolean("rate-limit.bypass-local", true);
-        this.baseRateLimitPerMinute = config.getInt("rate-limit.base-requests-per-minute", 10);
-        this.baseCooldownSeconds = config.getInt("rate-limit.base-cooldown-seconds", 3);
+        this.burst = Math.max(1, config.getInt("rate-limit.burst", 3));
+        this.tierCacheMs = Math.max(0, config.getInt("rate-limit.tier-cache-seconds", 60)) * 1000L;
         
-        // Load tier limits from config
-        tierLimits.clear();
-        var tiersSection = config.getConfigurationSection("rate-limit.tiers");
+        // Extra ranges treated as local, on top of loopback/private/link-local
+        List<String> extraRanges = new ArrayList<>();
+        for (String range : config.getStringList("rate-limit.local-networks")) {
+            try {
+                EndpointClassifier.Cidr.parse(range);
+                extraRanges.add(range);
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("[RateLimit] Ignoring invalid local network '" + range + "': " + e.getMessage());
+            }
+        }
+        this.endpointClassifier = new EndpointClassifier(extraRanges);
+        this.baseTier = new Tier("base", null, config.getInt("rate-limit.base-requests-per-minute", 10),
+                config.getInt("rate-limit.base-cooldown-seconds", config.getInt("rate-limit.cooldown-seconds", 3)));
+        
+        // Load tiers from config, keeping their order
+        List<Tier> loaded = new ArrayList<>();
+        ConfigurationSection tiersSection = config.getConfigurationSection("rate-limit.tiers");
         if (tiersSection != null) {
-            for (String tier : tiersSection.getKeys(false)) {
-                tierLimits.put(tier, tiersSection.getInt(tier));
+            for (String name : tiersSection.getKeys(false)) {
+                ConfigurationSection tierSection = tiersSection.getConfigurationSection(name);
+                if (tierSection != null) {
+                    loaded.add(new Tier(name,
+                            tierSection.getString("permission", "chatr.ratelimit." + name),
+                            tierSection.getInt("requests-per-minute", baseTier.requestsPerMinute),
+                            tierSection.getInt("cooldown-seconds", 0)));
+                } else {
+                    // Legacy format: "vip: 20" (requests per minute, no cooldown)
+                    loaded.add(new Tier(name, "chatr.ratelimit." + name, tiersSection.getInt(name), 0));
+                }
             }
         }
         
-        // Default tiers if not configured
-        if (tierLimits.isEmpty()) {
-            tierLimits.put("vip", 20);
-            tierLimits.put("premium", 30);
-            tierLimits.put("unlimited", Integer.MAX_VALUE);
+        // Default tiers if not configured, highest first
+        if (loaded.isEmpty()) {
+            loaded.add(new Tier("unlimited", "chatr.ratelimit.unlimited", -1, 0));
+            loaded.add(new Tier("premium", "chatr.ratelimit.premium", 30, 0));
+            loaded.add(new Tier("vip", "chatr.ratelimit.vip", 20, 0));
+        }
+        
+        this.tiers = List.copyOf(loaded);
+        resolvedTiers.clear();
+        
+        RateLimitStore previous = store;
+        this.store = createStore();
+        if (previous != localStore) {
+            previous.close();
         }
     }
     
+    private RateLimitStore createStore() {
+        var config = plugin.getConfig();
+        String type = config.getString("rate-limit.store.type", "local");
+        if (!"redis".equalsIgnoreCase(type)) {
+            return localStore;
+        }
+        
+        String host = config.getString("rate-limit.store.redis.host", "127.0.0.1");
+        int port = config.getInt("rate-limit.store.redis.port", 6379);
+        RespClient client = new RespClient(host, port,
+                config.getInt("rate-limit.store.redis.timeout-ms", 250),
+                config.getString("rate-limit.store.redis.username", ""),
+                config.getString("rate-limit.store.redis.password", ""),
+                config.getInt("rate-limit.store.redis.database", 0));
+        plugin.getLogger().info("[RateLimit] Using shared store at " + host + ":" + port);
+        return new RedisRateLimitStore(client, config.getString("rate-limit.store.redis.key-prefix", "chatr:rl:"),
+                localStore, plugin.getLogger());
+    }
+    
+    /**
+     * Close the shared store connection
+     */
+    public void shutdown() {
+        store.close();
+    }
+    
     /**
      * Check if rate limiting is bypassed for a given server URL
+     * (loopback, private or link-local address; resolved once per URL)
      */
     public boolean isBypassedForEndpoint(String serverUrl) {
-        if (!bypassForLocalEndpoints) return false;
-        
-        // Check for local endpoints
-        return serverUrl.contains("localhost") ||
-               serverUrl.contains("127.0.0.1") ||
-               serverUrl.contains("0.0.0.0") ||
-               serverUrl.startsWith("http://192.168.") ||
-               serverUrl.startsWith("http://10.") ||
-               serverUrl.startsWith("http://172.16.") ||
-               serverUrl.startsWith("http://172.17.") ||
-               serverUrl.startsWith("http://172.18.") ||
-               serverUrl.startsWith("http://172.19.") ||
-               serverUrl.startsWith("http://172.2") ||
-               serverUrl.startsWith("http://172.30.") ||
-               serverUrl.startsWith("http://172.31.");
+        return bypassForLocalEndpoints && endpointClassifier.isLocal(serverUrl);
     }
     
     /**
-     * Check if a player can make a request
+     * Check if a player can make a request and, if so, count it
      * @param player The player
      * @param serverUrl The AI server URL (to check for local bypass)
      * @return RateLimitResult with allowed status and wait time if denied
      */
-    public RateLimitResult canMakeRequest(Player player, String serverUrl) {
+    public RateLimitResult tryAcquire(Player player, String serverUrl) {
         if (!enabled) {
-            return RateLimitResult.allowed();
+            return RateLimitResult.ALLOWED;
         }
         
         if (isBypassedForEndpoint(serverUrl)) {
-            return RateLimitResult.allowed();
+            return RateLimitResult.ALLOWED;
         }
         
-        // Check for bypass permission
-        if (player.hasPermission("chatr.ratelimit.bypass")) {
-            return RateLimitResult.allowed();
+        // Get player's tier (bypass permission included)
+        Tier tier = getTier(player);
+        if (tier == null) {
+            return RateLimitResult.ALLOWED;
         }
         
-        UUID uuid = player.getUniqueId();
-        long now = System.currentTimeMillis();
-        
-        // Get player's rate limit (based on permissions)
-        int rateLimit = getRateLimitForPlayer(player);
-        int cooldown = getCooldownForPlayer(player);
-        
-        // Check cooldown between requests
-        Long lastRequest = lastRequestTime.get(uuid);
-        if (lastRequest != null) {
-            long elapsed = now - lastRequest;
-            long cooldownMs = cooldown * 1000L;
-            if (elapsed < cooldownMs) {
-                int waitSeconds = (int) Math.ceil((cooldownMs - elapsed) / 1000.0);
-                return RateLimitResult.denied(waitSeconds, "cooldown");
-            }
-        }
-        
-        // Check requests per minute
-        Long windowStartTime = windowStart.get(uuid);
-        Integer count = requestCounts.get(uuid);
+        long result = store.acquire(player.getUniqueId(), tier.intervalMs, (burst - 1) * tier.intervalMs, tier.cooldownMs);
         
-        // Reset window if it's been more than a minute
-        if (windowStartTime == null || now - windowStartTime > 60000) {
-            windowStart.put(uuid, now);
-            requestCounts.put(uuid, 0);
-            count = 0;
+        if (result == 0) {
+            return RateLimitResult.ALLOWED;
         }
-        
-        if (count >= rateLimit) {
-            long windowEnd = windowStart.get(uuid) + 60000;
-            int waitSeconds = (int) Math.ceil((windowEnd - now) / 1000.0);
-            return RateLimitResult.denied(waitSeconds, "rate-limit");
+        int waitSeconds = (int) Math.ceil(Math.abs(result) / 1000.0);
+        return RateLimitResult.denied(waitSeconds, result < 0 ? "cooldown" : "rate-limit");
+    }
+    
+    /**
+     * Milliseconds between requests at the given per-minute rate (0 = unlimited)
+     */
+    private static long emissionInterval(int requestsPerMinute) {
+        if (requestsPerMinute <= 0 || requestsPerMinute == Integer.MAX_VALUE) {
+            return 0;
         }
-        
-        return RateLimitResult.allowed();
+        return 60_000L / requestsPerMinute;
     }
     
     /**
-     * Record that a request was made
+     * Get the player's tier, resolving permissions only when the cached entry is missing or stale
+     * @return The tier, or null if the player has chatr.ratelimit.bypass
      */
-    public void recordRequest(Player player) {
+    private Tier getTier(Player player) {
         UUID uuid = player.getUniqueId();
+        List<Tier> currentTiers = tiers;
         long now = System.currentTimeMillis();
         
-        lastRequestTime.put(uuid, now);
-        requestCounts.merge(uuid, 1, Integer::sum);
+        ResolvedTier cached = resolvedTiers.get(uuid);
+        if (cached != null && cached.tiers == currentTiers && now - cached.resolvedAt < tierCacheMs) {
+            return cached.tier;
+        }
+        
+        Tier tier = resolveTier(player, currentTiers);
+        resolvedTiers.put(uuid, new ResolvedTier(currentTiers, tier, now));
+        return tier;
     }
     
-    /**
-     * Get the rate limit for a player based on permissions
-     */
-    private int getRateLimitForPlayer(Player player) {
-        // Check tiers from highest to lowest
-        for (Map.Entry<String, Integer> entry : tierLimits.entrySet()) {
-            if (player.hasPermission("chatr.ratelimit." + entry.getKey())) {
-                return entry.getValue();
+    private Tier resolveTier(Player player, List<Tier> currentTiers) {
+        if (player.hasPermission("chatr.ratelimit.bypass")) {
+            return null;
+        }
+        for (Tier tier : currentTiers) {
+            if (player.hasPermission(tier.permission)) {
+                return tier;
             }
         }
-        return baseRateLimitPerMinute;
+        return baseTier;
     }
     
     /**
-     * Get cooldown for a player (could be tier-based in future)
+     * Drop a player's cached tier (e.g. after their permissions changed)
      */
-    private int getCooldownForPlayer(Player player) {
-        // For now, higher tiers have no cooldown
-        for (String tier : tierLimits.keySet()) {
-            if (player.hasPermission("chatr.ratelimit." + tier)) {
-                return 0; // No cooldown for tier players
-            }
-        }
-        return baseCooldownSeconds;
+    public void invalidateTier(UUID uuid) {
+        resolvedTiers.remove(uuid);
     }
     
     /**
-     * Get remaining requests for a player in current window
+     * Name of the tier a player is in ("bypass" if they skip rate limits)
+     */
+    public String getTierName(Player player) {
+        Tier tier = getTier(player);
+        return tier != null ? tier.name : "bypass";
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        resolvedTiers.remove(event.getPlayer().getUniqueId());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        resolvedTiers.remove(event.getPlayer().getUniqueId());
+    }
+    
+    /**
+     * Get how many requests a player could make right now (ignoring cooldown)
      */
     public int getRemainingRequests(Player player) {
-        UUID uuid = player.getUniqueId();
-        
-        int rateLimit = getRateLimitForPlayer(player);
-        Integer count = requestCounts.getOrDefault(uuid, 0);
-        
-        // Check if window expired
-        Long windowStartTime = windowStart.get(uuid);
-        if (windowStartTime == null || System.currentTimeMillis() - windowStartTime > 60000) {
-            return rateLimit;
+        Tier tier = getTier(player);
+        long intervalMs = tier != null ? tier.intervalMs : 0;
+        if (intervalMs == 0) {
+            return Integer.MAX_VALUE;
         }
-        
-        return Math.max(0, rateLimit - count);
+        return store.remaining(player.getUniqueId(), intervalMs, burst);
     }
     
     /**
      * Clear rate limit data for a player (e.g., when they disconnect)
      */
     public void clearPlayer(UUID uuid) {
-        lastRequestTime.remove(uuid);
-        requestCounts.remove(uuid);
-        windowStart.remove(uuid);
+        store.clear(uuid);
+    }
+    
+    /**
+     * Drop a departed player's state once their limit has recovered (see PlayerSessionService)
+     * @return false while the player is still rate limited
+     */
+    public boolean evictPlayer(UUID uuid) {
+        resolvedTiers.remove(uuid);
+        return store.clearIfRecovered(uuid);
+    }
+    
+    /**
+     * A rate limit tier with its limits precomputed for the hot path
+     */
+    static class Tier {
+        final String name;
+        final String permission;
+        final int requestsPerMinute;
+        final long intervalMs;
+        final long cooldownMs;
+        
+        Tier(String name, String permission, int requestsPerMinute, int cooldownSeconds) {
+            this.name = name;
+            this.permission = permission;
+            this.requestsPerMinute = requestsPerMinute;
+            this.intervalMs = emissionInterval(requestsPerMinute);
+            this.cooldownMs = Math.max(0, cooldownSeconds) * 1000L;
+        }
+    }
+    
+    /**
+     * Cached tier resolution; only valid for the tier list it was resolved against
+     */
+    private static class ResolvedTier {
+        final List<Tier> tiers;
+        final Tier tier;
+        final long resolvedAt;
+        
+        ResolvedTier(List<Tier> tiers, Tier tier, long resolvedAt) {
+            this.tiers = tiers;
+            this.tier = tier;
+            this.resolvedAt = resolvedAt;
+        }
     }
     
     /**
      * Result of a rate limit check
      */
     public static class RateLimitResult {
+        static final RateLimitResult ALLOWED = new RateLimitResult(true, 0, null);
+        
         public final boolean allowed;
         public final int waitSeconds;
         public final String reason; // "cooldown" or "rate-limit"
@@ -227,7 +327,7 @@ public class RateLimiter {
         }
         
         public static RateLimitResult allowed() {
-            return new RateLimitResult(true, 0, null);
+            return ALLOWED;
         }
         
         public static RateLimitResult denied(int waitSeconds, String reason) {
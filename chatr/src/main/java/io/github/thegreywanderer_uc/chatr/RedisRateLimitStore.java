@@ -0,0 +1,161 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * GCRA state shared through a Redis-compatible server, so a player hopping between
+ * servers on a network draws from one quota.
+ * - Check-and-consume runs as one Lua script, atomic on the server, using the server's clock
+ * - State is "tat:last" per player with a TTL, so idle players cost nothing
+ * - If the server is unreachable, requests fall back to the local store and Redis is retried
+ *   after a short back-off
+ */
+public class RedisRateLimitStore implements RateLimitStore {
+
+    private static final long RETRY_AFTER_MS = 5000;
+
+    // KEYS[1] = player key, ARGV = interval, tolerance, cooldown (ms)
+    static final String ACQUIRE_SCRIPT =
+            // Needed before Redis 5 to write after reading TIME; a no-op on newer servers
+            "if redis.replicate_commands then redis.replicate_commands() end\n" +
+            "local t = redis.call('TIME')\n" +
+            "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000)\n" +
+            "local interval = tonumber(ARGV[1])\n" +
+            "local tolerance = tonumber(ARGV[2])\n" +
+            "local cooldown = tonumber(ARGV[3])\n" +
+            "local tat = now\n" +
+            "local last = -1\n" +
+            "local state = redis.call('GET', KEYS[1])\n" +
+            "if state then\n" +
+            "  local sep = string.find(state, ':', 1, true)\n" +
+            "  tat = tonumber(string.sub(state, 1, sep - 1))\n" +
+            "  last = tonumber(string.sub(state, sep + 1))\n" +
+            "end\n" +
+            "if last >= 0 and now - last < cooldown then\n" +
+            "  return -(last + cooldown - now)\n" +
+            "end\n" +
+            "if tat < now then tat = now end\n" +
+            "if tat - now > tolerance then\n" +
+            "  return tat - tolerance - now\n" +
+            "end\n" +
+            "local newTat = tat + interval\n" +
+            "redis.call('SET', KEYS[1], newTat .. ':' .. now, 'PX', math.max(newTat - now, cooldown) + 1000)\n" +
+            "return 0\n";
+    private static final String ACQUIRE_SHA = sha1(ACQUIRE_SCRIPT);
+
+    private final RespClient client;
+    private final String keyPrefix;
+    private final LocalRateLimitStore fallback;
+    private final Logger logger;
+
+    private volatile long unavailableUntil;
+    private volatile boolean down;
+
+    public RedisRateLimitStore(RespClient client, String keyPrefix, LocalRateLimitStore fallback, Logger logger) {
+        this.client = client;
+        this.keyPrefix = keyPrefix;
+        this.fallback = fallback;
+        this.logger = logger;
+    }
+
+    @Override
+    public long acquire(UUID player, long intervalMs, long toleranceMs, long cooldownMs) {
+        if (isAvailable()) {
+            try {
+                Object reply = evalAcquire(keyPrefix + player, String.valueOf(intervalMs),
+                        String.valueOf(toleranceMs), String.valueOf(cooldownMs));
+                if (reply instanceof Long) {
+                    markAvailable();
+                    return (Long) reply;
+                }
+                markUnavailable("unexpected reply " + reply);
+            } catch (IOException e) {
+                markUnavailable(e.getMessage());
+            }
+        }
+        return fallback.acquire(player, intervalMs, toleranceMs, cooldownMs);
+    }
+
+    private Object evalAcquire(String key, String... args) throws IOException {
+        try {
+            return client.command("EVALSHA", ACQUIRE_SHA, "1", key, args[0], args[1], args[2]);
+        } catch (RespClient.RespException e) {
+            if (e.getMessage() == null || !e.getMessage().startsWith("NOSCRIPT")) {
+                throw e;
+            }
+            // First use on this server (or after SCRIPT FLUSH): send the script itself
+            return client.command("EVAL", ACQUIRE_SCRIPT, "1", key, args[0], args[1], args[2]);
+        }
+    }
+
+    @Override
+    public int remaining(UUID player, long intervalMs, int burst) {
+        if (isAvailable()) {
+            try {
+                Object state = client.command("GET", keyPrefix + player);
+                if (state == null) {
+                    return burst;
+                }
+                String value = state.toString();
+                long tat = Long.parseLong(value.substring(0, value.indexOf(':')));
+                return RateLimitStore.remainingFor(tat, System.currentTimeMillis(), intervalMs, burst);
+            } catch (IOException | RuntimeException e) {
+                markUnavailable(e.getMessage());
+            }
+        }
+        return fallback.remaining(player, intervalMs, burst);
+    }
+
+    @Override
+    public void clear(UUID player) {
+        // Shared state outlives this server; only the local fallback is cleared
+        fallback.clear(player);
+    }
+
+    @Override
+    public boolean clearIfRecovered(UUID player) {
+        return fallback.clearIfRecovered(player);
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    private boolean isAvailable() {
+        return System.currentTimeMillis() >= unavailableUntil;
+    }
+
+    private void markUnavailable(String reason) {
+        unavailableUntil = System.currentTimeMillis() + RETRY_AFTER_MS;
+        if (!down) {
+            down = true;
+            logger.warning("[RateLimit] Shared store unavailable (" + reason + "), using local limits");
+        }
+    }
+
+    private void markAvailable() {
+        if (down) {
+            down = false;
+            logger.info("[RateLimit] Shared store reachable again");
+        }
+    }
+
+    private static String sha1(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal blocking client for the Redis serialization protocol (RESP2).
+ * Works with Redis, Valkey, KeyDB, Dragonfly and other compatible servers.
+ * - One connection, commands are serialized with synchronized
+ * - Connects lazily and reconnects on the next command after an I/O error
+ * - Replies map to String (simple/bulk), Long (integer), List (array) or null (nil)
+ */
+public class RespClient implements AutoCloseable {
+
+    private final String host;
+    private final int port;
+    private final int timeoutMs;
+    private final String username;
+    private final String password;
+    private final int database;
+
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+
+    public RespClient(String host, int port, int timeoutMs, String username, String password, int database) {
+        this.host = host;
+        this.port = port;
+        this.timeoutMs = timeoutMs;
+        this.username = username;
+        this.password = password;
+        this.database = database;
+    }
+
+    /**
+     * Send a command and wait for its reply
+     * @throws RespException If the server replied with an error
+     * @throws IOException If the connection failed (the connection is dropped)
+     */
+    public synchronized Object command(String... args) throws IOException {
+        if (socket == null) {
+            connect();
+        }
+        try {
+            return send(args);
+        } catch (RespException e) {
+            throw e;
+        } catch (IOException e) {
+            disconnect();
+            throw e;
+        }
+    }
+
+    private void connect() throws IOException {
+        Socket s = new Socket();
+        try {
+            s.connect(new InetSocketAddress(host, port), timeoutMs);
+            s.setSoTimeout(timeoutMs);
+            s.setTcpNoDelay(true);
+            this.socket = s;
+            this.in = new BufferedInputStream(s.getInputStream());
+            this.out = new BufferedOutputStream(s.getOutputStream());
+
+            if (password != null && !password.isEmpty()) {
+                if (username != null && !username.isEmpty()) {
+                    send("AUTH", username, password);
+                } else {
+                    send("AUTH", password);
+                }
+            }
+            if (database != 0) {
+                send("SELECT", String.valueOf(database));
+            }
+        } catch (IOException e) {
+            disconnect();
+            throw e;
+        }
+    }
+
+    private Object send(String... args) throws IOException {
+        writeCommand(out, args);
+        out.flush();
+        return readReply(in);
+    }
+
+    /**
+     * Close the connection
+     */
+    @Override
+    public synchronized void close() {
+        disconnect();
+    }
+
+    private void disconnect() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+        socket = null;
+        in = null;
+        out = null;
+    }
+
+    /**
+     * Encode a command as an array of bulk strings
+     */
+    static void writeCommand(OutputStream out, String... args) throws IOException {
+        StringBuilder header = new StringBuilder();
+        header.append('*').append(args.length).append("\r\n");
+        out.write(header.toString().getBytes(StandardCharsets.US_ASCII));
+        for (String arg : args) {
+            byte[] bytes = arg.getBytes(StandardCharsets.UTF_8);
+            out.write(("$" + bytes.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(bytes);
+            out.write('\r');
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Decode one reply
+     */
+    static Object readReply(InputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            throw new EOFException("Connection closed by server");
+        }
+        String line = readLine(in);
+        switch (type) {
+            case '+':
+                return line;
+            case '-':
+                throw new RespException(line);
+            case ':':
+                return Long.parseLong(line);
+            case '$': {
+                int length = Integer.parseInt(line);
+                if (length < 0) return null;
+                byte[] data = in.readNBytes(length);
+                if (data.length != length) throw new EOFException("Truncated bulk string");
+                readLine(in);
+                return new String(data, StandardCharsets.UTF_8);
+            }
+            case '*': {
+                int count = Integer.parseInt(line);
+                if (count < 0) return null;
+                List<Object> items = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    try {
+                        items.add(readReply(in));
+                    } catch (RespException e) {
+                        // Errors inside arrays (e.g. EXEC results) are returned, not thrown
+                        items.add(e);
+                    }
+                }
+                return items;
+            }
+            default:
+                throw new IOException("Unexpected RESP type '" + (char) type + "'");
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            int b = in.read();
+            if (b == -1) throw new EOFException("Connection closed by server");
+            if (b == '\r') {
+                if (in.read() != '\n') throw new IOException("Malformed RESP line");
+                return sb.toString();
+            }
+            sb.append((char) b);
+        }
+    }
+
+    /**
+     * Error reply from the server (the connection is still usable)
+     */
+    public static class RespException extends IOException {
+        public RespException(String message) {
+            super(message);
+        }
+    }
+}
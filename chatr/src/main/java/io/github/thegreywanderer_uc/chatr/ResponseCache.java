@@ -10,6 +10,7 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * Simple response cache with TTL to reduce duplicate AI API calls.
  * Cache key is hash of (npcName + userMessage).
+ * Expired entries are kept for stale-seconds longer so they can be served under load.
  */
 public class ResponseCache {
     
@@ -21,6 +22,7 @@ public class ResponseCache {
     // Configuration
     private boolean enabled;
     private int ttlSeconds;
+    private int staleSeconds;
     private int maxSize;
     
     public ResponseCache(JavaPlugin plugin) {
@@ -35,6 +37,7 @@ public class ResponseCache {
         var config = plugin.getConfig();
         this.enabled = config.getBoolean("cache.enabled", true);
         this.ttlSeconds = config.getInt("cache.ttl-seconds", 300); // 5 minutes default
+        this.staleSeconds = Math.max(0, config.getInt("cache.stale-seconds", 3600));
         this.maxSize = config.getInt("cache.max-size", 100);
         
         // Clear cache on reload
@@ -66,7 +69,33 @@ public class ResponseCache {
         }
         
         // Check if expired
-        if (System.currentTimeMillis() - cached.timestamp > ttlSeconds * 1000L) {
+        long age = System.currentTimeMillis() - cached.timestamp;
+        if (age > ttlSeconds * 1000L) {
+            if (age > (ttlSeconds + staleSeconds) * 1000L) {
+                cache.remove(key);
+            }
+            return null;
+        }
+        
+        cached.hits++;
+        return cached.response;
+    }
+    
+    /**
+     * Get a cached response even if it expired, as long as it is within the stale window
+     * (used when providers are overloaded)
+     * @return The cached response, or null if not found or too old
+     */
+    public String getStale(String npcName, String userMessage) {
+        if (!enabled) return null;
+        
+        String key = generateKey(npcName, userMessage);
+        CachedResponse cached = cache.get(key);
+        if (cached == null) {
+            return null;
+        }
+        
+        if (System.currentTimeMillis() - cached.timestamp > (ttlSeconds + staleSeconds) * 1000L) {
             cache.remove(key);
             return null;
         }
@@ -125,6 +154,13 @@ public class ResponseCache {
         cache.keySet().removeIf(key -> key.startsWith(prefix));
     }
     
+    /**
+     * Get the number of cached responses
+     */
+    public int size() {
+        return cache.size();
+    }
+    
     /**
      * Get cache statistics
      */
@@ -134,6 +170,7 @@ public class ResponseCache {
         stats.put("size", cache.size());
         stats.put("maxSize", maxSize);
         stats.put("ttlSeconds", ttlSeconds);
+        stats.put("staleSeconds", staleSeconds);
         
         int totalHits = 0;
         for (CachedResponse cached : cache.values()) {
@@ -18,11 +18,10 @@ import org.bukkit.scheduler.BukkitTask;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.Supplier;
 
 /**
  * Server-wide AI assistant that:
@@ -32,6 +31,10 @@ import java.util.concurrent.ConcurrentLinkedDeque;
  */
 public class ServerAI implements Listener {
     
+    // Conversation memory key; fixed, so renaming the ServerAI keeps its memory and it can't
+    // collide with an NPC of the same name
+    public static final String CONVERSATION_KEY = "__serverai";
+    
     private final JavaPlugin plugin;
     private final Gson gson = new Gson();
     
@@ -72,6 +75,15 @@ public class ServerAI implements Listener {
     private int ragFallbackPrefixLen;
     private RAGSystem ragSystem;
     
+    // Optional metrics sink for RAG stage timings and token usage
+    private MetricsManager metricsManager;
+    
+    // Writes serverAI/chat.log in the background
+    private ChatLogWriter chatLog;
+    
+    // Threads for AI calls, shared with NPC requests
+    private AiRequestExecutor requestExecutor;
+    
     // State
     private final Deque<ChatMessage> recentChat = new ConcurrentLinkedDeque<>();
     private BukkitTask scanTask;
@@ -81,9 +93,9 @@ public class ServerAI implements Listener {
     // Track which messages we've already processed in periodic scan
     private long lastScanTimestamp = 0;
     
-    // Per-player conversation memory for contextual responses
-    private final Map<UUID, Deque<ConversationMessage>> playerConversations = new java.util.concurrent.ConcurrentHashMap<>();
-    private int maxConversationMemory = 10; // Messages per player
+    // Per-player conversation memory, kept by ConversationManager under the ServerAI's name
+    private ConversationManager conversationManager;
+    private int maxConversationMemory = 10; // Turns sent per request
     
     public ServerAI(JavaPlugin plugin) {
         this.plugin = plugin;
@@ -91,6 +103,49 @@ public class ServerAI implements Listener {
         reload();
     }
     
+    /**
+     * Set the metrics manager used to record RAG retrieval latency and token usage
+     */
+    public void setMetricsManager(MetricsManager metricsManager) {
+        this.metricsManager = metricsManager;
+    }
+    
+    /**
+     * Set the writer for serverAI/chat.log (nothing is logged without one)
+     */
+    public void setChatLogWriter(ChatLogWriter chatLog) {
+        this.chatLog = chatLog;
+    }
+    
+    /**
+     * Set the threads AI calls run on (the common pool is used without one)
+     */
+    public void setRequestExecutor(AiRequestExecutor requestExecutor) {
+        this.requestExecutor = requestExecutor;
+    }
+    
+    /**
+     * Set where per-player conversation memory is kept (bounded, saved and unloaded like NPC
+     * conversations); without one the ServerAI answers without memory
+     */
+    public void setConversationManager(ConversationManager conversationManager) {
+        this.conversationManager = conversationManager;
+    }
+    
+    /**
+     * Retrieve RAG context, recording how long the lookup took
+     */
+    private String retrieveRagContext(String query) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return ragSystem.retrieveContext(query);
+        } finally {
+            if (metricsManager != null) {
+                metricsManager.recordStage(MetricsManager.STAGE_RAG, System.nanoTime() - start);
+            }
+        }
+    }
+    
     /**
      * Reload configuration from plugin config
      */
@@ -120,7 +175,7 @@ public class ServerAI implements Listener {
         this.conversationJoinChance = config.getDouble("server-ai.conversation-join-chance", 0.1);
         this.maxChatHistorySize = config.getInt("server-ai.max-chat-history", 50);
         this.maxTokens = config.getInt("server-ai.max-tokens", config.getInt("ai.max-tokens", 1000));
-        this.maxConversationMemory = config.getInt("server-ai.max-conversation-memory", 10);
+        this.maxConversationMemory = Math.max(0, config.getInt("server-ai.max-conversation-memory", 10));
         
         // Display configuration
         this.showPrefix = config.getBoolean("server-ai.display.show-prefix", true);
@@ -370,6 +425,10 @@ public class ServerAI implements Listener {
         // Start periodic chat scan task
         startChatScanTask();
         
+        if (conversationManager == null) {
+            plugin.getLogger().warning("[ServerAI] conversation.enabled is false: " + name
+                    + " will not remember earlier messages from players");
+        }
         plugin.getLogger().info("[ServerAI] " + name + " is now online and watching over the server!");
     }
     
@@ -691,7 +750,8 @@ public class ServerAI implements Listener {
      */
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
-        // Nothing special needed - tab list clears automatically
+        // Nothing special needed - tab list clears automatically, and ConversationManager
+        // saves and unloads the player's memory on quit (and after unload-idle-minutes)
     }
     
     /**
@@ -738,32 +798,37 @@ public class ServerAI implements Listener {
         // Log the mention
         logMessage(player.getName(), message, "mention");
         
-        // Add to player's conversation memory
-        addToPlayerConversation(player.getUniqueId(), "user", player.getName() + ": " + message);
+        // Server state is read here on the main thread; memory and RAG lookups may block, so they don't
+        String contextualPrompt = buildContextualSystemPrompt(systemPrompt, player);
         
-        // Get RAG context if enabled
-        String ragContext = "";
-        if (ragEnabled && ragSystem != null) {
-            try {
-                ragContext = ragSystem.retrieveContext(message);
-                if (debugMode && !ragContext.isEmpty()) {
-                    plugin.getLogger().info("[ServerAI] RAG context retrieved: " + ragContext.substring(0, Math.min(100, ragContext.length())) + "...");
+        // The whole chain runs on the AI threads, queued behind this player's earlier requests:
+        // loading memory can wait for the store and RAG may call out, which the common pool must not do
+        submitRequest(player.getUniqueId(), () -> {
+            // Add to player's conversation memory
+            ConversationManager.ChatMessage current = addToPlayerConversation(player, "user", player.getName() + ": " + message);
+            
+            // Get RAG context if enabled
+            String ragContext = "";
+            if (ragEnabled && ragSystem != null) {
+                try {
+                    ragContext = retrieveRagContext(message);
+                    if (debugMode && !ragContext.isEmpty()) {
+                        plugin.getLogger().info("[ServerAI] RAG context retrieved: " + ragContext.substring(0, Math.min(100, ragContext.length())) + "...");
+                    }
+                } catch (Exception e) {
+                    plugin.getLogger().warning("[ServerAI] RAG context retrieval failed: " + e.getMessage());
+                    // Continue without RAG context
                 }
-            } catch (Exception e) {
-                plugin.getLogger().warning("[ServerAI] RAG context retrieval failed: " + e.getMessage());
-                // Continue without RAG context
             }
-        }
-        
-        // Build messages list with conversation history
-        List<Map<String, Object>> messages = buildMessagesWithHistory(player.getUniqueId(), message, player.getName(), ragContext);
-        
-        // Make AI call with conversation history
-        makeAiCallWithHistory(messages)
+            
+            // Build messages list with conversation history
+            List<Map<String, Object>> messages = buildMessagesWithHistory(player.getUniqueId(), contextualPrompt, current, message, player.getName(), ragContext);
+            return callChatApi(messages, maxTokens);
+        })
                 .thenAccept(response -> {
                     if (response != null && !response.isEmpty()) {
                         // Add response to conversation memory
-                        addToPlayerConversation(player.getUniqueId(), "assistant", response);
+                        addToPlayerConversation(player, "assistant", response);
                         
                         Bukkit.getScheduler().runTask(plugin, () -> {
                             broadcastResponse(response);
@@ -868,7 +933,7 @@ public class ServerAI implements Listener {
         String ragContext = "";
         if (ragEnabled && ragSystem != null) {
             try {
-                ragContext = ragSystem.retrieveContext(chatLog.toString());
+                ragContext = retrieveRagContext(chatLog.toString());
                 if (debugMode && !ragContext.isEmpty()) {
                     plugin.getLogger().info("[ServerAI] RAG context retrieved for chat scan: " + ragContext.substring(0, Math.min(100, ragContext.length())) + "...");
                 }
@@ -904,7 +969,7 @@ public class ServerAI implements Listener {
         messages.add(Map.of("role", "user", "content", autoResponseInstruction));
         
         // Make AI call using the same method as direct messages
-        makeAiCallWithHistory(messages)
+        submitRequest(null, () -> callChatApi(messages, maxTokens))
                 .thenAccept(response -> {
                     if (response != null && !response.trim().isEmpty()) {
                         String cleaned = cleanResponse(response);
@@ -1040,12 +1105,8 @@ public class ServerAI implements Listener {
      * Log a message to the Server AI log folder
      */
     private void logMessage(String sender, String message, String type) {
-        File logFile = new File(logFolder, "chat.log");
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(logFile, true))) {
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-            writer.write(String.format("[%s] [%s] %s: %s%n", timestamp, type.toUpperCase(), sender, message));
-        } catch (IOException e) {
-            plugin.getLogger().warning("[ServerAI] Failed to log: " + e.getMessage());
+        if (chatLog != null) {
+            chatLog.log(new File(logFolder, "chat.log").toPath(), type.toUpperCase(), sender, message);
         }
     }
     
@@ -1078,45 +1139,30 @@ public class ServerAI implements Listener {
         }
     }
     
-    /**
-     * Conversation message for per-player memory
-     */
-    private static class ConversationMessage {
-        final String role; // "user" or "assistant"
-        final String content;
-        final long timestamp;
-        
-        ConversationMessage(String role, String content, long timestamp) {
-            this.role = role;
-            this.content = content;
-            this.timestamp = timestamp;
-        }
-    }
-    
     /**
      * Add a message to a player's conversation history
+     * @return The added message, or null if there is no memory
      */
-    private void addToPlayerConversation(UUID playerUuid, String role, String content) {
-        Deque<ConversationMessage> history = playerConversations.computeIfAbsent(
-                playerUuid, k -> new ConcurrentLinkedDeque<>());
-        
-        history.addLast(new ConversationMessage(role, content, System.currentTimeMillis()));
-        
-        // Trim if over limit
-        while (history.size() > maxConversationMemory) {
-            history.removeFirst();
-        }
+    private ConversationManager.ChatMessage addToPlayerConversation(Player player, String role, String content) {
+        ConversationManager manager = conversationManager;
+        return manager != null ? manager.addMessage(player, CONVERSATION_KEY, role, content) : null;
     }
     
     /**
      * Build messages list with conversation history for API call
+     * @param current The current message as remembered (skipped in the history, it's added fresh), or null
      */
-    private List<Map<String, Object>> buildMessagesWithHistory(UUID playerUuid, String currentMessage, String playerName, String ragContext) {
+    private List<Map<String, Object>> buildMessagesWithHistory(UUID playerUuid, String contextualPrompt,
+                                                               ConversationManager.ChatMessage current,
+                                                               String currentMessage, String playerName, String ragContext) {
         List<Map<String, Object>> messages = new ArrayList<>();
+        ConversationManager manager = conversationManager;
         
-        // Build contextual system prompt with variables substituted
-        Player player = Bukkit.getPlayer(playerUuid);
-        String contextualPrompt = buildContextualSystemPrompt(systemPrompt, player);
+        // Older turns folded into a summary (see conversation.summary)
+        String summary = manager != null ? manager.getSummary(playerUuid, CONVERSATION_KEY) : null;
+        if (summary != null && !summary.isEmpty()) {
+            contextualPrompt += "\n\nSummary of your earlier conversation with " + playerName + ":\n" + summary;
+        }
         
         // Add RAG context to system prompt if available
         if (ragContext != null && !ragContext.isEmpty()) {
@@ -1126,21 +1172,23 @@ public class ServerAI implements Listener {
         // Always start with system prompt
         messages.add(Map.of("role", "system", "content", contextualPrompt));
         
-        // Add conversation history for this player
-        Deque<ConversationMessage> history = playerConversations.get(playerUuid);
-        if (history != null && !history.isEmpty()) {
-            for (ConversationMessage msg : history) {
+        // Add the newest turns of this player's conversation history
+        List<ConversationManager.ChatMessage> history = new ArrayList<>();
+        if (manager != null) {
+            for (ConversationManager.ChatMessage msg : manager.getPromptHistory(playerUuid, CONVERSATION_KEY)) {
                 // Skip the current message (we'll add it fresh)
-                if (msg.role.equals("user") && msg.content.contains(currentMessage)) {
-                    continue;
+                if (current == null || msg.id != current.id) {
+                    history.add(msg);
                 }
-                messages.add(Map.of("role", msg.role, "content", msg.content));
-            }
-            
-            if (debugMode) {
-                plugin.getLogger().info("[ServerAI] Debug: Added " + (history.size() - 1) + " messages from conversation history for " + playerName);
             }
         }
+        for (ConversationManager.ChatMessage msg : history.subList(Math.max(0, history.size() - maxConversationMemory), history.size())) {
+            messages.add(Map.of("role", msg.role, "content", msg.content));
+        }
+        
+        if (debugMode && !history.isEmpty()) {
+            plugin.getLogger().info("[ServerAI] Debug: Added " + (messages.size() - 1) + " messages from conversation history for " + playerName);
+        }
         
         // Add current message
         messages.add(Map.of("role", "user", "content", playerName + " said: " + currentMessage));
@@ -1149,74 +1197,107 @@ public class ServerAI implements Listener {
     }
     
     /**
-     * Make AI call with pre-built messages list (including history)
+     * Run a request on the AI threads
+     * @param queueKey Whose request this is (the player's UUID); null for the ServerAI's own chat scans
      */
-    private CompletableFuture<String> makeAiCallWithHistory(List<Map<String, Object>> messages) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                var config = plugin.getConfig();
-                int timeout = config.getInt("ai.timeout-seconds", 30) * 1000;
-                
-                Map<String, Object> requestBody = new HashMap<>();
-                requestBody.put("model", model);
-                requestBody.put("messages", messages);
-                requestBody.put("temperature", config.getDouble("ai.temperature", 0.7));
-                requestBody.put("top_p", config.getDouble("ai.top-p", 0.9));
-                requestBody.put("top_k", config.getInt("ai.top-k", 50));
-                requestBody.put("max_tokens", maxTokens);
-                
-                String jsonBody = gson.toJson(requestBody);
-                String fullUrl = serverUrl + "/v1/chat/completions";
-                
-                if (debugMode) {
-                    plugin.getLogger().info("[ServerAI] Debug: POST " + fullUrl + " (with " + messages.size() + " messages)");
-                }
-                
-                java.net.URL url = new java.net.URL(fullUrl);
-                java.net.HttpURLConnection conn = (java.net.HttpURLConnection) url.openConnection();
-                conn.setRequestMethod("POST");
-                conn.setRequestProperty("Content-Type", "application/json");
-                conn.setRequestProperty("User-Agent", "Chatr-ServerAI/1.0");
-                conn.setConnectTimeout(timeout);
-                conn.setReadTimeout(timeout);
-                conn.setDoOutput(true);
-                
-                try (OutputStream os = conn.getOutputStream()) {
-                    os.write(jsonBody.getBytes(StandardCharsets.UTF_8));
-                }
-                
-                int status = conn.getResponseCode();
-                InputStream is = (status >= 200 && status < 300) 
-                        ? conn.getInputStream() 
-                        : conn.getErrorStream();
-                
-                String responseBody;
-                try (BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-                    StringBuilder sb = new StringBuilder();
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        sb.append(line);
-                    }
-                    responseBody = sb.toString();
+    private <T> CompletableFuture<T> submitRequest(UUID queueKey, Supplier<T> request) {
+        return requestExecutor != null ? requestExecutor.submit(queueKey, request) : CompletableFuture.supplyAsync(request);
+    }
+    
+    /**
+     * Summarize older turns of ServerAI memory with the ServerAI's own endpoint and model
+     * (called by ConversationSummarizer from a background thread)
+     * @return The summary, or null if the call failed
+     */
+    public String summarize(String systemPrompt, String transcript, int summaryMaxTokens) {
+        // The transcript names the speaker by memory key; the model should see the display name
+        List<Map<String, Object>> messages = List.of(
+                Map.of("role", "system", "content", systemPrompt),
+                Map.of("role", "user", "content", transcript.replace(CONVERSATION_KEY, name)));
+        return callChatApi(messages, summaryMaxTokens);
+    }
+    
+    /**
+     * POST a chat completion to the ServerAI endpoint
+     * @return The cleaned reply, or null if the call failed
+     */
+    private String callChatApi(List<Map<String, Object>> messages, int maxTokens) {
+        try {
+            var config = plugin.getConfig();
+            int timeout = config.getInt("ai.timeout-seconds", 30) * 1000;
+            
+            Map<String, Object> requestBody = new HashMap<>();
+            requestBody.put("model", model);
+            requestBody.put("messages", messages);
+            requestBody.put("temperature", config.getDouble("ai.temperature", 0.7));
+            requestBody.put("top_p", config.getDouble("ai.top-p", 0.9));
+            requestBody.put("top_k", config.getInt("ai.top-k", 50));
+            requestBody.put("max_tokens", maxTokens);
+            
+            String jsonBody = gson.toJson(requestBody);
+            String fullUrl = serverUrl + "/v1/chat/completions";
+            
+            if (debugMode) {
+                plugin.getLogger().info("[ServerAI] Debug: POST " + fullUrl + " (with " + messages.size() + " messages)");
+            }
+            
+            java.net.URL url = new java.net.URL(fullUrl);
+            java.net.HttpURLConnection conn = (java.net.HttpURLConnection) url.openConnection();
+            conn.setRequestMethod("POST");
+            conn.setRequestProperty("Content-Type", "application/json");
+            conn.setRequestProperty("User-Agent", "Chatr-ServerAI/1.0");
+            conn.setConnectTimeout(timeout);
+            conn.setReadTimeout(timeout);
+            conn.setDoOutput(true);
+            
+            try (OutputStream os = conn.getOutputStream()) {
+                os.write(jsonBody.getBytes(StandardCharsets.UTF_8));
+            }
+            
+            int status = conn.getResponseCode();
+            InputStream is = (status >= 200 && status < 300) 
+                    ? conn.getInputStream() 
+                    : conn.getErrorStream();
+            
+            String responseBody;
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+                StringBuilder sb = new StringBuilder();
+                String line;
+                while ((line = br.readLine()) != null) {
+                    sb.append(line);
                 }
-                
-                if (status >= 200 && status < 300) {
-                    JsonObject json = gson.fromJson(responseBody, JsonObject.class);
-                    if (json.has("choices") && json.getAsJsonArray("choices").size() > 0) {
-                        String content = json.getAsJsonArray("choices")
-                                .get(0).getAsJsonObject()
-                                .getAsJsonObject("message")
-                                .get("content").getAsString().trim();
-                        return cleanResponse(content);
-                    }
+                responseBody = sb.toString();
+            }
+            
+            if (status >= 200 && status < 300) {
+                JsonObject json = gson.fromJson(responseBody, JsonObject.class);
+                if (json.has("choices") && json.getAsJsonArray("choices").size() > 0) {
+                    String content = json.getAsJsonArray("choices")
+                            .get(0).getAsJsonObject()
+                            .getAsJsonObject("message")
+                            .get("content").getAsString().trim();
+                    recordTokenUsage(json);
+                    return cleanResponse(content);
                 }
-                
-                return null;
-            } catch (Exception e) {
-                if (debugMode) plugin.getLogger().warning("[ServerAI] API call failed: " + e.getMessage());
-                return null;
             }
-        });
+            
+            return null;
+        } catch (Exception e) {
+            if (debugMode) plugin.getLogger().warning("[ServerAI] API call failed: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Record token usage from an OpenAI-style response under the ServerAI's name
+     */
+    private void recordTokenUsage(JsonObject response) {
+        if (metricsManager == null || !response.has("usage") || !response.get("usage").isJsonObject()) return;
+        JsonObject usage = response.getAsJsonObject("usage");
+        if (!usage.has("prompt_tokens") || !usage.has("completion_tokens")) return;
+        String answeredBy = response.has("model") ? response.get("model").getAsString() : model;
+        metricsManager.recordTokens(name, "server-ai", answeredBy, null, null,
+                usage.get("prompt_tokens").getAsInt(), usage.get("completion_tokens").getAsInt());
     }
     
     /*
@@ -1226,16 +1307,20 @@ public class ServerAI implements Listener {
      */
     
     /**
-     * Clear conversation history for a player (e.g., on quit or command)
+     * Clear conversation history for a player (e.g., on command)
      */
     public void clearPlayerConversation(UUID playerUuid) {
-        playerConversations.remove(playerUuid);
+        if (conversationManager != null) {
+            conversationManager.clearHistory(playerUuid, CONVERSATION_KEY);
+        }
     }
     
     /**
      * Clear all conversation histories
      */
     public void clearAllConversations() {
-        playerConversations.clear();
+        if (conversationManager != null) {
+            conversationManager.clearAllForNpc(CONVERSATION_KEY);
+        }
     }
 }
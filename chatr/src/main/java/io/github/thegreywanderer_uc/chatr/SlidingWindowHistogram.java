@@ -0,0 +1,76 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram over a sliding time window.
+ * The window is split into fixed slices that are recycled as time moves on,
+ * so recording stays lock-free and old samples age out without a sweeper.
+ * Samples that race with a slice being recycled may be dropped, which is
+ * acceptable for monitoring purposes.
+ */
+public class SlidingWindowHistogram {
+
+    private final LatencyHistogram[] slices;
+    private final AtomicLongArray sliceEpochs;
+    private final long sliceMillis;
+
+    /**
+     * @param windowMillis Total window length
+     * @param sliceCount Number of slices the window is split into
+     */
+    public SlidingWindowHistogram(long windowMillis, int sliceCount) {
+        this.slices = new LatencyHistogram[sliceCount];
+        this.sliceEpochs = new AtomicLongArray(sliceCount);
+        this.sliceMillis = Math.max(1, windowMillis / sliceCount);
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new LatencyHistogram();
+            sliceEpochs.set(i, -1);
+        }
+    }
+
+    public void recordMicros(long micros) {
+        currentSlice(System.currentTimeMillis()).recordMicros(micros);
+    }
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    public void recordMillis(long millis) {
+        recordMicros(millis * 1000);
+    }
+
+    /**
+     * Merge all slices that still fall inside the window
+     */
+    public LatencyHistogram.Snapshot snapshot() {
+        long nowEpoch = System.currentTimeMillis() / sliceMillis;
+        LatencyHistogram.Snapshot merged = LatencyHistogram.Snapshot.EMPTY;
+        for (int i = 0; i < slices.length; i++) {
+            long epoch = sliceEpochs.get(i);
+            if (epoch >= 0 && nowEpoch - epoch < slices.length) {
+                merged = merged.merge(slices[i].snapshot());
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Window length in seconds (for display)
+     */
+    public long getWindowSeconds() {
+        return sliceMillis * slices.length / 1000;
+    }
+
+    private LatencyHistogram currentSlice(long nowMillis) {
+        long epoch = nowMillis / sliceMillis;
+        int index = (int) (epoch % slices.length);
+        long seen = sliceEpochs.get(index);
+        if (seen != epoch && sliceEpochs.compareAndSet(index, seen, epoch)) {
+            // First writer in a new slice period clears the stale data
+            slices[index].reset();
+        }
+        return slices[index];
+    }
+}
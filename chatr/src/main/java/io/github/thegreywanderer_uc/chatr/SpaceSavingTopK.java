@@ -0,0 +1,162 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate top-K heavy hitters using the Space-Saving algorithm.
+ * - Memory is bounded by the capacity, no matter how many distinct keys are seen
+ * - Counts are exact while there are fewer distinct keys than the capacity
+ * - Beyond that, a count may overestimate by at most getError() of that key
+ * Counters live in an indexed min-heap, so each update is O(log capacity).
+ */
+public class SpaceSavingTopK<K> {
+
+    private final int capacity;
+    private final Map<K, Counter<K>> counters = new HashMap<>();
+    private final Counter<K>[] heap;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public SpaceSavingTopK(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.heap = (Counter<K>[]) new Counter[this.capacity];
+    }
+
+    /**
+     * Count one occurrence of a key
+     */
+    public synchronized void offer(K key) {
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            counter.count++;
+            siftDown(counter.index);
+            return;
+        }
+
+        if (size < capacity) {
+            counter = new Counter<>(key, 1, 0);
+            counter.index = size;
+            heap[size++] = counter;
+            counters.put(key, counter);
+            siftUp(counter.index);
+            return;
+        }
+
+        // Evict the smallest counter and let the new key inherit its count
+        Counter<K> min = heap[0];
+        counters.remove(min.key);
+        min.error = min.count;
+        min.count++;
+        min.key = key;
+        counters.put(key, min);
+        siftDown(0);
+    }
+
+    /**
+     * Remove a key (e.g. when a player's metrics are evicted)
+     */
+    public synchronized void remove(K key) {
+        Counter<K> counter = counters.remove(key);
+        if (counter == null) return;
+        int index = counter.index;
+        Counter<K> last = heap[--size];
+        heap[size] = null;
+        if (index < size) {
+            heap[index] = last;
+            last.index = index;
+            siftDown(index);
+            siftUp(last.index);
+        }
+    }
+
+    /**
+     * Whether a key is currently tracked
+     */
+    public synchronized boolean contains(K key) {
+        return counters.containsKey(key);
+    }
+
+    public synchronized void clear() {
+        counters.clear();
+        for (int i = 0; i < size; i++) {
+            heap[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Highest counts first, as an immutable copy
+     */
+    public synchronized List<Map.Entry<K, Long>> top(int limit) {
+        List<Counter<K>> copy = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            copy.add(heap[i]);
+        }
+        copy.sort((a, b) -> Long.compare(b.count, a.count));
+
+        List<Map.Entry<K, Long>> result = new ArrayList<>(Math.min(limit, copy.size()));
+        for (int i = 0; i < copy.size() && i < limit; i++) {
+            result.add(Map.entry(copy.get(i).key, copy.get(i).count));
+        }
+        return List.copyOf(result);
+    }
+
+    /**
+     * Maximum overestimation of a key's count (0 if exact or not tracked)
+     */
+    public synchronized long getError(K key) {
+        Counter<K> counter = counters.get(key);
+        return counter != null ? counter.error : 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void siftUp(int index) {
+        Counter<K> counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count) break;
+            heap[index] = heap[parent];
+            heap[index].index = index;
+            index = parent;
+        }
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private void siftDown(int index) {
+        Counter<K> counter = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && heap[right].count < heap[child].count) {
+                child = right;
+            }
+            if (counter.count <= heap[child].count) break;
+            heap[index] = heap[child];
+            heap[index].index = index;
+            index = child;
+        }
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private static class Counter<K> {
+        K key;
+        long count;
+        long error;
+        int index;
+
+        Counter(K key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
@@ -21,27 +21,43 @@ public abstract class AIProvider {
     protected String apiKey;
     protected String baseUrl;
     protected int timeoutMs = 30000;
+    protected String id;
+    
+    // Time until the response headers of the last httpPost on this thread arrived
+    private static final ThreadLocal<Long> lastTimeToFirstByteNanos = ThreadLocal.withInitial(() -> -1L);
     
     /**
      * Get the provider name for display/config
      */
     public abstract String getName();
     
+    /**
+     * Get the configured provider id (groq, mistral, direct...).
+     * Several ids share one implementation, so this is what metrics and limits are keyed by.
+     */
+    public String getId() {
+        return id != null ? id : getName();
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
     /**
      * Make a chat completion request
      * @param model The model name
      * @param systemPrompt The system prompt
      * @param userMessage The user's message
-     * @param history Previous conversation messages (list of role/content maps)
+     * @param history Previous conversation messages, oldest first
      * @param temperature Generation temperature
      * @param maxTokens Maximum tokens to generate
-     * @return The AI's response text
+     * @return The AI's response with token usage
      */
-    public abstract String chatCompletion(
+    public abstract ChatResult chatCompletion(
             String model,
             String systemPrompt,
             String userMessage,
-            List<Map<String, String>> history,
+            List<? extends ChatTurn> history,
             double temperature,
             int maxTokens
     ) throws AIProviderException;
@@ -56,7 +72,7 @@ public abstract class AIProvider {
             String model,
             String systemPrompt,
             String userMessage,
-            List<Map<String, String>> history,
+            List<? extends ChatTurn> history,
             double temperature,
             int maxTokens,
             Consumer<String> onToken,
@@ -64,6 +80,12 @@ public abstract class AIProvider {
             Consumer<Exception> onError
     );
     
+    /**
+     * Lightweight reachability probe (lists models, generates nothing)
+     * @throws AIProviderException If the provider is unreachable or rejects the request
+     */
+    public abstract void healthCheck() throws AIProviderException;
+    
     /**
      * Check if this provider supports streaming
      */
@@ -91,6 +113,8 @@ public abstract class AIProvider {
      * Helper to make HTTP POST request
      */
     protected String httpPost(String url, String jsonBody, Map<String, String> headers) throws IOException {
+        long startNanos = System.nanoTime();
+        lastTimeToFirstByteNanos.set(-1L);
         URL urlObj = new URL(url);
         HttpURLConnection conn = (HttpURLConnection) urlObj.openConnection();
         conn.setRequestMethod("POST");
@@ -108,6 +132,7 @@ public abstract class AIProvider {
         }
         
         int statusCode = conn.getResponseCode();
+        lastTimeToFirstByteNanos.set(System.nanoTime() - startNanos);
         InputStream is = (statusCode >= 200 && statusCode < 300)
                 ? conn.getInputStream()
                 : conn.getErrorStream();
@@ -133,6 +158,49 @@ public abstract class AIProvider {
         }
     }
     
+    /**
+     * Helper to make a short HTTP GET request (health probes), discarding the body
+     * @return The HTTP status code
+     */
+    protected int httpGetStatus(String url, Map<String, String> headers, int probeTimeoutMs) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setRequestMethod("GET");
+        conn.setConnectTimeout(probeTimeoutMs);
+        conn.setReadTimeout(probeTimeoutMs);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            conn.setRequestProperty(header.getKey(), header.getValue());
+        }
+        try {
+            int statusCode = conn.getResponseCode();
+            InputStream is = statusCode >= 200 && statusCode < 300 ? conn.getInputStream() : conn.getErrorStream();
+            if (is != null) {
+                // Drain so the connection can be reused
+                try (InputStream in = is) {
+                    in.transferTo(OutputStream.nullOutputStream());
+                }
+            }
+            return statusCode;
+        } finally {
+            conn.disconnect();
+        }
+    }
+    
+    /**
+     * Timeout for health probes: short, so a dead provider doesn't hold a probe thread
+     */
+    protected int probeTimeoutMs() {
+        return Math.min(timeoutMs, 5000);
+    }
+    
+    /**
+     * Time to first byte of the last httpPost made on the calling thread,
+     * in milliseconds, or -1 if unknown
+     */
+    protected static long getLastTimeToFirstByteMs() {
+        long nanos = lastTimeToFirstByteNanos.get();
+        return nanos < 0 ? -1 : nanos / 1_000_000;
+    }
+    
     /**
      * Helper to open streaming connection
      */
@@ -157,6 +225,16 @@ public abstract class AIProvider {
         return conn;
     }
     
+    /**
+     * Read an integer field from a usage object, or -1 if absent
+     */
+    protected static int usageField(JsonObject usage, String field) {
+        if (usage == null || !usage.has(field) || usage.get(field).isJsonNull()) {
+            return -1;
+        }
+        return usage.get(field).getAsInt();
+    }
+    
     /**
      * Strip thinking tags from response
      */
@@ -1,17 +1,23 @@
 package io.github.thegreywanderer_uc.chatr.ai;
 
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Factory for creating AI providers based on configuration.
+ * Providers are rebuilt on reload and swapped in as a whole, so lookups from
+ * request threads never see a half-built set.
  */
 public class AIProviderFactory {
     
     private final JavaPlugin plugin;
-    private final Map<String, AIProvider> providers = new HashMap<>();
+    private volatile Map<String, AIProvider> providers = Map.of();
+    private volatile AIProvider defaultProvider;
     
     public AIProviderFactory(JavaPlugin plugin) {
         this.plugin = plugin;
@@ -22,7 +28,7 @@ public class AIProviderFactory {
      * Reload configuration and reinitialize providers
      */
     public void reload() {
-        providers.clear();
+        Map<String, AIProvider> created = new HashMap<>();
         
         var config = plugin.getConfig();
         int timeoutMs = config.getInt("ai.timeout-seconds", 30) * 1000;
@@ -30,7 +36,6 @@ public class AIProviderFactory {
         
         // Get the unified endpoint
         String endpoint = config.getString("ai.endpoint", "http://localhost:1234");
-        plugin.getLogger().info("[DEBUG] AIProviderFactory.reload() - endpoint from config: '" + endpoint + "'");
         
         // Create providers based on endpoint type
         if (isUrl(endpoint)) {
@@ -39,26 +44,39 @@ public class AIProviderFactory {
             directProvider.setBaseUrl(endpoint);
             directProvider.setApiKey(""); // No auth for direct URLs
             directProvider.setTimeoutMs(timeoutMs);
-            providers.put("direct", directProvider);
-            providers.put("lmstudio", directProvider);
-            providers.put("ollama", directProvider);
+            directProvider.setId("direct");
+            created.put("direct", directProvider);
+            created.put("lmstudio", directProvider);
+            created.put("ollama", directProvider);
         }
         
         // Always create cloud providers for NPC overrides
-        createProviderProviders(timeoutMs, useEnvVars, config);
+        createProviderProviders(created, timeoutMs, useEnvVars, config);
         
-        plugin.getLogger().info("[DEBUG] AIProviderFactory.reload() - providers created: " + providers.keySet());
+        // Resolve the default once instead of on every request
+        AIProvider resolvedDefault = isUrl(endpoint) ? created.get("direct") : created.get(endpoint.toLowerCase());
+        if (resolvedDefault == null) {
+            plugin.getLogger().warning("Unknown AI provider '" + endpoint + "' configured, falling back to local provider");
+            resolvedDefault = created.get("direct");
+        }
+        
+        this.providers = created;
+        this.defaultProvider = resolvedDefault;
+        if (config.getBoolean("debug-mode", false)) {
+            plugin.getLogger().info("[DEBUG] AIProviderFactory.reload() - endpoint '" + endpoint + "', providers created: " + created.keySet());
+        }
     }
     
     /**
      * Create providers for known provider names
      */
-    private void createProviderProviders(int timeoutMs, boolean useEnvVars, org.bukkit.configuration.file.FileConfiguration config) {
+    private void createProviderProviders(Map<String, AIProvider> providers, int timeoutMs, boolean useEnvVars, org.bukkit.configuration.file.FileConfiguration config) {
         // Groq (OpenAI-compatible)
         OpenAIProvider groqProvider = new OpenAIProvider();
         groqProvider.setBaseUrl("https://api.groq.com/openai");
         groqProvider.setApiKey(getApiKey("groq", config, useEnvVars));
         groqProvider.setTimeoutMs(timeoutMs);
+        groqProvider.setId("groq");
         providers.put("groq", groqProvider);
         
         // Mistral (OpenAI-compatible)
@@ -66,6 +84,7 @@ public class AIProviderFactory {
         mistralProvider.setBaseUrl("https://api.mistral.ai");
         mistralProvider.setApiKey(getApiKey("mistral", config, useEnvVars));
         mistralProvider.setTimeoutMs(timeoutMs);
+        mistralProvider.setId("mistral");
         providers.put("mistral", mistralProvider);
         
         // NVIDIA (OpenAI-compatible)
@@ -73,6 +92,7 @@ public class AIProviderFactory {
         nvidiaProvider.setBaseUrl("https://integrate.api.nvidia.com");
         nvidiaProvider.setApiKey(getApiKey("nvidia", config, useEnvVars));
         nvidiaProvider.setTimeoutMs(timeoutMs);
+        nvidiaProvider.setId("nvidia");
         providers.put("nvidia", nvidiaProvider);
         
         // OpenRouter (OpenAI-compatible)
@@ -80,12 +100,14 @@ public class AIProviderFactory {
         openrouterProvider.setBaseUrl("https://openrouter.ai/api");
         openrouterProvider.setApiKey(getApiKey("openrouter", config, useEnvVars));
         openrouterProvider.setTimeoutMs(timeoutMs);
+        openrouterProvider.setId("openrouter");
         providers.put("openrouter", openrouterProvider);
         
         // Gemini (unique format)
         GeminiProvider geminiProvider = new GeminiProvider();
         geminiProvider.setApiKey(getApiKey("gemini", config, useEnvVars));
         geminiProvider.setTimeoutMs(timeoutMs);
+        geminiProvider.setId("gemini");
         providers.put("gemini", geminiProvider);
     }
     
@@ -166,95 +188,117 @@ public class AIProviderFactory {
      * Get the default provider based on endpoint configuration
      */
     public AIProvider getDefaultProvider() {
-        var config = plugin.getConfig();
-        String endpoint = config.getString("ai.endpoint", "http://localhost:1234");
-        plugin.getLogger().info("[DEBUG] getDefaultProvider() - endpoint: '" + endpoint + "'");
-        
-        if (isUrl(endpoint)) {
-            plugin.getLogger().info("[DEBUG] getDefaultProvider() - using direct provider for URL");
-            return providers.get("direct");
-        } else {
-            // Try the endpoint as a provider name
-            AIProvider provider = providers.get(endpoint.toLowerCase());
-            if (provider != null) {
-                plugin.getLogger().info("[DEBUG] getDefaultProvider() - found provider for endpoint '" + endpoint + "': " + provider.getClass().getSimpleName());
-                return provider;
-            }
-            // Fallback to local provider if endpoint provider not found
-            plugin.getLogger().warning("Unknown AI provider '" + endpoint + "' requested, falling back to local provider");
-            return providers.get("direct");
-        }
+        return defaultProvider;
     }
     
     /**
      * Get provider for an NPC based on its config
      * @param npcName The NPC name
+     * @param npcConfig The NPC's parsed config.yml, or null if it has none
      * @return The configured provider, or default if not specified
      */
-    public AIProvider getProviderForNpc(String npcName) {
-        var config = plugin.getConfig();
-        
-        // Check for NPC-specific endpoint in npc config folder
-        java.io.File npcFolder = new java.io.File(plugin.getDataFolder(), "npcs/" + npcName);
-        java.io.File npcConfigFile = new java.io.File(npcFolder, "config.yml");
-        
-        plugin.getLogger().info("[DEBUG] getProviderForNpc('" + npcName + "') - checking file: " + npcConfigFile.getAbsolutePath());
-        
-        if (npcConfigFile.exists()) {
-            plugin.getLogger().info("[DEBUG] getProviderForNpc('" + npcName + "') - NPC config file exists");
-            org.bukkit.configuration.file.YamlConfiguration npcConfig = 
-                org.bukkit.configuration.file.YamlConfiguration.loadConfiguration(npcConfigFile);
-            
-            // Check for unified endpoint first (new format: ai.endpoint)
+    public AIProvider getProviderForNpc(String npcName, ConfigurationSection npcConfig) {
+        if (npcConfig != null) {
+            // Check for unified endpoint first (new format: ai.endpoint),
+            // then root level endpoint for backward compatibility
             String endpoint = npcConfig.getString("ai.endpoint", null);
-            plugin.getLogger().info("[DEBUG] getProviderForNpc('" + npcName + "') - NPC ai.endpoint: '" + endpoint + "'");
-            
-            // Also check root level endpoint for backward compatibility
             if (endpoint == null) {
                 endpoint = npcConfig.getString("endpoint", null);
-                plugin.getLogger().info("[DEBUG] getProviderForNpc('" + npcName + "') - NPC root endpoint: '" + endpoint + "'");
             }
             
             if (endpoint != null) {
                 AIProvider provider = getProvider(endpoint);
                 if (provider != null) {
-                    plugin.getLogger().info("[DEBUG] getProviderForNpc('" + npcName + "') - Found NPC-specific provider: " + provider.getClass().getSimpleName());
                     return provider;
-                } else {
-                    plugin.getLogger().info("[DEBUG] getProviderForNpc('" + npcName + "') - NPC endpoint '" + endpoint + "' not found, falling back to default");
                 }
+                plugin.getLogger().warning("Endpoint '" + endpoint + "' for NPC '" + npcName + "' not found, using default provider");
             }
             
             // Backward compatibility: check for old provider + server-url setup
             String providerName = npcConfig.getString("provider", null);
-            plugin.getLogger().info("[DEBUG] getProviderForNpc('" + npcName + "') - NPC provider (legacy): '" + providerName + "'");
             if (providerName != null) {
                 AIProvider provider = getProvider(providerName);
                 if (provider != null) {
                     // Check for NPC-specific server URL override
                     String serverUrl = npcConfig.getString("server-url", null);
-                    if (serverUrl != null && provider instanceof OpenAIProvider) {
-                        // Create a copy with the custom URL
+                    if (serverUrl != null && provider instanceof OpenAIProvider && !serverUrl.equals(provider.getBaseUrl())) {
+                        // Create a copy with the custom URL; it's another server, so it gets its own
+                        // circuit breaker, admission gate and metrics, keyed by the URL like fallbacks
                         OpenAIProvider customProvider = new OpenAIProvider();
                         customProvider.setBaseUrl(serverUrl);
                         customProvider.setApiKey(((OpenAIProvider) provider).apiKey);
                         customProvider.setTimeoutMs(provider.timeoutMs);
-                        plugin.getLogger().info("[DEBUG] getProviderForNpc('" + npcName + "') - Created custom provider with URL: " + serverUrl);
+                        customProvider.setId(serverUrl);
                         return customProvider;
                     }
-                    plugin.getLogger().info("[DEBUG] getProviderForNpc('" + npcName + "') - Using legacy provider: " + provider.getClass().getSimpleName());
                     return provider;
                 }
             }
-        } else {
-            plugin.getLogger().info("[DEBUG] getProviderForNpc('" + npcName + "') - No NPC config file found");
         }
         
         // Fall back to default
-        plugin.getLogger().info("[DEBUG] getProviderForNpc('" + npcName + "') - Using default provider");
         return getDefaultProvider();
     }
     
+    /**
+     * Get the ordered endpoints to try for an NPC: its own provider, then its fallbacks
+     * @param npcName The NPC name
+     * @param npcConfig The NPC's parsed config.yml, or null if it has none
+     * @param fallbacks Fallback entries from config: an endpoint string, or a map with
+     *                  "endpoint" and optional "model" (defaults to the NPC's model)
+     * @return Routes in failover order (empty if the NPC has no provider)
+     */
+    public List<Route> getRoutesForNpc(String npcName, ConfigurationSection npcConfig, List<?> fallbacks) {
+        List<Route> routes = new ArrayList<>();
+        AIProvider primary = getProviderForNpc(npcName, npcConfig);
+        if (primary != null) {
+            routes.add(new Route(primary, null));
+        }
+        if (fallbacks == null) {
+            return routes;
+        }
+        for (Object entry : fallbacks) {
+            String endpoint = null;
+            String model = null;
+            if (entry instanceof Map) {
+                Object endpointValue = ((Map<?, ?>) entry).get("endpoint");
+                Object modelValue = ((Map<?, ?>) entry).get("model");
+                endpoint = endpointValue != null ? endpointValue.toString() : null;
+                model = modelValue != null ? modelValue.toString() : null;
+            } else if (entry != null) {
+                endpoint = entry.toString();
+            }
+            AIProvider provider = getFallbackProvider(endpoint);
+            if (provider == null) {
+                plugin.getLogger().warning("Unknown fallback endpoint '" + endpoint + "' for NPC '" + npcName + "', skipping");
+                continue;
+            }
+            routes.add(new Route(provider, model));
+        }
+        return List.copyOf(routes);
+    }
+    
+    /**
+     * A fallback endpoint may be any URL, not just the configured direct endpoint
+     */
+    private AIProvider getFallbackProvider(String endpoint) {
+        if (endpoint == null || endpoint.isEmpty()) return null;
+        AIProvider provider = providers.get(endpoint.toLowerCase());
+        if (provider != null || !isUrl(endpoint)) {
+            return provider;
+        }
+        AIProvider direct = providers.get("direct");
+        if (direct != null && endpoint.equals(direct.getBaseUrl())) {
+            return direct;
+        }
+        OpenAIProvider urlProvider = new OpenAIProvider();
+        urlProvider.setBaseUrl(endpoint);
+        urlProvider.setApiKey("");
+        urlProvider.setTimeoutMs(plugin.getConfig().getInt("ai.timeout-seconds", 30) * 1000);
+        urlProvider.setId(endpoint);
+        return urlProvider;
+    }
+    
     /**
      * Check if a provider has valid configuration
      */
@@ -277,4 +321,18 @@ public class AIProviderFactory {
     public java.util.Set<String> getAvailableProviders() {
         return providers.keySet();
     }
+    
+    /**
+     * One endpoint in an NPC's failover list
+     */
+    public static class Route {
+        public final AIProvider provider;
+        /** Model to request, or null for the NPC's own model */
+        public final String model;
+        
+        public Route(AIProvider provider, String model) {
+            this.provider = provider;
+            this.model = model;
+        }
+    }
 }
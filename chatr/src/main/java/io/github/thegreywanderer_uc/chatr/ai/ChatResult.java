@@ -0,0 +1,62 @@
+package io.github.thegreywanderer_uc.chatr.ai;
+
+/**
+ * Result of a chat completion: the reply text plus usage reported by the provider.
+ * Token counts are -1 when the provider did not report them.
+ */
+public class ChatResult {
+
+    private final String content;
+    private final String model;
+    private final int promptTokens;
+    private final int completionTokens;
+    private final long timeToFirstByteMs;
+
+    public ChatResult(String content, String model, int promptTokens, int completionTokens, long timeToFirstByteMs) {
+        this.content = content;
+        this.model = model;
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+        this.timeToFirstByteMs = timeToFirstByteMs;
+    }
+
+    /**
+     * The reply text with thinking tags removed (null if the model only produced thinking)
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * The model that answered, as reported by the provider (falls back to the requested model)
+     */
+    public String getModel() {
+        return model;
+    }
+
+    public int getPromptTokens() {
+        return promptTokens;
+    }
+
+    public int getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public int getTotalTokens() {
+        return hasUsage() ? promptTokens + completionTokens : -1;
+    }
+
+    /**
+     * Whether the provider reported token usage
+     */
+    public boolean hasUsage() {
+        return promptTokens >= 0 && completionTokens >= 0;
+    }
+
+    /**
+     * Time until response headers arrived in milliseconds, or -1 if unknown
+     */
+    public long getTimeToFirstByteMs() {
+        return timeToFirstByteMs;
+    }
+}
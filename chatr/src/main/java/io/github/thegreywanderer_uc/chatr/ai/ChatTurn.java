@@ -0,0 +1,34 @@
+package io.github.thegreywanderer_uc.chatr.ai;
+
+/**
+ * One earlier message of a conversation, as sent to the provider.
+ * Providers read history through this view, so stored messages are passed as they are
+ * instead of being copied into role/content maps for every request.
+ */
+public interface ChatTurn {
+
+    String ROLE_USER = "user";
+    String ROLE_ASSISTANT = "assistant";
+    String ROLE_SYSTEM = "system";
+
+    /**
+     * "user", "assistant" or "system"
+     */
+    String getRole();
+
+    String getContent();
+
+    /**
+     * The shared constant for a known role, so thousands of stored messages don't each
+     * hold their own copy of "user" or "assistant" (e.g. after loading from JSON)
+     */
+    static String internRole(String role) {
+        if (role == null) return null;
+        return switch (role) {
+            case ROLE_USER -> ROLE_USER;
+            case ROLE_ASSISTANT -> ROLE_ASSISTANT;
+            case ROLE_SYSTEM -> ROLE_SYSTEM;
+            default -> role.intern();
+        };
+    }
+}
@@ -4,6 +4,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
@@ -33,11 +34,23 @@ public class GeminiProvider extends AIProvider {
     }
     
     @Override
-    public String chatCompletion(
+    public void healthCheck() throws AIProviderException {
+        try {
+            int statusCode = httpGetStatus(baseUrl + "/v1beta/models?pageSize=1&key=" + apiKey, new HashMap<>(), probeTimeoutMs());
+            if (statusCode < 200 || statusCode >= 300) {
+                throw new AIProviderException("Health check returned status " + statusCode, statusCode, null);
+            }
+        } catch (IOException e) {
+            throw new AIProviderException("Health check failed: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public ChatResult chatCompletion(
             String model,
             String systemPrompt,
             String userMessage,
-            List<Map<String, String>> history,
+            List<? extends ChatTurn> history,
             double temperature,
             int maxTokens
     ) throws AIProviderException {
@@ -62,15 +75,15 @@ public class GeminiProvider extends AIProvider {
             
             // Add history
             if (history != null) {
-                for (Map<String, String> msg : history) {
+                for (ChatTurn msg : history) {
                     JsonObject content = new JsonObject();
                     // Gemini uses "user" and "model" instead of "user" and "assistant"
-                    String role = msg.get("role").equals("assistant") ? "model" : msg.get("role");
+                    String role = msg.getRole().equals("assistant") ? "model" : msg.getRole();
                     content.addProperty("role", role);
                     
                     JsonArray parts = new JsonArray();
                     JsonObject textPart = new JsonObject();
-                    textPart.addProperty("text", msg.get("content"));
+                    textPart.addProperty("text", msg.getContent());
                     parts.add(textPart);
                     content.add("parts", parts);
                     
@@ -112,7 +125,19 @@ public class GeminiProvider extends AIProvider {
                     JsonArray parts = candidate.getAsJsonObject("content").getAsJsonArray("parts");
                     if (parts.size() > 0 && parts.get(0).getAsJsonObject().has("text")) {
                         String content = parts.get(0).getAsJsonObject().get("text").getAsString().trim();
-                        return stripThinkingTags(content);
+                        JsonObject usage = jsonResponse.has("usageMetadata")
+                                ? jsonResponse.getAsJsonObject("usageMetadata") : null;
+                        // Thinking models bill thought tokens as output
+                        int completionTokens = usageField(usage, "candidatesTokenCount");
+                        int thoughtTokens = usageField(usage, "thoughtsTokenCount");
+                        if (completionTokens >= 0 && thoughtTokens > 0) {
+                            completionTokens += thoughtTokens;
+                        }
+                        String answeredBy = jsonResponse.has("modelVersion")
+                                ? jsonResponse.get("modelVersion").getAsString() : cleanModel;
+                        return new ChatResult(stripThinkingTags(content), answeredBy,
+                                usageField(usage, "promptTokenCount"), completionTokens,
+                                getLastTimeToFirstByteMs());
                     }
                 }
             }
@@ -131,7 +156,7 @@ public class GeminiProvider extends AIProvider {
             String model,
             String systemPrompt,
             String userMessage,
-            List<Map<String, String>> history,
+            List<? extends ChatTurn> history,
             double temperature,
             int maxTokens,
             Consumer<String> onToken,
@@ -160,14 +185,14 @@ public class GeminiProvider extends AIProvider {
                 
                 // Add history
                 if (history != null) {
-                    for (Map<String, String> msg : history) {
+                    for (ChatTurn msg : history) {
                         JsonObject content = new JsonObject();
-                        String role = msg.get("role").equals("assistant") ? "model" : msg.get("role");
+                        String role = msg.getRole().equals("assistant") ? "model" : msg.getRole();
                         content.addProperty("role", role);
                         
                         JsonArray parts = new JsonArray();
                         JsonObject textPart = new JsonObject();
-                        textPart.addProperty("text", msg.get("content"));
+                        textPart.addProperty("text", msg.getContent());
                         parts.add(textPart);
                         content.add("parts", parts);
                         
@@ -4,6 +4,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
@@ -34,11 +35,27 @@ public class OpenAIProvider extends AIProvider {
     }
     
     @Override
-    public String chatCompletion(
+    public void healthCheck() throws AIProviderException {
+        Map<String, String> headers = new HashMap<>();
+        if (apiKey != null && !apiKey.isEmpty()) {
+            headers.put("Authorization", "Bearer " + apiKey);
+        }
+        try {
+            int statusCode = httpGetStatus(baseUrl + "/v1/models", headers, probeTimeoutMs());
+            if (statusCode < 200 || statusCode >= 300) {
+                throw new AIProviderException("Health check returned status " + statusCode, statusCode, null);
+            }
+        } catch (IOException e) {
+            throw new AIProviderException("Health check failed: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public ChatResult chatCompletion(
             String model,
             String systemPrompt,
             String userMessage,
-            List<Map<String, String>> history,
+            List<? extends ChatTurn> history,
             double temperature,
             int maxTokens
     ) throws AIProviderException {
@@ -54,10 +71,10 @@ public class OpenAIProvider extends AIProvider {
             
             // History messages
             if (history != null) {
-                for (Map<String, String> msg : history) {
+                for (ChatTurn msg : history) {
                     JsonObject historyMsg = new JsonObject();
-                    historyMsg.addProperty("role", msg.get("role"));
-                    historyMsg.addProperty("content", msg.get("content"));
+                    historyMsg.addProperty("role", msg.getRole());
+                    historyMsg.addProperty("content", msg.getContent());
                     messages.add(historyMsg);
                 }
             }
@@ -91,7 +108,12 @@ public class OpenAIProvider extends AIProvider {
                 JsonObject choice = jsonResponse.getAsJsonArray("choices").get(0).getAsJsonObject();
                 if (choice.has("message") && choice.getAsJsonObject("message").has("content")) {
                     String content = choice.getAsJsonObject("message").get("content").getAsString().trim();
-                    return stripThinkingTags(content);
+                    JsonObject usage = jsonResponse.has("usage") && jsonResponse.get("usage").isJsonObject()
+                            ? jsonResponse.getAsJsonObject("usage") : null;
+                    String answeredBy = jsonResponse.has("model") ? jsonResponse.get("model").getAsString() : model;
+                    return new ChatResult(stripThinkingTags(content), answeredBy,
+                            usageField(usage, "prompt_tokens"), usageField(usage, "completion_tokens"),
+                            getLastTimeToFirstByteMs());
                 }
             }
             
@@ -109,7 +131,7 @@ public class OpenAIProvider extends AIProvider {
             String model,
             String systemPrompt,
             String userMessage,
-            List<Map<String, String>> history,
+            List<? extends ChatTurn> history,
             double temperature,
             int maxTokens,
             Consumer<String> onToken,
@@ -129,10 +151,10 @@ public class OpenAIProvider extends AIProvider {
                 
                 // History messages
                 if (history != null) {
-                    for (Map<String, String> msg : history) {
+                    for (ChatTurn msg : history) {
                         JsonObject historyMsg = new JsonObject();
-                        historyMsg.addProperty("role", msg.get("role"));
-                        historyMsg.addProperty("content", msg.get("content"));
+                        historyMsg.addProperty("role", msg.getRole());
+                        historyMsg.addProperty("content", msg.getContent());
                         messages.add(historyMsg);
                     }
                 }
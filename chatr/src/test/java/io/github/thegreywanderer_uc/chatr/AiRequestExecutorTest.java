@@ -0,0 +1,65 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AiRequestExecutorTest {
+
+    @Test
+    public void testMoreCallersThanThreadsAllGetAdmittedFairly() throws Exception {
+        AiRequestExecutor executor = new AiRequestExecutor(2);
+        ProviderAdmissionController.Gate gate = new ProviderAdmissionController.Gate("local",
+                new ProviderAdmissionController.Limits(1, 0, 0, 10_000, 0));
+        // Hold the provider so every request queues up, both in the gate and for a thread
+        ProviderAdmissionController.Permit blocker = gate.acquire("blocker", 0);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        // Player A queues six requests before player B queues one
+        for (String player : new String[] {"A", "A", "A", "A", "A", "A", "B"}) {
+            futures.add(executor.submit(player, () -> {
+                try (ProviderAdmissionController.Permit permit = gate.acquire(player, 0)) {
+                    order.add(player);
+                    return Thread.currentThread().getName();
+                }
+            }));
+        }
+        // Both threads wait in the gate, the other five wait for a thread
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((gate.getQueued() < 2 || executor.getQueued() < 5) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, gate.getQueued());
+        assertEquals(5, executor.getQueued());
+
+        blocker.close();
+        for (CompletableFuture<String> future : futures) {
+            assertTrue(future.get(5, TimeUnit.SECONDS).startsWith("Chatr-AI-"));
+        }
+        assertEquals(7, order.size());
+        // B waited for a thread behind A's burst, but was picked before the rest of it
+        assertTrue(order.indexOf("B") <= 4, "B ran at " + order.indexOf("B") + ": " + order);
+        assertEquals(0, executor.getQueued());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testFailedRequestCompletesExceptionally() throws Exception {
+        AiRequestExecutor executor = new AiRequestExecutor(1);
+        CompletableFuture<String> failed = executor.submit(null, () -> {
+            throw new IllegalStateException("boom");
+        });
+        CompletableFuture<String> next = executor.submit(null, () -> "ok");
+        assertEquals("ok", next.get(5, TimeUnit.SECONDS));
+        assertTrue(failed.isCompletedExceptionally());
+        executor.shutdown();
+    }
+}
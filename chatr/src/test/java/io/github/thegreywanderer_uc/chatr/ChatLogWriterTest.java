@@ -0,0 +1,129 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChatLogWriterTest {
+
+    private Path folder;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("chatr-chatlog");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private List<String> names() throws IOException {
+        try (Stream<Path> files = Files.list(folder.resolve("logs"))) {
+            return files.map(p -> p.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static String gunzip(Path file) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testLinesAreWrittenInOrderAcrossFiles() throws IOException {
+        ChatLogWriter writer = new ChatLogWriter(100, Logger.getLogger("test"));
+        writer.configure(1, 0, false, false, 1000);
+        Path alex = folder.resolve("logs").resolve("Alex.log");
+        Path sam = folder.resolve("logs").resolve("Sam.log");
+        assertTrue(writer.log(alex, "Alex", "hello"));
+        writer.log(sam, "Sam", "hey");
+        writer.log(alex, "MENTION", "Bob", "hi Alex");
+        writer.close();
+
+        List<String> lines = Files.readAllLines(alex);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).endsWith("] Alex: hello"));
+        assertTrue(lines.get(1).endsWith("] [MENTION] Bob: hi Alex"));
+        assertEquals(1, Files.readAllLines(sam).size());
+        assertEquals(0L, writer.getStats().get("dropped"));
+        assertFalse(writer.log(alex, "Alex", "after close"));
+    }
+
+    @Test
+    public void testFullFileIsRotatedAndCompressed() throws IOException {
+        ChatLogWriter writer = new ChatLogWriter(100, Logger.getLogger("test"));
+        writer.configure(8, 200, false, true, 1000);
+        Path file = folder.resolve("logs").resolve("Alex.log");
+        for (int i = 0; i < 3; i++) {
+            writer.log(file, "Alex", "a message long enough to fill half a file " + i);
+        }
+        writer.close();
+
+        String today = LocalDate.now().toString();
+        assertEquals(List.of("Alex-" + today + ".1.log.gz", "Alex.log"), names());
+        String rotated = gunzip(folder.resolve("logs").resolve("Alex-" + today + ".1.log.gz"));
+        assertTrue(rotated.contains("half a file 0") && rotated.contains("half a file 1"));
+        assertTrue(Files.readString(file).contains("half a file 2"));
+    }
+
+    @Test
+    public void testNewDayStartsNewFile() throws IOException {
+        ChatLogWriter writer = new ChatLogWriter(100, Logger.getLogger("test"));
+        writer.configure(8, 0, true, false, 1000);
+        Path file = folder.resolve("logs").resolve("Alex.log");
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        long yesterdayNoon = yesterday.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        writer.log(file, yesterdayNoon, null, "Alex", "yesterday");
+        writer.log(file, System.currentTimeMillis(), null, "Alex", "today");
+        writer.close();
+
+        assertEquals(List.of("Alex-" + yesterday + ".1.log", "Alex.log"), names());
+        assertTrue(Files.readString(file).contains("today"));
+        assertEquals(1L, writer.getStats().get("rotated"));
+    }
+
+    @Test
+    public void testCloseWritesLinesStillQueued() throws IOException {
+        ChatLogWriter writer = new ChatLogWriter(200_000, Logger.getLogger("test"));
+        // Small compressed files keep the writer busy rotating while close() is called
+        writer.configure(8, 16 * 1024, false, true, 50);
+        for (int i = 0; i < 50_000; i++) {
+            writer.log(folder.resolve("logs").resolve("Player" + (i % 4) + ".log"), "Alex", "line " + i);
+        }
+        writer.close();
+
+        assertEquals(0L, writer.getStats().get("dropped"));
+        assertEquals(0L, writer.getStats().get("failed"));
+        assertEquals(50_000L, writer.getStats().get("written"));
+        assertEquals(0, writer.getStats().get("queued"));
+        long lines = 0;
+        for (String name : names()) {
+            Path file = folder.resolve("logs").resolve(name);
+            String text = name.endsWith(".gz") ? gunzip(file) : Files.readString(file);
+            lines += text.lines().count();
+        }
+        assertEquals(50_000, lines);
+    }
+}
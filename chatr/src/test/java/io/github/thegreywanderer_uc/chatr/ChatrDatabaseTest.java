@@ -0,0 +1,113 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChatrDatabaseTest {
+
+    private Path folder;
+    private ChatrDatabase database;
+
+    @BeforeEach
+    public void setUp() throws IOException, SQLException {
+        folder = Files.createTempDirectory("chatr-db");
+        database = ChatrDatabase.open(folder.resolve("chatr.db").toFile(), 100, Logger.getLogger("test"));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        database.close();
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private void insertMeta(String key) {
+        database.submit(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO chatr_meta (key, value) VALUES (?, 'x')")) {
+                statement.setString(1, key);
+                statement.executeUpdate();
+            }
+        });
+    }
+
+    private List<String> metaKeys() throws SQLException {
+        return database.read(connection -> {
+            List<String> keys = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT key FROM chatr_meta ORDER BY key")) {
+                while (result.next()) {
+                    keys.add(result.getString(1));
+                }
+            }
+            return keys;
+        });
+    }
+
+    @Test
+    public void testMetaIsVisibleAfterFlush() throws SQLException {
+        assertNull(database.getMeta("version"));
+        database.setMeta("version", "1");
+        database.setMeta("version", "2");
+        assertTrue(database.flush(5000));
+        assertEquals("2", database.getMeta("version"));
+    }
+
+    @Test
+    public void testFailedWriteIsRetriedAloneWithoutLosingTheBatch() throws Exception {
+        // Hold the writer so the next writes are committed together as one batch
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch holding = new CountDownLatch(1);
+        database.submit(connection -> {
+            holding.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+        insertMeta("a");
+        insertMeta("a"); // Primary key violation fails the batch's transaction
+        insertMeta("b");
+        assertEquals(3, database.getQueueSize());
+        release.countDown();
+
+        assertTrue(database.flush(5000));
+        assertEquals(List.of("a", "b"), metaKeys());
+        assertEquals(1, database.getFailedWrites());
+    }
+
+    @Test
+    public void testCloseFinishesQueuedWrites() throws SQLException {
+        for (int i = 0; i < 250; i++) {
+            insertMeta("key" + i);
+        }
+        database.close();
+
+        database = ChatrDatabase.open(folder.resolve("chatr.db").toFile(), 100, Logger.getLogger("test"));
+        assertEquals(250, metaKeys().size());
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CircuitBreakerTest {
+
+    // 10 s window, 4 calls minimum, 50% failures, open for 5 s, 1 trial call
+    private final CircuitBreaker breaker = new CircuitBreaker(10_000, 4, 0.5, 5_000, 1);
+
+    @Test
+    public void testStaysClosedBelowMinimumCalls() {
+        long now = 1_000_000;
+        for (int i = 0; i < 3; i++) {
+            breaker.record(now, false, "timeout");
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testOpensAtFailureRateAndFailsFast() {
+        long now = 1_000_000;
+        breaker.record(now, true, null);
+        breaker.record(now, true, null);
+        breaker.record(now, false, "timeout");
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.record(now, false, "timeout");
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1L, breaker.getTimesOpened());
+
+        assertFalse(breaker.allowSlow(now + 4_999));
+    }
+
+    @Test
+    public void testOldFailuresLeaveTheWindow() {
+        long now = 1_000_000;
+        breaker.record(now, false, "timeout");
+        breaker.record(now, false, "timeout");
+        breaker.record(now, false, "timeout");
+        // 20 s later the first failures are outside the 10 s window
+        breaker.record(now + 20_000, false, "timeout");
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenTrialClosesOnSuccess() {
+        long now = 1_000_000;
+        for (int i = 0; i < 4; i++) {
+            breaker.record(now, false, "http_503");
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        assertTrue(breaker.allowSlow(now + 5_000));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // Only one trial at a time
+        assertFalse(breaker.allowSlow(now + 5_001));
+
+        breaker.record(now + 5_500, true, null);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        // The window was reset, so one more failure doesn't reopen it
+        breaker.record(now + 5_600, false, "timeout");
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenTrialReopensOnFailure() {
+        long now = 1_000_000;
+        for (int i = 0; i < 4; i++) {
+            breaker.record(now, false, "timeout");
+        }
+        assertTrue(breaker.allowSlow(now + 5_000));
+        breaker.record(now + 6_000, false, "timeout");
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2L, breaker.getTimesOpened());
+        assertFalse(breaker.allowSlow(now + 10_000));
+        assertTrue(breaker.allowSlow(now + 11_000));
+    }
+
+    @Test
+    public void testHealthyProbeMovesOpenToHalfOpen() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 4; i++) {
+            breaker.record(now, false, "connection");
+        }
+        breaker.recordProbe(false, "connection");
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        breaker.recordProbe(true, null);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+}
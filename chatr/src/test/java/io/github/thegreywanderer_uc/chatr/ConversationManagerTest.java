@@ -0,0 +1,182 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+public class ConversationManagerTest {
+
+    private Path folder;
+    private YamlConfiguration config;
+    private JavaPlugin plugin;
+    private MockedStatic<Bukkit> bukkit;
+    private ConversationManager manager;
+    private Player player;
+    private Path playerFolder;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("chatr-conversations");
+        config = new YamlConfiguration();
+        config.set("conversation.max-messages", 20);
+
+        plugin = Mockito.mock(JavaPlugin.class);
+        when(plugin.getConfig()).thenReturn(config);
+        when(plugin.getDataFolder()).thenReturn(folder.toFile());
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("test"));
+
+        // Background tasks run inline; the timers are driven by calling flushDirty() directly
+        BukkitScheduler scheduler = Mockito.mock(BukkitScheduler.class);
+        when(scheduler.runTaskAsynchronously(any(), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.getArgument(1, Runnable.class).run();
+            return Mockito.mock(BukkitTask.class);
+        });
+        when(scheduler.runTaskTimerAsynchronously(any(), any(Runnable.class), anyLong(), anyLong()))
+                .thenAnswer(invocation -> Mockito.mock(BukkitTask.class));
+        bukkit = Mockito.mockStatic(Bukkit.class);
+        bukkit.when(Bukkit::getScheduler).thenReturn(scheduler);
+
+        player = Mockito.mock(Player.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.getName()).thenReturn("Alex");
+        playerFolder = folder.resolve("conversations").resolve(player.getUniqueId().toString());
+
+        manager = new ConversationManager(plugin, null);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        manager.shutdown();
+        bukkit.close();
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private Object unsaved() {
+        return manager.getStats().get("unsavedConversations");
+    }
+
+    @Test
+    public void testFlushWritesOnlyDirtyConversations() throws IOException {
+        manager.addMessage(player, "Bob", "user", "hello Bob");
+        manager.addMessage(player, "Sam", "user", "hello Sam");
+        assertEquals(2, manager.flushDirty());
+        assertEquals(0, manager.flushDirty());
+        assertTrue(Files.exists(playerFolder.resolve("sam.json")));
+
+        // Sam's file is not rewritten when only Bob's conversation changed
+        Files.delete(playerFolder.resolve("sam.json"));
+        manager.addMessage(player, "Bob", "assistant", "hi Alex");
+        assertEquals(1, manager.flushDirty());
+        assertFalse(Files.exists(playerFolder.resolve("sam.json")));
+        String bob = Files.readString(playerFolder.resolve("bob.json"));
+        assertTrue(bob.contains("hello Bob") && bob.contains("hi Alex"));
+        assertEquals(0, unsaved());
+    }
+
+    @Test
+    public void testFailedWriteStaysDirty() throws IOException {
+        manager.addMessage(player, "Bob", "user", "hello Bob");
+        // A directory where the temp file goes makes the write fail
+        Files.createDirectories(playerFolder.resolve("bob.json.tmp"));
+
+        assertEquals(0, manager.flushDirty());
+        assertEquals(1, unsaved());
+        assertFalse(Files.exists(playerFolder.resolve("bob.json")));
+
+        manager.addMessage(player, "Bob", "assistant", "hi Alex");
+        Files.delete(playerFolder.resolve("bob.json.tmp"));
+        assertEquals(1, manager.flushDirty());
+        assertEquals(0, unsaved());
+        String bob = Files.readString(playerFolder.resolve("bob.json"));
+        assertTrue(bob.contains("hello Bob") && bob.contains("hi Alex"));
+    }
+
+    @Test
+    public void testFailedUnloadKeepsThePlayerTracked() throws IOException {
+        manager.addMessage(player, "Bob", "user", "hello Bob");
+        Files.createDirectories(playerFolder.resolve("bob.json.tmp"));
+
+        // Kept in memory and still tracked, so an idle unload can try again later
+        manager.unloadPlayer(player.getUniqueId());
+        assertEquals(1, manager.getStats().get("loadedPlayers"));
+        assertEquals(1, manager.getStats().get("totalConversations"));
+        assertEquals(1, unsaved());
+
+        Files.delete(playerFolder.resolve("bob.json.tmp"));
+        assertEquals(1, manager.flushDirty());
+        manager.unloadPlayer(player.getUniqueId());
+        assertEquals(0, manager.getStats().get("loadedPlayers"));
+        assertEquals(0, manager.getStats().get("totalConversations"));
+        assertEquals("hello Bob", manager.getHistory(player.getUniqueId(), "Bob").get(0).content);
+    }
+
+    @Test
+    public void testLeftoverTempFilesAreIgnoredOnLoad() throws IOException {
+        manager.addMessage(player, "Bob", "user", "hello Bob");
+        manager.unloadPlayer(player.getUniqueId());
+        assertTrue(Files.exists(playerFolder.resolve("bob.json")));
+
+        // A crash mid-write leaves a partial temp file next to the intact file
+        Files.writeString(playerFolder.resolve("bob.json.tmp"), "{\"playerUuid\":");
+        Files.writeString(playerFolder.resolve("sam.json.tmp"), "{\"playerUuid\":");
+
+        assertEquals(1, manager.getHistory(player.getUniqueId(), "Bob").size());
+        assertEquals("hello Bob", manager.getHistory(player.getUniqueId(), "Bob").get(0).content);
+        assertTrue(manager.getHistory(player.getUniqueId(), "Sam").isEmpty());
+        assertFalse(Files.exists(playerFolder.resolve("bob.json.tmp")));
+        assertFalse(Files.exists(playerFolder.resolve("sam.json.tmp")));
+    }
+
+    @Test
+    public void testJsonFilesAreCopiedIntoTheDatabaseOnce() throws IOException, SQLException {
+        manager.addMessage(player, "Bob", "user", "hello Bob");
+        manager.shutdown();
+
+        config.set("conversation.store.type", "sqlite");
+        ChatrDatabase database = ChatrDatabase.open(folder.resolve("chatr.db").toFile(), 100, Logger.getLogger("test"));
+        try {
+            manager = new ConversationManager(plugin, database);
+            assertFalse(Files.exists(folder.resolve("conversations")));
+            assertTrue(Files.exists(folder.resolve("conversations-migrated").resolve(playerFolder.getFileName()).resolve("bob.json")));
+            assertEquals("hello Bob", manager.getHistory(player.getUniqueId(), "Bob").get(0).content);
+            manager.shutdown();
+
+            // Files put back later are not copied again
+            Files.move(folder.resolve("conversations-migrated"), folder.resolve("conversations"));
+            manager = new ConversationManager(plugin, database);
+            assertTrue(Files.exists(folder.resolve("conversations")));
+            assertEquals(1, manager.getHistory(player.getUniqueId(), "Bob").size());
+            manager.shutdown();
+        } finally {
+            database.close();
+        }
+    }
+}
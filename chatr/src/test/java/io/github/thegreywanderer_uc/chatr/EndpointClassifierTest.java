@@ -0,0 +1,63 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EndpointClassifierTest {
+
+    private final EndpointClassifier classifier = new EndpointClassifier(List.of());
+
+    @Test
+    public void testLocalEndpoints() {
+        assertTrue(classifier.isLocal("http://localhost:1234"));
+        assertTrue(classifier.isLocal("http://127.0.0.1:11434/v1"));
+        assertTrue(classifier.isLocal("http://0.0.0.0:1234"));
+        assertTrue(classifier.isLocal("http://192.168.1.20:1234"));
+        assertTrue(classifier.isLocal("http://10.8.0.2"));
+        assertTrue(classifier.isLocal("http://172.16.0.5:8080"));
+        assertTrue(classifier.isLocal("http://172.31.255.254"));
+        assertTrue(classifier.isLocal("http://169.254.10.1"));
+        assertTrue(classifier.isLocal("http://[::1]:1234"));
+        assertTrue(classifier.isLocal("http://[fd12:3456::1]:1234"));
+        assertTrue(classifier.isLocal("http://[fe80::1]"));
+        assertTrue(classifier.isLocal("192.168.0.10:1234"));
+    }
+
+    @Test
+    public void testRemoteEndpoints() {
+        // Outside 172.16.0.0/12, although it starts with "172.2"
+        assertFalse(classifier.isLocal("http://172.217.16.142"));
+        assertFalse(classifier.isLocal("http://172.32.0.1"));
+        assertFalse(classifier.isLocal("http://8.8.8.8"));
+        assertFalse(classifier.isLocal("http://[2001:db8::1]"));
+        // Provider names are not URLs
+        assertFalse(classifier.isLocal("groq"));
+        assertFalse(classifier.isLocal(""));
+        assertFalse(classifier.isLocal(null));
+    }
+
+    @Test
+    public void testExtraRanges() {
+        EndpointClassifier withVpn = new EndpointClassifier(List.of("100.64.0.0/10"));
+        assertTrue(withVpn.isLocal("http://100.100.1.1:1234"));
+        assertFalse(classifier.isLocal("http://100.100.1.1:1234"));
+    }
+
+    @Test
+    public void testCidrParsing() {
+        EndpointClassifier.Cidr range = EndpointClassifier.Cidr.parse("172.16.0.0/12");
+        assertTrue(range.contains(new byte[] {(byte) 172, 16, 0, 1}));
+        assertTrue(range.contains(new byte[] {(byte) 172, 31, (byte) 255, (byte) 255}));
+        assertFalse(range.contains(new byte[] {(byte) 172, 32, 0, 0}));
+
+        assertThrows(IllegalArgumentException.class, () -> EndpointClassifier.Cidr.parse("10.0.0.0/33"));
+        assertThrows(IllegalArgumentException.class, () -> EndpointClassifier.Cidr.parse("example.com/8"));
+        assertEquals("::1", EndpointClassifier.hostOf("http://[::1]:1234/v1"));
+    }
+}
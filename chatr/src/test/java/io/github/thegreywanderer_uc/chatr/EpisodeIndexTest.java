@@ -0,0 +1,120 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EpisodeIndexTest {
+
+    private final HashingEmbedder embedder = new HashingEmbedder(256);
+    private Path folder;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("chatr-memory");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private EpisodeIndex index(String... texts) {
+        EpisodeIndex index = new EpisodeIndex(embedder.id(), 100);
+        long timestamp = 1;
+        for (String text : texts) {
+            index.add(embedder.embed(text), text, timestamp++);
+        }
+        return index;
+    }
+
+    @Test
+    public void testMostSimilarExchangeComesFirst() {
+        EpisodeIndex index = index(
+                "Alex: Where can I find diamonds? / Bob: Dig below the old mine near the river",
+                "Alex: Do you like the weather? / Bob: Rain is good for the crops",
+                "Alex: I lost my iron sword / Bob: Ask the blacksmith in the village");
+
+        List<EpisodeIndex.Match> matches = index.search(embedder.embed("any diamonds in that old mine?"), 2, 0.05f, Long.MAX_VALUE);
+        assertTrue(matches.get(0).text.contains("diamonds"));
+        assertTrue(matches.size() <= 2);
+        for (int i = 1; i < matches.size(); i++) {
+            assertTrue(matches.get(i - 1).score >= matches.get(i).score);
+        }
+    }
+
+    @Test
+    public void testRecentExchangesAreSkipped() {
+        EpisodeIndex index = index("the blacksmith sells swords", "the blacksmith sells armor");
+        List<EpisodeIndex.Match> matches = index.search(embedder.embed("blacksmith"), 5, 0.05f, 2);
+        assertEquals(1, matches.size());
+        assertEquals(1L, matches.get(0).timestamp);
+    }
+
+    @Test
+    public void testOldestIsDroppedWhenFull() {
+        EpisodeIndex index = new EpisodeIndex(embedder.id(), 2);
+        index.add(embedder.embed("first castle"), "first castle", 1);
+        index.add(embedder.embed("second castle"), "second castle", 2);
+        index.add(embedder.embed("third castle"), "third castle", 3);
+        assertEquals(2, index.size());
+        List<EpisodeIndex.Match> matches = index.search(embedder.embed("castle"), 5, 0.01f, Long.MAX_VALUE);
+        assertTrue(matches.stream().noneMatch(m -> m.text.equals("first castle")));
+    }
+
+    @Test
+    public void testDenseVectorsKeepTheirPrecision() {
+        // API embeddings spread over many dimensions, so every component is small
+        int dimensions = 1536;
+        float[] flat = new float[dimensions];
+        float[] wave = new float[dimensions];
+        double waveNorm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            flat[i] = (float) (1 / Math.sqrt(dimensions));
+            wave[i] = (float) (1 + Math.sin(i * 0.1));
+            waveNorm += wave[i] * wave[i];
+        }
+        double cosine = 0;
+        for (int i = 0; i < dimensions; i++) {
+            wave[i] /= (float) Math.sqrt(waveNorm);
+            cosine += flat[i] * wave[i];
+        }
+
+        EpisodeIndex index = new EpisodeIndex("api", 10);
+        index.add(flat, "flat", 1);
+        index.add(wave, "wave", 2);
+        List<EpisodeIndex.Match> matches = index.search(flat, 2, -1f, Long.MAX_VALUE);
+        assertEquals("flat", matches.get(0).text);
+        assertEquals(1, matches.get(0).score, 0.01);
+        assertEquals(cosine, matches.get(1).score, 0.01);
+    }
+
+    @Test
+    public void testSurvivesWriteAndRead() throws IOException {
+        Path file = folder.resolve("player").resolve("bob.idx");
+        EpisodeIndex index = index("the dragon lives in the north tower");
+        index.writeIfDirty(file);
+
+        EpisodeIndex read = EpisodeIndex.read(file, embedder.id(), 100);
+        assertEquals(1, read.size());
+        assertEquals("the dragon lives in the north tower",
+                read.search(embedder.embed("dragon tower"), 1, 0.05f, Long.MAX_VALUE).get(0).text);
+
+        // Built by another embedder: started over
+        assertEquals(0, EpisodeIndex.read(file, new HashingEmbedder(128).id(), 100).size());
+    }
+}
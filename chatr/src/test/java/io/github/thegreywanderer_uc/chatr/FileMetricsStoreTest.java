@@ -0,0 +1,83 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import io.github.thegreywanderer_uc.chatr.MetricsTimeSeries.MinuteTotals;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileMetricsStoreTest {
+
+    private Path folder;
+    private FileMetricsStore store;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("chatr-metrics");
+        store = new FileMetricsStore(folder.toFile(), Logger.getLogger("test"));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static NavigableMap<Long, MinuteTotals> minute(long minute, long requests) {
+        NavigableMap<Long, MinuteTotals> minutes = new TreeMap<>();
+        minutes.put(minute, new MinuteTotals(requests, 0, 0, requests, 100 * requests, 100, 0, 0, 0));
+        return minutes;
+    }
+
+    @Test
+    public void testAppendedMinutesAreSummedOnLoad() throws IOException {
+        long now = System.currentTimeMillis() / 60_000L;
+        store.appendMinutes(minute(now - 2, 3));
+        // Same minute again, as after a restart
+        store.appendMinutes(minute(now - 2, 4));
+        store.appendMinutes(minute(now - 1, 1));
+
+        NavigableMap<Long, MinuteTotals> loaded = store.loadMinutes(now - 60);
+        assertEquals(2, loaded.size());
+        assertEquals(7L, loaded.get(now - 2).requests);
+    }
+
+    @Test
+    public void testLoadDeletesDaysPastRetention() throws IOException {
+        long now = System.currentTimeMillis() / 60_000L;
+        store.appendMinutes(minute(now - 10 * 1440, 5));
+        store.appendMinutes(minute(now, 1));
+
+        NavigableMap<Long, MinuteTotals> loaded = store.loadMinutes(now - 2 * 1440);
+        assertEquals(1, loaded.size());
+        File[] files = folder.toFile().listFiles();
+        assertEquals(1, files.length);
+    }
+
+    @Test
+    public void testDailySummaryIsReplaced() throws IOException {
+        LocalDate today = LocalDate.now();
+        store.saveDailySummary(today, "{\"requests\":1}");
+        store.saveDailySummary(today, "{\"requests\":2}");
+        assertEquals("{\"requests\":2}", store.loadDailySummaries().get(today));
+        assertTrue(new File(folder.toFile(), "metrics-" + today + ".json").exists());
+        assertFalse(store.loadDailySummaries().containsKey(today.minusDays(1)));
+    }
+}
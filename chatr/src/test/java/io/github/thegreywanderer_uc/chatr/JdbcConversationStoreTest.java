@@ -0,0 +1,150 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.github.thegreywanderer_uc.chatr.ConversationManager.ChatMessage;
+import io.github.thegreywanderer_uc.chatr.ConversationManager.ConversationHistory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JdbcConversationStoreTest {
+
+    private Path folder;
+    private ChatrDatabase database;
+    private JdbcConversationStore store;
+    private final UUID alex = UUID.randomUUID();
+
+    @BeforeEach
+    public void setUp() throws IOException, SQLException {
+        folder = Files.createTempDirectory("chatr-jdbc");
+        database = ChatrDatabase.open(folder.resolve("chatr.db").toFile(), 100, Logger.getLogger("test"));
+        store = new JdbcConversationStore(database, Logger.getLogger("test"));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        database.close();
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static ConversationHistory history(UUID player, String npc, long start, int count) {
+        ConversationHistory history = new ConversationHistory(player, "Alex", npc, 20);
+        for (int i = 0; i < count; i++) {
+            history.messages.add(new ChatMessage(i % 2 == 0 ? "user" : "assistant", npc + " " + i, start + i));
+        }
+        history.lastUpdated = start + count - 1;
+        return history;
+    }
+
+    private ConversationHistory load(String npc) throws IOException {
+        for (ConversationHistory history : store.loadPlayer(alex, 0, 20)) {
+            if (history.npcName.equalsIgnoreCase(npc)) return history;
+        }
+        return null;
+    }
+
+    @Test
+    public void testWritesAppendAndLoadSeesQueuedWrites() throws IOException {
+        ConversationHistory bob = history(alex, "Bob", 1000, 2);
+        store.write(bob, bob.messages.snapshot());
+        bob.messages.add(new ChatMessage("user", "Bob 2", 1002));
+        // Only the new message is appended
+        store.write(bob, bob.messages.newest(1));
+        bob.summary = "Alex said hi";
+        bob.summarizedUntil = 1001;
+        store.writeSummary(bob);
+
+        // No flush: the load waits for the queue itself
+        ConversationHistory loaded = load("bob");
+        assertEquals("Bob", loaded.npcName);
+        assertEquals("Alex", loaded.playerName);
+        assertEquals(List.of("Bob 0", "Bob 1", "Bob 2"), loaded.messages.snapshot().stream().map(m -> m.content).toList());
+        assertEquals(1002, loaded.lastUpdated);
+        assertEquals("Alex said hi", loaded.summary);
+        assertEquals(1001, loaded.summarizedUntil);
+
+        // Loads keep only the newest max-messages and skip expired conversations
+        assertEquals(2, store.loadPlayer(alex, 0, 2).get(0).messages.size());
+        assertTrue(store.loadPlayer(alex, 2000, 20).isEmpty());
+    }
+
+    @Test
+    public void testDeletes() throws IOException {
+        UUID sam = UUID.randomUUID();
+        for (ConversationHistory history : List.of(history(alex, "Bob", 1000, 2), history(alex, "Eve", 1000, 2),
+                history(sam, "Bob", 1000, 2))) {
+            store.write(history, history.messages.snapshot());
+        }
+
+        store.delete(alex, "EVE");
+        assertNull(load("eve"));
+        store.deleteNpc("Bob");
+        assertTrue(store.loadPlayer(alex, 0, 20).isEmpty());
+        assertTrue(store.loadPlayer(sam, 0, 20).isEmpty());
+
+        ConversationHistory eve = history(alex, "Eve", 3000, 1);
+        store.write(eve, eve.messages.snapshot());
+        store.deletePlayer(alex);
+        assertTrue(store.loadAll(0, 20).isEmpty());
+    }
+
+    @Test
+    public void testCompactTrimsAndDropsExpiredConversations() throws IOException, SQLException {
+        ConversationHistory bob = history(alex, "Bob", 10_000, 5);
+        bob.summary = "old";
+        ConversationHistory eve = history(alex, "Eve", 1000, 2);
+        eve.summary = "expired";
+        for (ConversationHistory history : List.of(bob, eve)) {
+            store.write(history, history.messages.snapshot());
+            store.writeSummary(history);
+        }
+
+        store.compact(5000, 3);
+        List<ConversationHistory> all = store.loadAll(0, 20);
+        assertEquals(1, all.size());
+        assertEquals(List.of("Bob 2", "Bob 3", "Bob 4"), all.get(0).messages.snapshot().stream().map(m -> m.content).toList());
+        assertEquals("old", all.get(0).summary);
+        assertEquals(0L, (long) database.read(connection -> {
+            try (var result = connection.createStatement().executeQuery(
+                    "SELECT COUNT(*) FROM conversation_summaries WHERE npc = 'eve'")) {
+                return result.getLong(1);
+            }
+        }));
+    }
+
+    @Test
+    public void testImportRunsOnce() throws IOException {
+        Gson gson = new GsonBuilder().registerTypeAdapter(MessageRing.class, new MessageRing.JsonAdapter()).create();
+        JsonConversationStore json = new JsonConversationStore(folder.resolve("conversations").toFile(), gson, Logger.getLogger("test"));
+        ConversationHistory bob = history(alex, "Bob", 1000, 3);
+        bob.summary = "Alex likes fish";
+        bob.summarizedUntil = 1001;
+        json.write(bob, bob.messages.snapshot());
+
+        assertEquals(1, store.importOnce(json, 0, 20));
+        assertEquals(-1, store.importOnce(json, 0, 20));
+        ConversationHistory loaded = load("bob");
+        assertEquals(3, loaded.messages.size());
+        assertEquals("Alex likes fish", loaded.summary);
+        assertEquals(1, store.loadAll(0, 20).size());
+    }
+}
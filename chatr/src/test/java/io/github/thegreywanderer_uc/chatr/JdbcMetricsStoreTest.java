@@ -0,0 +1,90 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import io.github.thegreywanderer_uc.chatr.MetricsTimeSeries.MinuteTotals;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class JdbcMetricsStoreTest {
+
+    private Path folder;
+    private ChatrDatabase database;
+    private JdbcMetricsStore store;
+
+    @BeforeEach
+    public void setUp() throws IOException, SQLException {
+        folder = Files.createTempDirectory("chatr-jdbc-metrics");
+        database = ChatrDatabase.open(folder.resolve("chatr.db").toFile(), 100, Logger.getLogger("test"));
+        store = new JdbcMetricsStore(database, Logger.getLogger("test"));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        database.close();
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static NavigableMap<Long, MinuteTotals> minute(long minute, long requests, long responseMsMax) {
+        NavigableMap<Long, MinuteTotals> minutes = new TreeMap<>();
+        minutes.put(minute, new MinuteTotals(requests, 0, 0, requests, 100 * requests, responseMsMax, 10, 5, 3));
+        return minutes;
+    }
+
+    private long dailyRows() throws SQLException {
+        return database.read(connection -> {
+            try (var result = connection.createStatement().executeQuery("SELECT COUNT(*) FROM metrics_daily")) {
+                return result.getLong(1);
+            }
+        });
+    }
+
+    @Test
+    public void testAppendedMinutesAreSummedAndOldOnesDeleted() throws IOException {
+        store.appendMinutes(minute(100, 2, 300));
+        // The same minute again, e.g. after a restart
+        store.appendMinutes(minute(100, 3, 800));
+        store.appendMinutes(minute(50, 1, 100));
+
+        NavigableMap<Long, MinuteTotals> loaded = store.loadMinutes(60);
+        assertEquals(1, loaded.size());
+        MinuteTotals totals = loaded.get(100L);
+        assertEquals(5, totals.requests);
+        assertEquals(500, totals.responseMsSum);
+        assertEquals(800, totals.responseMsMax);
+        assertEquals(6, totals.costMicroUsd);
+
+        // Minutes before the window were deleted by the previous load
+        assertEquals(1, store.loadMinutes(0).size());
+    }
+
+    @Test
+    public void testImportCopiesFilesOnce() throws IOException, SQLException {
+        FileMetricsStore files = new FileMetricsStore(folder.resolve("metrics").toFile(), Logger.getLogger("test"));
+        files.appendMinutes(minute(100, 2, 300));
+        files.appendMinutes(minute(101, 1, 200));
+        files.saveDailySummary(LocalDate.of(2026, 1, 2), "{\"totalRequests\":3}");
+
+        assertEquals(2, store.importOnce(files, 0));
+        assertEquals(-1, store.importOnce(files, 0));
+        assertEquals(2, store.loadMinutes(0).size());
+        assertEquals(3, store.loadMinutes(0).get(100L).requests + store.loadMinutes(0).get(101L).requests);
+        assertEquals(1, dailyRows());
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentilesWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 1000; ms++) {
+            histogram.recordMillis(ms);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1_000_000, snapshot.getMaxMicros());
+
+        // Buckets are log-linear with 16 sub-buckets, so error stays under ~6.25%
+        assertWithin(500_000, snapshot.percentileMicros(50), 0.0625);
+        assertWithin(900_000, snapshot.percentileMicros(90), 0.0625);
+        assertWithin(990_000, snapshot.percentileMicros(99), 0.0625);
+        assertEquals(1_000_000, snapshot.percentileMicros(100));
+    }
+
+    @Test
+    public void testEmptySnapshot() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.percentileMicros(99));
+    }
+
+    @Test
+    public void testBucketBoundsAreConsistent() {
+        for (long value = 0; value < 5_000_000; value += 997) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(LatencyHistogram.bucketUpperBound(index) >= value);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void testMergeAndReset() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.recordMillis(10);
+        b.recordMillis(2000);
+
+        LatencyHistogram.Snapshot merged = a.snapshot().merge(b.snapshot());
+        assertEquals(2, merged.getCount());
+        assertEquals(2_000_000, merged.getMaxMicros());
+        assertEquals(2, merged.countAtOrBelow(2_000_000));
+        assertEquals(1, merged.countAtOrBelow(100_000));
+
+        a.reset();
+        assertEquals(0, a.snapshot().getCount());
+    }
+
+    @Test
+    public void testSlidingWindowCollectsRecentSamples() {
+        SlidingWindowHistogram window = new SlidingWindowHistogram(60_000, 10);
+        window.recordMillis(5);
+        window.recordMillis(15);
+
+        assertEquals(2, window.snapshot().getCount());
+        assertEquals(60, window.getWindowSeconds());
+    }
+
+    private static void assertWithin(long expected, long actual, double relativeError) {
+        assertTrue(Math.abs(actual - expected) <= expected * relativeError,
+                "expected ~" + expected + " but was " + actual);
+    }
+}
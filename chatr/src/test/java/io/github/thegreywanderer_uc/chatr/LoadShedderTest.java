@@ -0,0 +1,59 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class LoadShedderTest {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LoadShedder shedder = new LoadShedder(inFlight::get,
+            new LoadShedder.Stage(10, 0, 0, 200, true, false, Map.of("groq", "llama-3.1-8b-instant")),
+            new LoadShedder.Stage(20, 0, 0, 100, true, true, Map.of()),
+            30_000);
+
+    @Test
+    public void testEscalatesImmediately() {
+        long now = System.currentTimeMillis();
+        assertEquals(LoadShedder.Level.NORMAL, shedder.evaluate(now));
+
+        inFlight.set(12);
+        assertEquals(LoadShedder.Level.ELEVATED, shedder.evaluate(now));
+        inFlight.set(25);
+        assertEquals(LoadShedder.Level.CRITICAL, shedder.evaluate(now));
+    }
+
+    @Test
+    public void testRecoversOneLevelAtATimeAfterCalmPeriod() {
+        long now = System.currentTimeMillis();
+        inFlight.set(25);
+        assertEquals(LoadShedder.Level.CRITICAL, shedder.evaluate(now));
+
+        // Just under the threshold is not calm enough (hysteresis)
+        inFlight.set(18);
+        assertEquals(LoadShedder.Level.CRITICAL, shedder.evaluate(now + 60_000));
+
+        inFlight.set(5);
+        assertEquals(LoadShedder.Level.CRITICAL, shedder.evaluate(now + 61_000));
+        assertEquals(LoadShedder.Level.CRITICAL, shedder.evaluate(now + 80_000));
+        assertEquals(LoadShedder.Level.ELEVATED, shedder.evaluate(now + 91_000));
+        assertEquals(LoadShedder.Level.ELEVATED, shedder.evaluate(now + 100_000));
+        assertEquals(LoadShedder.Level.NORMAL, shedder.evaluate(now + 121_000));
+    }
+
+    @Test
+    public void testActionsPerLevel() {
+        assertEquals(500, shedder.adjustMaxTokens(LoadShedder.Level.NORMAL, 500));
+        assertEquals(200, shedder.adjustMaxTokens(LoadShedder.Level.ELEVATED, 500));
+        assertEquals(100, shedder.adjustMaxTokens(LoadShedder.Level.CRITICAL, 500));
+
+        assertEquals("llama-3.3-70b", shedder.adjustModel(LoadShedder.Level.NORMAL, "groq", "llama-3.3-70b"));
+        assertEquals("llama-3.1-8b-instant", shedder.adjustModel(LoadShedder.Level.ELEVATED, "groq", "llama-3.3-70b"));
+        assertEquals("qwen3", shedder.adjustModel(LoadShedder.Level.ELEVATED, "direct", "qwen3"));
+        assertNull(shedder.getBusyReply(LoadShedder.Level.ELEVATED));
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LocalRateLimitStoreTest {
+
+    // 10 requests per minute, burst of 3, no cooldown
+    private static final long INTERVAL = 6000;
+    private static final long TOLERANCE = 2 * INTERVAL;
+
+    @Test
+    public void testBurstThenSmoothSpacing() {
+        AtomicLong state = new AtomicLong(-1);
+        long now = 1000;
+
+        assertEquals(0, LocalRateLimitStore.acquire(state, now, INTERVAL, TOLERANCE, 0));
+        assertEquals(0, LocalRateLimitStore.acquire(state, now, INTERVAL, TOLERANCE, 0));
+        assertEquals(0, LocalRateLimitStore.acquire(state, now, INTERVAL, TOLERANCE, 0));
+
+        // Burst used up: the next slot opens one interval after the first request
+        long wait = LocalRateLimitStore.acquire(state, now, INTERVAL, TOLERANCE, 0);
+        assertEquals(INTERVAL, wait);
+
+        // After one interval exactly one more request fits
+        assertEquals(0, LocalRateLimitStore.acquire(state, now + INTERVAL, INTERVAL, TOLERANCE, 0));
+        assertTrue(LocalRateLimitStore.acquire(state, now + INTERVAL, INTERVAL, TOLERANCE, 0) > 0);
+    }
+
+    @Test
+    public void testNoDoubleBurstAcrossMinuteBoundary() {
+        AtomicLong state = new AtomicLong(-1);
+        int allowed = 0;
+        // Hammer every 100ms for two minutes: 3 burst + 1 per 6 seconds
+        for (long t = 0; t < 120_000; t += 100) {
+            if (LocalRateLimitStore.acquire(state, t, INTERVAL, TOLERANCE, 0) == 0) {
+                allowed++;
+            }
+        }
+        assertEquals(3 + 120_000 / INTERVAL - 1, allowed);
+    }
+
+    @Test
+    public void testCooldownIsReportedNegative() {
+        AtomicLong state = new AtomicLong(-1);
+        assertEquals(0, LocalRateLimitStore.acquire(state, 5000, INTERVAL, TOLERANCE, 3000));
+
+        long wait = LocalRateLimitStore.acquire(state, 6000, INTERVAL, TOLERANCE, 3000);
+        assertEquals(-2000, wait);
+        assertEquals(0, LocalRateLimitStore.acquire(state, 8000, INTERVAL, TOLERANCE, 3000));
+    }
+
+    @Test
+    public void testUnlimitedWhenIntervalZero() {
+        AtomicLong state = new AtomicLong(-1);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, LocalRateLimitStore.acquire(state, 1000, 0, 0, 0));
+        }
+    }
+
+    @Test
+    public void testConcurrentRequestsCannotExceedBurst() throws InterruptedException {
+        AtomicLong state = new AtomicLong(-1);
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < 1000; j++) {
+                    if (LocalRateLimitStore.acquire(state, 1000, INTERVAL, TOLERANCE, 0) == 0) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(3, allowed.get());
+    }
+
+    @Test
+    public void testLimitedPlayerIsNotEvicted() {
+        LocalRateLimitStore store = new LocalRateLimitStore();
+        UUID limited = UUID.randomUUID();
+        assertEquals(0, store.acquire(limited, INTERVAL, TOLERANCE, 0));
+        assertFalse(store.clearIfRecovered(limited));
+        assertEquals(2, store.remaining(limited, INTERVAL, 3));
+
+        // Nothing kept for a player who never made a request
+        assertTrue(store.clearIfRecovered(UUID.randomUUID()));
+    }
+}
@@ -0,0 +1,226 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import io.github.thegreywanderer_uc.chatr.ConversationManager.ChatMessage;
+import io.github.thegreywanderer_uc.chatr.ConversationManager.ConversationHistory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LogConversationStoreTest {
+
+    private static final UUID ALEX = UUID.fromString("00000000-0000-0000-0000-00000000a1e7");
+    private static final UUID SAM = UUID.fromString("00000000-0000-0000-0000-000000005a77");
+
+    private Path folder;
+    private LogConversationStore store;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("chatr-log");
+        store = open();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private LogConversationStore open() throws IOException {
+        return new LogConversationStore(folder, 1024 * 1024, false, Logger.getLogger("test"));
+    }
+
+    private LogConversationStore reopen() throws IOException {
+        store.close();
+        store = open();
+        return store;
+    }
+
+    private void say(UUID player, String npc, String... contents) throws IOException {
+        ConversationHistory history = new ConversationHistory(player, "Player", npc, 20);
+        List<ChatMessage> messages = new ArrayList<>();
+        for (String content : contents) {
+            messages.add(new ChatMessage("user", content, System.currentTimeMillis()));
+        }
+        store.write(history, messages);
+    }
+
+    private ConversationHistory only(List<ConversationHistory> loaded) {
+        assertEquals(1, loaded.size());
+        return loaded.get(0);
+    }
+
+    @Test
+    public void testAppendsSurviveReopen() throws IOException {
+        say(ALEX, "Bob", "hello", "how are you");
+        say(ALEX, "Bob", "bye");
+
+        ConversationHistory history = only(reopen().loadAll(0, 20));
+        assertEquals("Bob", history.npcName);
+        assertEquals(List.of("hello", "how are you", "bye"),
+                history.messages.snapshot().stream().map(m -> m.content).toList());
+    }
+
+    @Test
+    public void testLoadKeepsNewestMessages() throws IOException {
+        say(ALEX, "Bob", "1", "2", "3", "4");
+        ConversationHistory history = only(store.loadAll(0, 2));
+        assertEquals(List.of("3", "4"), history.messages.snapshot().stream().map(m -> m.content).toList());
+    }
+
+    @Test
+    public void testLoadsOnePlayer() throws IOException {
+        say(ALEX, "Bob", "hello");
+        say(SAM, "Bob", "hey");
+        say(SAM, "Alice", "hi");
+        assertEquals(2, reopen().loadPlayer(SAM, 0, 20).size());
+        assertEquals(0, store.loadPlayer(UUID.randomUUID(), 0, 20).size());
+    }
+
+    @Test
+    public void testTombstonesSurviveReopen() throws IOException {
+        say(ALEX, "Bob", "hello");
+        say(ALEX, "Alice", "hi");
+        say(SAM, "Bob", "hey");
+        store.delete(ALEX, "bob");
+        store.deletePlayer(SAM);
+
+        ConversationHistory history = only(reopen().loadAll(0, 20));
+        assertEquals("Alice", history.npcName);
+    }
+
+    @Test
+    public void testDeleteNpcClearsEveryPlayer() throws IOException {
+        say(ALEX, "Heimdall", "hello");
+        say(SAM, "Heimdall", "hey");
+        say(SAM, "Bob", "hi");
+        store.deleteNpc("heimdall");
+
+        ConversationHistory history = only(reopen().loadAll(0, 20));
+        assertEquals("Bob", history.npcName);
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws IOException {
+        say(ALEX, "Bob", "hello");
+        store.close();
+        Path segment = folder.resolve("segment-000001.log");
+        long validSize = Files.size(segment);
+        // A crash in the middle of the next record
+        Files.write(segment, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        store = open();
+        assertEquals(validSize, Files.size(segment));
+        say(ALEX, "Bob", "still here");
+        ConversationHistory history = only(reopen().loadAll(0, 20));
+        assertEquals(2, history.messages.size());
+    }
+
+    @Test
+    public void testCompactionKeepsLiveRecordsOnly() throws IOException {
+        for (int i = 0; i < 50; i++) {
+            say(ALEX, "Bob", "message " + i);
+        }
+        say(SAM, "Bob", "gone soon");
+        store.delete(SAM, "Bob");
+        long before = Files.size(folder.resolve("segment-000001.log"));
+
+        store.compact(0, 5);
+        try (Stream<Path> files = Files.list(folder)) {
+            List<Path> segments = files.toList();
+            // The compacted segment plus the new active one
+            assertEquals(2, segments.size());
+            assertTrue(Files.size(folder.resolve("segment-000001.log")) < before);
+        }
+
+        say(ALEX, "Bob", "after compaction");
+        ConversationHistory history = only(reopen().loadAll(0, 20));
+        assertEquals(6, history.messages.size());
+        assertEquals("message 45", history.messages.snapshot().getFirst().content);
+        assertEquals("after compaction", history.messages.snapshot().getLast().content);
+    }
+
+    @Test
+    public void testNewestSummarySurvivesReopenAndCompaction() throws IOException {
+        say(ALEX, "Bob", "1", "2", "3");
+        ConversationHistory history = new ConversationHistory(ALEX, "Player", "Bob", 20);
+        history.summary = "first";
+        history.summarizedUntil = 1;
+        store.writeSummary(history);
+        history.summary = "second";
+        history.summarizedUntil = 2;
+        store.writeSummary(history);
+
+        ConversationHistory loaded = only(reopen().loadAll(0, 20));
+        assertEquals("second", loaded.summary);
+        assertEquals(2L, loaded.summarizedUntil);
+
+        store.compact(0, 20);
+        loaded = only(reopen().loadAll(0, 20));
+        assertEquals("second", loaded.summary);
+        assertEquals(3, loaded.messages.size());
+
+        store.delete(ALEX, "Bob");
+        say(ALEX, "Bob", "fresh start");
+        assertNull(only(reopen().loadAll(0, 20)).summary);
+    }
+
+    @Test
+    public void testChangesDuringCompactionAreKept() throws Exception {
+        for (int i = 0; i < 300; i++) {
+            say(new UUID(0, i), "Bob", "a", "b", "c", "d", "e");
+        }
+        say(ALEX, "Bob", "before");
+        say(SAM, "Bob", "cleared while compacting");
+
+        Thread compaction = new Thread(() -> {
+            try {
+                store.compact(0, 3);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        compaction.start();
+        // Loads, appends and deletes don't wait for the rewrite
+        say(ALEX, "Bob", "during");
+        store.delete(SAM, "Bob");
+        say(SAM, "Bob", "new start");
+        compaction.join();
+
+        ConversationHistory alex = only(store.loadPlayer(ALEX, 0, 20));
+        assertEquals("during", alex.messages.snapshot().getLast().content);
+        assertEquals(1, only(store.loadPlayer(SAM, 0, 20)).messages.size());
+        assertEquals(3, only(store.loadPlayer(new UUID(0, 7), 0, 20)).messages.size());
+
+        // The merged index matches what a fresh scan of the files finds
+        assertEquals(2, only(reopen().loadPlayer(ALEX, 0, 20)).messages.size());
+        assertEquals("new start", only(store.loadPlayer(SAM, 0, 20)).messages.snapshot().getFirst().content);
+        assertEquals(302, store.loadAll(0, 20).size());
+    }
+
+    @Test
+    public void testCompactionDropsExpiredConversations() throws IOException {
+        say(ALEX, "Bob", "old");
+        store.compact(System.currentTimeMillis() + 1, 20);
+        assertEquals(0, reopen().loadAll(0, 20).size());
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.github.thegreywanderer_uc.chatr.ConversationManager.ChatMessage;
+import io.github.thegreywanderer_uc.chatr.ConversationManager.ConversationHistory;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MessageRingTest {
+
+    private static ChatMessage message(String content) {
+        return new ChatMessage("user", content, 0);
+    }
+
+    private static List<String> contents(List<ChatMessage> messages) {
+        return messages.stream().map(m -> m.content).toList();
+    }
+
+    @Test
+    public void testFullRingDropsOldest() {
+        MessageRing ring = new MessageRing(3);
+        for (int i = 1; i <= 5; i++) {
+            ring.add(message(Integer.toString(i)));
+        }
+        assertEquals(3, ring.size());
+        assertEquals(List.of("3", "4", "5"), contents(ring.snapshot()));
+        assertEquals(List.of("4", "5"), contents(ring.newest(2)));
+    }
+
+    @Test
+    public void testSnapshotIsUnaffectedByLaterAdds() {
+        MessageRing ring = new MessageRing(2);
+        ring.add(message("a"));
+        ring.add(message("b"));
+        List<ChatMessage> snapshot = ring.snapshot();
+        assertSame(snapshot, ring.snapshot());
+
+        ring.add(message("c"));
+        assertEquals(List.of("a", "b"), contents(snapshot));
+        assertEquals(List.of("b", "c"), contents(ring.snapshot()));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(message("d")));
+    }
+
+    @Test
+    public void testShrinkKeepsNewest() {
+        MessageRing ring = new MessageRing(4);
+        for (String content : List.of("a", "b", "c", "d", "e")) {
+            ring.add(message(content));
+        }
+        ring.setCapacity(2);
+        assertEquals(List.of("d", "e"), contents(ring.snapshot()));
+    }
+
+    @Test
+    public void testJsonIsAnArrayAndRolesAreInterned() {
+        Gson gson = new GsonBuilder().registerTypeAdapter(MessageRing.class, new MessageRing.JsonAdapter()).create();
+        ConversationHistory history = gson.fromJson("{\"npcName\":\"Bob\",\"messages\":["
+                + "{\"role\":\"" + new String("user") + "\",\"content\":\"hi\",\"timestamp\":5}]}", ConversationHistory.class);
+        ChatMessage loaded = history.messages.snapshot().getFirst();
+        assertEquals("hi", loaded.content);
+        assertEquals(5L, loaded.timestamp);
+        assertSame("user", loaded.role);
+
+        String json = gson.toJson(history);
+        assertEquals(true, json.contains("\"messages\":[{\"role\":\"user\",\"content\":\"hi\",\"timestamp\":5}]"));
+    }
+}
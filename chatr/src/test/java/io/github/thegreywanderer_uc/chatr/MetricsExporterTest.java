@@ -0,0 +1,95 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+public class MetricsExporterTest {
+
+    private Path folder;
+    private MetricsManager metrics;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("chatr-exporter");
+        YamlConfiguration config = new YamlConfiguration();
+        // No history on disk, so nothing is scheduled
+        config.set("metrics.persist", false);
+
+        JavaPlugin plugin = Mockito.mock(JavaPlugin.class);
+        when(plugin.getConfig()).thenReturn(config);
+        when(plugin.getDataFolder()).thenReturn(folder.toFile());
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("test"));
+        metrics = new MetricsManager(plugin, null);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    public void testLabelsEscapeValuesAndRenderNullAsEmpty() {
+        assertEquals("npc=\"Bob \\\"the\\\" \\\\ \\nBuilder\"", MetricsExporter.labels("npc", "Bob \"the\" \\ \nBuilder"));
+        assertEquals("provider=\"groq\",model=\"\"", MetricsExporter.labels("provider", "groq", "model", null));
+    }
+
+    @Test
+    public void testRenderCountersHistogramsAndEof() {
+        UUID player = UUID.randomUUID();
+        metrics.recordRequest("Bob", "groq", player, "Alex", 120, 40, false);
+        metrics.recordRequest("Bob", null, player, "Alex", 2, -1, true);
+        metrics.recordError("Bob", "groq", player, "timeout");
+        // Some providers answer without naming the model
+        metrics.recordTokens("Bob", "groq", null, player, "Alex", 30, 12);
+
+        String text = new MetricsExporter(null, metrics).render();
+        String[] lines = text.split("\n");
+
+        assertTrue(text.contains("\nchatr_requests_total 2\n"));
+        assertTrue(text.contains("\nchatr_cache_hits_total 1\n"));
+        assertTrue(text.contains("\nchatr_npc_requests_total{npc=\"Bob\"} 2\n"));
+        assertTrue(text.contains("\nchatr_provider_errors_total{provider=\"groq\",type=\"timeout\"} 1\n"));
+        assertTrue(text.contains("\nchatr_tokens_total{provider=\"groq\",model=\"\",type=\"prompt\"} 30\n"));
+        assertTrue(text.contains("\nchatr_tokens_total{provider=\"groq\",model=\"\",type=\"completion\"} 12\n"));
+
+        // Only the live call is histogrammed; buckets are cumulative
+        assertTrue(text.contains("\nchatr_response_seconds_bucket{le=\"0.1\"} 0\n"));
+        assertTrue(text.contains("\nchatr_response_seconds_bucket{le=\"0.25\"} 1\n"));
+        assertTrue(text.contains("\nchatr_response_seconds_bucket{le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("\nchatr_response_seconds_count 1\n"));
+        assertTrue(text.contains("\nchatr_provider_response_seconds_bucket{provider=\"groq\",le=\"+Inf\"} 1\n"));
+
+        // Every counter sample carries the _total suffix of its family
+        String counterFamily = null;
+        for (String line : lines) {
+            if (line.startsWith("# TYPE ")) {
+                String[] parts = line.split(" ");
+                counterFamily = "counter".equals(parts[3]) ? parts[2] : null;
+            } else if (!line.startsWith("#") && counterFamily != null) {
+                assertTrue(line.startsWith(counterFamily + "_total"), line);
+            }
+        }
+        assertEquals("# EOF", lines[lines.length - 1]);
+        assertTrue(text.endsWith("# EOF\n"));
+    }
+}
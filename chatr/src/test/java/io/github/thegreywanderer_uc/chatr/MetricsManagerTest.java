@@ -0,0 +1,76 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+public class MetricsManagerTest {
+
+    private Path folder;
+    private YamlConfiguration config;
+    private MetricsManager metrics;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("chatr-metrics");
+        config = new YamlConfiguration();
+        config.set("metrics.persist", false);
+        config.set("metrics.token-costs", List.of(
+                Map.of("provider", "groq", "model", "llama-3.1-8b", "input", 0.05, "output", 0.08),
+                Map.of("provider", "Gemini", "input", 0.10, "output", 0.40),
+                Map.of("model", "gpt-4o-mini", "input", 0.15, "output", 0.60)));
+
+        JavaPlugin plugin = Mockito.mock(JavaPlugin.class);
+        when(plugin.getConfig()).thenReturn(config);
+        when(plugin.getDataFolder()).thenReturn(folder.toFile());
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("test"));
+        metrics = new MetricsManager(plugin, null);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    public void testEstimateCostMatchesModelByPrefix() {
+        // Dated and suffixed variants use the base rate
+        assertEquals(0.13, metrics.estimateCost("groq", "llama-3.1-8b-instant", 1_000_000, 1_000_000), 1e-9);
+        assertEquals(0.13, metrics.estimateCost("groq", "LLAMA-3.1-8B", 1_000_000, 1_000_000), 1e-9);
+        // Other groq models and unknown models have no rate
+        assertEquals(0, metrics.estimateCost("groq", "mixtral-8x7b", 1_000_000, 1_000_000), 1e-9);
+        assertEquals(0, metrics.estimateCost("groq", null, 1_000_000, 1_000_000), 1e-9);
+        // An entry without a model covers every model of its provider, case-insensitively
+        assertEquals(0.5, metrics.estimateCost("gemini", "gemini-2.5-flash", 1_000_000, 1_000_000), 1e-9);
+        // An entry without a provider matches the model on any provider
+        assertEquals(0.00075, metrics.estimateCost("openrouter", "gpt-4o-mini-2024-07-18", 1000, 1000), 1e-12);
+    }
+
+    @Test
+    public void testReloadReplacesTokenCosts() {
+        assertEquals(0.5, metrics.estimateCost("gemini", "gemini-2.5-flash", 1_000_000, 1_000_000), 1e-9);
+        config.set("metrics.token-costs", List.of(Map.of("provider", "gemini", "input", 1, "output", 2)));
+        metrics.reload();
+        assertEquals(3, metrics.estimateCost("gemini", "gemini-2.5-flash", 1_000_000, 1_000_000), 1e-9);
+        assertEquals(0, metrics.estimateCost("groq", "llama-3.1-8b-instant", 1_000_000, 1_000_000), 1e-9);
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.bukkit.plugin.java.JavaPlugin;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+
+public class MetricsTimeSeriesTest {
+
+    @Test
+    public void testParseWindowMinutes() {
+        assertEquals(30, MetricsTimeSeries.parseWindowMinutes("30m"));
+        assertEquals(60, MetricsTimeSeries.parseWindowMinutes("1h"));
+        assertEquals(1440, MetricsTimeSeries.parseWindowMinutes("1d"));
+        assertEquals(10080, MetricsTimeSeries.parseWindowMinutes("1W"));
+        assertEquals(-1, MetricsTimeSeries.parseWindowMinutes("0h"));
+        assertEquals(-1, MetricsTimeSeries.parseWindowMinutes("h"));
+        assertEquals(-1, MetricsTimeSeries.parseWindowMinutes("5y"));
+        assertEquals(-1, MetricsTimeSeries.parseWindowMinutes(null));
+    }
+
+    @Test
+    public void testMinuteTotalsLineRoundTrip() {
+        MetricsTimeSeries.MinuteTotals totals = new MetricsTimeSeries.MinuteTotals(10, 4, 1, 6, 7200, 2500, 3000, 900, 450);
+        String[] parts = ("29000000 " + totals.toLine()).split(" ");
+
+        MetricsTimeSeries.MinuteTotals parsed = MetricsTimeSeries.MinuteTotals.parse(parts);
+        assertEquals(totals.toLine(), parsed.toLine());
+    }
+
+    @Test
+    public void testMinuteTotalsMerge() {
+        MetricsTimeSeries.MinuteTotals a = new MetricsTimeSeries.MinuteTotals(2, 1, 0, 1, 800, 800, 100, 50, 10);
+        MetricsTimeSeries.MinuteTotals b = new MetricsTimeSeries.MinuteTotals(3, 0, 1, 3, 3000, 1500, 300, 90, 30);
+
+        MetricsTimeSeries.MinuteTotals sum = a.plus(b);
+        assertEquals(5, sum.requests);
+        assertEquals(1, sum.errors);
+        assertEquals(3800, sum.responseMsSum);
+        assertEquals(1500, sum.responseMsMax);
+        assertEquals(40, sum.costMicroUsd);
+        assertTrue(new MetricsTimeSeries.MinuteTotals().isEmpty());
+    }
+
+    @Test
+    public void testFailedAppendIsRetriedOnTheNextFlush() throws IOException {
+        JavaPlugin plugin = Mockito.mock(JavaPlugin.class);
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("test"));
+        MetricsStore store = Mockito.mock(MetricsStore.class);
+        List<NavigableMap<Long, MetricsTimeSeries.MinuteTotals>> appended = new ArrayList<>();
+        doThrow(new IOException("disk full")).doAnswer(invocation -> {
+            NavigableMap<Long, MetricsTimeSeries.MinuteTotals> minutes = invocation.getArgument(0);
+            appended.add(new TreeMap<>(minutes));
+            minutes.clear();
+            return null;
+        }).when(store).appendMinutes(any());
+        MetricsTimeSeries series = new MetricsTimeSeries(plugin, store);
+
+        series.recordRequest(false, 100);
+        series.flush(true);
+        assertTrue(appended.isEmpty());
+
+        series.recordError();
+        series.flush(true);
+        series.flush(true);
+        assertEquals(1, appended.size());
+        MetricsTimeSeries.MinuteTotals sum = new MetricsTimeSeries.MinuteTotals();
+        for (Map.Entry<Long, MetricsTimeSeries.MinuteTotals> entry : appended.get(0).entrySet()) {
+            sum = sum.plus(entry.getValue());
+        }
+        assertEquals(1, sum.requests);
+        assertEquals(1, sum.errors);
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NpcConfigWatcherTest {
+
+    private final List<String> changed = new CopyOnWriteArrayList<>();
+    private Path npcs;
+    private NpcConfigWatcher watcher;
+
+    private void startWatcher(String... existingNpcs) throws IOException {
+        npcs = Files.createTempDirectory("chatr-npcs");
+        for (String npc : existingNpcs) {
+            Files.createDirectories(npcs.resolve(npc));
+            Files.writeString(npcs.resolve(npc).resolve("config.yml"), "system-prompt: hi\n");
+        }
+        watcher = new NpcConfigWatcher(npcs, 100, changed::add, Logger.getLogger("test"));
+        watcher.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (watcher != null) {
+            watcher.stop();
+        }
+        if (npcs != null) {
+            try (Stream<Path> paths = Files.walk(npcs)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private void awaitChanges(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (changed.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void testReportsOnlyTheEditedNpc() throws Exception {
+        startWatcher("Bob", "Alice");
+        Files.writeString(npcs.resolve("Bob").resolve("config.yml"), "system-prompt: hello there\n");
+        awaitChanges(1);
+        Thread.sleep(300);
+        assertEquals(List.of("Bob"), changed);
+    }
+
+    @Test
+    public void testCoalescesBurstOfWrites() throws Exception {
+        startWatcher("Bob");
+        Path config = npcs.resolve("Bob").resolve("config.yml");
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(config, "system-prompt: draft " + i + "\n");
+            Thread.sleep(10);
+        }
+        awaitChanges(1);
+        Thread.sleep(300);
+        assertEquals(1, changed.size());
+    }
+
+    @Test
+    public void testIgnoresOtherFiles() throws Exception {
+        startWatcher("Bob");
+        Files.writeString(npcs.resolve("Bob").resolve("notes.txt"), "not a config\n");
+        Thread.sleep(500);
+        assertTrue(changed.isEmpty());
+    }
+
+    @Test
+    public void testPicksUpNewNpcFolders() throws Exception {
+        startWatcher();
+        Files.createDirectories(npcs.resolve("Carol"));
+        // Give the watcher a moment to register the new folder
+        Thread.sleep(200);
+        Files.writeString(npcs.resolve("Carol").resolve("config.yml"), "system-prompt: hey\n");
+        awaitChanges(1);
+        assertEquals("Carol", changed.get(0));
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import io.github.thegreywanderer_uc.chatr.ai.AIProviderFactory;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NpcProfileRegistryTest {
+
+    private YamlConfiguration config;
+    private AIProviderFactory providerFactory;
+    private final Map<String, YamlConfiguration> npcConfigs = new HashMap<>();
+    private NpcProfileRegistry registry;
+
+    @BeforeEach
+    public void setUp() {
+        config = new YamlConfiguration();
+        config.set("ai.model", "global-model");
+        config.set("ai.temperature", 0.7);
+        config.set("ai.fallbacks", List.of("groq"));
+
+        JavaPlugin plugin = Mockito.mock(JavaPlugin.class);
+        when(plugin.getConfig()).thenReturn(config);
+        providerFactory = Mockito.mock(AIProviderFactory.class);
+        when(providerFactory.getRoutesForNpc(anyString(), any(), any())).thenReturn(List.of());
+        registry = new NpcProfileRegistry(plugin, providerFactory, npcConfigs::get);
+    }
+
+    @Test
+    public void testAiSectionWinsOverLegacyRootKeys() {
+        YamlConfiguration npc = new YamlConfiguration();
+        npc.set("ai.model", "new-model");
+        npc.set("model", "old-model");
+        npc.set("ai.temperature", 0.2);
+        npc.set("temperature", 0.9);
+        npc.set("ai.fallbacks", List.of("mistral"));
+        npc.set("ai.hedge", true);
+        npc.set("system-prompt", "  You are Bob.  ");
+        npcConfigs.put("Bob", npc);
+
+        NpcProfile profile = registry.get("Bob");
+        assertEquals("new-model", profile.getModel());
+        assertEquals(0.2, profile.getTemperature(), 1e-9);
+        assertEquals("You are Bob.", profile.getSystemPrompt());
+        assertEquals(Boolean.TRUE, profile.getHedge());
+        assertTrue(profile.isChatLogging());
+        verify(providerFactory).getRoutesForNpc(eq("Bob"), same(npc), eq(List.of("mistral")));
+    }
+
+    @Test
+    public void testLegacyRootKeysThenGlobalDefaults() {
+        YamlConfiguration npc = new YamlConfiguration();
+        npc.set("model", "old-model");
+        npc.set("temperature", 0.9);
+        npc.set("enable-chat-logging", false);
+        npcConfigs.put("Alice", npc);
+
+        NpcProfile profile = registry.get("Alice");
+        assertEquals("old-model", profile.getModel());
+        assertEquals(0.9, profile.getTemperature(), 1e-9);
+        assertNull(profile.getHedge());
+        assertFalse(profile.isChatLogging());
+        verify(providerFactory).getRoutesForNpc(eq("Alice"), same(npc), eq(List.of("groq")));
+
+        // An NPC without a config.yml gets the global settings and no prompt or logging
+        NpcProfile bare = registry.get("Carl");
+        assertEquals("global-model", bare.getModel());
+        assertEquals(0.7, bare.getTemperature(), 1e-9);
+        assertEquals("", bare.getSystemPrompt());
+        assertFalse(bare.isChatLogging());
+    }
+
+    @Test
+    public void testProfilesAreCachedUntilRefreshed() {
+        YamlConfiguration npc = new YamlConfiguration();
+        npc.set("ai.model", "first");
+        npcConfigs.put("Bob", npc);
+        NpcProfile first = registry.get("Bob");
+        assertSame(first, registry.get("Bob"));
+
+        npc.set("ai.model", "second");
+        assertEquals("first", registry.get("Bob").getModel());
+        assertEquals("second", registry.refresh("Bob").getModel());
+        assertEquals("second", registry.get("Bob").getModel());
+
+        npc.set("ai.model", "third");
+        registry.invalidateAll();
+        assertEquals("third", registry.get("Bob").getModel());
+    }
+}
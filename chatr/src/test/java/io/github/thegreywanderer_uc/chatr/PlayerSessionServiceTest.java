@@ -0,0 +1,149 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+public class PlayerSessionServiceTest {
+
+    private YamlConfiguration config;
+    private MockedStatic<Bukkit> bukkit;
+    private PlayerSessionService sessions;
+    private Player player;
+    private final List<UUID> evicted = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        config = new YamlConfiguration();
+        config.set("player-sessions.evict-after-seconds", 0);
+
+        JavaPlugin plugin = Mockito.mock(JavaPlugin.class);
+        when(plugin.getConfig()).thenReturn(config);
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("test"));
+
+        // The sweep timer never fires; tests call sweep() directly
+        BukkitScheduler scheduler = Mockito.mock(BukkitScheduler.class);
+        when(scheduler.runTaskTimerAsynchronously(any(), any(Runnable.class), anyLong(), anyLong()))
+                .thenAnswer(invocation -> Mockito.mock(BukkitTask.class));
+        bukkit = Mockito.mockStatic(Bukkit.class);
+        bukkit.when(Bukkit::getScheduler).thenReturn(scheduler);
+
+        player = Mockito.mock(Player.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+
+        sessions = new PlayerSessionService(plugin);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sessions.stop();
+        bukkit.close();
+    }
+
+    private void join() {
+        PlayerJoinEvent event = Mockito.mock(PlayerJoinEvent.class);
+        when(event.getPlayer()).thenReturn(player);
+        sessions.onPlayerJoin(event);
+    }
+
+    private void quit() {
+        PlayerQuitEvent event = Mockito.mock(PlayerQuitEvent.class);
+        when(event.getPlayer()).thenReturn(player);
+        sessions.onPlayerQuit(event);
+    }
+
+    private Object stat(String name) {
+        return sessions.getStats().get(name);
+    }
+
+    @Test
+    public void testPlayersAreEvictedOnlyAfterTheCutoff() {
+        config.set("player-sessions.evict-after-seconds", 300);
+        sessions.reload();
+        sessions.register("test", uuid -> evicted.add(uuid));
+        quit();
+
+        sessions.sweep();
+        assertEquals(List.of(), evicted);
+        assertEquals(1, stat("offlineTracked"));
+
+        config.set("player-sessions.evict-after-seconds", 0);
+        sessions.reload();
+        sessions.sweep();
+        assertEquals(List.of(player.getUniqueId()), evicted);
+        assertEquals(0, stat("offlineTracked"));
+        assertEquals(1L, stat("evictedPlayers"));
+    }
+
+    @Test
+    public void testPlayerIsKeptWhileAStateStillNeedsThem() {
+        boolean[] recovered = {false};
+        sessions.register("limits", uuid -> recovered[0]);
+        sessions.register("test", uuid -> evicted.add(uuid));
+        quit();
+
+        sessions.sweep();
+        assertEquals(1, stat("retained"));
+        assertEquals(1, stat("offlineTracked"));
+        assertEquals(0L, stat("evictedPlayers"));
+
+        // Asked again on the next sweep
+        recovered[0] = true;
+        sessions.sweep();
+        assertEquals(2, evicted.size());
+        assertEquals(0, stat("retained"));
+        assertEquals(0, stat("offlineTracked"));
+        assertEquals(1L, stat("evictedPlayers"));
+    }
+
+    @Test
+    public void testRejoinDuringASweepIsNotCountedAsEvicted() {
+        sessions.register("test", uuid -> {
+            join();
+            return true;
+        });
+        quit();
+
+        sessions.sweep();
+        assertEquals(0, stat("offlineTracked"));
+        assertEquals(0L, stat("evictedPlayers"));
+
+        // Online again, so later sweeps leave them alone
+        sessions.register("test", uuid -> evicted.add(uuid));
+        sessions.sweep();
+        assertEquals(List.of(), evicted);
+    }
+
+    @Test
+    public void testThrowingStateDoesNotBlockTheOthers() {
+        sessions.register("broken", uuid -> {
+            throw new IllegalStateException("broken");
+        });
+        sessions.register("test", uuid -> evicted.add(uuid));
+        quit();
+
+        sessions.sweep();
+        assertEquals(List.of(player.getUniqueId()), evicted);
+        assertEquals(0, stat("offlineTracked"));
+    }
+}
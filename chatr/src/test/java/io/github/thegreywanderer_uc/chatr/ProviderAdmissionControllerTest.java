@@ -0,0 +1,79 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProviderAdmissionControllerTest {
+
+    @Test
+    public void testMaxInFlightAndQueueTimeout() {
+        ProviderAdmissionController.Gate gate = new ProviderAdmissionController.Gate("local",
+                new ProviderAdmissionController.Limits(2, 0, 0, 1000, 0));
+
+        ProviderAdmissionController.Permit first = gate.acquire("a", 0);
+        ProviderAdmissionController.Permit second = gate.acquire("b", 0);
+        assertEquals(2, gate.getInFlight());
+
+        long start = System.nanoTime();
+        RuntimeException e = assertThrows(RuntimeException.class, () -> gate.acquire("c", 0));
+        assertTrue(e.getMessage().startsWith("Provider busy"));
+        assertTrue(System.nanoTime() - start >= 900_000_000L);
+        assertEquals(0, gate.getQueued());
+
+        first.close();
+        first.close(); // Releasing twice must not free a second slot
+        assertEquals(1, gate.getInFlight());
+        gate.acquire("c", 0);
+        second.close();
+    }
+
+    @Test
+    public void testQueueIsFairAcrossPlayers() throws InterruptedException {
+        ProviderAdmissionController.Gate gate = new ProviderAdmissionController.Gate("local",
+                new ProviderAdmissionController.Limits(1, 0, 0, 10_000, 0));
+        ProviderAdmissionController.Permit blocker = gate.acquire("blocker", 0);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        // Player A queues three requests before player B queues one
+        for (String player : new String[] {"A", "A", "A", "B"}) {
+            Thread thread = new Thread(() -> {
+                ProviderAdmissionController.Permit permit = gate.acquire(player, 0);
+                order.add(player);
+                permit.close();
+            });
+            threads.add(thread);
+            thread.start();
+            while (gate.getQueued() < threads.size()) {
+                Thread.sleep(5);
+            }
+        }
+
+        blocker.close();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        assertEquals(List.of("A", "B", "A", "A"), order);
+    }
+
+    @Test
+    public void testTokenBudgetIsRefundedWithActualUsage() {
+        ProviderAdmissionController.Gate gate = new ProviderAdmissionController.Gate("groq",
+                new ProviderAdmissionController.Limits(0, 0, 1000, 1000, 0));
+
+        ProviderAdmissionController.Permit permit = gate.acquire("a", 900);
+        // Only 100 tokens left, so a second large call has to wait
+        assertThrows(RuntimeException.class, () -> gate.acquire("b", 900));
+
+        // The first call only used 100 tokens, so the reservation is mostly refunded
+        permit.release(100);
+        gate.acquire("b", 800).release(800);
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProviderRouterTest {
+
+    private final ProviderRouter router = new ProviderRouter();
+
+    @AfterEach
+    public void tearDown() {
+        router.shutdown();
+    }
+
+    @Test
+    public void testFirstRouteAnswers() throws Exception {
+        ProviderRouter.Answer<String, String> answer = router.execute(List.of("local", "groq"), 0,
+                route -> "hello from " + route);
+        assertEquals("local", answer.route);
+        assertEquals("hello from local", answer.value);
+        assertFalse(answer.fromBackup);
+        assertEquals(0L, router.getFailovers());
+    }
+
+    @Test
+    public void testFailsOverInOrder() throws Exception {
+        ProviderRouter.Answer<String, String> answer = router.execute(List.of("local", "groq", "openrouter"), 0, route -> {
+            if (!route.equals("openrouter")) {
+                throw new IOException(route + " is down");
+            }
+            return "ok";
+        });
+        assertEquals("openrouter", answer.route);
+        assertTrue(answer.fromBackup);
+        assertEquals(2L, router.getFailovers());
+    }
+
+    @Test
+    public void testThrowsLastErrorWhenAllFail() {
+        IOException error = assertThrows(IOException.class, () -> router.execute(List.of("local", "groq"), 0, route -> {
+            throw new IOException(route + " is down");
+        }));
+        assertEquals("groq is down", error.getMessage());
+        assertEquals(1, error.getSuppressed().length);
+    }
+
+    @Test
+    public void testHedgeWinsWhenPrimaryIsSlow() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ProviderRouter.Answer<String, String> answer = router.execute(List.of("local", "groq"), 50, route -> {
+            if (route.equals("local")) {
+                release.await(5, TimeUnit.SECONDS);
+                return "slow";
+            }
+            return "fast";
+        });
+        release.countDown();
+        assertEquals("groq", answer.route);
+        assertEquals("fast", answer.value);
+        assertEquals(1L, router.getHedges());
+        assertEquals(1L, router.getHedgeWins());
+    }
+
+    @Test
+    public void testNoHedgeWhenPrimaryIsFast() throws Exception {
+        ProviderRouter.Answer<String, String> answer = router.execute(List.of("local", "groq"), 2_000,
+                route -> "from " + route);
+        assertEquals("local", answer.route);
+        assertEquals(0L, router.getHedges());
+    }
+
+    @Test
+    public void testHedgedPrimaryFailureFallsThrough() throws Exception {
+        ProviderRouter.Answer<String, String> answer = router.execute(List.of("local", "groq", "openrouter"), 1_000, route -> {
+            if (route.equals("local")) {
+                throw new IOException("connection refused");
+            }
+            return "from " + route;
+        });
+        // The primary failed before the hedge delay, so this is plain failover
+        assertEquals("groq", answer.route);
+        assertEquals(0L, router.getHedges());
+    }
+}
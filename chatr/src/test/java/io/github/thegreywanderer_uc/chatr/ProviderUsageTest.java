@@ -0,0 +1,74 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import io.github.thegreywanderer_uc.chatr.ai.AIProvider;
+import io.github.thegreywanderer_uc.chatr.ai.ChatResult;
+import io.github.thegreywanderer_uc.chatr.ai.GeminiProvider;
+import io.github.thegreywanderer_uc.chatr.ai.OpenAIProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProviderUsageTest {
+
+    private static ChatResult openAi(String response) throws AIProvider.AIProviderException {
+        AIProvider provider = new OpenAIProvider("http://localhost", "key") {
+            @Override
+            protected String httpPost(String url, String jsonBody, Map<String, String> headers) {
+                return response;
+            }
+        };
+        return provider.chatCompletion("llama-3.1-8b-instant", "You are Bob.", "hi", List.of(), 0.7, 100);
+    }
+
+    private static ChatResult gemini(String response) throws AIProvider.AIProviderException {
+        AIProvider provider = new GeminiProvider("key") {
+            @Override
+            protected String httpPost(String url, String jsonBody, Map<String, String> headers) {
+                return response;
+            }
+        };
+        return provider.chatCompletion("models/gemini-2.5-flash", "You are Bob.", "hi", List.of(), 0.7, 100);
+    }
+
+    @Test
+    public void testOpenAiUsage() throws Exception {
+        ChatResult result = openAi("{\"model\":\"llama-3.1-8b-instant-0725\","
+                + "\"choices\":[{\"message\":{\"content\":\" Hello! \"}}],"
+                + "\"usage\":{\"prompt_tokens\":42,\"completion_tokens\":7,\"total_tokens\":49}}");
+        assertEquals("Hello!", result.getContent());
+        assertEquals("llama-3.1-8b-instant-0725", result.getModel());
+        assertEquals(42, result.getPromptTokens());
+        assertEquals(7, result.getCompletionTokens());
+        assertTrue(result.hasUsage());
+
+        // Servers that don't report usage (or send null) leave the counts unknown
+        ChatResult noUsage = openAi("{\"choices\":[{\"message\":{\"content\":\"Hi\"}}],\"usage\":null}");
+        assertEquals("llama-3.1-8b-instant", noUsage.getModel());
+        assertEquals(-1, noUsage.getPromptTokens());
+        assertFalse(noUsage.hasUsage());
+    }
+
+    @Test
+    public void testGeminiUsageMetadataCountsThoughtsAsOutput() throws Exception {
+        ChatResult result = gemini("{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"Hello!\"}]}}],"
+                + "\"usageMetadata\":{\"promptTokenCount\":30,\"candidatesTokenCount\":8,\"thoughtsTokenCount\":120},"
+                + "\"modelVersion\":\"gemini-2.5-flash-001\"}");
+        assertEquals("Hello!", result.getContent());
+        assertEquals("gemini-2.5-flash-001", result.getModel());
+        assertEquals(30, result.getPromptTokens());
+        assertEquals(128, result.getCompletionTokens());
+
+        ChatResult noThoughts = gemini("{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"Hi\"}]}}],"
+                + "\"usageMetadata\":{\"promptTokenCount\":30,\"candidatesTokenCount\":8}}");
+        assertEquals("gemini-2.5-flash", noThoughts.getModel());
+        assertEquals(8, noThoughts.getCompletionTokens());
+
+        ChatResult noUsage = gemini("{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"Hi\"}]}}]}");
+        assertFalse(noUsage.hasUsage());
+    }
+}
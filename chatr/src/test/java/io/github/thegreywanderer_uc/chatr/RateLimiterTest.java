@@ -0,0 +1,111 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+public class RateLimiterTest {
+
+    // Not a local address, so limits apply
+    private static final String REMOTE = "http://8.8.8.8/v1";
+
+    private YamlConfiguration config;
+    private JavaPlugin plugin;
+    private Player player;
+    private final Set<String> permissions = new HashSet<>();
+
+    @BeforeEach
+    public void setUp() {
+        config = new YamlConfiguration();
+        config.set("rate-limit.burst", 1);
+        config.set("rate-limit.base-requests-per-minute", 10);
+        config.set("rate-limit.base-cooldown-seconds", 0);
+
+        plugin = Mockito.mock(JavaPlugin.class);
+        when(plugin.getConfig()).thenReturn(config);
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("test"));
+
+        player = Mockito.mock(Player.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.hasPermission(anyString())).thenAnswer(invocation -> permissions.contains(invocation.getArgument(0, String.class)));
+    }
+
+    @Test
+    public void testTiersAreCheckedInConfigOrder() {
+        config.set("rate-limit.tiers.staff.permission", "group.staff");
+        config.set("rate-limit.tiers.staff.requests-per-minute", 60);
+        config.set("rate-limit.tiers.donor.requests-per-minute", 30);
+        RateLimiter limiter = new RateLimiter(plugin);
+
+        assertEquals("base", limiter.getTierName(player));
+
+        // The permission defaults to chatr.ratelimit.<tier>
+        permissions.add("chatr.ratelimit.donor");
+        limiter.invalidateTier(player.getUniqueId());
+        assertEquals("donor", limiter.getTierName(player));
+
+        // Both match: the first in the config wins
+        permissions.add("group.staff");
+        limiter.invalidateTier(player.getUniqueId());
+        assertEquals("staff", limiter.getTierName(player));
+
+        permissions.add("chatr.ratelimit.bypass");
+        limiter.invalidateTier(player.getUniqueId());
+        assertEquals("bypass", limiter.getTierName(player));
+    }
+
+    @Test
+    public void testLegacyTierIsRequestsPerMinute() {
+        config.set("rate-limit.tiers.vip", 20);
+        permissions.add("chatr.ratelimit.vip");
+        RateLimiter limiter = new RateLimiter(plugin);
+
+        assertEquals("vip", limiter.getTierName(player));
+        assertTrue(limiter.tryAcquire(player, REMOTE).allowed);
+        // 20 per minute is one every 3 seconds (base would be 6)
+        RateLimiter.RateLimitResult denied = limiter.tryAcquire(player, REMOTE);
+        assertFalse(denied.allowed);
+        assertEquals("rate-limit", denied.reason);
+        assertEquals(3, denied.waitSeconds);
+    }
+
+    @Test
+    public void testCachedTierIsDroppedOnInvalidateAndReload() {
+        config.set("rate-limit.tier-cache-seconds", 60);
+        config.set("rate-limit.tiers.vip", 20);
+        permissions.add("chatr.ratelimit.vip");
+        RateLimiter limiter = new RateLimiter(plugin);
+        assertEquals("vip", limiter.getTierName(player));
+
+        // Cached until invalidated
+        permissions.clear();
+        assertEquals("vip", limiter.getTierName(player));
+        limiter.invalidateTier(player.getUniqueId());
+        assertEquals("base", limiter.getTierName(player));
+
+        permissions.add("chatr.ratelimit.vip");
+        assertEquals("base", limiter.getTierName(player));
+        limiter.reload();
+        assertEquals("vip", limiter.getTierName(player));
+
+        // Without a cache every check resolves permissions again
+        config.set("rate-limit.tier-cache-seconds", 0);
+        limiter.reload();
+        permissions.clear();
+        assertEquals("base", limiter.getTierName(player));
+    }
+}
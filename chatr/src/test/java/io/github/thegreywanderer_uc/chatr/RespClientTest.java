@@ -0,0 +1,135 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs RespClient against a tiny in-process stand-in that speaks RESP2
+ */
+public class RespClientTest {
+
+    private ServerSocket server;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private volatile long evalReply = 0;
+
+    private int startStandIn() throws IOException {
+        server = new ServerSocket(0);
+        Thread thread = new Thread(() -> {
+            try (Socket socket = server.accept()) {
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                OutputStream out = socket.getOutputStream();
+                while (true) {
+                    // Commands are arrays of bulk strings, so the client's own decoder can read them
+                    @SuppressWarnings("unchecked")
+                    List<Object> command = (List<Object>) RespClient.readReply(in);
+                    String name = command.get(0).toString();
+                    received.add(name);
+                    out.write(reply(name, command).getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // Client disconnected or test finished
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return server.getLocalPort();
+    }
+
+    private String reply(String name, List<Object> command) {
+        switch (name) {
+            case "PING": return "+PONG\r\n";
+            case "SET": return "+OK\r\n";
+            case "GET": return "$-1\r\n";
+            case "INCR": return ":42\r\n";
+            case "ECHO": {
+                String value = command.get(1).toString();
+                return "$" + value.getBytes(StandardCharsets.UTF_8).length + "\r\n" + value + "\r\n";
+            }
+            case "LIST": return "*3\r\n:1\r\n$1\r\na\r\n$-1\r\n";
+            case "EVALSHA": return "-NOSCRIPT No matching script. Please use EVAL.\r\n";
+            case "EVAL": return ":" + evalReply + "\r\n";
+            default: return "-ERR unknown command '" + name + "'\r\n";
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (server != null) server.close();
+    }
+
+    @Test
+    public void testRepliesAreDecoded() throws IOException {
+        try (RespClient client = new RespClient("127.0.0.1", startStandIn(), 2000, "", "", 0)) {
+            assertEquals("PONG", client.command("PING"));
+            assertEquals("OK", client.command("SET", "k", "v"));
+            assertNull(client.command("GET", "missing"));
+            assertEquals(42L, ((Long) client.command("INCR", "n")).longValue());
+            assertEquals("héllo wörld", client.command("ECHO", "héllo wörld"));
+
+            List<?> list = (List<?>) client.command("LIST");
+            assertEquals(3, list.size());
+            assertEquals(1L, ((Long) list.get(0)).longValue());
+            assertEquals("a", list.get(1));
+            assertNull(list.get(2));
+        }
+    }
+
+    @Test
+    public void testErrorReplyKeepsConnection() throws IOException {
+        try (RespClient client = new RespClient("127.0.0.1", startStandIn(), 2000, "", "", 0)) {
+            RespClient.RespException e = assertThrows(RespClient.RespException.class, () -> client.command("NOPE"));
+            assertTrue(e.getMessage().startsWith("ERR unknown command"));
+            assertEquals("PONG", client.command("PING"));
+        }
+    }
+
+    @Test
+    public void testRedisStoreLoadsScriptOnNoScript() throws IOException {
+        RespClient client = new RespClient("127.0.0.1", startStandIn(), 2000, "", "", 0);
+        RedisRateLimitStore store = new RedisRateLimitStore(client, "chatr:rl:", new LocalRateLimitStore(), Logger.getAnonymousLogger());
+        UUID player = UUID.randomUUID();
+
+        assertEquals(0, store.acquire(player, 6000, 12000, 0));
+        evalReply = 4500;
+        assertEquals(4500, store.acquire(player, 6000, 12000, 0));
+        assertEquals(List.of("EVALSHA", "EVAL", "EVALSHA", "EVAL"), received);
+        store.close();
+    }
+
+    @Test
+    public void testRedisStoreFallsBackToLocalWhenUnreachable() throws IOException {
+        int port;
+        try (ServerSocket closed = new ServerSocket(0)) {
+            port = closed.getLocalPort();
+        }
+        RespClient client = new RespClient("127.0.0.1", port, 200, "", "", 0);
+        RedisRateLimitStore store = new RedisRateLimitStore(client, "chatr:rl:", new LocalRateLimitStore(), Logger.getAnonymousLogger());
+        UUID player = UUID.randomUUID();
+
+        // Local limits still apply: a burst of 3, then the player has to wait
+        assertEquals(0, store.acquire(player, 6000, 12000, 0));
+        assertEquals(0, store.acquire(player, 6000, 12000, 0));
+        assertEquals(0, store.acquire(player, 6000, 12000, 0));
+        assertTrue(store.acquire(player, 6000, 12000, 0) > 0);
+        assertEquals(0, store.remaining(player, 6000, 3));
+        store.close();
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.thegreywanderer_uc.chatr;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpaceSavingTopKTest {
+
+    @Test
+    public void testExactCountsBelowCapacity() {
+        SpaceSavingTopK<String> topK = new SpaceSavingTopK<>(10);
+        for (int i = 0; i < 5; i++) topK.offer("guide");
+        for (int i = 0; i < 3; i++) topK.offer("merchant");
+        topK.offer("guard");
+
+        List<Map.Entry<String, Long>> top = topK.top(2);
+        assertEquals(2, top.size());
+        assertEquals("guide", top.get(0).getKey());
+        assertEquals(5L, top.get(0).getValue().longValue());
+        assertEquals("merchant", top.get(1).getKey());
+        assertEquals(3L, top.get(1).getValue().longValue());
+        assertEquals(0, topK.getError("guide"));
+    }
+
+    @Test
+    public void testHeavyHittersSurviveManyDistinctKeys() {
+        SpaceSavingTopK<Integer> topK = new SpaceSavingTopK<>(20);
+        for (int round = 0; round < 100; round++) {
+            topK.offer(-1);
+            topK.offer(-2);
+            // A long tail of one-off keys
+            for (int i = 0; i < 10; i++) {
+                topK.offer(round * 10 + i);
+            }
+        }
+
+        assertEquals(20, topK.size());
+        List<Map.Entry<Integer, Long>> top = topK.top(2);
+        assertTrue(top.stream().anyMatch(e -> e.getKey() == -1));
+        assertTrue(top.stream().anyMatch(e -> e.getKey() == -2));
+        for (Map.Entry<Integer, Long> entry : top) {
+            assertTrue(entry.getValue() >= 100);
+            assertTrue(entry.getValue() - topK.getError(entry.getKey()) <= 100);
+        }
+    }
+
+    @Test
+    public void testRemoveAndClear() {
+        SpaceSavingTopK<String> topK = new SpaceSavingTopK<>(4);
+        topK.offer("a");
+        topK.offer("b");
+        topK.offer("b");
+        topK.offer("c");
+
+        topK.remove("b");
+        assertEquals(2, topK.size());
+        assertEquals(1L, topK.top(1).get(0).getValue().longValue());
+
+        topK.clear();
+        assertEquals(0, topK.size());
+        assertTrue(topK.top(5).isEmpty());
+    }
+}